@@ -69,6 +69,12 @@ public class CursorBuilder {
   private Cursor.Savepoint _savepoint;
   /** ColumnMatcher to be used when matching column values */
   private ColumnMatcher _columnMatcher;
+  /** whether or not the cursor returns compact rows, {@code null} for the
+      database default */
+  private Boolean _compactRows;
+  /** whether or not the cursor reads long values lazily, {@code null} for
+      the database default */
+  private Boolean _lazyLongValues;
 
   public CursorBuilder(Table table) {
     _table = (TableImpl)table;
@@ -256,6 +262,27 @@ public class CursorBuilder {
     return this;
   }
 
+  /**
+   * Sets whether or not the cursor returns rows as compact, array based rows
+   * (which use significantly less memory when holding many rows).  Defaults
+   * to the setting of the database.
+   */
+  public CursorBuilder setCompactRows(boolean compactRows) {
+    _compactRows = compactRows;
+    return this;
+  }
+
+  /**
+   * Sets whether or not the cursor returns the values of long value (MEMO
+   * and OLE) columns as handles which read the actual value only when it is
+   * accessed.  Defaults to the setting of the database.
+   * @see com.healthmarketscience.jackcess.impl.LongValueHandle
+   */
+  public CursorBuilder setLazyLongValues(boolean lazyLongValues) {
+    _lazyLongValues = lazyLongValues;
+    return this;
+  }
+
   /**
    * Returns a new cursor for the table, constructed to the given
    * specifications.
@@ -271,6 +298,12 @@ public class CursorBuilder {
                                             _endRow, _endRowInclusive);
     }
     cursor.setColumnMatcher(_columnMatcher);
+    if(_compactRows != null) {
+      cursor.setCompactRows(_compactRows);
+    }
+    if(_lazyLongValues != null) {
+      cursor.setLazyLongValues(_lazyLongValues);
+    }
     if(_savepoint == null) {
       if(!_beforeFirst) {
         cursor.afterLast();
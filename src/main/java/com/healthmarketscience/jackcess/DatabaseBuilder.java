@@ -28,10 +28,15 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.TimeZone;
 
+import com.healthmarketscience.jackcess.impl.BufferPool;
+import com.healthmarketscience.jackcess.impl.ByteUtil;
 import com.healthmarketscience.jackcess.impl.CodecProvider;
 import com.healthmarketscience.jackcess.impl.DatabaseImpl;
+import com.healthmarketscience.jackcess.impl.PageCache;
+import com.healthmarketscience.jackcess.impl.PageChannel;
 import com.healthmarketscience.jackcess.impl.PropertyMapImpl;
 import com.healthmarketscience.jackcess.util.MemFileChannel;
+import com.healthmarketscience.jackcess.util.PageMetrics;
 
 /**
  * Builder style class for opening/creating a {@link Database}.
@@ -76,6 +81,33 @@ public class DatabaseBuilder
   private Map<String,PropertyMap.Property> _summaryProps;
   /** database user-defined (if any) */
   private Map<String,PropertyMap.Property> _userProps;
+  /** max bytes of decoded pages to cache, 0 to disable page caching */
+  private long _pageCacheSize;
+  /** whether or not to memory map read-only databases */
+  private boolean _memoryMapped;
+  /** max number of pages read at once by table scans, 0 to disable */
+  private int _readAheadPages;
+  /** max bytes of dirty pages held until the end of each write operation,
+      0 to disable */
+  private long _writeBehindBufferSize;
+  /** min number of pages by which the file is grown */
+  private int _extentPages = 1;
+  /** min percentage of the file size by which the file is grown */
+  private int _extentPercent;
+  /** max bytes of idle temp buffers held by the buffer pool, 0 to disable */
+  private long _bufferPoolSize;
+  /** whether or not the buffer pool should allocate direct buffers */
+  private boolean _directBuffers;
+  /** number of threads used to decode pages of bulk reads */
+  private int _decodeThreads;
+  /** whether or not the space used by deleted rows is re-used */
+  private boolean _reuseDeletedRowSpace;
+  /** whether or not rows are read as compact rows by default */
+  private boolean _compactRows;
+  /** whether or not long values are read lazily by default */
+  private boolean _lazyLongValues;
+  /** receiver of page level I/O events */
+  private PageMetrics _pageMetrics;
 
   
   public DatabaseBuilder() {
@@ -174,6 +206,173 @@ public class DatabaseBuilder
     return this;
   }
 
+  /**
+   * Sets the max number of bytes of decoded page data which will be cached
+   * in memory by the Database.  Caching pages can greatly reduce the file
+   * reads (and page decoding) needed by read heavy usage.  If {@code 0} (the
+   * default), page caching is disabled.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setPageCacheSize(long pageCacheSize) {
+    _pageCacheSize = pageCacheSize;
+    return this;
+  }
+
+  /**
+   * Sets flag which, iff {@code true}, will read the pages of a read-only
+   * database from a memory mapping of the file instead of reading each page
+   * from the channel (only applies if the database is actually opened
+   * read-only, see {@link #setReadOnly}).  This can be much faster for
+   * large, read heavy databases.  If the channel does not support memory
+   * mapping, pages will be read normally.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setMemoryMapped(boolean memoryMapped) {
+    _memoryMapped = memoryMapped;
+    return this;
+  }
+
+  /**
+   * Sets the max number of consecutive table pages which table scan cursors
+   * will read with a single read.  This can greatly reduce the number of
+   * reads needed to scan large tables, at the cost of a read buffer per
+   * cursor.  If {@code 0} (the default), read-ahead is disabled.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setReadAheadPages(int readAheadPages) {
+    _readAheadPages = readAheadPages;
+    return this;
+  }
+
+  /**
+   * Sets the max number of bytes of modified pages which will be held in
+   * memory until the end of each write operation (e.g. adding a batch of
+   * rows).  Multiple writes to the same page within a write operation are
+   * combined into a single write to the file, which can greatly reduce the
+   * number of writes for bulk operations.  If the buffer fills up, the
+   * modified pages are written early.  If {@code 0} (the default),
+   * write-behind is disabled and pages are written immediately.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setWriteBehindBufferSize(long writeBehindBufferSize) {
+    _writeBehindBufferSize = writeBehindBufferSize;
+    return this;
+  }
+
+  /**
+   * Sets the min number of pages by which the database file is grown when
+   * new pages are needed.  Growing the file in larger extents reduces the
+   * number of file extensions (and file fragmentation) for heavy inserts.
+   * Any unused pages are removed from the end of the file when the Database
+   * is closed.  Defaults to {@code 1}.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setExtentPages(int extentPages) {
+    _extentPages = extentPages;
+    return this;
+  }
+
+  /**
+   * Sets the min percentage of the current file size by which the database
+   * file is grown when new pages are needed (the actual growth is the larger
+   * of this and {@link #setExtentPages}).  Any unused pages are removed from
+   * the end of the file when the Database is closed.  Defaults to {@code 0}.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setExtentPercent(int extentPercent) {
+    _extentPercent = extentPercent;
+    return this;
+  }
+
+  /**
+   * Sets the max number of bytes of idle temp buffers which will be held by
+   * a pool for re-use.  When enabled, the page buffers used by tables,
+   * cursors and indexes are leased from the pool and returned to it once
+   * they are known to be no longer in use (e.g. the page buffers of
+   * multi-page long values), which reduces allocation churn.  Buffers which
+   * are never returned are simply garbage collected.  If {@code 0} (the
+   * default), temp buffers are allocated individually.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setBufferPoolSize(long bufferPoolSize) {
+    _bufferPoolSize = bufferPoolSize;
+    return this;
+  }
+
+  /**
+   * Sets whether or not the buffer pool (see {@link #setBufferPoolSize})
+   * should allocate direct (off-heap) buffers.  Direct buffers are not used
+   * for encoded databases.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setDirectBuffers(boolean directBuffers) {
+    _directBuffers = directBuffers;
+    return this;
+  }
+
+  /**
+   * Sets the number of threads used to decode the pages of bulk page reads
+   * (e.g. table scans with {@link #setReadAheadPages read-ahead} enabled) for
+   * encoded databases.  Each thread uses a separate handler created by the
+   * configured {@link #setCodecProvider CodecProvider}.  If {@code 0} or
+   * {@code 1} (the default), pages are decoded on the calling thread.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setDecodeThreads(int decodeThreads) {
+    _decodeThreads = decodeThreads;
+    return this;
+  }
+
+  /**
+   * Sets the PageMetrics which will receive all page level I/O events for
+   * the Database (including the events generated while the Database is
+   * being opened).  If {@code null} (the default), the {@link
+   * PageMetrics#DEFAULT} is used.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setPageMetrics(PageMetrics pageMetrics) {
+    _pageMetrics = pageMetrics;
+    return this;
+  }
+
+  /**
+   * Sets whether or not the space used by deleted rows should be reclaimed
+   * for new rows (the row numbers of deleted rows may be re-used).  Only the
+   * space of rows deleted while this setting is enabled will be reclaimed.
+   * Note that saved RowIds of deleted rows may later refer to new rows, see
+   * {@link DatabaseImpl#setReuseDeletedRowSpace} for details.  Disabled by
+   * default.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setReuseDeletedRowSpace(
+      boolean reuseDeletedRowSpace) {
+    _reuseDeletedRowSpace = reuseDeletedRowSpace;
+    return this;
+  }
+
+  /**
+   * Sets whether or not cursors read rows as compact, array based rows by
+   * default (which use significantly less memory when holding many rows).
+   * Disabled by default.
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setCompactRows(boolean compactRows) {
+    _compactRows = compactRows;
+    return this;
+  }
+
+  /**
+   * Sets whether or not cursors return the values of long value (MEMO and
+   * OLE) columns as handles which read the actual value only when it is
+   * accessed by default.  Disabled by default.
+   * @see com.healthmarketscience.jackcess.impl.LongValueHandle
+   * @usage _advanced_method_
+   */
+  public DatabaseBuilder setLazyLongValues(boolean lazyLongValues) {
+    _lazyLongValues = lazyLongValues;
+    return this;
+  }
+
   /**
    * Sets the database property with the given name to the given value.
    * Attempts to determine the type of the property (see
@@ -249,16 +448,19 @@ public class DatabaseBuilder
    * Opens an existingnew Database using the configured information.
    */
   public Database open() throws IOException {
-    return DatabaseImpl.open(_mdbFile, _readOnly, _channel, _autoSync, _charset,
-                             _timeZone, _codecProvider);
+    return configure(DatabaseImpl.open(
+                         _mdbFile, _readOnly, _channel, _autoSync,
+                         _charset, _timeZone, _codecProvider,
+                         new ChannelConfigurer()));
   }
 
   /**
    * Creates a new Database using the configured information.
    */
   public Database create() throws IOException {
-    Database db = DatabaseImpl.create(_fileFormat, _mdbFile, _channel, _autoSync, 
-                                      _charset, _timeZone);
+    Database db = configure(DatabaseImpl.create(_fileFormat, _mdbFile, _channel,
+                                                _autoSync, _charset, _timeZone,
+                                                new ChannelConfigurer()));
     if(_dbProps != null) {
       PropertyMap props = db.getDatabaseProperties();
       props.putAll(_dbProps.values());
@@ -277,6 +479,24 @@ public class DatabaseBuilder
     return db;
   }
 
+  /**
+   * Applies any additional configuration to a newly opened/created Database.
+   */
+  private DatabaseImpl configure(DatabaseImpl db) throws IOException {
+    boolean success = false;
+    try {
+      db.setReuseDeletedRowSpace(_reuseDeletedRowSpace);
+      db.setCompactRows(_compactRows);
+      db.setLazyLongValues(_lazyLongValues);
+      success = true;
+      return db;
+    } finally {
+      if(!success) {
+        ByteUtil.closeQuietly(db);
+      }
+    }
+  }
+
   /**
    * Open an existing Database.  If the existing file is not writeable, the
    * file will be opened read-only.  Auto-syncing is enabled for the returned
@@ -330,4 +550,36 @@ public class DatabaseBuilder
     }
     return cal;
   }
+
+  /**
+   * Applies the configured page channel settings while the database is being
+   * opened/created (before any pages are read).
+   */
+  private final class ChannelConfigurer implements PageChannel.Configurer
+  {
+    public void configure(PageChannel pageChannel, boolean readOnly)
+      throws IOException
+    {
+      pageChannel.setPageMetrics(_pageMetrics);
+      if(_pageCacheSize > 0L) {
+        pageChannel.setPageCache(new PageCache(
+                                     pageChannel.getFormat().PAGE_SIZE,
+                                     _pageCacheSize));
+      }
+      if(_bufferPoolSize > 0L) {
+        pageChannel.setBufferPool(new BufferPool(
+                                      _bufferPoolSize,
+                                      (_directBuffers &&
+                                       pageChannel.supportsDirectBuffers())));
+      }
+      pageChannel.setReadAheadPages(_readAheadPages);
+      pageChannel.setDecodeThreads(_decodeThreads);
+      pageChannel.setWriteBehindBufferSize(_writeBehindBufferSize);
+      pageChannel.setExtentPages(_extentPages);
+      pageChannel.setExtentPercent(_extentPercent);
+      if(_memoryMapped && readOnly) {
+        pageChannel.enableMemoryMapping();
+      }
+    }
+  }
 }
@@ -0,0 +1,279 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pool of reusable buffers which are leased by {@link TempBufferHolder}s.
+ * Buffer capacities are rounded up to the next power of two so that buffers
+ * of similar sizes can be shared.  A leased buffer is only re-used once it
+ * has been explicitly returned via {@link #release} (callers may hold on to
+ * a buffer after its holder has moved on to another buffer, so buffers are
+ * never recycled implicitly).  The pool only weakly references leased
+ * buffers, so a leased buffer which is never returned (e.g. a buffer
+ * dropped by its holder or collected from a soft holder) is simply garbage
+ * collected.
+ * <p/>
+ * The pool may optionally allocate direct (off-heap) buffers.  Direct
+ * buffers do not have a backing array, and should not be used with codecs
+ * which require one.
+ * <p/>
+ * All access to the pool is synchronized, so a pool instance may be shared
+ * by multiple databases.
+ *
+ * @author James Ahlborn
+ */
+public class BufferPool
+{
+  /** min capacity of pooled buffers */
+  private static final int MIN_BUFFER_SIZE = 64;
+  /** buffer used to zero out re-used buffers */
+  private static final byte[] ZERO_BYTES = new byte[4 * 1024];
+
+  /** max number of bytes of idle buffers held by the pool */
+  private final long _maxBytes;
+  /** whether or not direct buffers are allocated */
+  private final boolean _direct;
+  /** idle buffers by capacity */
+  private final Map<Integer,List<ByteBuffer>> _idleBuffers =
+    new HashMap<Integer,List<ByteBuffer>>();
+  /** outstanding leases (keyed by buffer identity, since buffer equality is
+      content based) */
+  private final Map<Lease,Lease> _leases = new HashMap<Lease,Lease>();
+  /** queue of leases whose buffers have been garbage collected */
+  private final ReferenceQueue<ByteBuffer> _expiredLeases =
+    new ReferenceQueue<ByteBuffer>();
+  private long _idleBytes;
+  private long _leaseCount;
+  private long _reuseCount;
+  private long _returnCount;
+
+  /**
+   * @param maxBytes max number of bytes of idle buffers held by the pool
+   * @param direct whether or not direct (off-heap) buffers should be
+   *               allocated
+   */
+  public BufferPool(long maxBytes, boolean direct)
+  {
+    _maxBytes = maxBytes;
+    _direct = direct;
+  }
+
+  /**
+   * @return the max number of bytes of idle buffers held by the pool
+   */
+  public long getMaxBytes() {
+    return _maxBytes;
+  }
+
+  /**
+   * @return {@code true} if this pool allocates direct buffers, {@code
+   *         false} otherwise
+   */
+  public boolean isDirect() {
+    return _direct;
+  }
+
+  /**
+   * @return the total number of buffers leased from this pool
+   */
+  public synchronized long getLeaseCount() {
+    return _leaseCount;
+  }
+
+  /**
+   * @return the number of leases which were satisfied by an idle buffer
+   */
+  public synchronized long getReuseCount() {
+    return _reuseCount;
+  }
+
+  /**
+   * @return the number of leases which required a new buffer
+   */
+  public synchronized long getAllocationCount() {
+    return _leaseCount - _reuseCount;
+  }
+
+  /**
+   * @return the number of leased buffers which have been returned to the pool
+   */
+  public synchronized long getReturnCount() {
+    return _returnCount;
+  }
+
+  /**
+   * @return the number of buffers currently leased (which have not been
+   *         returned or garbage collected)
+   */
+  public synchronized int getLeasedBufferCount() {
+    expireLeases();
+    return _leases.size();
+  }
+
+  /**
+   * @return the number of bytes of idle buffers currently held by the pool
+   */
+  public synchronized long getIdleBytes() {
+    return _idleBytes;
+  }
+
+  /**
+   * Leases a buffer of at least the given size.  The returned buffer will be
+   * zeroed, with the position at 0, the limit set to the given size and the
+   * given byte order.  The buffer will only be re-used after it is passed to
+   * {@link #release}.
+   */
+  public synchronized ByteBuffer acquire(int size, ByteOrder order)
+  {
+    expireLeases();
+
+    int capacity = getCapacity(size);
+    ByteBuffer buffer = null;
+    List<ByteBuffer> idle = _idleBuffers.get(capacity);
+    if((idle != null) && !idle.isEmpty()) {
+      buffer = idle.remove(idle.size() - 1);
+      _idleBytes -= capacity;
+      ++_reuseCount;
+      zero(buffer);
+    } else {
+      buffer = (_direct ? ByteBuffer.allocateDirect(capacity) :
+                ByteBuffer.allocate(capacity));
+    }
+    ++_leaseCount;
+
+    Lease lease = new Lease(buffer, _expiredLeases);
+    _leases.put(lease, lease);
+    buffer.clear();
+    buffer.limit(size);
+    return buffer.order(order);
+  }
+
+  /**
+   * Returns a previously leased buffer to the pool.  The buffer must not be
+   * used by the caller (or anyone else) after this call.  Buffers which were
+   * not leased from this pool (or were already returned) are ignored.
+   */
+  public synchronized void release(ByteBuffer buffer) {
+    expireLeases();
+    Lease lease = _leases.remove(new Lease(buffer, null));
+    if(lease != null) {
+      lease.clear();
+      returnBuffer(buffer);
+    }
+  }
+
+  /**
+   * Discards all idle buffers.
+   */
+  public synchronized void clear() {
+    _idleBuffers.clear();
+    _idleBytes = 0L;
+  }
+
+  /**
+   * Discards any leases whose buffers have been garbage collected.
+   */
+  private void expireLeases() {
+    Reference<?> ref = null;
+    while((ref = _expiredLeases.poll()) != null) {
+      _leases.remove(ref);
+    }
+  }
+
+  private void returnBuffer(ByteBuffer buffer) {
+    ++_returnCount;
+    int capacity = buffer.capacity();
+    if((_idleBytes + capacity) > _maxBytes) {
+      // pool is full, let the buffer be collected
+      return;
+    }
+    List<ByteBuffer> idle = _idleBuffers.get(capacity);
+    if(idle == null) {
+      idle = new ArrayList<ByteBuffer>();
+      _idleBuffers.put(capacity, idle);
+    }
+    idle.add(buffer);
+    _idleBytes += capacity;
+  }
+
+  /**
+   * Returns the capacity of the pooled buffer for the given size (the next
+   * power of two).
+   */
+  private static int getCapacity(int size) {
+    if(size <= MIN_BUFFER_SIZE) {
+      return MIN_BUFFER_SIZE;
+    }
+    int capacity = Integer.highestOneBit(size);
+    return ((capacity == size) ? capacity : (capacity << 1));
+  }
+
+  private static void zero(ByteBuffer buffer) {
+    buffer.clear();
+    if(buffer.hasArray()) {
+      Arrays.fill(buffer.array(), buffer.arrayOffset(),
+                  buffer.arrayOffset() + buffer.capacity(), (byte)0);
+      return;
+    }
+    while(buffer.hasRemaining()) {
+      buffer.put(ZERO_BYTES, 0, Math.min(ZERO_BYTES.length,
+                                         buffer.remaining()));
+    }
+  }
+
+  /**
+   * Weakly tracks a leased buffer by identity, becomes enqueued when the
+   * buffer is garbage collected.
+   */
+  private static final class Lease extends WeakReference<ByteBuffer>
+  {
+    private final int _hashCode;
+
+    private Lease(ByteBuffer buffer, ReferenceQueue<ByteBuffer> queue) {
+      super(buffer, queue);
+      _hashCode = System.identityHashCode(buffer);
+    }
+
+    @Override
+    public int hashCode() {
+      return _hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if(this == o) {
+        return true;
+      }
+      if(!(o instanceof Lease)) {
+        return false;
+      }
+      ByteBuffer buffer = get();
+      return((buffer != null) && (buffer == ((Lease)o).get()));
+    }
+  }
+}
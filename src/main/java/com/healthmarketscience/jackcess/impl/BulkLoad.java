@@ -0,0 +1,213 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.healthmarketscience.jackcess.ConstraintViolationException;
+
+/**
+ * A bulk load "session" for a table (see {@link TableImpl#startBulkLoad}).
+ * While a bulk load is in progress, rows added to the table are only
+ * appended to new data pages (existing free space is not re-used) and the
+ * index entries for the rows are collected (and sorted, using temporary files
+ * if necessary) instead of being added to the indexes.  When the bulk load
+ * is {@link #finish finished}, the indexes are re-written "bottom-up" in one
+ * pass, which is much faster than updating the indexes row by row.
+ * <p/>
+ * Notes:
+ * <ul>
+ * <li>The indexes of the table do not include the new rows until the bulk
+ *     load is finished, so the table should not be searched using an index
+ *     in the meantime.  Rows may not be updated or deleted (and indexes may
+ *     not be added) during a bulk load.</li>
+ * <li>All constraints except uniqueness are enforced when the rows are
+ *     added.  Uniqueness is checked for all the indexes when the bulk load is
+ *     finished (before any index is changed).  If a uniqueness constraint is
+ *     violated, all the rows added during the bulk load are removed and a
+ *     {@link com.healthmarketscience.jackcess.ConstraintViolationException}
+ *     is thrown.</li>
+ * <li>A bulk load may be {@link #abort aborted}, which removes all the rows
+ *     added during the bulk load.  Any bulk load which has not been finished
+ *     when the database is closed is aborted.</li>
+ * </ul>
+ *
+ * @author James Ahlborn
+ * @usage _advanced_class_
+ */
+public class BulkLoad
+{
+  private final TableImpl _table;
+  /** sorters for the entries of each index data (in table order) */
+  private final IndexEntrySorter[] _sorters;
+  /** the data pages created during this bulk load */
+  private final List<Integer> _dataPageNumbers = new ArrayList<Integer>();
+  private boolean _finished;
+
+  BulkLoad(TableImpl table, int maxSortBytes) {
+    _table = table;
+    int numIndexDatas = table.getIndexDatas().size();
+    // split the available sort memory between the indexes
+    int maxRunBytes = ((numIndexDatas > 0) ?
+                       Math.max(maxSortBytes / numIndexDatas, 1) :
+                       maxSortBytes);
+    File tempDir = table.getDatabase().getIndexSortTempDir();
+    _sorters = new IndexEntrySorter[numIndexDatas];
+    for(int i = 0; i < numIndexDatas; ++i) {
+      _sorters[i] = new IndexEntrySorter(maxRunBytes, tempDir);
+    }
+  }
+
+  public TableImpl getTable() {
+    return _table;
+  }
+
+  /**
+   * @return {@code true} if this bulk load has been finished, {@code false}
+   *         otherwise
+   */
+  public boolean isFinished() {
+    return _finished;
+  }
+
+  /**
+   * @return the last data page created during this bulk load, or {@link
+   *         PageChannel#INVALID_PAGE_NUMBER} if none
+   */
+  int getLastDataPageNumber() {
+    return (_dataPageNumbers.isEmpty() ? PageChannel.INVALID_PAGE_NUMBER :
+            _dataPageNumbers.get(_dataPageNumbers.size() - 1));
+  }
+
+  /**
+   * @return all the data pages created during this bulk load (which contain
+   *         only the rows added during this bulk load)
+   */
+  List<Integer> getDataPageNumbers() {
+    return _dataPageNumbers;
+  }
+
+  void addDataPageNumber(int pageNumber) {
+    _dataPageNumbers.add(pageNumber);
+  }
+
+  /**
+   * Collects the index entries for a row added during this bulk load.  All
+   * constraints except uniqueness are checked before any entries are
+   * collected.
+   */
+  void addRow(Object[] row, RowIdImpl rowId) throws IOException {
+    List<IndexData> indexDatas = _table.getIndexDatas();
+    IndexData.Entry[] entries = new IndexData.Entry[indexDatas.size()];
+    for(int i = 0; i < entries.length; ++i) {
+      entries[i] = indexDatas.get(i).createAddEntry(row, rowId);
+    }
+    for(int i = 0; i < entries.length; ++i) {
+      if(entries[i] != null) {
+        _sorters[i].add(entries[i]);
+      }
+    }
+  }
+
+  /**
+   * Completes this bulk load, adding the collected entries to all the
+   * indexes of the table.  The uniqueness constraints of all the indexes are
+   * checked before any index is changed.  If any uniqueness constraint is
+   * violated, all the rows added during this bulk load are removed (leaving
+   * the table as it was before the bulk load was started) and the violation
+   * is thrown.
+   */
+  public void finish() throws IOException {
+    if(_finished) {
+      return;
+    }
+    _finished = true;
+
+    PageChannel pageChannel = _table.getPageChannel();
+    pageChannel.startWrite();
+    try {
+
+      List<IndexData> indexDatas = _table.getIndexDatas();
+      try {
+        for(int i = 0; i < _sorters.length; ++i) {
+          IndexEntrySorter sorter = _sorters[i];
+          if(sorter.getEntryCount() > 0) {
+            indexDatas.get(i).checkUniqueEntries(sorter.sortedEntries());
+          }
+        }
+      } catch(ConstraintViolationException ce) {
+        // none of the indexes have been changed, so remove the new rows
+        _table.deleteBulkLoadRows(this);
+        throw ce;
+      }
+
+      for(int i = 0; i < _sorters.length; ++i) {
+        IndexEntrySorter sorter = _sorters[i];
+        if(sorter.getEntryCount() > 0) {
+          indexDatas.get(i).addSortedEntries(sorter.sortedEntries());
+        }
+      }
+
+      // write the updated unique entry counts
+      _table.updateTableDefinition(0);
+
+    } finally {
+      close();
+      pageChannel.finishWrite();
+    }
+  }
+
+  /**
+   * Aborts this bulk load, removing all the rows added during this bulk
+   * load.  Does nothing if this bulk load has already been finished (or
+   * aborted).
+   */
+  public void abort() throws IOException {
+    if(_finished) {
+      return;
+    }
+    _finished = true;
+
+    try {
+      _table.deleteBulkLoadRows(this);
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * Releases all the resources used by this bulk load and takes the table out
+   * of bulk load mode.
+   */
+  private void close() {
+    for(IndexEntrySorter sorter : _sorters) {
+      sorter.close();
+    }
+    _table.finishBulkLoad(this);
+  }
+
+  @Override
+  public String toString() {
+    return CustomToStringStyle.builder(this)
+      .append("table", _table.getName())
+      .append("finished", _finished)
+      .toString();
+  }
+}
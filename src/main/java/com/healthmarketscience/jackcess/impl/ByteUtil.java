@@ -406,9 +406,20 @@ public final class ByteUtil {
    * to have the required capacity available.
    */
   public static void insertEmptyData(ByteBuffer buffer, int len) {
-    byte[] buf = buffer.array();
     int pos = buffer.position();
     int limit = buffer.limit();
+    if(!buffer.hasArray()) {
+      // (e.g. direct buffer) move the data through a temp array
+      byte[] data = new byte[limit - pos];
+      buffer.get(data);
+      buffer.limit(limit + len);
+      buffer.position(pos);
+      buffer.put(new byte[len]);
+      buffer.put(data);
+      buffer.position(pos);
+      return;
+    }
+    byte[] buf = buffer.array();
     System.arraycopy(buf, pos, buf, pos + len, limit - pos);
     Arrays.fill(buf, pos, pos + len, (byte)0);
     buffer.limit(limit + len);
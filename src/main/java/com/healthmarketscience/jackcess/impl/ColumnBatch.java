@@ -0,0 +1,600 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.healthmarketscience.jackcess.DataType;
+
+/**
+ * A batch of rows read from a table stored by column (see {@link
+ * CursorImpl#nextBatch}).  Each requested column is stored in a {@link
+ * Vector} appropriate to the column type:
+ * <ul>
+ * <li>BOOLEAN, BYTE, INT and LONG columns are stored in an {@link
+ *     IntVector} (booleans are stored as 0/1)</li>
+ * <li>BIG_INT and SHORT_DATE_TIME columns are stored in a {@link
+ *     LongVector} (dates are stored as java millis)</li>
+ * <li>FLOAT, DOUBLE and MONEY columns are stored in a {@link
+ *     DoubleVector}</li>
+ * <li>if enabled, MONEY and NUMERIC (with a precision of at most 18)
+ *     columns are instead stored in a {@link DecimalVector} (as unscaled
+ *     longs)</li>
+ * <li>TEXT and MEMO columns are stored in a {@link TextVector}, which holds
+ *     all the characters of the batch in a single char array</li>
+ * <li>all other column types are stored in an {@link ObjectVector}</li>
+ * </ul>
+ * The fixed length values are read directly from the row data without
+ * creating any value objects.  Null values are tracked separately (the
+ * primitive value of a null is 0).
+ * <p/>
+ * A batch may be re-used for subsequent reads, in which case the existing
+ * vector arrays are re-used (and grown as necessary).
+ *
+ * @author James Ahlborn
+ * @usage _advanced_class_
+ */
+public class ColumnBatch
+{
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private final TableImpl _table;
+  private final List<ColumnImpl> _columns;
+  private final Vector[] _vectors;
+  private final int _maxRows;
+  private int _rowCount;
+
+  /**
+   * Creates a batch for the given columns ({@code null} for all columns) of
+   * the given table which holds at most the given number of rows.
+   */
+  public ColumnBatch(TableImpl table, int maxRows,
+                     Collection<String> columnNames)
+  {
+    this(table, maxRows, columnNames, false);
+  }
+
+  /**
+   * Creates a batch for the given columns ({@code null} for all columns) of
+   * the given table which holds at most the given number of rows.  If
+   * scaledDecimals is {@code true}, MONEY and NUMERIC columns are stored as
+   * exact, unscaled long values in a {@link DecimalVector} (where possible).
+   */
+  public ColumnBatch(TableImpl table, int maxRows,
+                     Collection<String> columnNames, boolean scaledDecimals)
+  {
+    if(maxRows <= 0) {
+      throw new IllegalArgumentException(table.withErrorContext(
+          "Invalid max rows " + maxRows));
+    }
+    _table = table;
+    _maxRows = maxRows;
+    List<ColumnImpl> columns = new ArrayList<ColumnImpl>();
+    for(ColumnImpl column : table.getColumns()) {
+      if((columnNames == null) || columnNames.contains(column.getName())) {
+        columns.add(column);
+      }
+    }
+    _columns = Collections.unmodifiableList(columns);
+    _vectors = new Vector[columns.size()];
+    int initCapacity = Math.min(maxRows, DEFAULT_CAPACITY);
+    for(int i = 0; i < _vectors.length; ++i) {
+      _vectors[i] = newVector(columns.get(i), initCapacity, scaledDecimals);
+    }
+  }
+
+  public TableImpl getTable() {
+    return _table;
+  }
+
+  public List<ColumnImpl> getColumns() {
+    return _columns;
+  }
+
+  public int getMaxRows() {
+    return _maxRows;
+  }
+
+  /**
+   * @return the number of rows currently in this batch
+   */
+  public int getRowCount() {
+    return _rowCount;
+  }
+
+  public boolean isFull() {
+    return(_rowCount >= _maxRows);
+  }
+
+  /**
+   * @return the vector for the column at the given index within this batch
+   */
+  public Vector getVector(int columnIndex) {
+    return _vectors[columnIndex];
+  }
+
+  /**
+   * @return the vector for the column with the given name
+   * @throws IllegalArgumentException if the column is not part of this batch
+   */
+  public Vector getVector(String columnName) {
+    for(int i = 0; i < _vectors.length; ++i) {
+      if(_columns.get(i).getName().equals(columnName)) {
+        return _vectors[i];
+      }
+    }
+    throw new IllegalArgumentException(_table.withErrorContext(
+        "Column with name " + columnName + " is not part of this batch"));
+  }
+
+  /**
+   * Removes all rows from this batch (the vector arrays are retained).
+   */
+  public void clear() {
+    for(Vector vector : _vectors) {
+      vector.clear();
+    }
+    _rowCount = 0;
+  }
+
+  /**
+   * Appends the values of the current row of the given reader's cursor to
+   * this batch.
+   */
+  void addRow(PrimitiveRowReader reader) throws IOException {
+    for(Vector vector : _vectors) {
+      vector.add(reader, _rowCount);
+    }
+    ++_rowCount;
+  }
+
+  private static Vector newVector(ColumnImpl column, int capacity,
+                                  boolean scaledDecimals) {
+    switch(column.getType()) {
+    case BOOLEAN:
+    case BYTE:
+    case INT:
+    case LONG:
+      return new IntVector(column, capacity);
+    case BIG_INT:
+    case SHORT_DATE_TIME:
+      return new LongVector(column, capacity);
+    case MONEY:
+      return (scaledDecimals ? new DecimalVector(column, capacity) :
+              new DoubleVector(column, capacity));
+    case NUMERIC:
+      // larger values may not fit in a long
+      return ((scaledDecimals &&
+               (column.getPrecision() <= DecimalVector.MAX_LONG_PRECISION)) ?
+              new DecimalVector(column, capacity) :
+              new ObjectVector(column, capacity));
+    case FLOAT:
+    case DOUBLE:
+      return new DoubleVector(column, capacity);
+    case TEXT:
+    case MEMO:
+      return new TextVector(column, capacity);
+    default:
+      return new ObjectVector(column, capacity);
+    }
+  }
+
+  private static int newCapacity(int curCapacity, int minCapacity) {
+    return Math.max(curCapacity * 2, minCapacity);
+  }
+
+  @Override
+  public String toString() {
+    return CustomToStringStyle.builder(this)
+      .append("table", _table.getName())
+      .append("columns", _columns.size())
+      .append("rowCount", _rowCount)
+      .toString();
+  }
+
+  /**
+   * The values of a single column of a batch.
+   */
+  public static abstract class Vector
+  {
+    private final ColumnImpl _column;
+    private final BitSet _nulls = new BitSet();
+
+    private Vector(ColumnImpl column) {
+      _column = column;
+    }
+
+    public ColumnImpl getColumn() {
+      return _column;
+    }
+
+    /**
+     * @return {@code true} if the value of the given row is null
+     */
+    public boolean isNull(int row) {
+      return _nulls.get(row);
+    }
+
+    /**
+     * @return {@code true} if any value in this vector is null
+     */
+    public boolean hasNulls() {
+      return !_nulls.isEmpty();
+    }
+
+    /**
+     * @return the value of the given row as an object (for convenience,
+     *         boxes primitive values)
+     */
+    public abstract Object getObject(int row);
+
+    protected void setNull(int row) {
+      _nulls.set(row);
+    }
+
+    protected void clear() {
+      _nulls.clear();
+    }
+
+    protected abstract void add(PrimitiveRowReader reader, int row)
+      throws IOException;
+  }
+
+  /**
+   * Vector of int values (BOOLEAN, BYTE, INT and LONG columns).
+   */
+  public static final class IntVector extends Vector
+  {
+    private int[] _values;
+
+    private IntVector(ColumnImpl column, int capacity) {
+      super(column);
+      _values = new int[capacity];
+    }
+
+    /**
+     * @return the values array (which may be larger than the number of rows
+     *         in the batch)
+     */
+    public int[] getValues() {
+      return _values;
+    }
+
+    public int get(int row) {
+      return _values[row];
+    }
+
+    @Override
+    public Object getObject(int row) {
+      if(isNull(row)) {
+        return null;
+      }
+      switch(getColumn().getType()) {
+      case BOOLEAN:
+        return (_values[row] != 0);
+      case BYTE:
+        return (byte)_values[row];
+      case INT:
+        return (short)_values[row];
+      default:
+        return _values[row];
+      }
+    }
+
+    @Override
+    protected void add(PrimitiveRowReader reader, int row) throws IOException {
+      if(row >= _values.length) {
+        _values = Arrays.copyOf(_values, newCapacity(_values.length, row + 1));
+      }
+      ColumnImpl column = getColumn();
+      if(column.storeInNullMask()) {
+        _values[row] = (reader.getBoolean(column) ? 1 : 0);
+      } else if(reader.isNull(column)) {
+        _values[row] = 0;
+        setNull(row);
+      } else {
+        _values[row] = reader.getInt(column);
+      }
+    }
+  }
+
+  /**
+   * Vector of long values (BIG_INT and SHORT_DATE_TIME columns).
+   */
+  public static final class LongVector extends Vector
+  {
+    private long[] _values;
+
+    private LongVector(ColumnImpl column, int capacity) {
+      super(column);
+      _values = new long[capacity];
+    }
+
+    /**
+     * @return the values array (which may be larger than the number of rows
+     *         in the batch)
+     */
+    public long[] getValues() {
+      return _values;
+    }
+
+    public long get(int row) {
+      return _values[row];
+    }
+
+    @Override
+    public Object getObject(int row) {
+      if(isNull(row)) {
+        return null;
+      }
+      return ((getColumn().getType() == DataType.SHORT_DATE_TIME) ?
+              new Date(_values[row]) : (Object)_values[row]);
+    }
+
+    @Override
+    protected void add(PrimitiveRowReader reader, int row) throws IOException {
+      if(row >= _values.length) {
+        _values = Arrays.copyOf(_values, newCapacity(_values.length, row + 1));
+      }
+      ColumnImpl column = getColumn();
+      if(reader.isNull(column)) {
+        _values[row] = 0L;
+        setNull(row);
+      } else if(column.getType() == DataType.BIG_INT) {
+        _values[row] = reader.getLong(column);
+      } else {
+        _values[row] = reader.getDateMillis(column);
+      }
+    }
+  }
+
+  /**
+   * Vector of double values (FLOAT, DOUBLE and MONEY columns).
+   */
+  public static final class DoubleVector extends Vector
+  {
+    private double[] _values;
+
+    private DoubleVector(ColumnImpl column, int capacity) {
+      super(column);
+      _values = new double[capacity];
+    }
+
+    /**
+     * @return the values array (which may be larger than the number of rows
+     *         in the batch)
+     */
+    public double[] getValues() {
+      return _values;
+    }
+
+    public double get(int row) {
+      return _values[row];
+    }
+
+    @Override
+    public Object getObject(int row) {
+      return (isNull(row) ? null : (Object)_values[row]);
+    }
+
+    @Override
+    protected void add(PrimitiveRowReader reader, int row) throws IOException {
+      if(row >= _values.length) {
+        _values = Arrays.copyOf(_values, newCapacity(_values.length, row + 1));
+      }
+      ColumnImpl column = getColumn();
+      if(reader.isNull(column)) {
+        _values[row] = 0d;
+        setNull(row);
+      } else {
+        _values[row] = reader.getDouble(column);
+      }
+    }
+  }
+
+  /**
+   * Vector of exact decimal values (MONEY and NUMERIC columns) stored as
+   * unscaled long values, the actual value for row {@code i} is {@code
+   * values[i] * 10^-scale}.
+   */
+  public static final class DecimalVector extends Vector
+  {
+    /** max precision of decimal values which always fit in a long */
+    private static final int MAX_LONG_PRECISION = 18;
+
+    private final int _scale;
+    private long[] _values;
+
+    private DecimalVector(ColumnImpl column, int capacity) {
+      super(column);
+      _scale = ((column.getType() == DataType.MONEY) ?
+                ColumnImpl.CURRENCY_SCALE : column.getScale());
+      _values = new long[capacity];
+    }
+
+    public int getScale() {
+      return _scale;
+    }
+
+    /**
+     * @return the unscaled values array (which may be larger than the number
+     *         of rows in the batch)
+     */
+    public long[] getValues() {
+      return _values;
+    }
+
+    public long get(int row) {
+      return _values[row];
+    }
+
+    @Override
+    public Object getObject(int row) {
+      return (isNull(row) ? null : BigDecimal.valueOf(_values[row], _scale));
+    }
+
+    @Override
+    protected void add(PrimitiveRowReader reader, int row) throws IOException {
+      if(row >= _values.length) {
+        _values = Arrays.copyOf(_values, newCapacity(_values.length, row + 1));
+      }
+      ColumnImpl column = getColumn();
+      if(reader.isNull(column)) {
+        _values[row] = 0L;
+        setNull(row);
+      } else {
+        _values[row] = reader.getUnscaledLong(column);
+      }
+    }
+  }
+
+  /**
+   * Vector of text values (TEXT and MEMO columns).  The characters of all
+   * the values are stored consecutively in a single char array, the value
+   * for row {@code i} is the characters from {@code offsets[i]} (inclusive)
+   * to {@code offsets[i + 1]} (exclusive).  Null values are stored as empty
+   * strings.
+   */
+  public static final class TextVector extends Vector
+  {
+    private char[] _chars;
+    private int[] _offsets;
+
+    private TextVector(ColumnImpl column, int capacity) {
+      super(column);
+      _chars = new char[capacity * 16];
+      _offsets = new int[capacity + 1];
+    }
+
+    /**
+     * @return the character data array (which may be larger than the data
+     *         in the batch)
+     */
+    public char[] getChars() {
+      return _chars;
+    }
+
+    /**
+     * @return the value offsets array (which may be larger than the number of
+     *         rows in the batch plus one)
+     */
+    public int[] getOffsets() {
+      return _offsets;
+    }
+
+    public int getLength(int row) {
+      return _offsets[row + 1] - _offsets[row];
+    }
+
+    public String get(int row) {
+      return (isNull(row) ? null :
+              new String(_chars, _offsets[row], getLength(row)));
+    }
+
+    @Override
+    public Object getObject(int row) {
+      return get(row);
+    }
+
+    @Override
+    protected void add(PrimitiveRowReader reader, int row) throws IOException {
+      if((row + 1) >= _offsets.length) {
+        _offsets = Arrays.copyOf(_offsets,
+                                 newCapacity(_offsets.length, row + 2));
+      }
+      int start = _offsets[row];
+      ColumnImpl column = getColumn();
+      if(reader.isNull(column)) {
+        setNull(row);
+        _offsets[row + 1] = start;
+        return;
+      }
+
+      CharSequence value = (CharSequence)
+        reader.getCursor().getCurrentRowValue(column);
+      int len = value.length();
+      if((start + len) > _chars.length) {
+        _chars = Arrays.copyOf(_chars, newCapacity(_chars.length, start + len));
+      }
+      if(value instanceof String) {
+        ((String)value).getChars(0, len, _chars, start);
+      } else {
+        for(int i = 0; i < len; ++i) {
+          _chars[start + i] = value.charAt(i);
+        }
+      }
+      _offsets[row + 1] = start + len;
+    }
+  }
+
+  /**
+   * Vector of arbitrary values (all other column types), the values are read
+   * normally.
+   */
+  public static final class ObjectVector extends Vector
+  {
+    private Object[] _values;
+
+    private ObjectVector(ColumnImpl column, int capacity) {
+      super(column);
+      _values = new Object[capacity];
+    }
+
+    /**
+     * @return the values array (which may be larger than the number of rows
+     *         in the batch)
+     */
+    public Object[] getValues() {
+      return _values;
+    }
+
+    public Object get(int row) {
+      return _values[row];
+    }
+
+    @Override
+    public Object getObject(int row) {
+      return _values[row];
+    }
+
+    @Override
+    protected void clear() {
+      super.clear();
+      Arrays.fill(_values, null);
+    }
+
+    @Override
+    protected void add(PrimitiveRowReader reader, int row) throws IOException {
+      if(row >= _values.length) {
+        _values = Arrays.copyOf(_values, newCapacity(_values.length, row + 1));
+      }
+      Object value = reader.getCursor().getCurrentRowValue(getColumn());
+      _values[row] = value;
+      if(value == null) {
+        setNull(row);
+      }
+    }
+  }
+}
@@ -151,11 +151,17 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
   private static final Pattern GUID_PATTERN = Pattern.compile("\\s*[{]?([\\p{XDigit}]{8})-([\\p{XDigit}]{4})-([\\p{XDigit}]{4})-([\\p{XDigit}]{4})-([\\p{XDigit}]{12})[}]?\\s*");
 
   /** header used to indicate unicode text compression */
-  private static final byte[] TEXT_COMPRESSION_HEADER =
+  static final byte[] TEXT_COMPRESSION_HEADER =
   { (byte)0xFF, (byte)0XFE };
   private static final char MIN_COMPRESS_CHAR = 1;
   private static final char MAX_COMPRESS_CHAR = 0xFF;
 
+  /** scale of the values of CURRENCY (MONEY) columns */
+  static final int CURRENCY_SCALE = 4;
+  /** returned by {@link #readUnscaledNumericLong} for values which do not fit
+      in a long (not a valid value, as values are sign/magnitude) */
+  static final long NUMERIC_NOT_LONG = Long.MIN_VALUE;
+
   /** auto numbers must be > 0 */
   static final int INVALID_AUTO_NUMBER = 0;
 
@@ -459,6 +465,10 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
     return getDatabase().getCalendar();
   }
 
+  protected DateCodec getDateCodec() {
+    return getDatabase().getDateCodec();
+  }
+
   public boolean isAppendOnly() {
     return (getVersionHistoryColumn() != null);
   }
@@ -751,7 +761,7 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
       throw new IOException(withErrorContext("Invalid money value"));
     }
 
-    return new BigDecimal(BigInteger.valueOf(buffer.getLong(0)), 4);
+    return BigDecimal.valueOf(buffer.getLong(0), CURRENCY_SCALE);
   }
 
   /**
@@ -785,6 +795,13 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
    */
   private BigDecimal readNumericValue(ByteBuffer buffer)
   {
+    // most values fit in a long, avoid the BigInteger for those
+    long unscaledVal = readUnscaledNumericLong(buffer, buffer.position());
+    if(unscaledVal != NUMERIC_NOT_LONG) {
+      ByteUtil.forward(buffer, DataType.NUMERIC.getFixedSize());
+      return BigDecimal.valueOf(unscaledVal, getScale());
+    }
+
     boolean negate = (buffer.get() != 0);
 
     byte[] tmpArr = ByteUtil.getBytes(buffer, 16);
@@ -796,6 +813,29 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
     return toBigDecimal(tmpArr, negate, getScale());
   }
 
+  /**
+   * Reads the unscaled value of the NUMERIC data at the given position of
+   * the given buffer as a long.
+   * @return the unscaled value, or {@link #NUMERIC_NOT_LONG} if the value
+   *         does not fit in a long
+   */
+  static long readUnscaledNumericLong(ByteBuffer buffer, int pos)
+  {
+    // the unsigned 128 bit value follows the sign byte as 4 ints, most
+    // significant first (each in the byte order of the buffer)
+    int intPos = pos + 1;
+    if((buffer.getInt(intPos) != 0) || (buffer.getInt(intPos + 4) != 0)) {
+      return NUMERIC_NOT_LONG;
+    }
+    long val = (((long)buffer.getInt(intPos + 8) << 32) |
+                (buffer.getInt(intPos + 12) & 0xFFFFFFFFL));
+    if(val < 0L) {
+      // unsigned value too big
+      return NUMERIC_NOT_LONG;
+    }
+    return ((buffer.get(pos) != 0) ? -val : val);
+  }
+
   static BigDecimal toBigDecimal(byte[] bytes, boolean negate, int scale)
   {
     if((bytes[0] & 0x80) != 0) {
@@ -896,7 +936,7 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
    */
   public long fromDateDouble(double value)
   {
-    return fromDateDouble(value, getCalendar());
+    return getDateCodec().fromDateDouble(value);
   }
 
   /**
@@ -905,7 +945,7 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
    */
   public static long fromDateDouble(double value, DatabaseImpl db)
   {
-    return fromDateDouble(value, db.getCalendar());
+    return db.getDateCodec().fromDateDouble(value);
   }
 
   /**
@@ -961,7 +1001,7 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
    */
   public double toDateDouble(Object value)
   {
-    return toDateDouble(value, getCalendar());
+    return getDateCodec().toDateDouble(toDateLong(value));
   }
 
   /**
@@ -971,7 +1011,7 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
    */
   public static double toDateDouble(Object value, DatabaseImpl db)
   {
-    return toDateDouble(value, db.getCalendar());
+    return db.getDateCodec().toDateDouble(toDateLong(value));
   }
 
   /**
@@ -1021,8 +1061,10 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
    */
   private static long getToLocalTimeZoneOffset(long time, Calendar c)
   {
-    c.setTimeInMillis(time);
-    return ((long)c.get(Calendar.ZONE_OFFSET) + c.get(Calendar.DST_OFFSET));
+    synchronized(c) {
+      c.setTimeInMillis(time);
+      return ((long)c.get(Calendar.ZONE_OFFSET) + c.get(Calendar.DST_OFFSET));
+    }
   }
 
   /**
@@ -1032,11 +1074,14 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
   private static long getFromLocalTimeZoneOffset(long time, Calendar c)
   {
     // getting from local time back to UTC is a little wonky (and not
-    // guaranteed to get you back to where you started)
-    c.setTimeInMillis(time);
-    // apply the zone offset first to get us closer to the original time
-    c.setTimeInMillis(time - c.get(Calendar.ZONE_OFFSET));
-    return ((long)c.get(Calendar.ZONE_OFFSET) + c.get(Calendar.DST_OFFSET));
+    // guaranteed to get you back to where you started).  note, the calendar
+    // is shared by the database, so guard against concurrent readers
+    synchronized(c) {
+      c.setTimeInMillis(time);
+      // apply the zone offset first to get us closer to the original time
+      c.setTimeInMillis(time - c.get(Calendar.ZONE_OFFSET));
+      return ((long)c.get(Calendar.ZONE_OFFSET) + c.get(Calendar.DST_OFFSET));
+    }
   }
 
   /**
@@ -1212,6 +1257,53 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
     return buffer;
   }
 
+  /**
+   * Serialize an Object for this column directly into the given row buffer
+   * (at the current position), avoiding the intermediate buffer returned by
+   * {@link #write}.  Values for calculated and long value columns are never
+   * written directly.
+   * @param obj Object to serialize
+   * @param buffer row buffer (in the default byte order)
+   * @return {@code true} if the value was written, {@code false} if the value
+   *         must be written using {@link #write} (in which case nothing was
+   *         written)
+   */
+  boolean writeDirect(Object obj, ByteBuffer buffer)
+    throws IOException
+  {
+    if(isCalculated() || getType().isLongValue()) {
+      return false;
+    }
+
+    if(isRawData(obj)) {
+      buffer.put(((RawData)obj).getBytes());
+      return true;
+    }
+
+    if(!isVariableLength() || !getType().isVariableLength()) {
+      writeFixedLengthField(obj, buffer);
+      return true;
+    }
+
+    // this is an "inline" var length field
+    switch(getType()) {
+    case NUMERIC:
+      writeNumericValue(buffer, obj);
+      return true;
+    case TEXT:
+      writeTextValue(obj, 0, getLengthInUnits(), buffer);
+      return true;
+    case BINARY:
+    case UNKNOWN_0D:
+    case UNSUPPORTED_VARLEN:
+      buffer.put(toByteArray(obj));
+      return true;
+    default:
+      // let the normal write handle it
+      return false;
+    }
+  }
+
   /**
    * Serialize an Object into a raw byte value for this column
    * @param obj Object to serialize
@@ -1314,6 +1406,15 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
                             (data[0] == TEXT_COMPRESSION_HEADER[0]) &&
                             (data[1] == TEXT_COMPRESSION_HEADER[1]));
 
+    if(CompressedUnicodeCodec.isSupported(getCharset())) {
+      // fast path (the normal case for all non-ancient databases)
+      return (isCompressed ?
+              CompressedUnicodeCodec.decodeCompressed(
+                  data, TEXT_COMPRESSION_HEADER.length, data.length) :
+              CompressedUnicodeCodec.decodeUncompressed(
+                  data, 0, data.length));
+    }
+
     if(isCompressed) {
 
       // this is a whacky compression combo that switches back and forth
@@ -1396,30 +1497,59 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
     throws IOException
   {
     CharSequence text = toCharSequence(obj);
+    validateTextLength(text, minChars, maxChars);
+
+    // may only compress if column type allows it
+    if(!forceUncompressed && isCompressibleText(text)) {
+      return ByteBuffer.wrap(CompressedUnicodeCodec.encodeCompressed(text));
+    }
+
+    return encodeUncompressedText(text, getCharset());
+  }
+
+  /**
+   * Encodes a text value directly into the given buffer (in the same way as
+   * {@link #encodeTextValue} when compression is allowed).
+   */
+  private void writeTextValue(Object obj, int minChars, int maxChars,
+                              ByteBuffer buffer)
+    throws IOException
+  {
+    CharSequence text = toCharSequence(obj);
+    validateTextLength(text, minChars, maxChars);
+
+    if(isCompressibleText(text)) {
+      CompressedUnicodeCodec.encodeCompressed(text, buffer);
+      return;
+    }
+
+    Charset charset = getCharset();
+    if(!CompressedUnicodeCodec.isSupported(charset) ||
+       !CompressedUnicodeCodec.encodeUncompressed(text, buffer)) {
+      buffer.put(encodeUncompressedText(text, charset));
+    }
+  }
+
+  private void validateTextLength(CharSequence text, int minChars,
+                                  int maxChars)
+    throws IOException
+  {
     if((text.length() > maxChars) || (text.length() < minChars)) {
       throw new InvalidValueException(withErrorContext(
                             "Text is wrong length for " + getType() +
                             " column, max " + maxChars
                             + ", min " + minChars + ", got " + text.length()));
     }
+  }
 
-    // may only compress if column type allows it
-    if(!forceUncompressed && isCompressedUnicode() &&
-       (text.length() <= getFormat().MAX_COMPRESSED_UNICODE_SIZE) &&
-       isUnicodeCompressible(text)) {
-
-      byte[] encodedChars = new byte[TEXT_COMPRESSION_HEADER.length +
-                                     text.length()];
-      encodedChars[0] = TEXT_COMPRESSION_HEADER[0];
-      encodedChars[1] = TEXT_COMPRESSION_HEADER[1];
-      for(int i = 0; i < text.length(); ++i) {
-        encodedChars[i + TEXT_COMPRESSION_HEADER.length] =
-          (byte)text.charAt(i);
-      }
-      return ByteBuffer.wrap(encodedChars);
-    }
-
-    return encodeUncompressedText(text, getCharset());
+  /**
+   * Returns {@code true} if the given text may be written using compressed
+   * unicode for this column, {@code false} otherwise.
+   */
+  private boolean isCompressibleText(CharSequence text) {
+    return(isCompressedUnicode() &&
+           (text.length() <= getFormat().MAX_COMPRESSED_UNICODE_SIZE) &&
+           isUnicodeCompressible(text));
   }
 
   /**
@@ -1523,6 +1653,10 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
   public static String decodeUncompressedText(byte[] textBytes,
                                               Charset charset)
   {
+    if(CompressedUnicodeCodec.isSupported(charset)) {
+      return CompressedUnicodeCodec.decodeUncompressed(
+          textBytes, 0, textBytes.length);
+    }
     return decodeUncompressedText(textBytes, 0, textBytes.length, charset)
       .toString();
   }
@@ -1536,6 +1670,9 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
   public static ByteBuffer encodeUncompressedText(CharSequence text,
                                                   Charset charset)
   {
+    if(CompressedUnicodeCodec.isSupported(charset)) {
+      return CompressedUnicodeCodec.encodeUncompressed(text);
+    }
     CharBuffer cb = ((text instanceof CharBuffer) ?
                      (CharBuffer)text : CharBuffer.wrap(text));
     return charset.encode(cb);
@@ -1691,6 +1828,8 @@ public class ColumnImpl implements Column, Comparable<ColumnImpl> {
       }
     } else if(value instanceof RawData) {
       return ((RawData)value).getBytes();
+    } else if(value instanceof LongValueHandle.Binary) {
+      return ((LongValueHandle.Binary)value).getBytes();
     }
 
     ByteArrayOutputStream bout = new ByteArrayOutputStream();
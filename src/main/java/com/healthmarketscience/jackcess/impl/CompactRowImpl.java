@@ -0,0 +1,396 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.complex.ComplexValueForeignKey;
+import com.healthmarketscience.jackcess.util.OleBlob;
+
+/**
+ * A row of data as column->value pairs, stored compactly as an array of
+ * values along with a {@link Layout} (column name to array index mapping)
+ * which is shared by all the rows read with the same columns.  This avoids
+ * the per-row hash table and entry objects of {@link RowImpl}, which makes a
+ * significant difference when holding many rows in memory.
+ * <p/>
+ * A compact row is a fully functional, mutable Map.  Entries for names which
+ * are not part of the layout are stored in a secondary map (after the
+ * layout entries in iteration order).  Unlike RowImpl, a layout entry which
+ * is removed and re-added keeps its original position in iteration order.  A
+ * serialized compact row is deserialized as a RowImpl.
+ * <p/>
+ * Note that the {@link #equals} and {@link #hashCode} methods work on the row
+ * contents <i>only</i> (i.e. they ignore the id).
+ *
+ * @author James Ahlborn
+ * @usage _advanced_class_
+ */
+public class CompactRowImpl extends AbstractMap<String,Object>
+  implements Row, Serializable
+{
+  private static final long serialVersionUID = 20181016L;
+
+  /** marker for layout entries which are not in the map */
+  private static final Object ABSENT = new Object();
+
+  private final RowIdImpl _id;
+  private final Layout _layout;
+  private final Object[] _values;
+  /** number of layout entries which are in the map */
+  private int _numValues;
+  /** entries which are not part of the layout, created on demand */
+  private Map<String,Object> _extraValues;
+  private transient Set<Map.Entry<String,Object>> _entrySet;
+
+  /**
+   * Creates a row with the given values, which must be in layout order (and
+   * the array is not copied).
+   */
+  public CompactRowImpl(RowIdImpl id, Layout layout, Object[] values) {
+    if(values.length != layout.size()) {
+      throw new IllegalArgumentException(
+          "Expected " + layout.size() + " values, got " + values.length);
+    }
+    _id = id;
+    _layout = layout;
+    _values = values;
+    _numValues = values.length;
+  }
+
+  public RowIdImpl getId() {
+    return _id;
+  }
+
+  public Layout getLayout() {
+    return _layout;
+  }
+
+  @Override
+  public int size() {
+    return _numValues + ((_extraValues != null) ? _extraValues.size() : 0);
+  }
+
+  @Override
+  public boolean containsKey(Object name) {
+    int idx = _layout.indexOf(name);
+    if(idx >= 0) {
+      return(_values[idx] != ABSENT);
+    }
+    return((_extraValues != null) && _extraValues.containsKey(name));
+  }
+
+  @Override
+  public Object get(Object name) {
+    int idx = _layout.indexOf(name);
+    if(idx >= 0) {
+      Object value = _values[idx];
+      return((value != ABSENT) ? value : null);
+    }
+    return((_extraValues != null) ? _extraValues.get(name) : null);
+  }
+
+  @Override
+  public Object put(String name, Object value) {
+    int idx = _layout.indexOf(name);
+    if(idx >= 0) {
+      return setValue(idx, value);
+    }
+    if(_extraValues == null) {
+      _extraValues = new LinkedHashMap<String,Object>();
+    }
+    return _extraValues.put(name, value);
+  }
+
+  @Override
+  public Object remove(Object name) {
+    int idx = _layout.indexOf(name);
+    if(idx >= 0) {
+      return setValue(idx, ABSENT);
+    }
+    return((_extraValues != null) ? _extraValues.remove(name) : null);
+  }
+
+  @Override
+  public void clear() {
+    for(int i = 0; i < _values.length; ++i) {
+      _values[i] = ABSENT;
+    }
+    _numValues = 0;
+    _extraValues = null;
+  }
+
+  @Override
+  public Set<Map.Entry<String,Object>> entrySet() {
+    if(_entrySet == null) {
+      _entrySet = new EntrySet();
+    }
+    return _entrySet;
+  }
+
+  public String getString(String name) {
+    return (String)LongValueHandle.toValue(get(name));
+  }
+
+  public Boolean getBoolean(String name) {
+    return (Boolean)get(name);
+  }
+
+  public Byte getByte(String name) {
+    return (Byte)get(name);
+  }
+
+  public Short getShort(String name) {
+    return (Short)get(name);
+  }
+
+  public Integer getInt(String name) {
+    return (Integer)get(name);
+  }
+
+  public BigDecimal getBigDecimal(String name) {
+    return (BigDecimal)get(name);
+  }
+
+  public Float getFloat(String name) {
+    return (Float)get(name);
+  }
+
+  public Double getDouble(String name) {
+    return (Double)get(name);
+  }
+
+  public Date getDate(String name) {
+    return (Date)get(name);
+  }
+
+  public byte[] getBytes(String name) {
+    return (byte[])LongValueHandle.toValue(get(name));
+  }
+
+  public ComplexValueForeignKey getForeignKey(String name) {
+    return (ComplexValueForeignKey)get(name);
+  }
+
+  public OleBlob getBlob(String name) throws IOException {
+    byte[] bytes = getBytes(name);
+    return ((bytes != null) ? OleBlob.Builder.fromInternalData(bytes) : null);
+  }
+
+  /**
+   * Sets the layout value at the given index (which may be ABSENT) and
+   * returns the previous value (ABSENT returned as {@code null}).
+   */
+  private Object setValue(int idx, Object value) {
+    Object oldValue = _values[idx];
+    _values[idx] = value;
+    if(oldValue == ABSENT) {
+      oldValue = null;
+      if(value != ABSENT) {
+        ++_numValues;
+      }
+    } else if(value == ABSENT) {
+      --_numValues;
+    }
+    return oldValue;
+  }
+
+  private Object writeReplace() {
+    // the ABSENT marker does not survive serialization, so just serialize as
+    // a normal row
+    return new RowImpl(this);
+  }
+
+  @Override
+  public String toString() {
+    return CustomToStringStyle.valueBuilder("Row[" + _id + "]")
+      .append(null, this)
+      .toString();
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String,Object>>
+  {
+    @Override
+    public int size() {
+      return CompactRowImpl.this.size();
+    }
+
+    @Override
+    public Iterator<Map.Entry<String,Object>> iterator() {
+      return new EntryIterator();
+    }
+  }
+
+  private final class EntryIterator
+    implements Iterator<Map.Entry<String,Object>>
+  {
+    private int _nextIdx = -1;
+    private int _lastIdx = -1;
+    private Iterator<Map.Entry<String,Object>> _extraIter;
+
+    private EntryIterator() {
+      _nextIdx = findNext(0);
+    }
+
+    private int findNext(int idx) {
+      while((idx < _values.length) && (_values[idx] == ABSENT)) {
+        ++idx;
+      }
+      return idx;
+    }
+
+    private Iterator<Map.Entry<String,Object>> getExtraIter() {
+      if((_extraIter == null) && (_extraValues != null)) {
+        _extraIter = _extraValues.entrySet().iterator();
+      }
+      return _extraIter;
+    }
+
+    public boolean hasNext() {
+      if(_nextIdx < _values.length) {
+        return true;
+      }
+      Iterator<Map.Entry<String,Object>> extraIter = getExtraIter();
+      return((extraIter != null) && extraIter.hasNext());
+    }
+
+    public Map.Entry<String,Object> next() {
+      if(_nextIdx < _values.length) {
+        _lastIdx = _nextIdx;
+        _nextIdx = findNext(_nextIdx + 1);
+        return new LayoutEntry(_lastIdx);
+      }
+      _lastIdx = -1;
+      Iterator<Map.Entry<String,Object>> extraIter = getExtraIter();
+      if(extraIter == null) {
+        throw new NoSuchElementException();
+      }
+      return extraIter.next();
+    }
+
+    public void remove() {
+      if(_lastIdx >= 0) {
+        if(_values[_lastIdx] == ABSENT) {
+          throw new IllegalStateException();
+        }
+        setValue(_lastIdx, ABSENT);
+      } else if(_extraIter != null) {
+        _extraIter.remove();
+      } else {
+        throw new IllegalStateException();
+      }
+    }
+  }
+
+  private final class LayoutEntry implements Map.Entry<String,Object>
+  {
+    private final int _idx;
+
+    private LayoutEntry(int idx) {
+      _idx = idx;
+    }
+
+    public String getKey() {
+      return _layout.getName(_idx);
+    }
+
+    public Object getValue() {
+      Object value = _values[_idx];
+      return((value != ABSENT) ? value : null);
+    }
+
+    public Object setValue(Object value) {
+      return CompactRowImpl.this.setValue(_idx, value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if(!(o instanceof Map.Entry<?,?>)) {
+        return false;
+      }
+      Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+      Object value = getValue();
+      return(getKey().equals(e.getKey()) &&
+             ((value == null) ? (e.getValue() == null) :
+              value.equals(e.getValue())));
+    }
+
+    @Override
+    public int hashCode() {
+      Object value = getValue();
+      return(getKey().hashCode() ^ ((value == null) ? 0 : value.hashCode()));
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+
+  /**
+   * Immutable mapping of column names to value indexes, shared by all rows
+   * read with the same columns.
+   */
+  public static final class Layout implements Serializable
+  {
+    private static final long serialVersionUID = 20181016L;
+
+    private final String[] _names;
+    private final Map<String,Integer> _indexes;
+
+    public Layout(Collection<? extends ColumnImpl> columns) {
+      _names = new String[columns.size()];
+      _indexes = new HashMap<String,Integer>((columns.size() * 4) / 3 + 1);
+      int idx = 0;
+      for(ColumnImpl column : columns) {
+        _names[idx] = column.getName();
+        _indexes.put(column.getName(), idx);
+        ++idx;
+      }
+    }
+
+    public int size() {
+      return _names.length;
+    }
+
+    public String getName(int idx) {
+      return _names[idx];
+    }
+
+    /**
+     * @return the index of the value for the given name, or -1 if the name
+     *         is not part of this layout
+     */
+    public int indexOf(Object name) {
+      Integer idx = _indexes.get(name);
+      return((idx != null) ? idx : -1);
+    }
+  }
+}
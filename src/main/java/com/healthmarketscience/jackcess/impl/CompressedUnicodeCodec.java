@@ -0,0 +1,229 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Specialized text codec for the "compressed unicode" scheme used by Jet4
+ * and later databases (which store text as UTF-16LE).  Text is decoded
+ * directly from the data bytes into a (per-thread, re-used) char[] and
+ * encoded directly into a byte[], without the intermediate buffers and
+ * charset coders used for other charsets.
+ * <p/>
+ * The results are always identical to decoding/encoding using the UTF-16LE
+ * charset.  Data containing surrogate chars is handled by the charset (so
+ * that malformed surrogates are replaced in the same way).
+ *
+ * @author James Ahlborn
+ */
+final class CompressedUnicodeCodec
+{
+  static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+
+  /** char used by the UTF-16LE decoder for malformed input */
+  private static final char REPLACEMENT_CHAR = '\uFFFD';
+  /** max size of the re-used decode buffer */
+  private static final int MAX_CACHED_CHARS = 8 * 1024;
+
+  private static final ThreadLocal<char[]> CHAR_BUF =
+    new ThreadLocal<char[]>() {
+      @Override
+      protected char[] initialValue() {
+        return new char[256];
+      }
+    };
+
+  private CompressedUnicodeCodec() {}
+
+  /**
+   * @return {@code true} if this codec can be used for text in the given
+   *         charset, {@code false} otherwise
+   */
+  static boolean isSupported(Charset charset) {
+    return((charset == UTF_16LE) || UTF_16LE.equals(charset));
+  }
+
+  /**
+   * Decodes the given compressed text data (the data after the compression
+   * header).  The data switches back and forth between compressed (one byte
+   * per char) and uncompressed (UTF-16LE) segments using a 0x00 byte
+   * (starting in compressed mode).
+   */
+  static String decodeCompressed(byte[] data, int start, int end) {
+    // each data byte is at most one char
+    char[] chars = getCharBuffer(end - start);
+    int numChars = 0;
+    boolean inCompressedMode = true;
+    int pos = start;
+    while(pos < end) {
+      if(inCompressedMode) {
+        // ascii (well, latin-1) fast path
+        byte b = 0;
+        while((pos < end) && ((b = data[pos]) != 0)) {
+          chars[numChars++] = (char)(b & 0xFF);
+          ++pos;
+        }
+      } else {
+        int segEnd = pos;
+        while((segEnd < end) && (data[segEnd] != 0)) {
+          ++segEnd;
+        }
+        numChars = decodeUncompressed(data, pos, segEnd, chars, numChars);
+        pos = segEnd;
+      }
+      if(pos < end) {
+        // skip the segment marker and switch modes
+        ++pos;
+        inCompressedMode = !inCompressedMode;
+      }
+    }
+    return new String(chars, 0, numChars);
+  }
+
+  /**
+   * Decodes the given uncompressed (UTF-16LE) text data.
+   */
+  static String decodeUncompressed(byte[] data, int start, int end) {
+    char[] chars = getCharBuffer(((end - start) + 1) / 2);
+    int numChars = decodeUncompressed(data, start, end, chars, 0);
+    return new String(chars, 0, numChars);
+  }
+
+  /**
+   * Encodes the given text using compressed unicode (including the
+   * compression header).  The text must be compressible (all chars between
+   * 0x01 and 0xFF).
+   */
+  static byte[] encodeCompressed(CharSequence text) {
+    int hdrLen = ColumnImpl.TEXT_COMPRESSION_HEADER.length;
+    int len = text.length();
+    byte[] bytes = new byte[hdrLen + len];
+    bytes[0] = ColumnImpl.TEXT_COMPRESSION_HEADER[0];
+    bytes[1] = ColumnImpl.TEXT_COMPRESSION_HEADER[1];
+    if(text instanceof String) {
+      String str = (String)text;
+      for(int i = 0; i < len; ++i) {
+        bytes[hdrLen + i] = (byte)str.charAt(i);
+      }
+    } else {
+      for(int i = 0; i < len; ++i) {
+        bytes[hdrLen + i] = (byte)text.charAt(i);
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Encodes the given text using compressed unicode (including the
+   * compression header) directly into the given buffer.  The text must be
+   * compressible (all chars between 0x01 and 0xFF).
+   */
+  static void encodeCompressed(CharSequence text, ByteBuffer buffer) {
+    buffer.put(ColumnImpl.TEXT_COMPRESSION_HEADER);
+    int len = text.length();
+    for(int i = 0; i < len; ++i) {
+      buffer.put((byte)text.charAt(i));
+    }
+  }
+
+  /**
+   * Encodes the given text as uncompressed (UTF-16LE) text.
+   */
+  static ByteBuffer encodeUncompressed(CharSequence text) {
+    int len = text.length();
+    byte[] bytes = new byte[len * 2];
+    for(int i = 0; i < len; ++i) {
+      char c = text.charAt(i);
+      if(isSurrogate(c)) {
+        // let the charset deal with surrogates (which may be malformed)
+        return UTF_16LE.encode(text.toString());
+      }
+      bytes[2 * i] = (byte)c;
+      bytes[(2 * i) + 1] = (byte)(c >>> 8);
+    }
+    return ByteBuffer.wrap(bytes);
+  }
+
+  /**
+   * Encodes the given text as uncompressed (UTF-16LE) text directly into the
+   * given buffer.
+   * @return {@code true} if the text was written, {@code false} if the text
+   *         contains surrogate chars (in which case nothing was written)
+   */
+  static boolean encodeUncompressed(CharSequence text, ByteBuffer buffer) {
+    int len = text.length();
+    for(int i = 0; i < len; ++i) {
+      if(isSurrogate(text.charAt(i))) {
+        return false;
+      }
+    }
+    for(int i = 0; i < len; ++i) {
+      char c = text.charAt(i);
+      buffer.put((byte)c);
+      buffer.put((byte)(c >>> 8));
+    }
+    return true;
+  }
+
+  /**
+   * Decodes the given UTF-16LE data into the given chars at the given
+   * position.
+   * @return the new number of chars
+   */
+  private static int decodeUncompressed(byte[] data, int start, int end,
+                                        char[] chars, int numChars) {
+    int pairEnd = start + ((end - start) & ~1);
+    int startChars = numChars;
+    for(int i = start; i < pairEnd; i += 2) {
+      char c = (char)((data[i] & 0xFF) | ((data[i + 1] & 0xFF) << 8));
+      if(isSurrogate(c)) {
+        // let the charset deal with surrogates (which may be malformed)
+        String str = UTF_16LE.decode(
+            ByteBuffer.wrap(data, start, end - start)).toString();
+        str.getChars(0, str.length(), chars, startChars);
+        return startChars + str.length();
+      }
+      chars[numChars++] = c;
+    }
+    if(pairEnd < end) {
+      // a trailing odd byte is malformed
+      chars[numChars++] = REPLACEMENT_CHAR;
+    }
+    return numChars;
+  }
+
+  private static boolean isSurrogate(char c) {
+    return((c >= '\uD800') && (c <= '\uDFFF'));
+  }
+
+  /**
+   * Returns a char buffer with at least the given length.
+   */
+  private static char[] getCharBuffer(int minLen) {
+    if(minLen > MAX_CACHED_CHARS) {
+      return new char[minLen];
+    }
+    char[] chars = CHAR_BUF.get();
+    if(chars.length < minLen) {
+      chars = new char[Math.max(minLen, chars.length * 2)];
+      CHAR_BUF.set(chars);
+    }
+    return chars;
+  }
+}
@@ -17,9 +17,13 @@ limitations under the License.
 package com.healthmarketscience.jackcess.impl;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
@@ -98,6 +102,51 @@ public abstract class CursorImpl implements Cursor
     return new TableScanCursor(table);
   }
 
+  /**
+   * Creates (at most) the given number of un-indexed cursors for the given
+   * table, each of which scans the rows on a separate, contiguous range of
+   * the table's data pages.  Together, the cursors return every row of the
+   * table exactly once.  Each cursor has its own row state, so the cursors
+   * may be used to scan the table from separate threads, as long as the
+   * table is not modified during the scan.
+   * @param table the table over which the cursors will traverse
+   * @param maxSplits the maximum number of cursors to create
+   * @usage _advanced_method_
+   */
+  public static List<CursorImpl> createSplitCursors(TableImpl table,
+                                                    int maxSplits)
+  {
+    // split the owned pages into contiguous ranges with a similar number of
+    // pages each.  the first and last ranges are open ended, so that all
+    // pages are covered
+    RunLengthBitSet pages = table.getOwnedPageNumbers();
+    int numPages = pages.cardinality();
+    int numSplits = Math.max(1, Math.min(maxSplits, numPages));
+    int splitSize = (numPages + numSplits - 1) / numSplits;
+
+    List<CursorImpl> cursors = new ArrayList<CursorImpl>(numSplits);
+    int startPage = 0;
+    int splitPages = 0;
+    for(int i = 0; i < pages.getRunCount(); ++i) {
+      int runStart = pages.getRunStart(i);
+      int runEnd = pages.getRunEnd(i);
+      while((cursors.size() < (numSplits - 1)) &&
+            ((splitPages + (runEnd - runStart)) >= splitSize)) {
+        // end the current split within this run
+        int endPage = runStart + (splitSize - splitPages);
+        cursors.add(new TableScanCursor(table, startPage, endPage));
+        startPage = endPage;
+        runStart = endPage;
+        splitPages = 0;
+      }
+      splitPages += (runEnd - runStart);
+    }
+
+    // the last split gets everything else
+    cursors.add(new TableScanCursor(table, startPage, Integer.MAX_VALUE));
+    return cursors;
+  }
+
   public RowState getRowState() {
     return _rowState;
   }
@@ -126,6 +175,31 @@ public abstract class CursorImpl implements Cursor
     _rowState.setErrorHandler(newErrorHandler);
   }    
 
+  public boolean isCompactRows() {
+    return _rowState.isCompactRows();
+  }
+
+  /**
+   * Sets whether or not this cursor returns rows as {@link CompactRowImpl}
+   * instances (defaults to {@link DatabaseImpl#isCompactRows}).
+   */
+  public void setCompactRows(boolean compactRows) {
+    _rowState.setCompactRows(compactRows);
+  }
+
+  public boolean isLazyLongValues() {
+    return _rowState.isLazyLongValues();
+  }
+
+  /**
+   * Sets whether or not this cursor returns the values of long value columns
+   * as {@link LongValueHandle} instances (defaults to {@link
+   * DatabaseImpl#isLazyLongValues} for user tables).
+   */
+  public void setLazyLongValues(boolean lazyLongValues) {
+    _rowState.setLazyLongValues(lazyLongValues);
+  }
+
   public ColumnMatcher getColumnMatcher() {
     return _columnMatcher;
   }
@@ -595,8 +669,17 @@ public abstract class CursorImpl implements Cursor
       ColumnMatcher columnMatcher, Object searchInfo)
     throws IOException
   {
+    // reject non-matching rows using the raw row data where possible
+    RowPredicate prefilter = null;
+    PrimitiveRowReader reader = null;
+    if(isSimpleColumnMatcher(columnMatcher)) {
+      prefilter = RowPredicate.forPattern(columnPattern, valuePattern);
+      reader = getPrimitiveReader();
+    }
+
     while(moveToAnotherRow(moveForward)) {
-      if(currentRowMatchesImpl(columnPattern, valuePattern, columnMatcher)) {
+      if(((prefilter == null) || prefilter.matches(reader)) &&
+         currentRowMatchesImpl(columnPattern, valuePattern, columnMatcher)) {
         return true;
       }
       if(!keepSearching(columnMatcher, searchInfo)) {
@@ -623,8 +706,17 @@ public abstract class CursorImpl implements Cursor
                                        Object searchInfo)
     throws IOException
   {
+    // reject non-matching rows using the raw row data where possible
+    RowPredicate prefilter = null;
+    PrimitiveRowReader reader = null;
+    if(isSimpleColumnMatcher(columnMatcher)) {
+      prefilter = RowPredicate.forRowPattern(getTable(), rowPattern);
+      reader = getPrimitiveReader();
+    }
+
     while(moveToAnotherRow(moveForward)) {
-      if(currentRowMatchesImpl(rowPattern, columnMatcher)) {
+      if(((prefilter == null) || prefilter.matches(reader)) &&
+         currentRowMatchesImpl(rowPattern, columnMatcher)) {
         return true;
       }
       if(!keepSearching(columnMatcher, searchInfo)) {
@@ -634,6 +726,71 @@ public abstract class CursorImpl implements Cursor
     return false;
   }  
 
+  /**
+   * Moves to the first row (as defined by the cursor) which matches the given
+   * predicate.  The predicate is evaluated against the raw row data, so rows
+   * which do not match are rejected without being materialized.  If a match
+   * is not found (or an exception is thrown), the cursor is restored to its
+   * previous state.
+   * @return {@code true} if a valid row was found which matches the
+   *         predicate, {@code false} if no row was found
+   * @usage _advanced_method_
+   */
+  public boolean findFirstRow(RowPredicate predicate) throws IOException
+  {
+    return findAnotherRow(predicate, true, MOVE_FORWARD);
+  }
+
+  /**
+   * Moves to the next row (as defined by the cursor) which matches the given
+   * predicate.  The predicate is evaluated against the raw row data, so rows
+   * which do not match are rejected without being materialized.  If a match
+   * is not found (or an exception is thrown), the cursor is restored to its
+   * previous state.
+   * @return {@code true} if a valid row was found which matches the
+   *         predicate, {@code false} if no row was found
+   * @usage _advanced_method_
+   */
+  public boolean findNextRow(RowPredicate predicate) throws IOException
+  {
+    return findAnotherRow(predicate, false, MOVE_FORWARD);
+  }
+
+  protected boolean findAnotherRow(RowPredicate predicate, boolean reset,
+                                   boolean moveForward)
+    throws IOException
+  {
+    PositionImpl curPos = _curPos;
+    PositionImpl prevPos = _prevPos;
+    boolean found = false;
+    try {
+      if(reset) {
+        reset(moveForward);
+      }
+      PrimitiveRowReader reader = getPrimitiveReader();
+      while(moveToAnotherRow(moveForward)) {
+        if(predicate.matches(reader)) {
+          found = true;
+          break;
+        }
+      }
+      return found;
+    } finally {
+      if(!found) {
+        try {
+          restorePosition(curPos, prevPos);
+        } catch(IOException e) {
+          LOG.error("Failed restoring position", e);
+        }
+      }
+    }
+  }
+
+  private static boolean isSimpleColumnMatcher(ColumnMatcher columnMatcher) {
+    // the raw row checks are only equivalent to simple equality matching
+    return(columnMatcher.getClass() == SimpleColumnMatcher.class);
+  }
+
   /**
    * Called before a search commences to allow for search specific data to be
    * generated (which is cached for re-use by the iterators).
@@ -696,7 +853,110 @@ public abstract class CursorImpl implements Cursor
   public Row getCurrentRow(Collection<String> columnNames)
     throws IOException
   {
-    return _table.getRow(_rowState, _curPos.getRowId(), columnNames);
+    return _table.getCursorRow(_rowState, _curPos.getRowId(), columnNames);
+  }
+
+  /**
+   * Moves to the next row in the table and returns a lazily decoded view of
+   * it (see {@link LazyRowImpl}).  The returned row is only usable until this
+   * cursor moves to another row.
+   * @return the next row in this table, or {@code null} if no next row is
+   *         found
+   * @usage _advanced_method_
+   */
+  public LazyRowImpl getNextLazyRow() throws IOException {
+    return getNextLazyRow(null);
+  }
+
+  /**
+   * Moves to the next row in the table and returns a lazily decoded view of
+   * it (see {@link LazyRowImpl}).  The returned row is only usable until this
+   * cursor moves to another row.
+   * @param columnNames Only column names in this collection will be returned
+   * @return the next row in this table, or {@code null} if no next row is
+   *         found
+   * @usage _advanced_method_
+   */
+  public LazyRowImpl getNextLazyRow(Collection<String> columnNames)
+    throws IOException
+  {
+    if(moveToAnotherRow(MOVE_FORWARD)) {
+      return getCurrentLazyRow(columnNames);
+    }
+    return null;
+  }
+
+  /**
+   * Returns a lazily decoded view of the current row (see {@link
+   * LazyRowImpl}).  The returned row is only usable until this cursor moves
+   * to another row.
+   * @usage _advanced_method_
+   */
+  public LazyRowImpl getCurrentLazyRow() throws IOException {
+    return getCurrentLazyRow(null);
+  }
+
+  /**
+   * Returns a lazily decoded view of the current row (see {@link
+   * LazyRowImpl}).  The returned row is only usable until this cursor moves
+   * to another row.
+   * @param columnNames Only column names in this collection will be returned
+   * @usage _advanced_method_
+   */
+  public LazyRowImpl getCurrentLazyRow(Collection<String> columnNames)
+    throws IOException
+  {
+    return _table.getLazyRow(_rowState, _curPos.getRowId(), columnNames);
+  }
+
+  /**
+   * Returns a reader which reads fixed length column values of the current
+   * row of this cursor as primitive values (see {@link PrimitiveRowReader}).
+   * @usage _advanced_method_
+   */
+  public PrimitiveRowReader getPrimitiveReader() {
+    return new PrimitiveRowReader(this);
+  }
+
+  /**
+   * Reads up to the given number of rows from the current position of this
+   * cursor into a new columnar batch (see {@link ColumnBatch}).  After this
+   * call, the cursor is positioned at the last row in the batch.
+   * @param columnNames Only column names in this collection will be read
+   * @return the batch of rows, or {@code null} if no next row is found
+   * @usage _advanced_method_
+   */
+  public ColumnBatch nextBatch(int maxRows, Collection<String> columnNames)
+    throws IOException
+  {
+    ColumnBatch batch = new ColumnBatch(_table, maxRows, columnNames);
+    return ((nextBatch(batch) > 0) ? batch : null);
+  }
+
+  /**
+   * Reads up to {@link ColumnBatch#getMaxRows} rows from the current position
+   * of this cursor into the given batch, replacing any existing rows.  This
+   * allows a batch (and its vectors) to be re-used for an entire scan.  After
+   * this call, the cursor is positioned at the last row in the batch.
+   * @return the number of rows read, {@code 0} if no next row is found
+   * @usage _advanced_method_
+   */
+  public int nextBatch(ColumnBatch batch) throws IOException
+  {
+    if(batch.getTable() != _table) {
+      throw new IllegalArgumentException(_table.withErrorContext(
+          "Given batch is not for this table"));
+    }
+    batch.clear();
+    PrimitiveRowReader reader = getPrimitiveReader();
+    while(!batch.isFull() && moveToAnotherRow(MOVE_FORWARD)) {
+      batch.addRow(reader);
+    }
+    return batch.getRowCount();
+  }
+
+  RowIdImpl getCurrentRowId() {
+    return _curPos.getRowId();
   }
 
   public Object getCurrentRowValue(Column column)
@@ -711,6 +971,36 @@ public abstract class CursorImpl implements Cursor
     return _table.getRowValue(_rowState, _curPos.getRowId(), column);
   }
 
+  /**
+   * Returns a stream of the data of the given MEMO or OLE column from the
+   * current row, which reads large values lazily, one page at a time (see
+   * {@link TableImpl#getLongValueStream}).  The stream should only be used
+   * while this cursor is positioned at the current row.
+   * @return the data stream, or {@code null} if the value is null
+   * @usage _advanced_method_
+   */
+  public InputStream getCurrentRowValueStream(Column column)
+    throws IOException
+  {
+    return _table.getLongValueStream(_rowState, _curPos.getRowId(),
+                                     (ColumnImpl)column);
+  }
+
+  /**
+   * Returns a reader of the text of the given MEMO column from the current
+   * row, which reads large values lazily, one page at a time (see {@link
+   * TableImpl#getLongValueReader}).  The reader should only be used while
+   * this cursor is positioned at the current row.
+   * @return the text reader, or {@code null} if the value is null
+   * @usage _advanced_method_
+   */
+  public Reader getCurrentRowValueReader(Column column)
+    throws IOException
+  {
+    return _table.getLongValueReader(_rowState, _curPos.getRowId(),
+                                     (ColumnImpl)column);
+  }
+
   public void setCurrentRowValue(Column column, Object value)
     throws IOException
   {
@@ -39,6 +39,7 @@ import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -70,6 +71,7 @@ import com.healthmarketscience.jackcess.util.CaseInsensitiveColumnMatcher;
 import com.healthmarketscience.jackcess.util.ColumnValidatorFactory;
 import com.healthmarketscience.jackcess.util.ErrorHandler;
 import com.healthmarketscience.jackcess.util.LinkResolver;
+import com.healthmarketscience.jackcess.util.PageMetrics;
 import com.healthmarketscience.jackcess.util.ReadOnlyFileChannel;
 import com.healthmarketscience.jackcess.util.SimpleColumnValidatorFactory;
 import com.healthmarketscience.jackcess.util.TableIterableBuilder;
@@ -309,6 +311,18 @@ public class DatabaseImpl implements Database
   private boolean _allowAutoNumInsert;
   /** whether or not to evaluate expressions */
   private boolean _evaluateExpressions;
+  /** whether or not the space used by deleted rows is re-used for new
+      rows */
+  private boolean _reuseDeletedRowSpace;
+  /** whether or not rows are read as compact rows by default */
+  private boolean _compactRows;
+  /** whether or not long values are read lazily by default */
+  private boolean _lazyLongValues;
+  /** approximate max amount of memory used for sorting index entries when
+      building indexes */
+  private int _maxIndexSortBytes = IndexEntrySorter.DEFAULT_MAX_RUN_BYTES;
+  /** directory for the temporary files used when sorting index entries */
+  private File _indexSortTempDir;
   /** factory for ColumnValidators */
   private ColumnValidatorFactory _validatorFactory = SimpleColumnValidatorFactory.INSTANCE;
   /** cache of in-use tables */
@@ -329,11 +343,15 @@ public class DatabaseImpl implements Database
   private LinkResolver _linkResolver;
   /** any linked databases which have been opened */
   private Map<String,Database> _linkedDbs;
+  /** any table bulk loads which have not been finished */
+  private final Set<BulkLoad> _bulkLoads = new LinkedHashSet<BulkLoad>();
   /** shared state used when enforcing foreign keys */
   private final FKEnforcer.SharedState _fkEnforcerSharedState =
     FKEnforcer.initSharedState();
   /** Calendar for use interpreting dates/times in Columns */
   private Calendar _calendar;
+  /** codec for converting dates/times in Columns */
+  private DateCodec _dateCodec;
   /** shared context for evaluating expressions */
   private DBEvalContext _evalCtx;
 
@@ -365,6 +383,25 @@ public class DatabaseImpl implements Database
       boolean autoSync, Charset charset, TimeZone timeZone,
       CodecProvider provider)
     throws IOException
+  {
+    return open(mdbFile, readOnly, channel, autoSync, charset, timeZone,
+                provider, null);
+  }
+
+  /**
+   * Open an existing Database.  If the existing file is not writeable or the
+   * readOnly flag is {@code true}, the file will be opened read-only.  See
+   * {@link #open(File,boolean,FileChannel,boolean,Charset,TimeZone,CodecProvider)}
+   * for details on the other parameters.
+   * @param configurer optional configuration applied to the PageChannel
+   *                   before any pages are read
+   * @usage _advanced_method_
+   */
+  public static DatabaseImpl open(
+      File mdbFile, boolean readOnly, FileChannel channel,
+      boolean autoSync, Charset charset, TimeZone timeZone,
+      CodecProvider provider, PageChannel.Configurer configurer)
+    throws IOException
   {
     boolean closeChannel = false;
     if(channel == null) {
@@ -398,7 +435,8 @@ public class DatabaseImpl implements Database
       }
 
       DatabaseImpl db = new DatabaseImpl(mdbFile, channel, closeChannel, autoSync,
-                                         null, charset, timeZone, provider);
+                                         null, charset, timeZone, provider,
+                                         readOnly, configurer);
       success = true;
       return db;
 
@@ -434,6 +472,24 @@ public class DatabaseImpl implements Database
                                     FileChannel channel, boolean autoSync,
                                     Charset charset, TimeZone timeZone)
     throws IOException
+  {
+    return create(fileFormat, mdbFile, channel, autoSync, charset, timeZone,
+                  null);
+  }
+
+  /**
+   * Create a new Database for the given fileFormat.  See {@link
+   * #create(FileFormat,File,FileChannel,boolean,Charset,TimeZone)} for
+   * details on the other parameters.
+   * @param configurer optional configuration applied to the PageChannel
+   *                   before any pages are read
+   * @usage _advanced_method_
+   */
+  public static DatabaseImpl create(FileFormat fileFormat, File mdbFile,
+                                    FileChannel channel, boolean autoSync,
+                                    Charset charset, TimeZone timeZone,
+                                    PageChannel.Configurer configurer)
+    throws IOException
   {
     FileFormatDetails details = getFileFormatDetails(fileFormat);
     if (details.getFormat().READ_ONLY) {
@@ -457,7 +513,8 @@ public class DatabaseImpl implements Database
       transferDbFrom(channel, getResourceAsStream(details.getEmptyFilePath()));
       channel.force(true);
       DatabaseImpl db = new DatabaseImpl(mdbFile, channel, closeChannel, autoSync,
-                                         fileFormat, charset, timeZone, null);
+                                         fileFormat, charset, timeZone, null,
+                                         false, configurer);
       success = true;
       return db;
     } finally {
@@ -511,6 +568,24 @@ public class DatabaseImpl implements Database
                          boolean autoSync, FileFormat fileFormat, Charset charset,
                          TimeZone timeZone, CodecProvider provider)
     throws IOException
+  {
+    this(file, channel, closeChannel, autoSync, fileFormat, charset, timeZone,
+         provider, false, null);
+  }
+
+  /**
+   * Create a new database by reading it in from a FileChannel.  See {@link
+   * #DatabaseImpl(File,FileChannel,boolean,boolean,FileFormat,Charset,TimeZone,CodecProvider)}
+   * for details on the other parameters.
+   * @param readOnly whether or not the channel was opened read-only
+   * @param configurer optional configuration applied to the PageChannel
+   *                   before any pages are read
+   */
+  protected DatabaseImpl(File file, FileChannel channel, boolean closeChannel,
+                         boolean autoSync, FileFormat fileFormat, Charset charset,
+                         TimeZone timeZone, CodecProvider provider,
+                         boolean readOnly, PageChannel.Configurer configurer)
+    throws IOException
   {
     _file = file;
     _name = getName(file);
@@ -529,7 +604,7 @@ public class DatabaseImpl implements Database
     // note, it's slighly sketchy to pass ourselves along partially
     // constructed, but only our _format and _pageChannel refs should be
     // needed
-    _pageChannel.initialize(this, provider);
+    _pageChannel.initialize(this, provider, readOnly, configurer);
     _buffer = _pageChannel.createPageBuffer();
     readSystemCatalog();
   }
@@ -602,6 +677,24 @@ public class DatabaseImpl implements Database
     _linkResolver = newLinkResolver;
   }
 
+  /**
+   * Gets the currently configured PageMetrics (always non-{@code null}).
+   * This will receive all page level I/O events for this Database.
+   * @usage _advanced_method_
+   */
+  public PageMetrics getPageMetrics() {
+    return _pageChannel.getPageMetrics();
+  }
+
+  /**
+   * Sets a new PageMetrics.  If {@code null}, resets to the
+   * {@link PageMetrics#DEFAULT}.
+   * @usage _advanced_method_
+   */
+  public void setPageMetrics(PageMetrics newPageMetrics) {
+    _pageChannel.setPageMetrics(newPageMetrics);
+  }
+
   public Map<String,Database> getLinkedDatabases() {
     return ((_linkedDbs == null) ? Collections.<String,Database>emptyMap() :
             Collections.unmodifiableMap(_linkedDbs));
@@ -643,8 +736,9 @@ public class DatabaseImpl implements Database
       newTimeZone = getDefaultTimeZone();
     }
     _timeZone = newTimeZone;
-    // clear cached calendar when timezone is changed
+    // clear cached calendar/codec when timezone is changed
     _calendar = null;
+    _dateCodec = null;
   }
 
   public Charset getCharset()
@@ -703,6 +797,125 @@ public class DatabaseImpl implements Database
     _evaluateExpressions = evaluateExpressions;
   }
 
+  /**
+   * @return {@code true} if the space used by deleted rows is reclaimed for
+   *         new rows, {@code false} otherwise
+   * @usage _advanced_method_
+   */
+  public boolean isReuseDeletedRowSpace() {
+    return _reuseDeletedRowSpace;
+  }
+
+  /**
+   * Sets whether or not the space used by deleted rows should be reclaimed
+   * for new rows.  When enabled, the data of a deleted row is removed from
+   * its data page when the row is deleted (the deleted row remains on the
+   * page, but no longer takes up any space), and the freed space (and the
+   * row number of the deleted row) may be used by subsequently added rows.
+   * This keeps tables with many inserts and deletes from growing without
+   * bound.  Note, only the space of rows deleted while this setting is
+   * enabled will be reclaimed.  Disabled by default.
+   * <p/>
+   * <b>Warning:</b> since the row numbers of deleted rows may be re-used, a
+   * {@link com.healthmarketscience.jackcess.RowId} (or a cursor savepoint)
+   * referring to a deleted row may later refer to a different, new row.
+   * Row numbers of rows deleted by a Table instance are never re-used by
+   * that same instance (so open cursors are not affected), however RowIds
+   * which are saved and used with a later Table instance (e.g. after the
+   * Database is re-opened) are not protected.
+   * @usage _advanced_method_
+   */
+  public void setReuseDeletedRowSpace(boolean reuseDeletedRowSpace) {
+    _reuseDeletedRowSpace = reuseDeletedRowSpace;
+  }
+
+  /**
+   * @return {@code true} if new cursors read rows as compact rows by
+   *         default, {@code false} otherwise
+   * @usage _advanced_method_
+   */
+  public boolean isCompactRows() {
+    return _compactRows;
+  }
+
+  /**
+   * Sets whether or not new cursors read rows as {@link CompactRowImpl}
+   * instances by default.  Compact rows store the row values in an array and
+   * share the mapping of column names to values with all the other rows read
+   * by the same cursor, which greatly reduces the memory used when holding
+   * many rows in memory.  The returned rows are fully functional Maps, but
+   * are not RowImpl instances.  Only affects cursors created after this
+   * setting is changed.  Disabled by default.
+   * @usage _advanced_method_
+   */
+  public void setCompactRows(boolean compactRows) {
+    _compactRows = compactRows;
+  }
+
+  /**
+   * @return {@code true} if new cursors read the values of long value
+   *         columns lazily by default, {@code false} otherwise
+   * @usage _advanced_method_
+   */
+  public boolean isLazyLongValues() {
+    return _lazyLongValues;
+  }
+
+  /**
+   * Sets whether or not new cursors on user tables return the values of long
+   * value (MEMO and OLE) columns as {@link LongValueHandle} instances by
+   * default.  A handle holds the location of the value and reads the actual
+   * value (which may span many pages) only when it is accessed, so reading
+   * rows is much cheaper when the long values are not always needed.  Only
+   * affects cursors created after this setting is changed.  Disabled by
+   * default.
+   * @usage _advanced_method_
+   */
+  public void setLazyLongValues(boolean lazyLongValues) {
+    _lazyLongValues = lazyLongValues;
+  }
+
+  /**
+   * @return the approximate max amount of memory used for sorting index
+   *         entries when building indexes
+   * @usage _advanced_method_
+   */
+  public int getMaxIndexSortBytes() {
+    return _maxIndexSortBytes;
+  }
+
+  /**
+   * Sets the approximate max amount of memory used for sorting index entries
+   * when building an index for an existing table (or finishing a {@link
+   * BulkLoad} started without an explicit amount).  Entries beyond this
+   * amount are sorted using temporary files.  Defaults to 16MB.
+   * @usage _advanced_method_
+   */
+  public void setMaxIndexSortBytes(int maxIndexSortBytes) {
+    _maxIndexSortBytes = maxIndexSortBytes;
+  }
+
+  /**
+   * @return the directory in which temporary files are created when sorting
+   *         index entries, {@code null} for the default temporary-file
+   *         directory
+   * @usage _advanced_method_
+   */
+  public File getIndexSortTempDir() {
+    return _indexSortTempDir;
+  }
+
+  /**
+   * Sets the directory in which temporary files are created when sorting
+   * index entries which do not fit in the {@link #setMaxIndexSortBytes max
+   * amount of memory}.  If {@code null} (the default), the default
+   * temporary-file directory is used.
+   * @usage _advanced_method_
+   */
+  public void setIndexSortTempDir(File indexSortTempDir) {
+    _indexSortTempDir = indexSortTempDir;
+  }
+
   public ColumnValidatorFactory getColumnValidatorFactory() {
     return _validatorFactory;
   }
@@ -732,6 +945,20 @@ public class DatabaseImpl implements Database
     return _calendar;
   }
 
+  /**
+   * @return the codec for converting dates/times in this database's
+   *         TimeZone (which may be used concurrently)
+   * @usage _advanced_method_
+   */
+  public DateCodec getDateCodec() {
+    DateCodec codec = _dateCodec;
+    if(codec == null) {
+      codec = new DateCodec(_timeZone);
+      _dateCodec = codec;
+    }
+    return codec;
+  }
+
   public EvalConfig getEvalConfig() {
     return getEvalContext();
   }
@@ -1750,12 +1977,28 @@ public class DatabaseImpl implements Database
   }
 
   public void close() throws IOException {
-    if(_linkedDbs != null) {
-      for(Database linkedDb : _linkedDbs.values()) {
-        linkedDb.close();
+    try {
+      // any unfinished bulk loads are aborted (otherwise the tables would be
+      // left with rows which are not in the indexes)
+      for(BulkLoad bulkLoad : new ArrayList<BulkLoad>(_bulkLoads)) {
+        bulkLoad.abort();
       }
+    } finally {
+      if(_linkedDbs != null) {
+        for(Database linkedDb : _linkedDbs.values()) {
+          linkedDb.close();
+        }
+      }
+      _pageChannel.close();
     }
-    _pageChannel.close();
+  }
+
+  void addBulkLoad(BulkLoad bulkLoad) {
+    _bulkLoads.add(bulkLoad);
+  }
+
+  void removeBulkLoad(BulkLoad bulkLoad) {
+    _bulkLoads.remove(bulkLoad);
   }
 
   public void validateNewTableName(String name) throws IOException {
@@ -0,0 +1,186 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+
+/**
+ * Converts between access date doubles and java time values (millis) for a
+ * given TimeZone.  Access stores dates in "local" time, so every conversion
+ * needs the timezone offset for the relevant time.  Instead of computing the
+ * offsets using a shared Calendar for each value, the offsets are cached for
+ * blocks of time (of a bit over 3 days) during which the offsets do not
+ * change.  Only the values within a block containing a timezone transition
+ * (and the first value in each block) need a Calendar computation.
+ * <p/>
+ * Whether or not a block contains a transition is determined by sampling
+ * the offsets every ~18 hours within the block, so a pair of transitions
+ * which are closer together than that (and restore the original offsets)
+ * would be missed.  The transitions of the current timezone data are all at
+ * least a week apart (the shortest being the brief daylight saving periods
+ * of some Brazilian zones).
+ * <p/>
+ * Instances of this class are thread-safe (the cache is updated without
+ * locking), so dates may be decoded concurrently.
+ *
+ * @author James Ahlborn
+ * @usage _advanced_class_
+ */
+public class DateCodec
+{
+  /** size of the blocks of time for which offsets are cached (as a power of
+      2 number of millis) */
+  private static final int BLOCK_SHIFT = 28;
+  private static final long BLOCK_MILLIS = 1L << BLOCK_SHIFT;
+  /** number of times the offsets are sampled within a block (after the
+      start) when checking for transitions (~every 18 hours) */
+  private static final int NUM_SAMPLES = 4;
+  private static final long SAMPLE_MILLIS = BLOCK_MILLIS / NUM_SAMPLES;
+  /** number of cached blocks (must be a power of 2), enough for ~70 years
+      worth of consecutive blocks */
+  private static final int CACHE_SIZE = 8192;
+
+  /** Calendar used to compute offsets which are not cached.  access is
+      synchronized on the calendar */
+  private final Calendar _cal;
+  /** direct mapped cache of offset blocks.  entries are immutable, so
+      concurrent updates at worst cause some extra cache misses */
+  private final OffsetBlock[] _blocks = new OffsetBlock[CACHE_SIZE];
+
+  public DateCodec(TimeZone tz) {
+    _cal = DatabaseBuilder.toCompatibleCalendar(Calendar.getInstance(tz));
+  }
+
+  public TimeZone getTimeZone() {
+    return _cal.getTimeZone();
+  }
+
+  /**
+   * Returns a java long time value converted from an access date double.
+   */
+  public long fromDateDouble(double value) {
+    long localTime = ColumnImpl.fromLocalDateDouble(value);
+    return localTime - getFromLocalTimeZoneOffset(localTime);
+  }
+
+  /**
+   * Returns an access date double converted from a java long time value.
+   */
+  public double toDateDouble(long time) {
+    return ColumnImpl.toLocalDateDouble(time + getToLocalTimeZoneOffset(time));
+  }
+
+  /**
+   * Gets the timezone offset from UTC to local time for the given time
+   * (including DST).
+   */
+  long getToLocalTimeZoneOffset(long time) {
+    OffsetBlock block = getBlock(time);
+    if(block != null) {
+      return block._offset;
+    }
+    synchronized(_cal) {
+      _cal.setTimeInMillis(time);
+      return getOffset(_cal);
+    }
+  }
+
+  /**
+   * Gets the timezone offset from local time to UTC for the given time
+   * (including DST).
+   */
+  long getFromLocalTimeZoneOffset(long time) {
+    // getting from local time back to UTC is a little wonky (and not
+    // guaranteed to get you back to where you started).  apply the zone
+    // offset first to get us closer to the original time
+    OffsetBlock block = getBlock(time);
+    if(block != null) {
+      OffsetBlock origBlock = getBlock(time - block._zoneOffset);
+      if(origBlock != null) {
+        return origBlock._offset;
+      }
+    }
+    synchronized(_cal) {
+      _cal.setTimeInMillis(time);
+      _cal.setTimeInMillis(time - _cal.get(Calendar.ZONE_OFFSET));
+      return getOffset(_cal);
+    }
+  }
+
+  /**
+   * Returns the cached offsets for the block containing the given time, or
+   * {@code null} if the offsets change within the block.
+   */
+  private OffsetBlock getBlock(long time) {
+    long blockNum = time >> BLOCK_SHIFT;
+    int idx = (int)blockNum & (CACHE_SIZE - 1);
+    OffsetBlock block = _blocks[idx];
+    if((block == null) || (block._blockNum != blockNum)) {
+      block = computeBlock(blockNum);
+      _blocks[idx] = block;
+    }
+    return (block._fixed ? block : null);
+  }
+
+  private OffsetBlock computeBlock(long blockNum) {
+    long start = blockNum << BLOCK_SHIFT;
+    long end = start + BLOCK_MILLIS - 1L;
+    synchronized(_cal) {
+      _cal.setTimeInMillis(start);
+      int zoneOffset = _cal.get(Calendar.ZONE_OFFSET);
+      int offset = getOffset(_cal);
+      // checking the ends of the block is not sufficient, as the block may
+      // contain multiple transitions (e.g. a short dst period)
+      boolean fixed = true;
+      for(int i = 1; fixed && (i <= NUM_SAMPLES); ++i) {
+        _cal.setTimeInMillis(Math.min(start + (i * SAMPLE_MILLIS), end));
+        fixed = ((zoneOffset == _cal.get(Calendar.ZONE_OFFSET)) &&
+                 (offset == getOffset(_cal)));
+      }
+      return new OffsetBlock(blockNum, zoneOffset, offset, fixed);
+    }
+  }
+
+  private static int getOffset(Calendar cal) {
+    return (cal.get(Calendar.ZONE_OFFSET) + cal.get(Calendar.DST_OFFSET));
+  }
+
+  /**
+   * The timezone offsets for a block of time.
+   */
+  private static final class OffsetBlock
+  {
+    private final long _blockNum;
+    /** raw offset from UTC (without DST) */
+    private final int _zoneOffset;
+    /** total offset from UTC (including DST) */
+    private final int _offset;
+    /** whether or not the offsets are the same for the entire block */
+    private final boolean _fixed;
+
+    private OffsetBlock(long blockNum, int zoneOffset, int offset,
+                        boolean fixed) {
+      _blockNum = blockNum;
+      _zoneOffset = zoneOffset;
+      _offset = offset;
+      _fixed = fixed;
+    }
+  }
+}
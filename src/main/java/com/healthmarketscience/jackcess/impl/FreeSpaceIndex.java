@@ -0,0 +1,155 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * In-memory summary of the space available for new rows in the data pages
+ * owned by a table, used to find a page with enough room for a new row
+ * without reading the table's pages.  The summary consists of a bitmap of
+ * the pages with available space along with the number of available bytes
+ * for each of those pages.
+ * <p/>
+ * The index is populated lazily.  Pages which are listed in the table's
+ * "free space" usage map but have not yet been read are tracked as
+ * "unknown" pages, which should be inspected (and then updated) by the
+ * caller when none of the known pages have enough space.
+ *
+ * @author James Ahlborn
+ */
+class FreeSpaceIndex
+{
+  private static final int INITIAL_SIZE = 64;
+
+  private final JetFormat _format;
+  /** pages with some available space */
+  private final BitSet _pages = new BitSet();
+  /** pages which may have available space, but have not been inspected */
+  private final BitSet _unknownPages = new BitSet();
+  /** available space by page number (only valid for pages in _pages) */
+  private short[] _freeSpace = new short[INITIAL_SIZE];
+  /** page at which the next search starts (so that successive searches are
+      spread across the pages with space) */
+  private int _searchStart;
+
+  FreeSpaceIndex(JetFormat format) {
+    _format = format;
+  }
+
+  /**
+   * @return the number of pages known to have available space
+   */
+  public int getPageCount() {
+    return _pages.cardinality();
+  }
+
+  /**
+   * @return the number of pages which have not yet been inspected
+   */
+  public int getUnknownPageCount() {
+    return _unknownPages.cardinality();
+  }
+
+  /**
+   * @return the number of bytes available on the given page (0 if the page
+   *         is not known to have any available space)
+   */
+  public int getFreeSpace(int pageNumber) {
+    return (_pages.get(pageNumber) ? _freeSpace[pageNumber] : 0);
+  }
+
+  /**
+   * Adds a page which may have available space, but whose actual space is
+   * not yet known.
+   */
+  public void addUnknownPage(int pageNumber) {
+    if(!_pages.get(pageNumber)) {
+      _unknownPages.set(pageNumber);
+    }
+  }
+
+  /**
+   * Removes and returns the next page whose available space is not yet
+   * known, or -1 if there are no such pages.
+   */
+  public int nextUnknownPage() {
+    int pageNumber = _unknownPages.nextSetBit(0);
+    if(pageNumber >= 0) {
+      _unknownPages.clear(pageNumber);
+    }
+    return pageNumber;
+  }
+
+  /**
+   * Sets the number of bytes available on the given page.
+   */
+  public void setFreeSpace(int pageNumber, int freeSpace) {
+    _unknownPages.clear(pageNumber);
+    // a row always needs at least a row location
+    if(freeSpace <= _format.SIZE_ROW_LOCATION) {
+      _pages.clear(pageNumber);
+      return;
+    }
+    if(pageNumber >= _freeSpace.length) {
+      _freeSpace = Arrays.copyOf(
+          _freeSpace, Math.max(pageNumber + 1, _freeSpace.length * 2));
+    }
+    _freeSpace[pageNumber] = (short)freeSpace;
+    _pages.set(pageNumber);
+  }
+
+  /**
+   * Removes the given page from the index.
+   */
+  public void removePage(int pageNumber) {
+    _pages.clear(pageNumber);
+    _unknownPages.clear(pageNumber);
+  }
+
+  /**
+   * Returns a known page which has at least the given number of bytes
+   * available, or -1 if no such page exists.
+   */
+  public int findPage(int spaceNeeded) {
+    int pageNumber = findPage(spaceNeeded, _searchStart, Integer.MAX_VALUE);
+    if((pageNumber < 0) && (_searchStart > 0)) {
+      // wrap around
+      pageNumber = findPage(spaceNeeded, 0, _searchStart);
+    }
+    _searchStart = Math.max(pageNumber, 0);
+    return pageNumber;
+  }
+
+  private int findPage(int spaceNeeded, int startPage, int endPage) {
+    for(int pageNumber = _pages.nextSetBit(startPage);
+        (pageNumber >= 0) && (pageNumber < endPage);
+        pageNumber = _pages.nextSetBit(pageNumber + 1)) {
+      if(_freeSpace[pageNumber] >= spaceNeeded) {
+        return pageNumber;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public String toString() {
+    return "FreeSpaceIndex[pages=" + _pages + ", unknownPages=" +
+      _unknownPages + "]";
+  }
+}
@@ -376,6 +376,10 @@ public class IndexData {
     _ownedPages.addPageNumber(pageNumber);
   }
 
+  void removeOwnedPage(int pageNumber) throws IOException {
+    _ownedPages.removePageNumber(pageNumber);
+  }
+
   void collectUsageMapPages(Collection<Integer> pages) {
     pages.add(_ownedPages.getTablePageNumber());
   }
@@ -610,26 +614,241 @@ public class IndexData {
   {
     int nullCount = countNullValues(row);
     boolean isNullEntry = (nullCount == _columns.size());
-    if(shouldIgnoreNulls() && isNullEntry) {
+    if(!shouldAddRow(row, nullCount)) {
       // nothing to do
       return change;
     }
+    
+    // make sure we've parsed the entries
+    initialize();
+
+    return prepareAddEntry(new Entry(createEntryBytes(row), rowId), isNullEntry,
+                           row, change);
+  }
+
+  /**
+   * Creates the entry for a row which will be added to this index using
+   * {@link #addSortedEntries}.  All constraints except uniqueness are checked
+   * before this method returns (see {@link #checkUniqueEntries}).
+   *
+   * @param row Row to add
+   * @param rowId rowId of the row to be added
+   *
+   * @return the new entry, or {@code null} if the row is not added to this
+   *         index
+   */
+  Entry createAddEntry(Object[] row, RowIdImpl rowId)
+    throws IOException
+  {
+    if(!shouldAddRow(row, countNullValues(row))) {
+      return null;
+    }
+    return new Entry(createEntryBytes(row), rowId);
+  }
+
+  /**
+   * @return {@code true} if a row with the given number of {@code null}
+   *         values should be added to this index, {@code false} if it should
+   *         be ignored
+   * @throws ConstraintViolationException if the row has {@code null} values
+   *         which are not allowed by this index
+   */
+  private boolean shouldAddRow(Object[] row, int nullCount)
+    throws IOException
+  {
+    boolean isNullEntry = (nullCount == _columns.size());
+    if(shouldIgnoreNulls() && isNullEntry) {
+      return false;
+    }
     if((nullCount > 0) && (isBackingPrimaryKey() || isRequired())) {
       throw new ConstraintViolationException(withErrorContext(
           "Null value found in row " + Arrays.asList(row) +
           " for primary key or required index"));
     }
-    
+    return true;
+  }
+
+  /**
+   * Checks that adding the given (sorted) entries to this index would not
+   * violate the uniqueness constraint of this index (if any).  The existing
+   * entries are merged with the new entries, but nothing is changed.
+   * <p>
+   * Forces index initialization.
+   *
+   * @throws ConstraintViolationException if a new entry duplicates an
+   *         existing entry or another new entry
+   */
+  void checkUniqueEntries(IndexEntrySorter.EntrySource newEntries)
+    throws IOException
+  {
+    if(!isUnique()) {
+      // nothing to check
+      return;
+    }
+
     // make sure we've parsed the entries
     initialize();
 
-    return prepareAddEntry(new Entry(createEntryBytes(row), rowId), isNullEntry,
-                           row, change);
+    // null entries never violate the uniqueness constraint (see isUnique())
+    byte[] nullEntryBytes = createEntryBytes(
+        new Object[getTable().getColumnCount()]);
+
+    EntryCursor oldCursor = cursor();
+    Entry endEntry = oldCursor.getLastEntry();
+    Entry oldEntry = nextEntry(oldCursor, endEntry);
+    Entry newEntry = newEntries.next();
+    Entry prevEntry = null;
+    boolean prevIsNew = false;
+
+    // any duplicate involving a new entry will be adjacent to a new entry,
+    // so we can stop once the new entries are exhausted
+    while((newEntry != null) || (prevIsNew && (oldEntry != null))) {
+
+      boolean isNew = ((oldEntry == null) ||
+                       ((newEntry != null) &&
+                        (newEntry.compareTo(oldEntry) < 0)));
+      Entry entry = null;
+      if(isNew) {
+        entry = newEntry;
+        newEntry = newEntries.next();
+      } else {
+        entry = oldEntry;
+        oldEntry = nextEntry(oldCursor, endEntry);
+      }
+
+      if((isNew || prevIsNew) && (prevEntry != null) &&
+         entry.equalsEntryBytes(prevEntry) &&
+         (BYTE_CODE_COMPARATOR.compare(
+             entry.getEntryBytes(), nullEntryBytes) != 0)) {
+        RowIdImpl rowId = (isNew ? entry : prevEntry).getRowId();
+        throw new ConstraintViolationException(withErrorContext(
+            "New row " + getRowValues(rowId) +
+            " violates uniqueness constraint for index"));
+      }
+
+      prevEntry = entry;
+      prevIsNew = isNew;
+    }
+  }
+
+  /**
+   * Adds the given (sorted) entries to this index, re-writing all the pages
+   * of this index "bottom-up" (see {@link IndexPageBuilder}).  The existing
+   * entries are merged with the new entries and the previous (non-root)
+   * index pages are freed.  The uniqueness constraint is <i>not</i> checked,
+   * see {@link #checkUniqueEntries}.
+   * <p>
+   * Forces index initialization.
+   */
+  void addSortedEntries(IndexEntrySorter.EntrySource newEntries)
+    throws IOException
+  {
+    // make sure we've parsed the entries (and written any pending changes)
+    update();
+
+    // grab the current pages (which will be replaced)
+    List<Integer> oldPageNumbers = new ArrayList<Integer>();
+    UsageMap.PageCursor pageCursor = _ownedPages.cursor();
+    int pageNumber = 0;
+    while((pageNumber = pageCursor.getNextPage()) >= 0) {
+      if(pageNumber != getRootPageNumber()) {
+        oldPageNumbers.add(pageNumber);
+      }
+    }
+
+    EntryCursor oldCursor = cursor();
+    Entry endEntry = oldCursor.getLastEntry();
+    Entry oldEntry = nextEntry(oldCursor, endEntry);
+    Entry newEntry = newEntries.next();
+
+    IndexPageBuilder builder = new IndexPageBuilder(this);
+    int uniqueEntryCount = _uniqueEntryCount;
+    Entry prevEntry = null;
+    boolean groupHasOld = false;
+    boolean groupHasNew = false;
+    boolean success = false;
+    try {
+
+      while((oldEntry != null) || (newEntry != null)) {
+
+        boolean isNew = ((oldEntry == null) ||
+                         ((newEntry != null) &&
+                          (newEntry.compareTo(oldEntry) < 0)));
+        Entry entry = null;
+        if(isNew) {
+          entry = newEntry;
+          newEntry = newEntries.next();
+        } else {
+          entry = oldEntry;
+          oldEntry = nextEntry(oldCursor, endEntry);
+        }
+
+        // see prepareAddEntry() for notes about the unique entry count
+        if((prevEntry == null) || !entry.equalsEntryBytes(prevEntry)) {
+          if(groupHasNew && !groupHasOld) {
+            ++uniqueEntryCount;
+          }
+          groupHasOld = false;
+          groupHasNew = false;
+        }
+        if(isNew) {
+          groupHasNew = true;
+        } else {
+          groupHasOld = true;
+        }
+
+        builder.addEntry(entry);
+        prevEntry = entry;
+      }
+
+      if(groupHasNew && !groupHasOld) {
+        ++uniqueEntryCount;
+      }
+
+      builder.finish();
+      success = true;
+
+    } finally {
+      // discard the pages which are no longer used (the root page is only
+      // written on success)
+      List<Integer> unusedPageNumbers =
+        (success ? oldPageNumbers : builder.getPageNumbers());
+      for(Integer unusedPageNumber : unusedPageNumbers) {
+        getPageChannel().deallocatePage(unusedPageNumber);
+        removeOwnedPage(unusedPageNumber);
+      }
+      if(success) {
+        _uniqueEntryCount = uniqueEntryCount;
+      }
+
+      // the index pages have changed out from under the page cache
+      _pageCache.clear();
+      _pageCache.setRootPageNumber(getRootPageNumber());
+      ++_modCount;
+    }
   }
 
   /**
-   * Adds an entry to the correct index dataPage, maintaining the order.
+   * @return the values of the row with the given id (for error messages)
    */
+  private List<Object> getRowValues(RowIdImpl rowId) throws IOException
+  {
+    TableImpl table = getTable();
+    return new ArrayList<Object>(
+        table.getRow(table.createRowState(), rowId, null).values());
+  }
+
+  /**
+   * @return the next entry from the given cursor, or {@code null} if there
+   *         are no more entries
+   */
+  private static Entry nextEntry(EntryCursor cursor, Entry endEntry)
+    throws IOException
+  {
+    Entry entry = cursor.getNextEntry();
+    return (endEntry.equals(entry) ? null : entry);
+  }
+
   private PendingChange prepareAddEntry(Entry newEntry, boolean isNullEntry,
                                         Object[] row, AddRowPendingChange change)
     throws IOException
@@ -1120,7 +1339,7 @@ public class IndexData {
   /**
    * Write the given index page out to a buffer
    */
-  protected void writeDataPage(DataPage dataPage)
+  protected void writeDataPage(DataPageContents dataPage)
     throws IOException
   {
     if(dataPage.getCompressedEntrySize() > _maxPageEntrySize) {
@@ -1138,7 +1357,8 @@ public class IndexData {
   /**
    * Writes the data page info to the given buffer.
    */
-  protected static void writeDataPage(ByteBuffer buffer, DataPage dataPage,
+  protected static void writeDataPage(ByteBuffer buffer,
+                                      DataPageContents dataPage,
                                       int tdefPageNumber, JetFormat format)
     throws IOException
   {
@@ -1289,7 +1509,9 @@ public class IndexData {
     // combine valuePrefix and rest of entry from indexPage, then prep for
     // reading
     tmpEntryBuffer.put(valuePrefix);
-    tmpEntryBuffer.put(indexPage.array(), indexPage.position(), entryLen);
+    tmpEntryBuffer.put(PageChannel.narrowBuffer(
+                           indexPage, indexPage.position(),
+                           indexPage.position() + entryLen));
     tmpEntryBuffer.flip();
     
     return tmpEntryBuffer;
@@ -2001,7 +2223,7 @@ public class IndexData {
      * @param entryBytes encoded bytes for this index entry
      * @param rowId rowId in which the row is stored
      */
-    private Entry(byte[] entryBytes, RowIdImpl rowId)
+    Entry(byte[] entryBytes, RowIdImpl rowId)
     {
       this(entryBytes, rowId, determineEntryType(entryBytes, rowId));
     }
@@ -2656,34 +2878,23 @@ public class IndexData {
   }
 
   /**
-   * Object used to maintain state about an Index page.
+   * Read-only view of the contents of an Index page (everything needed to
+   * write the page).
    */
-  protected static abstract class DataPage {
+  protected static abstract class DataPageContents {
 
     public abstract int getPageNumber();
-    
+
     public abstract boolean isLeaf();
-    public abstract void setLeaf(boolean isLeaf);
 
     public abstract int getPrevPageNumber();
-    public abstract void setPrevPageNumber(int pageNumber);
     public abstract int getNextPageNumber();
-    public abstract void setNextPageNumber(int pageNumber);
     public abstract int getChildTailPageNumber();
-    public abstract void setChildTailPageNumber(int pageNumber);
-    
+
     public abstract int getTotalEntrySize();
-    public abstract void setTotalEntrySize(int totalSize);
     public abstract byte[] getEntryPrefix();
-    public abstract void setEntryPrefix(byte[] entryPrefix);
 
     public abstract List<Entry> getEntries();
-    public abstract void setEntries(List<Entry> entries);
-
-    public abstract void addEntry(int idx, Entry entry)
-      throws IOException;
-    public abstract Entry removeEntry(int idx)
-      throws IOException;
 
     public final boolean isEmpty() {
       return getEntries().isEmpty();
@@ -2696,6 +2907,28 @@ public class IndexData {
       return getTotalEntrySize() -
         (getEntryPrefix().length * (getEntries().size() - 1));
     }
+  }
+
+  /**
+   * Object used to maintain state about an Index page.
+   */
+  protected static abstract class DataPage extends DataPageContents {
+
+    public abstract void setLeaf(boolean isLeaf);
+
+    public abstract void setPrevPageNumber(int pageNumber);
+    public abstract void setNextPageNumber(int pageNumber);
+    public abstract void setChildTailPageNumber(int pageNumber);
+    
+    public abstract void setTotalEntrySize(int totalSize);
+    public abstract void setEntryPrefix(byte[] entryPrefix);
+
+    public abstract void setEntries(List<Entry> entries);
+
+    public abstract void addEntry(int idx, Entry entry)
+      throws IOException;
+    public abstract Entry removeEntry(int idx)
+      throws IOException;
 
     public final int findEntry(Entry entry) {
       return Collections.binarySearch(getEntries(), entry);
@@ -0,0 +1,360 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.healthmarketscience.jackcess.impl.IndexData.Entry;
+
+/**
+ * Sorts index entries which are added in any order, for building index pages
+ * bottom-up (see {@link IndexData#addSortedEntries}).  Entries are collected
+ * in memory until the configured amount of memory is used, at which point
+ * the entries are sorted and written to a temporary file as a "run".  The
+ * final sorted entries are produced by merging all the runs.  Only a limited
+ * number of runs (by default {@link #DEFAULT_MAX_MERGE_RUNS}) are merged at
+ * once (limiting the number of open files), so if there are more runs,
+ * groups of runs are first merged into larger runs until few enough
+ * remain.
+ * <p/>
+ * The temporary files are created in the configured directory (the default
+ * temporary-file directory if {@code null}) and are deleted by {@link
+ * #close}.
+ *
+ * @author James Ahlborn
+ */
+final class IndexEntrySorter
+{
+  /** default max amount of memory used for entries before a run is written
+      to disk */
+  static final int DEFAULT_MAX_RUN_BYTES = 16 * 1024 * 1024;
+  /** default max number of runs which are merged at once */
+  static final int DEFAULT_MAX_MERGE_RUNS = 64;
+
+  /** approximate amount of memory used by an entry (in addition to the
+      entry bytes) */
+  private static final int ENTRY_OVERHEAD = 64;
+  /** size of the buffers used for reading/writing runs */
+  private static final int RUN_BUFFER_SIZE = 32 * 1024;
+
+  private final int _maxRunBytes;
+  /** directory for the temporary files, {@code null} for the default */
+  private final File _tempDir;
+  private final int _maxMergeRuns;
+  /** entries in the current (in memory) run */
+  private List<Entry> _entries = new ArrayList<Entry>();
+  /** approximate memory used by the current run */
+  private int _runBytes;
+  /** runs already written to disk */
+  private final List<File> _runFiles = new ArrayList<File>();
+  /** readers of the runs being merged */
+  private final List<RunReader> _readers = new ArrayList<RunReader>();
+  private int _entryCount;
+
+  IndexEntrySorter(int maxRunBytes, File tempDir) {
+    this(maxRunBytes, tempDir, DEFAULT_MAX_MERGE_RUNS);
+  }
+
+  IndexEntrySorter(int maxRunBytes, File tempDir, int maxMergeRuns) {
+    _maxRunBytes = maxRunBytes;
+    _tempDir = tempDir;
+    _maxMergeRuns = Math.max(maxMergeRuns, 2);
+  }
+
+  /**
+   * @return the number of entries added to this sorter
+   */
+  public int getEntryCount() {
+    return _entryCount;
+  }
+
+  /**
+   * Adds the given entry, possibly writing the current run to disk.
+   */
+  public void add(Entry entry) throws IOException {
+    _entries.add(entry);
+    ++_entryCount;
+    _runBytes += entry.getEntryBytes().length + ENTRY_OVERHEAD;
+    if(_runBytes >= _maxRunBytes) {
+      writeRun();
+    }
+  }
+
+  /**
+   * Returns a source of all the added entries in sorted order.  No more
+   * entries may be added after this method is called.  This method may be
+   * called multiple times to iterate the entries again (which invalidates
+   * any sources previously returned).
+   */
+  public EntrySource sortedEntries() throws IOException {
+    closeReaders();
+    Collections.sort(_entries);
+
+    if(_runFiles.isEmpty()) {
+      // everything fit in memory
+      return new ListSource(_entries);
+    }
+
+    // leave room for the in memory run in the final merge
+    mergeRuns(_maxMergeRuns - 1);
+
+    PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>();
+    if(!_entries.isEmpty()) {
+      addReader(queue, new RunReader(new ListSource(_entries)));
+    }
+    for(File runFile : _runFiles) {
+      addReader(queue, new RunReader(new FileSource(runFile)));
+    }
+    return new MergeSource(queue);
+  }
+
+  /**
+   * @return the number of runs currently written to disk
+   */
+  int getRunCount() {
+    return _runFiles.size();
+  }
+
+  /**
+   * Deletes any temporary files used by this sorter.
+   */
+  public void close() {
+    closeReaders();
+    deleteRunFiles(_runFiles);
+    _entries = Collections.emptyList();
+  }
+
+  private void closeReaders() {
+    for(RunReader reader : _readers) {
+      reader.close();
+    }
+    _readers.clear();
+  }
+
+  private void addReader(PriorityQueue<RunReader> queue, RunReader reader)
+    throws IOException
+  {
+    _readers.add(reader);
+    if(reader.advance()) {
+      queue.add(reader);
+    }
+  }
+
+  /**
+   * Sorts the current run and writes it to a temporary file.
+   */
+  private void writeRun() throws IOException {
+    Collections.sort(_entries);
+    writeRunFile(new ListSource(_entries));
+    _entries.clear();
+    _runBytes = 0;
+  }
+
+  /**
+   * Merges groups of the runs written to disk into larger runs until there
+   * are at most the given number of runs.  The oldest runs are merged first
+   * and the merged runs are added at the end, so each entry is only re-written
+   * once per "level" of merging.
+   */
+  private void mergeRuns(int maxRuns) throws IOException {
+    while(_runFiles.size() > maxRuns) {
+      List<File> mergeFiles = _runFiles.subList(
+          0, Math.min(_maxMergeRuns, _runFiles.size()));
+      List<RunReader> readers = new ArrayList<RunReader>();
+      try {
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>();
+        for(File runFile : mergeFiles) {
+          RunReader reader = new RunReader(new FileSource(runFile));
+          readers.add(reader);
+          if(reader.advance()) {
+            queue.add(reader);
+          }
+        }
+        writeRunFile(new MergeSource(queue));
+      } finally {
+        for(RunReader reader : readers) {
+          reader.close();
+        }
+      }
+      // the new run was added at the end, so the merged runs are still at
+      // the beginning
+      deleteRunFiles(_runFiles.subList(0, readers.size()));
+    }
+  }
+
+  /**
+   * Writes the given sorted entries to a new temporary run file.
+   */
+  private void writeRunFile(EntrySource entries) throws IOException {
+    File runFile = File.createTempFile("jackcess_idx_", ".tmp", _tempDir);
+    _runFiles.add(runFile);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(runFile), RUN_BUFFER_SIZE));
+    try {
+      Entry entry = null;
+      while((entry = entries.next()) != null) {
+        byte[] entryBytes = entry.getEntryBytes();
+        out.writeInt(entryBytes.length);
+        out.write(entryBytes);
+        out.writeInt(entry.getRowId().getPageNumber());
+        out.writeByte(entry.getRowId().getRowNumber());
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Deletes the given run files (and removes them from the given list).
+   */
+  private static void deleteRunFiles(List<File> runFiles) {
+    for(File runFile : runFiles) {
+      if(!runFile.delete()) {
+        runFile.deleteOnExit();
+      }
+    }
+    runFiles.clear();
+  }
+
+  /**
+   * A source of sorted entries.
+   */
+  interface EntrySource
+  {
+    /**
+     * @return the next entry, or {@code null} if there are no more entries
+     */
+    public Entry next() throws IOException;
+  }
+
+  /**
+   * EntrySource for a sorted list of entries.
+   */
+  private static final class ListSource implements EntrySource
+  {
+    private final List<Entry> _entries;
+    private int _pos;
+
+    private ListSource(List<Entry> entries) {
+      _entries = entries;
+    }
+
+    public Entry next() {
+      return ((_pos < _entries.size()) ? _entries.get(_pos++) : null);
+    }
+  }
+
+  /**
+   * EntrySource for a run written to a temporary file.
+   */
+  private static final class FileSource implements EntrySource
+  {
+    private final DataInputStream _in;
+
+    private FileSource(File runFile) throws IOException {
+      _in = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(runFile), RUN_BUFFER_SIZE));
+    }
+
+    public Entry next() throws IOException {
+      int len = 0;
+      try {
+        len = _in.readInt();
+      } catch(EOFException e) {
+        // end of the run
+        return null;
+      }
+      byte[] entryBytes = new byte[len];
+      _in.readFully(entryBytes);
+      int pageNumber = _in.readInt();
+      int rowNumber = _in.readUnsignedByte();
+      return new Entry(entryBytes, new RowIdImpl(pageNumber, rowNumber));
+    }
+
+    private void close() {
+      try {
+        _in.close();
+      } catch(IOException ignored) {
+        // nothing we can do
+      }
+    }
+  }
+
+  /**
+   * Holds the current entry of a run being merged.
+   */
+  private static final class RunReader implements Comparable<RunReader>
+  {
+    private final EntrySource _source;
+    private Entry _cur;
+
+    private RunReader(EntrySource source) {
+      _source = source;
+    }
+
+    private boolean advance() throws IOException {
+      _cur = _source.next();
+      return (_cur != null);
+    }
+
+    public int compareTo(RunReader other) {
+      return _cur.compareTo(other._cur);
+    }
+
+    private void close() {
+      if(_source instanceof FileSource) {
+        ((FileSource)_source).close();
+      }
+    }
+  }
+
+  /**
+   * EntrySource which merges multiple sorted runs.
+   */
+  private static final class MergeSource implements EntrySource
+  {
+    private final PriorityQueue<RunReader> _queue;
+
+    private MergeSource(PriorityQueue<RunReader> queue) {
+      _queue = queue;
+    }
+
+    public Entry next() throws IOException {
+      RunReader reader = _queue.poll();
+      if(reader == null) {
+        return null;
+      }
+      Entry entry = reader._cur;
+      if(reader.advance()) {
+        _queue.add(reader);
+      }
+      return entry;
+    }
+  }
+}
@@ -0,0 +1,321 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.healthmarketscience.jackcess.impl.IndexData.*;
+
+/**
+ * Writes the pages of an index "bottom-up" from a sorted sequence of
+ * entries.  The leaf pages are filled and written one after another as the
+ * entries are added, then each level of node pages is written from the last
+ * entries of the pages in the level below, until a level fits on the root
+ * page.  The pages are filled up to {@link #FILL_PERCENT} of the available
+ * space (leaving some room for later additions).
+ * <p/>
+ * The resulting pages have the same structure as the pages maintained by
+ * the {@link IndexPageCache}: the leaf pages are all linked together, node
+ * pages are only linked to the other children of the same parent page, and
+ * the last child of a node page with multiple children is the "child tail"
+ * (which does not have an entry on the node page).
+ *
+ * @author James Ahlborn
+ */
+final class IndexPageBuilder
+{
+  /** percentage of the max page entry size used when filling pages */
+  static final int FILL_PERCENT = 90;
+
+  private final IndexData _indexData;
+  private final int _maxFillSize;
+  /** the current leaf page */
+  private PageEntries _leafPage = new PageEntries();
+  /** page number of the current leaf page (allocated once we know it is not
+      the root page) */
+  private int _leafPageNumber = INVALID_INDEX_PAGE_NUMBER;
+  private int _prevLeafPageNumber = INVALID_INDEX_PAGE_NUMBER;
+  /** node entries for the leaf pages which have been written */
+  private final List<Entry> _leafNodeEntries = new ArrayList<Entry>();
+  /** all the pages allocated by this builder */
+  private final List<Integer> _pageNumbers = new ArrayList<Integer>();
+
+  IndexPageBuilder(IndexData indexData) {
+    _indexData = indexData;
+    _maxFillSize = (indexData.getMaxPageEntrySize() * FILL_PERCENT) / 100;
+  }
+
+  /**
+   * Adds the next entry to the index.  Entries must be added in sorted
+   * order.
+   */
+  public void addEntry(Entry entry) throws IOException {
+    if(!_leafPage.isEmpty() && !_leafPage.fits(entry, _maxFillSize)) {
+      // current page is full, move to the next page
+      if(_leafPageNumber == INVALID_INDEX_PAGE_NUMBER) {
+        _leafPageNumber = allocatePage();
+      }
+      int nextPageNumber = allocatePage();
+      writeLeafPage(nextPageNumber);
+      _prevLeafPageNumber = _leafPageNumber;
+      _leafPageNumber = nextPageNumber;
+      _leafPage = new PageEntries();
+    }
+    _leafPage.add(entry);
+  }
+
+  /**
+   * Writes the remaining leaf page and all the node pages (including the
+   * root page).
+   */
+  public void finish() throws IOException {
+    if(_leafPageNumber == INVALID_INDEX_PAGE_NUMBER) {
+      // all the entries fit on the root page
+      writePage(_indexData.getRootPageNumber(), true,
+                INVALID_INDEX_PAGE_NUMBER, INVALID_INDEX_PAGE_NUMBER,
+                INVALID_INDEX_PAGE_NUMBER, _leafPage);
+      return;
+    }
+
+    writeLeafPage(INVALID_INDEX_PAGE_NUMBER);
+
+    List<List<Entry>> groups = groupChildren(_leafNodeEntries);
+    while(groups.size() > 1) {
+
+      // write another level of node pages
+      int[] pageNumbers = new int[groups.size()];
+      List<Entry> nodeEntries = new ArrayList<Entry>(groups.size());
+      for(int i = 0; i < groups.size(); ++i) {
+        pageNumbers[i] = allocatePage();
+        nodeEntries.add(getLast(groups.get(i)).asNodeEntry(pageNumbers[i]));
+      }
+
+      // node pages are only linked to the other children of the same parent,
+      // so we need to group the parents first
+      List<List<Entry>> parentGroups = groupChildren(nodeEntries);
+      int idx = 0;
+      for(List<Entry> parentGroup : parentGroups) {
+        int endIdx = idx + parentGroup.size();
+        for(int i = idx; i < endIdx; ++i) {
+          int prevPageNumber = ((i > idx) ? pageNumbers[i - 1] :
+                                INVALID_INDEX_PAGE_NUMBER);
+          int nextPageNumber = ((i < (endIdx - 1)) ? pageNumbers[i + 1] :
+                                INVALID_INDEX_PAGE_NUMBER);
+          writeNodePage(pageNumbers[i], prevPageNumber, nextPageNumber,
+                        groups.get(i));
+        }
+        idx = endIdx;
+      }
+
+      groups = parentGroups;
+    }
+
+    writeNodePage(_indexData.getRootPageNumber(), INVALID_INDEX_PAGE_NUMBER,
+                  INVALID_INDEX_PAGE_NUMBER, groups.get(0));
+  }
+
+  /**
+   * @return all the (non-root) pages allocated by this builder
+   */
+  public List<Integer> getPageNumbers() {
+    return _pageNumbers;
+  }
+
+  /**
+   * Writes the current leaf page with the given next page.
+   */
+  private void writeLeafPage(int nextPageNumber) throws IOException {
+    writePage(_leafPageNumber, true, _prevLeafPageNumber, nextPageNumber,
+              INVALID_INDEX_PAGE_NUMBER, _leafPage);
+    _leafNodeEntries.add(_leafPage.getLast().asNodeEntry(_leafPageNumber));
+  }
+
+  /**
+   * Writes a node page for the given child entries.  If there are multiple
+   * children, the last child becomes the child tail.
+   */
+  private void writeNodePage(int pageNumber, int prevPageNumber,
+                             int nextPageNumber, List<Entry> children)
+    throws IOException
+  {
+    int childTailPageNumber = INVALID_INDEX_PAGE_NUMBER;
+    int numEntries = children.size();
+    if(numEntries > 1) {
+      --numEntries;
+      childTailPageNumber = getLast(children).getSubPageNumber();
+    }
+
+    PageEntries entries = new PageEntries();
+    for(Entry child : children.subList(0, numEntries)) {
+      entries.add(child);
+    }
+    writePage(pageNumber, false, prevPageNumber, nextPageNumber,
+              childTailPageNumber, entries);
+  }
+
+  /**
+   * Groups the given child entries into node pages.
+   */
+  private List<List<Entry>> groupChildren(List<Entry> children) {
+    List<List<Entry>> groups = new ArrayList<List<Entry>>();
+    PageEntries curPage = new PageEntries();
+    int start = 0;
+    for(int i = 0; i < children.size(); ++i) {
+      Entry child = children.get(i);
+      if(!curPage.isEmpty() && !curPage.fits(child, _maxFillSize)) {
+        groups.add(children.subList(start, i));
+        curPage = new PageEntries();
+        start = i;
+      }
+      curPage.add(child);
+    }
+    groups.add(children.subList(start, children.size()));
+    return groups;
+  }
+
+  private void writePage(int pageNumber, boolean isLeaf, int prevPageNumber,
+                         int nextPageNumber, int childTailPageNumber,
+                         PageEntries entries)
+    throws IOException
+  {
+    _indexData.writeDataPage(new BuilderPage(
+        pageNumber, isLeaf, prevPageNumber, nextPageNumber,
+        childTailPageNumber, entries));
+  }
+
+  private int allocatePage() throws IOException {
+    int pageNumber = _indexData.getPageChannel().allocateNewPage();
+    _indexData.addOwnedPage(pageNumber);
+    _pageNumbers.add(pageNumber);
+    return pageNumber;
+  }
+
+  private static Entry getLast(List<Entry> entries) {
+    return entries.get(entries.size() - 1);
+  }
+
+  /**
+   * The entries for a page being built.
+   */
+  private static final class PageEntries
+  {
+    private final List<Entry> _entries = new ArrayList<Entry>();
+    private int _totalEntrySize;
+
+    private boolean isEmpty() {
+      return _entries.isEmpty();
+    }
+
+    private Entry getLast() {
+      return IndexPageBuilder.getLast(_entries);
+    }
+
+    private void add(Entry entry) {
+      _entries.add(entry);
+      _totalEntrySize += entry.size();
+    }
+
+    /**
+     * @return {@code true} if the given entry (which sorts after all the
+     *         current entries) fits on this page, {@code false} otherwise
+     */
+    private boolean fits(Entry entry, int maxSize) {
+      // the entries are sorted, so the common prefix of the first and last
+      // entries is shared by all the entries
+      int prefixLen = commonPrefixLength(_entries.get(0), entry);
+      int size = (_totalEntrySize + entry.size()) -
+        (prefixLen * _entries.size());
+      return (size <= maxSize);
+    }
+
+    private byte[] getPrefix() {
+      if(_entries.isEmpty()) {
+        return EMPTY_PREFIX;
+      }
+      byte[] firstBytes = _entries.get(0).getEntryBytes();
+      int prefixLen = commonPrefixLength(_entries.get(0), getLast());
+      return ((prefixLen > 0) ? ByteUtil.copyOf(firstBytes, prefixLen) :
+              EMPTY_PREFIX);
+    }
+
+    private static int commonPrefixLength(Entry e1, Entry e2) {
+      byte[] b1 = e1.getEntryBytes();
+      byte[] b2 = e2.getEntryBytes();
+      int maxLen = Math.min(b1.length, b2.length);
+      int len = 0;
+      while((len < maxLen) && (b1[len] == b2[len])) {
+        ++len;
+      }
+      return len;
+    }
+  }
+
+  /**
+   * Immutable contents of a page being built.
+   */
+  private static final class BuilderPage extends DataPageContents
+  {
+    private final int _pageNumber;
+    private final boolean _leaf;
+    private final int _prevPageNumber;
+    private final int _nextPageNumber;
+    private final int _childTailPageNumber;
+    private final int _totalEntrySize;
+    private final byte[] _entryPrefix;
+    private final List<Entry> _entries;
+
+    private BuilderPage(int pageNumber, boolean isLeaf, int prevPageNumber,
+                        int nextPageNumber, int childTailPageNumber,
+                        PageEntries entries) {
+      _pageNumber = pageNumber;
+      _leaf = isLeaf;
+      _prevPageNumber = prevPageNumber;
+      _nextPageNumber = nextPageNumber;
+      _childTailPageNumber = childTailPageNumber;
+      _totalEntrySize = entries._totalEntrySize;
+      _entryPrefix = entries.getPrefix();
+      _entries = Collections.unmodifiableList(entries._entries);
+    }
+
+    @Override
+    public int getPageNumber() { return _pageNumber; }
+
+    @Override
+    public boolean isLeaf() { return _leaf; }
+
+    @Override
+    public int getPrevPageNumber() { return _prevPageNumber; }
+
+    @Override
+    public int getNextPageNumber() { return _nextPageNumber; }
+
+    @Override
+    public int getChildTailPageNumber() { return _childTailPageNumber; }
+
+    @Override
+    public int getTotalEntrySize() { return _totalEntrySize; }
+
+    @Override
+    public byte[] getEntryPrefix() { return _entryPrefix; }
+
+    @Override
+    public List<Entry> getEntries() { return _entries; }
+  }
+}
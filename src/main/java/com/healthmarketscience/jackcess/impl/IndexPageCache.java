@@ -91,6 +91,17 @@ public class IndexPageCache
     _rootPage.initParentPage(INVALID_INDEX_PAGE_NUMBER, false);
   }
   
+  /**
+   * Discards all cached pages (must be followed by a call to {@link
+   * #setRootPageNumber}).  Used when the index pages have been re-written
+   * outside of this cache.
+   */
+  public void clear() {
+    _dataPages.clear();
+    _modifiedPages.clear();
+    _rootPage = null;
+  }
+
   /**
    * Writes any outstanding changes for this index to the file.
    */
@@ -245,8 +256,9 @@ public class IndexPageCache
   private void deleteDataPage(CacheDataPage cacheDataPage)
     throws IOException
   {
-    // free this database page
+    // free this database page (which may be re-used by a later allocation)
     getPageChannel().deallocatePage(cacheDataPage._main._pageNumber);
+    _indexData.removeOwnedPage(cacheDataPage._main._pageNumber);
 
     // discard from our cache
     _dataPages.remove(cacheDataPage._main._pageNumber);
@@ -0,0 +1,252 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.RuntimeIOException;
+import com.healthmarketscience.jackcess.complex.ComplexValueForeignKey;
+import com.healthmarketscience.jackcess.impl.TableImpl.RowState;
+import com.healthmarketscience.jackcess.util.OleBlob;
+
+/**
+ * A read-only row of data which decodes each column value from the
+ * underlying row data only when the value is first accessed.  This avoids
+ * the cost of decoding values which are never used, which can be significant
+ * for wide tables.
+ * <p/>
+ * A lazy row reads from the row state of the cursor which created it, and is
+ * therefore only usable until that cursor moves to another row (or the table
+ * is modified).  Values which were already decoded remain available after
+ * that point, but accessing any other value will throw an {@link
+ * IllegalStateException}.  Use {@link #copy} to get a detached (and mutable)
+ * copy of the row which remains valid indefinitely.
+ * <p/>
+ * Note that the {@link #equals} and {@link #hashCode} methods work on the row
+ * contents <i>only</i> (i.e. they ignore the id), and will decode all the
+ * values in the row.
+ *
+ * @author James Ahlborn
+ * @usage _advanced_class_
+ */
+public class LazyRowImpl extends AbstractMap<String,Object> implements Row
+{
+  /** marker for values which have not yet been decoded */
+  private static final Object NOT_DECODED = new Object();
+
+  private final RowState _rowState;
+  private final RowIdImpl _id;
+  private final int _modCount;
+  private final ColumnImpl[] _columns;
+  private final Object[] _values;
+  private Set<Map.Entry<String,Object>> _entrySet;
+
+  LazyRowImpl(RowState rowState, RowIdImpl id, ColumnImpl[] columns) {
+    _rowState = rowState;
+    _id = id;
+    _modCount = rowState.getTable().getModCount();
+    _columns = columns;
+    _values = new Object[columns.length];
+    Arrays.fill(_values, NOT_DECODED);
+  }
+
+  public RowIdImpl getId() {
+    return _id;
+  }
+
+  /**
+   * @return {@code true} if the values of this row which have not yet been
+   *         accessed may still be decoded, {@code false} if the row state
+   *         has moved to another row (or the table has been modified).
+   */
+  public boolean isCurrent() {
+    return((_rowState.getTable().getModCount() == _modCount) &&
+           _id.equals(_rowState.getHeaderRowId()));
+  }
+
+  /**
+   * @return {@code true} if the value for the column with the given name has
+   *         been decoded, {@code false} otherwise
+   */
+  public boolean isDecoded(String name) {
+    int idx = indexOf(name);
+    return((idx >= 0) && (_values[idx] != NOT_DECODED));
+  }
+
+  /**
+   * Returns a detached copy of this row with all values decoded.  The
+   * returned row is independent of the underlying row state.
+   *
+   * @throws IllegalStateException if this row is no longer current and some
+   *         values have not been decoded
+   */
+  public RowImpl copy() {
+    RowImpl row = new RowImpl(_id, _columns.length);
+    for(int i = 0; i < _columns.length; ++i) {
+      _columns[i].setRowValue(row, getValue(i));
+    }
+    return row;
+  }
+
+  @Override
+  public int size() {
+    return _columns.length;
+  }
+
+  @Override
+  public boolean containsKey(Object name) {
+    return(indexOf(name) >= 0);
+  }
+
+  @Override
+  public Object get(Object name) {
+    int idx = indexOf(name);
+    return((idx >= 0) ? getValue(idx) : null);
+  }
+
+  @Override
+  public Set<Map.Entry<String,Object>> entrySet() {
+    if(_entrySet == null) {
+      _entrySet = new EntrySet();
+    }
+    return _entrySet;
+  }
+
+  public String getString(String name) {
+    return (String)LongValueHandle.toValue(get(name));
+  }
+
+  public Boolean getBoolean(String name) {
+    return (Boolean)get(name);
+  }
+
+  public Byte getByte(String name) {
+    return (Byte)get(name);
+  }
+
+  public Short getShort(String name) {
+    return (Short)get(name);
+  }
+
+  public Integer getInt(String name) {
+    return (Integer)get(name);
+  }
+
+  public BigDecimal getBigDecimal(String name) {
+    return (BigDecimal)get(name);
+  }
+
+  public Float getFloat(String name) {
+    return (Float)get(name);
+  }
+
+  public Double getDouble(String name) {
+    return (Double)get(name);
+  }
+
+  public Date getDate(String name) {
+    return (Date)get(name);
+  }
+
+  public byte[] getBytes(String name) {
+    return (byte[])LongValueHandle.toValue(get(name));
+  }
+
+  public ComplexValueForeignKey getForeignKey(String name) {
+    return (ComplexValueForeignKey)get(name);
+  }
+
+  public OleBlob getBlob(String name) throws IOException {
+    byte[] bytes = getBytes(name);
+    return ((bytes != null) ? OleBlob.Builder.fromInternalData(bytes) : null);
+  }
+
+  private int indexOf(Object name) {
+    for(int i = 0; i < _columns.length; ++i) {
+      if(_columns[i].getName().equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private Object getValue(int idx) {
+    Object value = _values[idx];
+    if(value == NOT_DECODED) {
+      if(!isCurrent()) {
+        throw new IllegalStateException(
+            _rowState.getTable().withErrorContext(
+                "Row " + _id + " is no longer current, value for column " +
+                _columns[idx].getName() + " cannot be decoded"));
+      }
+      try {
+        value = _rowState.getTable().getRowValue(_rowState, _id,
+                                                 _columns[idx]);
+      } catch(IOException e) {
+        throw new RuntimeIOException(e);
+      }
+      _values[idx] = value;
+    }
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return CustomToStringStyle.valueBuilder("LazyRow[" + _id + "]")
+      .append(null, this)
+      .toString();
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String,Object>>
+  {
+    @Override
+    public int size() {
+      return _columns.length;
+    }
+
+    @Override
+    public Iterator<Map.Entry<String,Object>> iterator() {
+      return new Iterator<Map.Entry<String,Object>>() {
+        private int _idx;
+        public boolean hasNext() {
+          return(_idx < _columns.length);
+        }
+        public Map.Entry<String,Object> next() {
+          if(!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          int idx = _idx++;
+          return new AbstractMap.SimpleImmutableEntry<String,Object>(
+              _columns[idx].getName(), getValue(idx));
+        }
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+  }
+}
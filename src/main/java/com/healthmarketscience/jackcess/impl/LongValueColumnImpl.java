@@ -16,9 +16,23 @@ limitations under the License.
 
 package com.healthmarketscience.jackcess.impl;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
 import java.util.Collection;
 
 import com.healthmarketscience.jackcess.InvalidValueException;
@@ -51,6 +65,8 @@ class LongValueColumnImpl extends ColumnImpl
    * first 2 bits are type flags).
    */
   private static final int LONG_VALUE_TYPE_MASK = 0xC0000000;
+  /** charset for which compressed text can be decoded incrementally */
+  private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
 
 
   /** Holds additional info for writing long values */
@@ -107,6 +123,24 @@ class LongValueColumnImpl extends ColumnImpl
     }
   }
 
+  /**
+   * @param data the raw column data from the row
+   * @return a handle which reads the value of the column when it is needed,
+   *         or {@code null} if the value is empty
+   */
+  LongValueHandle readHandle(byte[] data) {
+    return ((data.length > 0) ? LongValueHandle.create(this, data) : null);
+  }
+
+  /**
+   * @param lvalDefinition Column value that points to an LVAL record
+   * @return the length of the LVAL data
+   */
+  int getLongValueLength(byte[] lvalDefinition) {
+    return (PageChannel.wrap(lvalDefinition).getInt() &
+            (~LONG_VALUE_TYPE_MASK));
+  }
+
   @Override
   protected ByteBuffer writeRealData(Object obj, int remainingRowLength,
                                      ByteOrder order)
@@ -115,8 +149,28 @@ class LongValueColumnImpl extends ColumnImpl
     switch(getType()) {
     case OLE:
       // should already be "encoded"
+      if(obj instanceof LongValueHandle) {
+        return writeLongValue(((LongValueHandle)obj).getStream(),
+                              remainingRowLength);
+      }
+      if(obj instanceof InputStream) {
+        return writeLongValue((InputStream)obj, remainingRowLength);
+      }
+      if(obj instanceof Blob) {
+        return writeLongValue(toInputStream((Blob)obj), remainingRowLength);
+      }
       break;
     case MEMO:
+      if((obj instanceof LongValueHandle.Text) &&
+         !((LongValueHandle)obj).isLoaded()) {
+        return writeLongText(((LongValueHandle.Text)obj).getReader(),
+                             remainingRowLength);
+      }
+      if((obj instanceof Reader) || (obj instanceof Clob)) {
+        Reader reader = ((obj instanceof Reader) ? (Reader)obj :
+                         toReader((Clob)obj));
+        return writeLongText(reader, remainingRowLength);
+      }
       obj = encodeTextValue(obj, 0, getMaxLengthInUnits(), false).array();
       break;
     default:
@@ -197,30 +251,11 @@ class LongValueColumnImpl extends ColumnImpl
 
       case LONG_VALUE_TYPE_OTHER_PAGES:
 
-        ByteBuffer rtnBuf = ByteBuffer.wrap(rtn);
-        int remainingLen = length;
-        while(remainingLen > 0) {
-          lvalPage.clear();
-          getPageChannel().readPage(lvalPage, pageNum);
-
-          short rowStart = TableImpl.findRowStart(lvalPage, rowNum, getFormat());
-          short rowEnd = TableImpl.findRowEnd(lvalPage, rowNum, getFormat());
-
-          // read next page information
-          lvalPage.position(rowStart);
-          rowNum = ByteUtil.getUnsignedByte(lvalPage);
-          pageNum = ByteUtil.get3ByteInt(lvalPage);
-
-          // update rowEnd and remainingLen based on chunkLength
-          int chunkLength = (rowEnd - rowStart) - 4;
-          if(chunkLength > remainingLen) {
-            rowEnd = (short)(rowEnd - (chunkLength - remainingLen));
-            chunkLength = remainingLen;
-          }
-          remainingLen -= chunkLength;
-
-          lvalPage.limit(rowEnd);
-          rtnBuf.put(lvalPage);
+        InputStream lvalIn = new LongValueInputStream(
+            lvalPage, rowNum, pageNum, length);
+        int pos = 0;
+        while(pos < length) {
+          pos += lvalIn.read(rtn, pos, length - pos);
         }
 
         break;
@@ -234,6 +269,70 @@ class LongValueColumnImpl extends ColumnImpl
     return rtn;
   }
 
+  /**
+   * @param lvalDefinition Column value that points to an LVAL record
+   * @return a stream of the LVAL data, which reads values stored on multiple
+   *         other pages lazily, one page at a time
+   */
+  InputStream openLongValueStream(byte[] lvalDefinition)
+    throws IOException
+  {
+    ByteBuffer def = PageChannel.wrap(lvalDefinition);
+    int lengthWithFlags = def.getInt();
+    int length = lengthWithFlags & (~LONG_VALUE_TYPE_MASK);
+    byte type = (byte)((lengthWithFlags & LONG_VALUE_TYPE_MASK) >>> 24);
+
+    if((type != LONG_VALUE_TYPE_OTHER_PAGES) ||
+       (lvalDefinition.length != getFormat().SIZE_LONG_VALUE_DEF)) {
+      // value is at most one page, just read it
+      return new ByteArrayInputStream(readLongValue(lvalDefinition));
+    }
+
+    int rowNum = ByteUtil.getUnsignedByte(def);
+    int pageNum = ByteUtil.get3ByteInt(def, def.position());
+    return new LongValueInputStream(getPageChannel().createPageBuffer(),
+                                    rowNum, pageNum, length);
+  }
+
+  /**
+   * @param lvalDefinition Column value that points to an LVAL record
+   * @return a reader of the LVAL text, which reads values stored on multiple
+   *         other pages lazily, one page at a time
+   */
+  Reader openLongTextReader(byte[] lvalDefinition)
+    throws IOException
+  {
+    Charset charset = getCharset();
+    PushbackInputStream in = new PushbackInputStream(
+        openLongValueStream(lvalDefinition), TEXT_COMPRESSION_HEADER.length);
+
+    // see if the data is compressed
+    byte[] header = new byte[TEXT_COMPRESSION_HEADER.length];
+    int headerLen = 0;
+    while(headerLen < header.length) {
+      int len = in.read(header, headerLen, header.length - headerLen);
+      if(len < 0) {
+        break;
+      }
+      headerLen += len;
+    }
+    boolean isCompressed = ((headerLen == header.length) &&
+                            (header[0] == TEXT_COMPRESSION_HEADER[0]) &&
+                            (header[1] == TEXT_COMPRESSION_HEADER[1]));
+
+    if(!isCompressed) {
+      in.unread(header, 0, headerLen);
+      return new InputStreamReader(in, charset);
+    }
+
+    if(!UTF_16LE.equals(charset)) {
+      // unexpected, just decode the whole value
+      return new StringReader(decodeTextValue(readLongValue(lvalDefinition)));
+    }
+
+    return new CompressedTextReader(in);
+  }
+
   /**
    * @param lvalDefinition Column value that points to an LVAL record
    * @return The LVAL data
@@ -268,6 +367,11 @@ class LongValueColumnImpl extends ColumnImpl
               getType().getMaxSize() + ", got " + value.length));
     }
 
+    if(value.length > getFormat().MAX_LONG_VALUE_ROW_SIZE) {
+      // write to multiple other pages
+      return writeLongValuePages(new ByteArrayInputStream(value), null, 0);
+    }
+
     // determine which type to write
     byte type = 0;
     int lvalDefLen = getFormat().SIZE_LONG_VALUE_DEF;
@@ -275,10 +379,8 @@ class LongValueColumnImpl extends ColumnImpl
        && (value.length <= getFormat().MAX_INLINE_LONG_VALUE_SIZE)) {
       type = LONG_VALUE_TYPE_THIS_PAGE;
       lvalDefLen += value.length;
-    } else if(value.length <= getFormat().MAX_LONG_VALUE_ROW_SIZE) {
-      type = LONG_VALUE_TYPE_OTHER_PAGE;
     } else {
-      type = LONG_VALUE_TYPE_OTHER_PAGES;
+      type = LONG_VALUE_TYPE_OTHER_PAGE;
     }
 
     ByteBuffer def = PageChannel.createBuffer(lvalDefLen);
@@ -308,62 +410,6 @@ class LongValueColumnImpl extends ColumnImpl
         getPageChannel().writePage(lvalPage, firstLvalPageNum);
         break;
 
-      case LONG_VALUE_TYPE_OTHER_PAGES:
-
-        ByteBuffer buffer = ByteBuffer.wrap(value);
-        int remainingLen = buffer.remaining();
-        buffer.limit(0);
-        lvalPage = _lvalBufferH.getLongValuePage(remainingLen);
-        firstLvalPageNum = _lvalBufferH.getPageNumber();
-        firstLvalRow = (byte)TableImpl.getRowsOnDataPage(lvalPage, getFormat());
-        int lvalPageNum = firstLvalPageNum;
-        ByteBuffer nextLvalPage = null;
-        int nextLvalPageNum = 0;
-        int nextLvalRowNum = 0;
-        while(remainingLen > 0) {
-          lvalPage.clear();
-
-          // figure out how much we will put in this page (we need 4 bytes for
-          // the next page pointer)
-          int chunkLength = Math.min(getFormat().MAX_LONG_VALUE_ROW_SIZE - 4,
-                                     remainingLen);
-
-          // figure out if we will need another page, and if so, allocate it
-          if(chunkLength < remainingLen) {
-            // force a new page to be allocated for the chunk after this
-            _lvalBufferH.clear();
-            nextLvalPage = _lvalBufferH.getLongValuePage(
-                (remainingLen - chunkLength) + 4);
-            nextLvalPageNum = _lvalBufferH.getPageNumber();
-            nextLvalRowNum = TableImpl.getRowsOnDataPage(nextLvalPage,
-                                                         getFormat());
-          } else {
-            nextLvalPage = null;
-            nextLvalPageNum = 0;
-            nextLvalRowNum = 0;
-          }
-
-          // add row to this page
-          TableImpl.addDataPageRow(lvalPage, chunkLength + 4, getFormat(), 0);
-
-          // write next page info
-          lvalPage.put((byte)nextLvalRowNum); // row number
-          ByteUtil.put3ByteInt(lvalPage, nextLvalPageNum); // page number
-
-          // write this page's chunk of data
-          buffer.limit(buffer.limit() + chunkLength);
-          lvalPage.put(buffer);
-          remainingLen -= chunkLength;
-
-          // write new page to database
-          getPageChannel().writePage(lvalPage, lvalPageNum);
-
-          // move to next page
-          lvalPage = nextLvalPage;
-          lvalPageNum = nextLvalPageNum;
-        }
-        break;
-
       default:
         throw new IOException(withErrorContext(
                 "Unrecognized long value type: " + type));
@@ -380,6 +426,194 @@ class LongValueColumnImpl extends ColumnImpl
     return def;
   }
 
+  /**
+   * Write an LVAL column into a ByteBuffer from the given stream.  Values
+   * which fit on a single page are written normally, larger values are
+   * written to the long value pages as they are read from the stream (using
+   * a buffer of a couple of pages), so the value is never completely loaded
+   * into memory.  The stream is read until the end, but not closed.
+   * @param in Value of the LVAL column
+   * @return A buffer containing the LVAL definition and (possibly) the column
+   *         value (unless written to other pages)
+   * @usage _advanced_method_
+   */
+  protected ByteBuffer writeLongValue(InputStream in, int remainingRowLength)
+    throws IOException
+  {
+    // read enough data to determine whether the value needs multiple pages
+    int maxRowSize = getFormat().MAX_LONG_VALUE_ROW_SIZE;
+    byte[] buf = new byte[maxRowSize * 2];
+    int bufLen = fillBuffer(in, buf, 0, maxRowSize + 1);
+    if(bufLen <= maxRowSize) {
+      return writeLongValue(ByteUtil.copyOf(buf, bufLen), remainingRowLength);
+    }
+    return writeLongValuePages(in, buf, bufLen);
+  }
+
+  /**
+   * Write a MEMO value into a ByteBuffer from the given reader.  Short text
+   * is encoded normally, longer text is encoded (uncompressed) as it is
+   * written.
+   * @see #writeLongValue(InputStream,int)
+   */
+  private ByteBuffer writeLongText(Reader reader, int remainingRowLength)
+    throws IOException
+  {
+    // only short text may be compressed, so read enough to determine whether
+    // that is possible
+    char[] cbuf = new char[getFormat().MAX_COMPRESSED_UNICODE_SIZE + 1];
+    int numChars = 0;
+    int len = 0;
+    while((numChars < cbuf.length) &&
+          ((len = reader.read(cbuf, numChars, cbuf.length - numChars)) >= 0)) {
+      numChars += len;
+    }
+    if(numChars < cbuf.length) {
+      byte[] value = encodeTextValue(
+          new String(cbuf, 0, numChars), 0, getMaxLengthInUnits(), false)
+        .array();
+      return writeLongValue(value, remainingRowLength);
+    }
+
+    return writeLongValue(
+        new TextEncodingInputStream(cbuf, reader, getCharset()),
+        remainingRowLength);
+  }
+
+  /**
+   * Writes the data from the given stream to a chain of long value pages.
+   * The data is read a page at a time into the given buffer (which may be
+   * {@code null}, or may already contain the given length of data).
+   * @return the LVAL definition for the value
+   */
+  private ByteBuffer writeLongValuePages(InputStream in, byte[] buf,
+                                         int bufLen)
+    throws IOException
+  {
+    // the buffer holds the data for this page and the next page (if any), so
+    // that we can allocate the next page appropriately
+    if(buf == null) {
+      buf = new byte[getFormat().MAX_LONG_VALUE_ROW_SIZE * 2];
+    }
+    bufLen = fillBuffer(in, buf, bufLen, buf.length);
+
+    long length = 0L;
+    ByteBuffer lvalPage = _lvalBufferH.getLongValuePage(bufLen);
+    int firstLvalPageNum = _lvalBufferH.getPageNumber();
+    byte firstLvalRow = (byte)TableImpl.getRowsOnDataPage(lvalPage, getFormat());
+    int lvalPageNum = firstLvalPageNum;
+    ByteBuffer nextLvalPage = null;
+    int nextLvalPageNum = 0;
+    int nextLvalRowNum = 0;
+    while(bufLen > 0) {
+      lvalPage.clear();
+
+      // figure out how much we will put in this page (we need 4 bytes for
+      // the next page pointer)
+      int chunkLength = Math.min(getFormat().MAX_LONG_VALUE_ROW_SIZE - 4,
+                                 bufLen);
+
+      // note, when streaming, the pages already written for a value which
+      // turns out to be too big are lost
+      length += chunkLength;
+      if(length > getType().getMaxSize()) {
+        throw new InvalidValueException(withErrorContext(
+                "value too big for column, max " +
+                getType().getMaxSize() + ", got more than " +
+                getType().getMaxSize()));
+      }
+
+      // figure out if we will need another page, and if so, allocate it
+      if(chunkLength < bufLen) {
+        // force a new page to be allocated for the chunk after this
+        _lvalBufferH.clear();
+        nextLvalPage = _lvalBufferH.getLongValuePage(
+            (bufLen - chunkLength) + 4);
+        nextLvalPageNum = _lvalBufferH.getPageNumber();
+        nextLvalRowNum = TableImpl.getRowsOnDataPage(nextLvalPage,
+                                                     getFormat());
+      } else {
+        nextLvalPage = null;
+        nextLvalPageNum = 0;
+        nextLvalRowNum = 0;
+      }
+
+      // add row to this page
+      TableImpl.addDataPageRow(lvalPage, chunkLength + 4, getFormat(), 0);
+
+      // write next page info
+      lvalPage.put((byte)nextLvalRowNum); // row number
+      ByteUtil.put3ByteInt(lvalPage, nextLvalPageNum); // page number
+
+      // write this page's chunk of data
+      lvalPage.put(buf, 0, chunkLength);
+
+      // write new page to database
+      getPageChannel().writePage(lvalPage, lvalPageNum);
+
+      if(nextLvalPage != null) {
+        // the buffer holder has already moved on to the next page, so this
+        // page's buffer is no longer in use and can be re-used
+        BufferPool pool = getPageChannel().getBufferPool();
+        if(pool != null) {
+          pool.release(lvalPage);
+        }
+      }
+
+      // move the remaining data to the front of the buffer and read more
+      bufLen -= chunkLength;
+      System.arraycopy(buf, chunkLength, buf, 0, bufLen);
+      bufLen = fillBuffer(in, buf, bufLen, buf.length);
+
+      // move to next page
+      lvalPage = nextLvalPage;
+      lvalPageNum = nextLvalPageNum;
+    }
+
+    ByteBuffer def = PageChannel.createBuffer(getFormat().SIZE_LONG_VALUE_DEF);
+    // take length and apply type to first byte
+    int lengthWithFlags = (int)length | (LONG_VALUE_TYPE_OTHER_PAGES << 24);
+    def.putInt(lengthWithFlags);
+    def.put(firstLvalRow);
+    ByteUtil.put3ByteInt(def, firstLvalPageNum);
+    def.putInt(0);  //Unknown
+    def.flip();
+    return def;
+  }
+
+  /**
+   * Reads from the given stream into the given buffer until it contains the
+   * given amount of data (or the end of the stream is reached).
+   * @return the new length of the data in the buffer
+   */
+  private static int fillBuffer(InputStream in, byte[] buf, int bufLen,
+                                int maxLen)
+    throws IOException
+  {
+    int len = 0;
+    while((bufLen < maxLen) &&
+          ((len = in.read(buf, bufLen, maxLen - bufLen)) >= 0)) {
+      bufLen += len;
+    }
+    return bufLen;
+  }
+
+  private static InputStream toInputStream(Blob blob) throws IOException {
+    try {
+      return blob.getBinaryStream();
+    } catch(SQLException e) {
+      throw (IOException)(new IOException(e.getMessage())).initCause(e);
+    }
+  }
+
+  private static Reader toReader(Clob clob) throws IOException {
+    try {
+      return clob.getCharacterStream();
+    } catch(SQLException e) {
+      throw (IOException)(new IOException(e.getMessage())).initCause(e);
+    }
+  }
+
   /**
    * Writes the header info for a long value page.
    */
@@ -534,4 +768,212 @@ class LongValueColumnImpl extends ColumnImpl
       pages.add(_freeSpacePages.getTablePageNumber());
     }
   }
+
+  /**
+   * InputStream which reads the data of an LVAL record stored on multiple
+   * other pages, reading the pages in the chain as the data is consumed.
+   */
+  private final class LongValueInputStream extends InputStream
+  {
+    /** the current page, positioned at the remaining data of the current
+        chunk */
+    private final ByteBuffer _lvalPage;
+    private int _rowNum;
+    private int _pageNum;
+    /** the length of the data not yet loaded from the page chain */
+    private int _remainingLen;
+
+    private LongValueInputStream(ByteBuffer lvalPage, int rowNum, int pageNum,
+                                 int length) {
+      _lvalPage = lvalPage;
+      _rowNum = rowNum;
+      _pageNum = pageNum;
+      _remainingLen = length;
+      _lvalPage.limit(0);
+    }
+
+    @Override
+    public int read() throws IOException {
+      if(!loadChunk()) {
+        return -1;
+      }
+      return ByteUtil.getUnsignedByte(_lvalPage);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if(len == 0) {
+        return 0;
+      }
+      if(!loadChunk()) {
+        return -1;
+      }
+      len = Math.min(len, _lvalPage.remaining());
+      _lvalPage.get(b, off, len);
+      return len;
+    }
+
+    @Override
+    public int available() {
+      return _lvalPage.remaining();
+    }
+
+    /**
+     * Loads the next chunk of data from the page chain if the current chunk
+     * is exhausted.
+     * @return {@code true} if data is available, {@code false} if there is no
+     *         more data
+     */
+    private boolean loadChunk() throws IOException {
+      if(_lvalPage.hasRemaining()) {
+        return true;
+      }
+      if(_remainingLen <= 0) {
+        return false;
+      }
+
+      _lvalPage.clear();
+      getPageChannel().readPage(_lvalPage, _pageNum);
+
+      short rowStart = TableImpl.findRowStart(_lvalPage, _rowNum, getFormat());
+      short rowEnd = TableImpl.findRowEnd(_lvalPage, _rowNum, getFormat());
+
+      // read next page information
+      _lvalPage.position(rowStart);
+      _rowNum = ByteUtil.getUnsignedByte(_lvalPage);
+      _pageNum = ByteUtil.get3ByteInt(_lvalPage);
+
+      // update rowEnd and remainingLen based on chunkLength
+      int chunkLength = (rowEnd - rowStart) - 4;
+      if(chunkLength > _remainingLen) {
+        rowEnd = (short)(rowEnd - (chunkLength - _remainingLen));
+        chunkLength = _remainingLen;
+      }
+      _remainingLen -= chunkLength;
+
+      _lvalPage.limit(rowEnd);
+      return _lvalPage.hasRemaining() || loadChunk();
+    }
+  }
+
+  /**
+   * Reader which incrementally decodes compressed unicode text (which
+   * switches back and forth between compressed single byte chars and
+   * uncompressed two byte chars using a 0x00 byte, starting in compressed
+   * mode).  See {@link ColumnImpl#decodeTextValue}.
+   */
+  private static final class CompressedTextReader extends Reader
+  {
+    private final InputStream _in;
+    private boolean _inCompressedMode = true;
+
+    private CompressedTextReader(InputStream in) {
+      _in = in;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int numChars = 0;
+      while(numChars < len) {
+        int b = _in.read();
+        if(b < 0) {
+          break;
+        }
+        if(b == 0) {
+          _inCompressedMode = !_inCompressedMode;
+          continue;
+        }
+        if(!_inCompressedMode) {
+          int b2 = _in.read();
+          if(b2 <= 0) {
+            // incomplete (or interrupted) char
+            cbuf[off + numChars++] = '\uFFFD';
+            if(b2 == 0) {
+              _inCompressedMode = !_inCompressedMode;
+            }
+            continue;
+          }
+          b |= (b2 << 8);
+        }
+        cbuf[off + numChars++] = (char)b;
+      }
+      return (((numChars == 0) && (len > 0)) ? -1 : numChars);
+    }
+
+    @Override
+    public void close() throws IOException {
+      _in.close();
+    }
+  }
+
+  /**
+   * InputStream which incrementally encodes the text from a reader (after
+   * the given initial text) using a charset.
+   */
+  private static final class TextEncodingInputStream extends InputStream
+  {
+    private final Reader _in;
+    private final CharsetEncoder _encoder;
+    private final CharBuffer _chars;
+    private final ByteBuffer _bytes = ByteBuffer.allocate(8 * 1024);
+    private boolean _eof;
+    private boolean _flushed;
+
+    private TextEncodingInputStream(char[] initChars, Reader in,
+                                    Charset charset) {
+      _in = in;
+      _encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      _chars = CharBuffer.allocate(Math.max(initChars.length, 4 * 1024));
+      _chars.put(initChars);
+      _chars.flip();
+      _bytes.limit(0);
+    }
+
+    @Override
+    public int read() throws IOException {
+      if(!_bytes.hasRemaining() && !fill()) {
+        return -1;
+      }
+      return ByteUtil.getUnsignedByte(_bytes);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if(len == 0) {
+        return 0;
+      }
+      if(!_bytes.hasRemaining() && !fill()) {
+        return -1;
+      }
+      len = Math.min(len, _bytes.remaining());
+      _bytes.get(b, off, len);
+      return len;
+    }
+
+    /**
+     * Encodes more text into the byte buffer.
+     * @return {@code true} if more data is available, {@code false} if all
+     *         the text has been encoded
+     */
+    private boolean fill() throws IOException {
+      _bytes.clear();
+      while((_bytes.position() == 0) && !_flushed) {
+        if(!_eof) {
+          _chars.compact();
+          if(_in.read(_chars) < 0) {
+            _eof = true;
+          }
+          _chars.flip();
+        }
+        CoderResult result = _encoder.encode(_chars, _bytes, _eof);
+        if(_eof && result.isUnderflow()) {
+          _flushed = _encoder.flush(_bytes).isUnderflow();
+        }
+      }
+      _bytes.flip();
+      return _bytes.hasRemaining();
+    }
+  }
 }
@@ -0,0 +1,208 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.RuntimeIOException;
+
+/**
+ * A handle to the value of a long value (MEMO or OLE) column which is read
+ * from the database only when it is first needed.  A handle only holds the
+ * long value definition from the row data, the actual value (which may be
+ * stored on many other pages) is read and cached the first time the value
+ * is accessed.  Handles are returned instead of the values of long value
+ * columns when reading rows with lazy long values enabled (see {@link
+ * DatabaseImpl#setLazyLongValues}).
+ * <p/>
+ * A handle reads the value from the row as it was when the row was read, so
+ * it should not be dereferenced after the row has been updated or deleted.
+ * A handle (or the value it contains) may be used as the value of the column
+ * when updating the row.
+ *
+ * @author James Ahlborn
+ * @usage _advanced_class_
+ */
+public abstract class LongValueHandle
+{
+  private final LongValueColumnImpl _column;
+  private final byte[] _lvalDefinition;
+  /** the value, once it has been read */
+  private Object _value;
+
+  private LongValueHandle(LongValueColumnImpl column, byte[] lvalDefinition) {
+    _column = column;
+    _lvalDefinition = lvalDefinition;
+  }
+
+  static LongValueHandle create(LongValueColumnImpl column,
+                                byte[] lvalDefinition) {
+    return ((column.getType() == DataType.MEMO) ?
+            new Text(column, lvalDefinition) :
+            new Binary(column, lvalDefinition));
+  }
+
+  public ColumnImpl getColumn() {
+    return _column;
+  }
+
+  /**
+   * @return the long value definition from the row data
+   */
+  byte[] getDefinition() {
+    return _lvalDefinition;
+  }
+
+  /**
+   * @return the length of the stored data of the value in bytes (for MEMO
+   *         values, this is the length of the encoded text)
+   */
+  public int getLength() {
+    return _column.getLongValueLength(_lvalDefinition);
+  }
+
+  /**
+   * @return {@code true} if the value has already been read, {@code false}
+   *         otherwise
+   */
+  public boolean isLoaded() {
+    return(_value != null);
+  }
+
+  /**
+   * @return the value of the column (as it would be returned in a normal
+   *         row), reading it if necessary
+   */
+  public Object getValue() throws IOException {
+    if(_value == null) {
+      _value = _column.read(_lvalDefinition);
+    }
+    return _value;
+  }
+
+  /**
+   * @return a stream of the stored data of the value (for MEMO values, the
+   *         encoded text).  If the value has not been read, the data is read
+   *         one page at a time as the stream is read (and is not cached).
+   */
+  public InputStream getStream() throws IOException {
+    if(_value instanceof byte[]) {
+      return new ByteArrayInputStream((byte[])_value);
+    }
+    return _column.openLongValueStream(_lvalDefinition);
+  }
+
+  /**
+   * @return the actual value of the given value if it is a handle (reading
+   *         it if necessary), otherwise the given value
+   * @throws RuntimeIOException if reading the value fails
+   */
+  static Object toValue(Object value) {
+    if(!(value instanceof LongValueHandle)) {
+      return value;
+    }
+    try {
+      return ((LongValueHandle)value).getValue();
+    } catch(IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  /**
+   * Handle for the value of a MEMO column.  The handle is also a
+   * CharSequence of the text, so that it may be used in most places where
+   * the text would be used (accessing the text reads the value if necessary,
+   * any IOException is thrown as a RuntimeIOException).
+   */
+  public static final class Text extends LongValueHandle
+    implements CharSequence
+  {
+    private Text(LongValueColumnImpl column, byte[] lvalDefinition) {
+      super(column, lvalDefinition);
+    }
+
+    /**
+     * @return the text of the value, reading it if necessary
+     */
+    public String getText() throws IOException {
+      return (String)getValue();
+    }
+
+    /**
+     * @return a reader of the text of the value.  If the value has not been
+     *         read, the text is read one page at a time as the reader is read
+     *         (and is not cached).
+     */
+    public Reader getReader() throws IOException {
+      if(isLoaded()) {
+        return new StringReader(getText());
+      }
+      return super._column.openLongTextReader(getDefinition());
+    }
+
+    public int length() {
+      return toString().length();
+    }
+
+    public char charAt(int index) {
+      return toString().charAt(index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+      return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      try {
+        return getText();
+      } catch(IOException e) {
+        throw new RuntimeIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Handle for the value of an OLE column.
+   */
+  public static final class Binary extends LongValueHandle
+  {
+    private Binary(LongValueColumnImpl column, byte[] lvalDefinition) {
+      super(column, lvalDefinition);
+    }
+
+    /**
+     * @return the bytes of the value, reading them if necessary
+     */
+    public byte[] getBytes() throws IOException {
+      return (byte[])getValue();
+    }
+
+    @Override
+    public String toString() {
+      return CustomToStringStyle.builder(this)
+        .append("length", getLength())
+        .append("loaded", isLoaded())
+        .toString();
+    }
+  }
+}
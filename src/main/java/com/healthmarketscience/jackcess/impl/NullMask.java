@@ -17,6 +17,7 @@ limitations under the License.
 package com.healthmarketscience.jackcess.impl;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Bitmask that indicates whether or not each column in a row is null.  Also
@@ -42,6 +43,20 @@ public class NullMask {
     _mask = new byte[(_columnCount + 7) / 8];
   }
   
+  /**
+   * @return the number of columns covered by this mask
+   */
+  public int getColumnCount() {
+    return _columnCount;
+  }
+
+  /**
+   * Marks all columns as {@code null} (so that this mask may be re-used).
+   */
+  public void clear() {
+    Arrays.fill(_mask, (byte)0);
+  }
+
   /**
    * Read a mask in from a buffer
    */
@@ -22,13 +22,17 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.sql.Blob;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -110,79 +114,100 @@ public class OleUtil
   public static OleBlob createBlob(Builder oleBuilder)
     throws IOException
   {
+    PackageInputStream in = null;
     try {
-      
-      if(!WRITEABLE_TYPES.contains(oleBuilder.getType())) {
-        throw new IllegalArgumentException(
-            "Cannot currently create ole values of type " +
-            oleBuilder.getType());
-      }
-      
-      long contentLen = oleBuilder.getContentLength();
-      byte[] contentBytes = oleBuilder.getBytes();
-      InputStream contentStream = oleBuilder.getStream();
-      byte[] packageStreamHeader = NO_DATA;
-      byte[] packageStreamFooter = NO_DATA;
-
-      switch(oleBuilder.getType()) {
-      case LINK:
-        packageStreamHeader = writePackageStreamHeader(oleBuilder);
-
-        // link "content" is file path
-        contentBytes = getZeroTermStrBytes(oleBuilder.getFilePath());
-        contentLen = contentBytes.length;
-        break;
-        
-      case SIMPLE_PACKAGE:
-        packageStreamHeader = writePackageStreamHeader(oleBuilder);
-        packageStreamFooter = writePackageStreamFooter(oleBuilder);
-        break;
-        
-      case OTHER:
-        // nothing more to do
-        break;
-      default:
-        throw new RuntimeException("unexpected type " + oleBuilder.getType());
-      }
 
-      long payloadLen = packageStreamHeader.length + packageStreamFooter.length +
-        contentLen;
-      byte[] packageHeader = writePackageHeader(oleBuilder, payloadLen);
-            
-      long totalOleLen = packageHeader.length + PACKAGE_FOOTER.length +
-        payloadLen;
-      if(totalOleLen > DataType.OLE.getMaxSize()) {
-        throw new IllegalArgumentException("Content size of " + totalOleLen +
-                                           " is too large for ole column");
-      }
-      
-      byte[] oleBytes = new byte[(int)totalOleLen];
-      ByteBuffer bb = PageChannel.wrap(oleBytes);
-      bb.put(packageHeader);
-      bb.put(packageStreamHeader);
-      
-      if(contentLen > 0L) {
-        if(contentBytes != null) {
-          bb.put(contentBytes);
-        } else {
-          byte[] buf = new byte[8192];
-          int numBytes = 0;
-          while((numBytes = contentStream.read(buf)) >= 0) {
-            bb.put(buf, 0, numBytes);
-          }
-        }
-      }
+      in = openBlobStream(oleBuilder);
 
-      bb.put(packageStreamFooter);
-      bb.put(PACKAGE_FOOTER);
+      byte[] oleBytes = new byte[(int)in.getLength()];
+      int pos = 0;
+      int numBytes = 0;
+      while((pos < oleBytes.length) &&
+            ((numBytes = in.read(oleBytes, pos, oleBytes.length - pos)) >= 0)) {
+        pos += numBytes;
+      }
     
       return parseBlob(oleBytes);
       
     } finally {
+      ByteUtil.closeQuietly(in);
       ByteUtil.closeQuietly(oleBuilder.getStream());
     }
   }
 
+  /**
+   * Returns a stream of the internal data for a new ole value using the
+   * given information.  Unlike {@link #createBlob}, the content is not
+   * loaded into memory, so the returned stream may be used to write large
+   * ole values to a table (the content is read as the returned stream is
+   * read).  Closing the returned stream closes the content stream.
+   */
+  public static InputStream createBlobStream(Builder oleBuilder)
+    throws IOException
+  {
+    return openBlobStream(oleBuilder);
+  }
+
+  private static PackageInputStream openBlobStream(Builder oleBuilder)
+    throws IOException
+  {
+    if(!WRITEABLE_TYPES.contains(oleBuilder.getType())) {
+      throw new IllegalArgumentException(
+          "Cannot currently create ole values of type " +
+          oleBuilder.getType());
+    }
+      
+    long contentLen = oleBuilder.getContentLength();
+    byte[] contentBytes = oleBuilder.getBytes();
+    InputStream contentStream = oleBuilder.getStream();
+    byte[] packageStreamHeader = NO_DATA;
+    byte[] packageStreamFooter = NO_DATA;
+
+    switch(oleBuilder.getType()) {
+    case LINK:
+      packageStreamHeader = writePackageStreamHeader(oleBuilder);
+
+      // link "content" is file path
+      contentBytes = getZeroTermStrBytes(oleBuilder.getFilePath());
+      contentLen = contentBytes.length;
+      break;
+        
+    case SIMPLE_PACKAGE:
+      packageStreamHeader = writePackageStreamHeader(oleBuilder);
+      packageStreamFooter = writePackageStreamFooter(oleBuilder);
+      break;
+        
+    case OTHER:
+      // nothing more to do
+      break;
+    default:
+      throw new RuntimeException("unexpected type " + oleBuilder.getType());
+    }
+
+    long payloadLen = packageStreamHeader.length + packageStreamFooter.length +
+      contentLen;
+    byte[] packageHeader = writePackageHeader(oleBuilder, payloadLen);
+            
+    long totalOleLen = packageHeader.length + PACKAGE_FOOTER.length +
+      payloadLen;
+    if(totalOleLen > DataType.OLE.getMaxSize()) {
+      throw new IllegalArgumentException("Content size of " + totalOleLen +
+                                         " is too large for ole column");
+    }
+
+    List<InputStream> streams = new ArrayList<InputStream>();
+    streams.add(new ByteArrayInputStream(
+                    ByteUtil.concat(packageHeader, packageStreamHeader)));
+    if(contentLen > 0L) {
+      streams.add((contentBytes != null) ?
+                  new ByteArrayInputStream(contentBytes) : contentStream);
+    }
+    streams.add(new ByteArrayInputStream(
+                    ByteUtil.concat(packageStreamFooter, PACKAGE_FOOTER)));
+
+    return new PackageInputStream(streams, totalOleLen);
+  }
+
   private static byte[] writePackageHeader(Builder oleBuilder,
                                            long contentLen) {
 
@@ -801,4 +826,22 @@ public class OleUtil
     }
   }
   
+
+  /**
+   * Stream of the data of a new ole value, which knows the total length of
+   * the data.
+   */
+  private static final class PackageInputStream extends SequenceInputStream
+  {
+    private final long _length;
+
+    private PackageInputStream(List<InputStream> streams, long length) {
+      super(Collections.enumeration(streams));
+      _length = length;
+    }
+
+    public long getLength() {
+      return _length;
+    }
+  }
 }
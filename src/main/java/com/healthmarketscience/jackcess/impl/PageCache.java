@@ -0,0 +1,216 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Memory bounded cache of <i>decoded</i> database pages which sits
+ * underneath a {@link PageChannel}.  Pages are evicted using a simplified
+ * "2Q" policy: pages seen for the first time are held in a small FIFO queue
+ * and only promoted to the main LRU queue if they are requested again
+ * shortly after being evicted from the FIFO queue.  This keeps large table
+ * scans from flushing frequently used pages (table definitions, usage maps,
+ * index pages) out of the cache.
+ * <p/>
+ * All access to the cache is synchronized, so a cache instance may be shared
+ * by multiple readers of the same PageChannel.
+ *
+ * @author James Ahlborn
+ */
+public class PageCache
+{
+  /** percentage of the cache which is used for the "first access" FIFO
+      queue */
+  private static final int IN_QUEUE_PERCENT = 25;
+  /** percentage of the cache size for which evicted page numbers are
+      remembered (the "ghost" queue) */
+  private static final int OUT_QUEUE_PERCENT = 50;
+
+  /** size of each cached page */
+  private final int _pageSize;
+  /** max number of pages held in the cache */
+  private final int _maxPages;
+  /** max number of pages held in the "first access" queue */
+  private final int _maxInPages;
+  /** max number of page numbers remembered in the "ghost" queue */
+  private final int _maxOutPages;
+  /** pages which have been accessed once, in FIFO order */
+  private final Map<Integer,byte[]> _inQueue =
+    new LinkedHashMap<Integer,byte[]>();
+  /** page numbers recently evicted from the "first access" queue */
+  private final Set<Integer> _outQueue = new LinkedHashSet<Integer>();
+  /** pages which have been accessed multiple times, in LRU order */
+  private final Map<Integer,byte[]> _mainQueue =
+    new LinkedHashMap<Integer,byte[]>(16, 0.75f, true);
+  private long _hitCount;
+  private long _missCount;
+
+  /**
+   * @param pageSize the size of the pages to be cached
+   * @param maxBytes max number of bytes of page data to hold in the cache
+   */
+  public PageCache(int pageSize, long maxBytes)
+  {
+    _pageSize = pageSize;
+    _maxPages = (int)Math.min(Integer.MAX_VALUE,
+                              Math.max(1L, maxBytes / pageSize));
+    _maxInPages = Math.max(1, (_maxPages * IN_QUEUE_PERCENT) / 100);
+    _maxOutPages = Math.max(1, (_maxPages * OUT_QUEUE_PERCENT) / 100);
+  }
+
+  public int getPageSize() {
+    return _pageSize;
+  }
+
+  /**
+   * @return the max number of bytes of page data held by this cache
+   */
+  public long getMaxBytes() {
+    return (long)_maxPages * _pageSize;
+  }
+
+  /**
+   * @return the number of pages currently held by this cache
+   */
+  public synchronized int getPageCount() {
+    return _inQueue.size() + _mainQueue.size();
+  }
+
+  /**
+   * @return the number of reads satisfied by this cache
+   */
+  public synchronized long getHitCount() {
+    return _hitCount;
+  }
+
+  /**
+   * @return the number of reads which were not satisfied by this cache
+   */
+  public synchronized long getMissCount() {
+    return _missCount;
+  }
+
+  /**
+   * Copies the cached contents of the given page into the given buffer (from
+   * position 0) if available.  On success, the buffer will be positioned at 0
+   * with the limit set to the page size.
+   *
+   * @return {@code true} if the page was cached, {@code false} otherwise
+   *         (buffer will be unmodified)
+   */
+  public synchronized boolean readPage(ByteBuffer buffer, int pageNumber) {
+    Integer key = pageNumber;
+    byte[] page = _mainQueue.get(key);
+    if(page == null) {
+      // note, pages in the "first access" queue are _not_ moved on access,
+      // otherwise a single scan could fill the main queue
+      page = _inQueue.get(key);
+    }
+    if(page == null) {
+      ++_missCount;
+      return false;
+    }
+    ++_hitCount;
+    buffer.clear();
+    buffer.put(page, 0, _pageSize);
+    buffer.flip();
+    return true;
+  }
+
+  /**
+   * Adds the decoded contents of the given page to the cache (the entire
+   * page is copied, the position and limit of the buffer are unchanged).
+   */
+  public synchronized void putPage(ByteBuffer buffer, int pageNumber) {
+    Integer key = pageNumber;
+    byte[] page = _mainQueue.get(key);
+    if(page == null) {
+      page = _inQueue.get(key);
+    }
+
+    if(page == null) {
+      // if page was accessed recently, promote it to the "hot" pages
+      boolean promote = _outQueue.remove(key);
+      page = reclaimPage();
+      if(promote) {
+        _mainQueue.put(key, page);
+      } else {
+        _inQueue.put(key, page);
+      }
+    }
+
+    ByteBuffer src = buffer.duplicate();
+    src.clear();
+    src.get(page, 0, _pageSize);
+  }
+
+  /**
+   * Removes the given page from the cache (if present).  Must be called
+   * whenever the page contents in the underlying file are modified.
+   */
+  public synchronized void invalidatePage(int pageNumber) {
+    Integer key = pageNumber;
+    if(_mainQueue.remove(key) == null) {
+      _inQueue.remove(key);
+    }
+  }
+
+  /**
+   * Removes all pages from the cache.
+   */
+  public synchronized void clear() {
+    _inQueue.clear();
+    _outQueue.clear();
+    _mainQueue.clear();
+  }
+
+  /**
+   * Returns a page array for a new cache entry, evicting an existing entry
+   * (and re-using its array) if the cache is full.
+   */
+  private byte[] reclaimPage() {
+    if(getPageCount() < _maxPages) {
+      return new byte[_pageSize];
+    }
+
+    if((_inQueue.size() > _maxInPages) || _mainQueue.isEmpty()) {
+      Iterator<Map.Entry<Integer,byte[]>> iter = _inQueue.entrySet().iterator();
+      Map.Entry<Integer,byte[]> e = iter.next();
+      iter.remove();
+
+      // remember this page for a while in case it is accessed again
+      _outQueue.add(e.getKey());
+      if(_outQueue.size() > _maxOutPages) {
+        Iterator<Integer> outIter = _outQueue.iterator();
+        outIter.next();
+        outIter.remove();
+      }
+      return e.getValue();
+    }
+
+    Iterator<byte[]> iter = _mainQueue.values().iterator();
+    byte[] page = iter.next();
+    iter.remove();
+    return page;
+  }
+}
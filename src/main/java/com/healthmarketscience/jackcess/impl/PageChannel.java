@@ -18,10 +18,27 @@ package com.healthmarketscience.jackcess.impl;
 
 import java.io.Flushable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.Channel;
 import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.healthmarketscience.jackcess.util.PageMetrics;
+import com.healthmarketscience.jackcess.util.PageMetrics.PageType;
 
 
 /**
@@ -44,6 +61,12 @@ public class PageChannel implements Channel, Flushable {
   static final int PAGE_GLOBAL_USAGE_MAP = 1;
   /** Global usage map always lives at row 0 */
   static final int ROW_GLOBAL_USAGE_MAP = 0;
+
+  /** max size of each segment of a memory mapped file (must be a multiple
+      of all page sizes) */
+  private static final long MAX_MAPPED_SEGMENT_SIZE = 1L << 30;
+  /** max size of the buffer used to fill newly allocated extents */
+  private static final int MAX_EXTENT_FILL_SIZE = 64 * 1024;
   
   /** Channel containing the database */
   private final FileChannel _channel;
@@ -63,10 +86,63 @@ public class PageChannel implements Channel, Flushable {
   private UsageMap _globalUsageMap;
   /** handler for the current database encoding type */
   private CodecHandler _codecHandler = DefaultCodecProvider.DUMMY_HANDLER;
+  /** provider of the current codec handler, used to create additional
+      handlers for parallel decoding */
+  private CodecProvider _codecProvider = DefaultCodecProvider.INSTANCE;
+  /** charset of the database, used to create additional codec handlers */
+  private Charset _charset;
+  /** decoder used for bulk page reads on the current thread */
+  private PageDecoder _pageDecoder;
+  /** number of threads used to decode bulk page reads */
+  private int _decodeThreads;
+  /** executor used to decode bulk page reads in parallel, {@code null} if
+      parallel decoding is disabled */
+  private ExecutorService _decodeExecutor;
+  /** decoders used for parallel decoding (the first is used by the calling
+      thread, the remaining by the decode executor) */
+  private List<PageDecoder> _parallelDecoders;
   /** temp page buffer used when pages cannot be partially encoded */
   private TempPageHolder _fullPageEncodeBufferH;
   private TempBufferHolder _tempDecodeBufferH;
   private int _writeCount;
+  /** optional cache of decoded pages */
+  private PageCache _pageCache;
+  /** optional read-only memory mapping of the database file, split into
+      segments of MAX_MAPPED_SEGMENT_SIZE */
+  private ByteBuffer[] _mappedSegments;
+  /** number of pages in the memory mapping of the database file */
+  private int _mappedPageCount;
+  /** number of pages to read ahead during table scans, 0 if disabled */
+  private int _readAheadPages;
+  /** count of page modifications, used to detect stale copies of pages */
+  private int _modCount;
+  /** max number of bytes of dirty pages held until the end of the current
+      logical write operation, 0 if write-behind is disabled */
+  private long _writeBehindBufferSize;
+  /** decoded contents of pages which have been written during the current
+      logical write operation but not yet written to the channel, in page
+      order */
+  private final TreeMap<Integer,byte[]> _dirtyPages =
+    new TreeMap<Integer,byte[]>();
+  /** min number of pages by which the file is grown when a new page is
+      allocated */
+  private int _extentPages = 1;
+  /** min percentage of the current file size by which the file is grown
+      when a new page is allocated */
+  private int _extentPercent;
+  /** receiver of page I/O events */
+  private PageMetrics _pageMetrics = PageMetrics.DEFAULT;
+  /** optional pool from which temp buffers are leased */
+  private BufferPool _bufferPool;
+  /** size of the used portion of the file (the remainder of the file
+      consists of preallocated pages), -1 if the file has never been
+      preallocated (the entire file is in use) */
+  private long _usedSize = -1L;
+  /** stack of pages deallocated by this channel which may be re-used by
+      {@link #allocateNewPage} */
+  private int[] _reusablePages = new int[16];
+  /** number of pages in the reusable pages stack */
+  private int _numReusablePages;
   
   /**
    * Only used by unit tests
@@ -100,9 +176,24 @@ public class PageChannel implements Channel, Flushable {
    */
   public void initialize(DatabaseImpl database, CodecProvider codecProvider)
     throws IOException
+  {
+    initialize(database, codecProvider, false, null);
+  }
+
+  /**
+   * Does second-stage initialization, must be called after construction.
+   * The given configurer (if any) is applied before any pages are read.
+   * @param readOnly whether or not the underlying channel was opened
+   *                 read-only
+   */
+  public void initialize(DatabaseImpl database, CodecProvider codecProvider,
+                         boolean readOnly, Configurer configurer)
+    throws IOException
   {
     // initialize page en/decoding support
-    _codecHandler = codecProvider.createHandler(this, database.getCharset());
+    _codecProvider = codecProvider;
+    _charset = database.getCharset();
+    _codecHandler = codecProvider.createHandler(this, _charset);
     if(!_codecHandler.canEncodePartialPage()) {
       _fullPageEncodeBufferH =
         TempPageHolder.newHolder(TempBufferHolder.Type.SOFT);
@@ -112,6 +203,10 @@ public class PageChannel implements Channel, Flushable {
           TempBufferHolder.Type.SOFT, true);
     }
 
+    if(configurer != null) {
+      configurer.configure(this, readOnly);
+    }
+
     // note the global usage map is a special map where any page outside of
     // the current range is assumed to be "on"
     _globalUsageMap = UsageMap.read(database, PAGE_GLOBAL_USAGE_MAP,
@@ -126,6 +221,265 @@ public class PageChannel implements Channel, Flushable {
     return _autoSync;
   }
 
+  /**
+   * @return the cache of decoded pages used by this channel, {@code null} if
+   *         page caching is not enabled
+   */
+  public PageCache getPageCache() {
+    return _pageCache;
+  }
+
+  /**
+   * Sets the cache of decoded pages used by this channel, {@code null} to
+   * disable page caching.
+   */
+  public void setPageCache(PageCache pageCache) {
+    if((pageCache != null) &&
+       (pageCache.getPageSize() != getFormat().PAGE_SIZE)) {
+      throw new IllegalArgumentException(
+          "Page cache page size " + pageCache.getPageSize() +
+          " does not match database page size " + getFormat().PAGE_SIZE);
+    }
+    _pageCache = pageCache;
+  }
+
+  /**
+   * @return the max number of pages which table scans will read ahead in a
+   *         single read, {@code 0} if read-ahead is disabled
+   */
+  public int getReadAheadPages() {
+    return _readAheadPages;
+  }
+
+  /**
+   * Sets the max number of pages which table scans will read ahead in a
+   * single read, {@code 0} to disable read-ahead.
+   */
+  public void setReadAheadPages(int readAheadPages) {
+    _readAheadPages = readAheadPages;
+  }
+
+  /**
+   * @return the max number of bytes of dirty pages which will be held until
+   *         the end of the current logical write operation, {@code 0} if
+   *         write-behind is disabled
+   */
+  public long getWriteBehindBufferSize() {
+    return _writeBehindBufferSize;
+  }
+
+  /**
+   * Sets the max number of bytes of dirty pages which will be held until the
+   * end of the current logical write operation, {@code 0} to disable
+   * write-behind (pages are written immediately).  When enabled, multiple
+   * writes to the same page within a logical write operation are coalesced
+   * into a single write, and all dirty pages are written in page order when
+   * the outermost operation completes (or earlier, if the buffer fills up).
+   */
+  public void setWriteBehindBufferSize(long writeBehindBufferSize)
+    throws IOException
+  {
+    _writeBehindBufferSize = writeBehindBufferSize;
+    if(_writeBehindBufferSize <= 0L) {
+      flushDirtyPages();
+    }
+  }
+
+  /**
+   * @return the number of pages which have been written but are currently
+   *         held in the write-behind buffer
+   */
+  public synchronized int getDirtyPageCount() {
+    return _dirtyPages.size();
+  }
+
+  /**
+   * @return the receiver of page I/O events (always non-{@code null})
+   */
+  public PageMetrics getPageMetrics() {
+    return _pageMetrics;
+  }
+
+  /**
+   * Sets the receiver of page I/O events.  If {@code null}, resets to the
+   * {@link PageMetrics#DEFAULT}.
+   */
+  public void setPageMetrics(PageMetrics pageMetrics) {
+    _pageMetrics = ((pageMetrics != null) ? pageMetrics : PageMetrics.DEFAULT);
+  }
+
+  /**
+   * @return the pool from which temp buffers are leased, {@code null} if
+   *         temp buffers are allocated individually
+   */
+  public BufferPool getBufferPool() {
+    return _bufferPool;
+  }
+
+  /**
+   * Sets the pool from which temp buffers are leased, {@code null} to
+   * allocate temp buffers individually.  A pool of direct buffers may only
+   * be used if {@link #supportsDirectBuffers} returns {@code true}.
+   */
+  public void setBufferPool(BufferPool bufferPool) {
+    if((bufferPool != null) && bufferPool.isDirect() &&
+       !supportsDirectBuffers()) {
+      throw new IllegalArgumentException(
+          "Direct buffers are not supported for encoded databases");
+    }
+    _bufferPool = bufferPool;
+  }
+
+  /**
+   * @return {@code true} if temp buffers for this channel may be direct
+   *         buffers, {@code false} otherwise (codec handlers may need access
+   *         to the backing array of the page buffers)
+   */
+  public boolean supportsDirectBuffers() {
+    return (_codecHandler == DefaultCodecProvider.DUMMY_HANDLER);
+  }
+
+  /**
+   * @return the number of threads used to decode pages for bulk page reads
+   *         (see {@link #readPages}) of encoded databases
+   */
+  public int getDecodeThreads() {
+    return _decodeThreads;
+  }
+
+  /**
+   * Sets the number of threads used to decode pages for bulk page reads (see
+   * {@link #readPages}) of encoded databases.  If greater than {@code 1},
+   * the pages of a bulk read are split between the calling thread and a pool
+   * of {@code decodeThreads - 1} daemon worker threads, each using a
+   * separate CodecHandler created by the database's CodecProvider (so the
+   * CodecHandlers themselves do not need to be thread-safe).  The worker
+   * threads are stopped when this channel is closed.  This setting has no
+   * effect for databases which are not encoded.
+   */
+  public void setDecodeThreads(int decodeThreads) throws IOException {
+    shutdownDecodeExecutor();
+    _decodeThreads = decodeThreads;
+    if((_decodeThreads <= 1) ||
+       (_codecHandler == DefaultCodecProvider.DUMMY_HANDLER)) {
+      return;
+    }
+
+    List<PageDecoder> decoders = new ArrayList<PageDecoder>(_decodeThreads);
+    decoders.add(getPageDecoder());
+    for(int i = 1; i < _decodeThreads; ++i) {
+      decoders.add(new PageDecoder(
+                       _codecProvider.createHandler(this, _charset)));
+    }
+    _decodeExecutor = Executors.newFixedThreadPool(
+        _decodeThreads - 1, new DecodeThreadFactory());
+    _parallelDecoders = decoders;
+  }
+
+  /**
+   * @return the min number of pages by which the file is grown when it is
+   *         full
+   */
+  public int getExtentPages() {
+    return _extentPages;
+  }
+
+  /**
+   * Sets the min number of pages by which the file is grown when it is full
+   * (values less than {@code 1} are treated as {@code 1}).  Pages beyond the
+   * last allocated page are trimmed from the file when the channel is
+   * closed.
+   */
+  public void setExtentPages(int extentPages) {
+    _extentPages = Math.max(1, extentPages);
+  }
+
+  /**
+   * @return the min percentage of the current file size by which the file is
+   *         grown when it is full
+   */
+  public int getExtentPercent() {
+    return _extentPercent;
+  }
+
+  /**
+   * Sets the min percentage of the current file size by which the file is
+   * grown when it is full, {@code 0} to only use the configured number of
+   * {@link #setExtentPages extent pages}.  Pages beyond the last allocated
+   * page are trimmed from the file when the channel is closed.
+   */
+  public void setExtentPercent(int extentPercent) {
+    _extentPercent = Math.max(0, extentPercent);
+  }
+
+  /**
+   * @return the number of pages which have been preallocated at the end of
+   *         the file but are not yet in use
+   */
+  public int getPreallocatedPageCount() throws IOException {
+    return (getNextPageNumber(_channel.size()) -
+            getNextPageNumber(getUsedSize()));
+  }
+
+  /**
+   * @return the number of previously deallocated pages which will be re-used
+   *         before the file is grown
+   */
+  public int getReusablePageCount() {
+    return _numReusablePages;
+  }
+
+  /**
+   * @return the modification count of the pages in this channel (this count
+   *         is changed every time any page is written, allocated or
+   *         deallocated)
+   */
+  public int getModCount() {
+    return _modCount;
+  }
+
+  /**
+   * @return {@code true} if pages are read from a memory mapping of the
+   *         database file, {@code false} otherwise
+   */
+  public boolean isMemoryMapped() {
+    return (_mappedSegments != null);
+  }
+
+  /**
+   * Maps the current contents of the database file into memory (read-only)
+   * so that subsequent page reads are copied out of the mapping instead of
+   * being read from the channel.  Files larger than 2GB are mapped in
+   * multiple segments.  This should only be used for databases which will
+   * not be modified.  Note that mapped memory is not released until the
+   * mapping is garbage collected (which may keep the file locked on some
+   * platforms even after the database is closed).
+   *
+   * @return {@code true} if the file was mapped, {@code false} if the
+   *         underlying channel does not support memory mapping
+   */
+  public boolean enableMemoryMapping() throws IOException {
+    long size = _channel.size();
+    size -= (size % getFormat().PAGE_SIZE);
+    int numSegments = (int)((size + MAX_MAPPED_SEGMENT_SIZE - 1) /
+                            MAX_MAPPED_SEGMENT_SIZE);
+    ByteBuffer[] segments = new ByteBuffer[numSegments];
+    try {
+      for(int i = 0; i < numSegments; ++i) {
+        long offset = i * MAX_MAPPED_SEGMENT_SIZE;
+        segments[i] = _channel.map(
+            FileChannel.MapMode.READ_ONLY, offset,
+            Math.min(MAX_MAPPED_SEGMENT_SIZE, size - offset));
+      }
+    } catch(UnsupportedOperationException e) {
+      // channel does not support mapping (e.g. in-memory channel)
+      return false;
+    }
+    _mappedSegments = segments;
+    _mappedPageCount = getNextPageNumber(size);
+    return true;
+  }
+
   /**
    * Begins a "logical" write operation.  See {@link #finishWrite} for more
    * details.
@@ -151,13 +505,19 @@ public class PageChannel implements Channel, Flushable {
    * Completes a "logical" write operation.  This method should be called in
    * finally block which wraps a logical write operation (which is preceded by
    * a {@link #startWrite} call).  Logical write operations may be nested.  If
-   * the database is configured for "auto-sync", the channel will be flushed
-   * when the outermost operation is complete,
+   * write-behind is enabled, any dirty pages will be written when the
+   * outermost operation is complete.  If the database is configured for
+   * "auto-sync", the channel will be flushed when the outermost operation is
+   * complete,
    */
   public void finishWrite() throws IOException {
     assertWriting();
-    if((--_writeCount == 0) && _autoSync) {
-      flush();
+    if(--_writeCount == 0) {
+      if(_autoSync) {
+        flush();
+      } else {
+        flushDirtyPages();
+      }
     }
   }
 
@@ -185,6 +545,14 @@ public class PageChannel implements Channel, Flushable {
     return (int)(size / getFormat().PAGE_SIZE);
   }
 
+  /**
+   * Returns the size of the portion of the file which contains allocated
+   * pages.
+   */
+  private long getUsedSize() throws IOException {
+    return ((_usedSize >= 0L) ? _usedSize : _channel.size());
+  }
+
   /**
    * Returns the offset for a page within the file.
    */
@@ -198,21 +566,40 @@ public class PageChannel implements Channel, Flushable {
   private void validatePageNumber(int pageNumber)
     throws IOException
   {
-    int nextPageNumber = getNextPageNumber(_channel.size());
+    if((pageNumber > INVALID_PAGE_NUMBER) &&
+       (pageNumber < _mappedPageCount)) {
+      // page is known to exist, no need to check the current file size
+      return;
+    }
+    int nextPageNumber = getNextPageNumber(getUsedSize());
     if((pageNumber <= INVALID_PAGE_NUMBER) || (pageNumber >= nextPageNumber)) {
       throw new IllegalStateException("invalid page number " + pageNumber);
     }
   }
   
   /**
+   * Note, page reads are synchronized so that pages may be read concurrently
+   * by multiple readers (e.g. split table scans).
    * @param buffer Buffer to read the page into
    * @param pageNumber Number of the page to read in (starting at 0)
    */
-  public void readPage(ByteBuffer buffer, int pageNumber)
+  public synchronized void readPage(ByteBuffer buffer, int pageNumber)
     throws IOException
   {
     validatePageNumber(pageNumber);
 
+    byte[] dirtyPage = _dirtyPages.get(pageNumber);
+    if(dirtyPage != null) {
+      buffer.clear();
+      buffer.put(dirtyPage);
+      buffer.flip();
+      return;
+    }
+
+    if((_pageCache != null) && _pageCache.readPage(buffer, pageNumber)) {
+      return;
+    }
+
     ByteBuffer inPage = buffer;
     ByteBuffer outPage = buffer;
     if((pageNumber != 0) && !_codecHandler.canDecodeInline()) {
@@ -220,9 +607,12 @@ public class PageChannel implements Channel, Flushable {
       outPage.clear();
     }
 
+    PageMetrics metrics = _pageMetrics;
+    boolean timed = (metrics != PageMetrics.DEFAULT);
+    long startTime = (timed ? System.nanoTime() : 0L);
+
     inPage.clear();
-    int bytesRead = _channel.read(
-        inPage, (long) pageNumber * (long) getFormat().PAGE_SIZE);
+    int bytesRead = readPageBytes(inPage, pageNumber);
     inPage.flip();
     if(bytesRead != getFormat().PAGE_SIZE) {
       throw new IOException("Failed attempting to read " +
@@ -230,14 +620,261 @@ public class PageChannel implements Channel, Flushable {
                             pageNumber + ", only read " + bytesRead);
     }
 
+    long readTime = (timed ? System.nanoTime() : 0L);
+
     if(pageNumber == 0) {
       // de-mask header (note, page 0 never has additional encoding)
       applyHeaderMask(buffer);
     } else {
       _codecHandler.decodePage(inPage, outPage, pageNumber);
     }
+
+    if(timed) {
+      PageType pageType = getPageType(buffer, pageNumber);
+      metrics.pageRead(pageType, bytesRead, readTime - startTime);
+      if((pageNumber != 0) &&
+         (_codecHandler != DefaultCodecProvider.DUMMY_HANDLER)) {
+        metrics.pageDecoded(pageType, System.nanoTime() - readTime);
+      }
+    }
+
+    if(_pageCache != null) {
+      _pageCache.putPage(buffer, pageNumber);
+    }
+  }
+
+  /**
+   * Reads a run of consecutive pages using a single read of the underlying
+   * file.  On return, the given buffer will contain the decoded pages, with
+   * the position at 0 and the limit set to the end of the last page.
+   *
+   * @param buffer Buffer to read the pages into, must have a capacity of at
+   *               least {@code numPages} pages
+   * @param pageNumber Number of the first page to read in
+   * @param numPages Number of pages to read in
+   */
+  public synchronized void readPages(ByteBuffer buffer, int pageNumber,
+                                     int numPages)
+    throws IOException
+  {
+    validatePageNumber(pageNumber);
+    validatePageNumber(pageNumber + numPages - 1);
+
+    int pageSize = getFormat().PAGE_SIZE;
+    buffer.clear();
+    buffer.limit(numPages * pageSize);
+
+    PageMetrics metrics = _pageMetrics;
+    boolean timed = (metrics != PageMetrics.DEFAULT);
+    long startTime = (timed ? System.nanoTime() : 0L);
+
+    if(_mappedSegments != null) {
+      for(int i = 0; i < numPages; ++i) {
+        buffer.limit((i + 1) * pageSize);
+        readPageBytes(buffer, pageNumber + i);
+      }
+    } else {
+      long offset = getPageOffset(pageNumber);
+      while(buffer.hasRemaining()) {
+        if(_channel.read(buffer, offset + buffer.position()) < 0) {
+          break;
+        }
+      }
+    }
+    if(buffer.hasRemaining()) {
+      throw new IOException("Failed attempting to read " + numPages +
+                            " pages starting at page " + pageNumber +
+                            ", only read " + buffer.position() + " bytes");
+    }
+
+    long readTime = (timed ? System.nanoTime() - startTime : 0L);
+
+    ByteBuffer[] pages = new ByteBuffer[numPages];
+    for(int i = 0; i < numPages; ++i) {
+      pages[i] = narrowBuffer(buffer, i * pageSize, (i + 1) * pageSize)
+        .slice().order(buffer.order());
+    }
+
+    if(!decodePagesInParallel(pages, pageNumber)) {
+      getPageDecoder().decodePages(pages, pageNumber, 0, numPages);
+    }
+
+    for(int i = 0; i < numPages; ++i) {
+      int curPageNumber = pageNumber + i;
+      ByteBuffer page = pages[i];
+
+      byte[] dirtyPage = _dirtyPages.get(curPageNumber);
+      if(dirtyPage != null) {
+        // the file contents are stale
+        page.clear();
+        page.put(dirtyPage);
+        continue;
+      }
+
+      if(curPageNumber == 0) {
+        applyHeaderMask(page);
+      }
+
+      if(timed) {
+        metrics.pageRead(getPageType(page, curPageNumber), pageSize,
+                         readTime / numPages);
+      }
+
+      if(_pageCache != null) {
+        _pageCache.putPage(page, curPageNumber);
+      }
+    }
+
+    buffer.rewind();
   }
   
+  /**
+   * Decodes the given pages using the parallel decoders, if enabled.
+   *
+   * @return {@code true} if the pages were decoded, {@code false} if
+   *         parallel decoding is not enabled (or not useful)
+   */
+  private boolean decodePagesInParallel(final ByteBuffer[] pages,
+                                        final int pageNumber)
+    throws IOException
+  {
+    List<PageDecoder> decoders = _parallelDecoders;
+    if((decoders == null) || (pages.length < 2)) {
+      return false;
+    }
+
+    int numChunks = Math.min(decoders.size(), pages.length);
+    int chunkSize = (pages.length + numChunks - 1) / numChunks;
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(numChunks - 1);
+    IOException failure = null;
+    try {
+      for(int i = 1; i < numChunks; ++i) {
+        final PageDecoder decoder = decoders.get(i);
+        final int start = i * chunkSize;
+        final int end = Math.min(pages.length, start + chunkSize);
+        if(start >= end) {
+          break;
+        }
+        futures.add(_decodeExecutor.submit(new Callable<Void>() {
+          public Void call() throws IOException {
+            decoder.decodePages(pages, pageNumber, start, end);
+            return null;
+          }
+        }));
+      }
+
+      // the calling thread decodes the first chunk
+      decoders.get(0).decodePages(pages, pageNumber, 0,
+                                  Math.min(pages.length, chunkSize));
+
+    } finally {
+      // always wait for all the workers to finish with the buffer
+      for(Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch(InterruptedException e) {
+          Thread.currentThread().interrupt();
+          if(failure == null) {
+            failure = (IOException)new InterruptedIOException(
+                "Interrupted while decoding pages").initCause(e);
+          }
+        } catch(ExecutionException e) {
+          if(failure == null) {
+            failure = toIOException(e.getCause());
+          }
+        }
+      }
+    }
+
+    if(failure != null) {
+      throw failure;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the given decoding failure as an IOException (RuntimeExceptions
+   * and Errors are re-thrown as is).
+   */
+  private static IOException toIOException(Throwable t) {
+    if(t instanceof IOException) {
+      return (IOException)t;
+    }
+    if(t instanceof RuntimeException) {
+      throw (RuntimeException)t;
+    }
+    if(t instanceof Error) {
+      throw (Error)t;
+    }
+    return (IOException)new IOException("Failed decoding pages").initCause(t);
+  }
+
+  /**
+   * Returns the type of the given (decoded) page.
+   */
+  private static PageType getPageType(ByteBuffer page, int pageNumber) {
+    if(pageNumber == 0) {
+      return PageType.HEADER;
+    }
+    switch(page.get(0)) {
+    case PageTypes.INVALID:
+      return PageType.INVALID;
+    case PageTypes.DATA:
+      return PageType.DATA;
+    case PageTypes.TABLE_DEF:
+      return PageType.TABLE_DEF;
+    case PageTypes.INDEX_NODE:
+      return PageType.INDEX_NODE;
+    case PageTypes.INDEX_LEAF:
+      return PageType.INDEX_LEAF;
+    case PageTypes.USAGE_MAP:
+      return PageType.USAGE_MAP;
+    default:
+      return PageType.UNKNOWN;
+    }
+  }
+
+  private PageDecoder getPageDecoder() {
+    if((_pageDecoder == null) || (_pageDecoder._handler != _codecHandler)) {
+      _pageDecoder = new PageDecoder(_codecHandler);
+    }
+    return _pageDecoder;
+  }
+
+  private void shutdownDecodeExecutor() {
+    if(_decodeExecutor != null) {
+      _decodeExecutor.shutdown();
+      _decodeExecutor = null;
+    }
+    _parallelDecoders = null;
+  }
+
+  /**
+   * Reads the raw (encoded) bytes of the given page into the given buffer,
+   * either from the memory mapping (if available) or the underlying channel.
+   */
+  private int readPageBytes(ByteBuffer inPage, int pageNumber)
+    throws IOException
+  {
+    long pageOffset = getPageOffset(pageNumber);
+    if(_mappedSegments != null) {
+      int segIdx = (int)(pageOffset / MAX_MAPPED_SEGMENT_SIZE);
+      if(segIdx < _mappedSegments.length) {
+        // segments are always a multiple of the page size, so the page is
+        // either completely within a segment or not mapped at all
+        ByteBuffer segment = _mappedSegments[segIdx].duplicate();
+        int segOffset = (int)(pageOffset % MAX_MAPPED_SEGMENT_SIZE);
+        int pageSize = getFormat().PAGE_SIZE;
+        if((segOffset + pageSize) <= segment.limit()) {
+          segment.limit(segOffset + pageSize).position(segOffset);
+          inPage.put(segment);
+          return pageSize;
+        }
+      }
+    }
+    return _channel.read(inPage, pageOffset);
+  }
+
   /**
    * Write a page to disk
    * @param page Page to write
@@ -259,6 +896,7 @@ public class PageChannel implements Channel, Flushable {
   {
     assertWriting();
     validatePageNumber(pageNumber);
+    pageModified(pageNumber);
     
     page.rewind().position(pageOffset);
 
@@ -267,7 +905,89 @@ public class PageChannel implements Channel, Flushable {
       throw new IllegalArgumentException(
           "Page buffer is too large, size " + (writeLen + pageOffset));
     }
-    
+
+    if(_writeBehindBufferSize > 0L) {
+      bufferDirtyPage(page, pageNumber, pageOffset, writeLen);
+      return;
+    }
+
+    writePageBytes(page, pageNumber, pageOffset, writeLen);
+  }
+
+  /**
+   * Copies the given page data into the write-behind buffer.  The data will
+   * be written to the channel when the current logical write operation is
+   * complete (or the buffer is full).
+   */
+  private synchronized void bufferDirtyPage(ByteBuffer page, int pageNumber,
+                               int pageOffset, int writeLen)
+    throws IOException
+  {
+    byte[] dirtyPage = _dirtyPages.get(pageNumber);
+    if(dirtyPage == null) {
+      dirtyPage = new byte[getFormat().PAGE_SIZE];
+      ByteBuffer dirtyBuf = ByteBuffer.wrap(dirtyPage);
+      if(writeLen < getFormat().PAGE_SIZE) {
+        // need the current page contents for the unmodified parts of the
+        // page
+        readPage(dirtyBuf, pageNumber);
+      }
+      _dirtyPages.put(pageNumber, dirtyPage);
+    }
+
+    ByteBuffer dirtyBuf = ByteBuffer.wrap(dirtyPage);
+    dirtyBuf.position(pageOffset);
+    dirtyBuf.put(page);
+
+    if(((long)_dirtyPages.size() * getFormat().PAGE_SIZE) >=
+       _writeBehindBufferSize) {
+      // buffer is full, write everything out now
+      flushDirtyPages();
+    }
+  }
+
+  /**
+   * Writes all pages in the write-behind buffer to the channel (in page
+   * order).  A page is only removed from the buffer once it has been
+   * written, so if a write fails, the failed page and all the remaining
+   * pages are kept (reads continue to see their contents, and they will be
+   * written by the next flush).  Dirty pages are synchronized with page
+   * reads (see {@link #readPage}).
+   */
+  private synchronized void flushDirtyPages() throws IOException {
+    while(!_dirtyPages.isEmpty()) {
+      Map.Entry<Integer,byte[]> e = _dirtyPages.firstEntry();
+      int pageNumber = e.getKey();
+      byte[] pageBytes = e.getValue();
+      if(pageNumber == 0) {
+        // the header page is masked in place when written, so write a copy
+        // (in case the write fails)
+        pageBytes = pageBytes.clone();
+      }
+      ByteBuffer page = ByteBuffer.wrap(pageBytes).order(DEFAULT_BYTE_ORDER);
+      writePageBytes(page, pageNumber, 0, getFormat().PAGE_SIZE);
+      _dirtyPages.remove(pageNumber);
+    }
+  }
+
+  /**
+   * Encodes and writes the given page data to the channel.
+   */
+  private void writePageBytes(ByteBuffer page, int pageNumber, int pageOffset,
+                              int writeLen)
+    throws IOException
+  {
+    page.rewind().position(pageOffset);
+
+    PageMetrics metrics = _pageMetrics;
+    boolean timed = (metrics != PageMetrics.DEFAULT);
+    PageType pageType = null;
+    if(timed) {
+      // determine the page type before the page is encoded
+      pageType = (((pageOffset == 0) || (pageNumber == 0)) ?
+                  getPageType(page, pageNumber) : PageType.UNKNOWN);
+    }
+
     ByteBuffer encodedPage = page;
     if(pageNumber == 0) {
       // re-mask header
@@ -292,6 +1012,9 @@ public class PageChannel implements Channel, Flushable {
           page = fullPage;
           pageOffset = 0;
           writeLen = getFormat().PAGE_SIZE;
+          if(timed) {
+            pageType = getPageType(page, pageNumber);
+          }
 
         } else {
 
@@ -306,8 +1029,12 @@ public class PageChannel implements Channel, Flushable {
       encodedPage.position(pageOffset).limit(pageOffset + writeLen);
     }
 
+    long startTime = (timed ? System.nanoTime() : 0L);
     try {
       _channel.write(encodedPage, (getPageOffset(pageNumber) + pageOffset));
+      if(timed) {
+        metrics.pageWritten(pageType, writeLen, System.nanoTime() - startTime);
+      }
     } finally {
       if(pageNumber == 0) {
         // de-mask header
@@ -319,12 +1046,22 @@ public class PageChannel implements Channel, Flushable {
   /**
    * Allocates a new page in the database.  Data in the page is undefined
    * until it is written in a call to {@link #writePage(ByteBuffer,int)}.
+   * Pages previously deallocated by this channel are re-used (most recently
+   * deallocated first) before the file is grown.
    */
   public int allocateNewPage() throws IOException {
     assertWriting();
 
-    // this will force the file to be extended with mostly undefined bytes
-    long size = _channel.size();
+    if(_numReusablePages > 0) {
+      int pageNumber = _reusablePages[--_numReusablePages];
+      pageModified(pageNumber);
+      _pageMetrics.pageAllocated();
+
+      _globalUsageMap.removePageNumber(pageNumber);
+      return pageNumber;
+    }
+
+    long size = getUsedSize();
     if(size >= getFormat().MAX_DATABASE_SIZE) {
       throw new IOException("Database is at maximum size " +
                             getFormat().MAX_DATABASE_SIZE);
@@ -335,22 +1072,72 @@ public class PageChannel implements Channel, Flushable {
                             getFormat().PAGE_SIZE);
     }
     
-    _forceBytes.rewind();
-    
-    // push the buffer to the end of the page, so that a full page's worth of
-    // data is written
-    int pageOffset = (getFormat().PAGE_SIZE - _forceBytes.remaining());
-    long offset = size + pageOffset;
     int pageNumber = getNextPageNumber(size);
-
-    // since we are just allocating page space at this point and not writing
-    // meaningful data, we do _not_ encode the page.
-    _channel.write(_forceBytes, offset);
+    long newSize = size + getFormat().PAGE_SIZE;
+    if(newSize > _channel.size()) {
+      extendFile(size);
+    }
+    if(_usedSize >= 0L) {
+      _usedSize = newSize;
+    }
+    pageModified(pageNumber);
+    _pageMetrics.pageAllocated();
 
     _globalUsageMap.removePageNumber(pageNumber);
     return pageNumber;
   }
 
+  /**
+   * Grows the file (which is currently the given size) by at least one page,
+   * preallocating additional pages as configured.
+   */
+  private void extendFile(long size) throws IOException {
+    int pageSize = getFormat().PAGE_SIZE;
+    long numPages = Math.max(
+        _extentPages, ((size / pageSize) * _extentPercent) / 100);
+    numPages = Math.max(1L, Math.min(
+        numPages, (getFormat().MAX_DATABASE_SIZE - size) / pageSize));
+
+    if(numPages == 1L) {
+      _forceBytes.rewind();
+
+      // this will force the file to be extended with mostly undefined bytes.
+      // push the buffer to the end of the page, so that a full page's worth
+      // of data is written
+      int pageOffset = (pageSize - _forceBytes.remaining());
+
+      // since we are just allocating page space at this point and not
+      // writing meaningful data, we do _not_ encode the page.
+      _channel.write(_forceBytes, size + pageOffset);
+      return;
+    }
+
+    // fill the entire extent so that the space is actually allocated on disk
+    // (unused pages are all zeros, which looks like an "invalid" page)
+    long extentSize = numPages * pageSize;
+    ByteBuffer fill = ByteBuffer.allocate(
+        (int)Math.min(extentSize, MAX_EXTENT_FILL_SIZE));
+    long offset = size;
+    long endOffset = size + extentSize;
+    while(offset < endOffset) {
+      fill.clear();
+      fill.limit((int)Math.min(fill.capacity(), endOffset - offset));
+      offset += _channel.write(fill, offset);
+    }
+
+    // track the end of the allocated pages
+    _usedSize = size;
+  }
+
+  /**
+   * Removes any preallocated pages from the end of the file.
+   */
+  private void trimPreallocatedPages() throws IOException {
+    if((_usedSize >= 0L) && (_channel.size() > _usedSize)) {
+      _channel.truncate(_usedSize);
+    }
+  }
+
   /**
    * Deallocate a previously used page in the database.
    */
@@ -358,6 +1145,12 @@ public class PageChannel implements Channel, Flushable {
     assertWriting();
 
     validatePageNumber(pageNumber);
+    pageModified(pageNumber);
+
+    // any pending changes to this page are irrelevant now
+    synchronized(this) {
+      _dirtyPages.remove(pageNumber);
+    }
     
     // don't write the whole page, just wipe out the header (which should be
     // enough to let us know if we accidentally try to use an invalid page)
@@ -365,6 +1158,12 @@ public class PageChannel implements Channel, Flushable {
     _channel.write(_invalidPageBytes, getPageOffset(pageNumber));
     
     _globalUsageMap.addPageNumber(pageNumber);  //force is done here
+
+    // we know this page is no longer in use, so it can be handed out again
+    if(_numReusablePages == _reusablePages.length) {
+      _reusablePages = Arrays.copyOf(_reusablePages, _numReusablePages * 2);
+    }
+    _reusablePages[_numReusablePages++] = pageNumber;
   }
   
   /**
@@ -390,10 +1189,19 @@ public class PageChannel implements Channel, Flushable {
   }
   
   public void flush() throws IOException {
+    flushDirtyPages();
     _channel.force(true);
   }
   
   public void close() throws IOException {
+    if(_pageCache != null) {
+      _pageCache.clear();
+    }
+    _mappedSegments = null;
+    _mappedPageCount = 0;
+    shutdownDecodeExecutor();
+    flushDirtyPages();
+    trimPreallocatedPages();
     flush();
     if(_closeChannel) {
       _channel.close();
@@ -404,6 +1212,17 @@ public class PageChannel implements Channel, Flushable {
     return _channel.isOpen();
   }
 
+  /**
+   * Updates the modification count and discards any cached copy of the given
+   * page.
+   */
+  private void pageModified(int pageNumber) {
+    ++_modCount;
+    if(_pageCache != null) {
+      _pageCache.invalidatePage(pageNumber);
+    }
+  }
+
   /**
    * Applies the XOR mask to the database header in the given buffer.
    */
@@ -439,4 +1258,101 @@ public class PageChannel implements Channel, Flushable {
   public static ByteBuffer wrap(byte[] bytes) {
     return ByteBuffer.wrap(bytes).order(DEFAULT_BYTE_ORDER);
   }
+
+  /**
+   * Decodes pages of a bulk page read using a specific CodecHandler.  Each
+   * page is decoded in a separate page buffer, so that CodecHandlers always
+   * see normal page buffers (the pages of a bulk read are slices of a larger
+   * buffer).  Instances are not thread-safe.
+   */
+  private final class PageDecoder
+  {
+    private final CodecHandler _handler;
+    private ByteBuffer _inPage;
+    private ByteBuffer _outPage;
+
+    private PageDecoder(CodecHandler handler) {
+      _handler = handler;
+    }
+
+    /**
+     * Decodes the pages in the given range of page buffers in place.  Page 0
+     * (which is never encoded) is skipped.
+     */
+    public void decodePages(ByteBuffer[] pages, int pageNumber, int start,
+                            int end)
+      throws IOException
+    {
+      if(_handler == DefaultCodecProvider.DUMMY_HANDLER) {
+        // nothing to do
+        return;
+      }
+
+      if(_inPage == null) {
+        _inPage = createPageBuffer();
+        _outPage = (_handler.canDecodeInline() ? _inPage :
+                    createPageBuffer());
+      }
+
+      for(int i = start; i < end; ++i) {
+        int curPageNumber = pageNumber + i;
+        if(curPageNumber == 0) {
+          continue;
+        }
+
+        ByteBuffer page = pages[i];
+        page.clear();
+        _inPage.clear();
+        _inPage.put(page);
+        _inPage.flip();
+        _outPage.clear();
+        PageMetrics metrics = _pageMetrics;
+        long startTime = ((metrics != PageMetrics.DEFAULT) ?
+                          System.nanoTime() : 0L);
+        _handler.decodePage(_inPage, _outPage, curPageNumber);
+        if(metrics != PageMetrics.DEFAULT) {
+          metrics.pageDecoded(getPageType(_outPage, curPageNumber),
+                              System.nanoTime() - startTime);
+        }
+
+        ByteBuffer decodedPage = _outPage.duplicate();
+        decodedPage.clear();
+        decodedPage.limit(getFormat().PAGE_SIZE);
+        page.clear();
+        page.put(decodedPage);
+      }
+    }
+  }
+
+  /**
+   * ThreadFactory for daemon page decoding threads.
+   */
+  /**
+   * Applies additional configuration to a PageChannel during initialization
+   * (after the page codec has been initialized, but before any pages have
+   * been read).
+   * @usage _advanced_class_
+   */
+  public interface Configurer
+  {
+    /**
+     * @param pageChannel the channel being initialized
+     * @param readOnly whether or not the underlying channel was opened
+     *                 read-only
+     */
+    public void configure(PageChannel pageChannel, boolean readOnly)
+      throws IOException;
+  }
+
+  private static final class DecodeThreadFactory implements ThreadFactory
+  {
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "jackcess-page-decoder-" +
+                            THREAD_COUNT.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
 }
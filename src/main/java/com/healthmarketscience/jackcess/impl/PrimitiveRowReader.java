@@ -0,0 +1,289 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.impl.TableImpl.RowState;
+
+/**
+ * Reads fixed length column values of the current row of a cursor directly
+ * from the row data as primitive values.  Unlike the Row based methods of
+ * the cursor, the values are not boxed and no row map is created, which
+ * makes this suitable for scanning large numbers of rows (e.g. when
+ * aggregating numeric columns).
+ * <p/>
+ * A reader always reads from the cursor's <i>current</i> row.  The row
+ * location and null mask are determined once per row (when the first value
+ * is read after the cursor moves).  Null values are returned as {@code 0}
+ * (or {@code false}), use {@link #isNull} to distinguish them.  Only fixed
+ * length column types (and NUMERIC columns) are supported, other variable
+ * length columns (TEXT, MEMO, etc.) must be read using the normal cursor
+ * methods.
+ *
+ * @author James Ahlborn
+ * @usage _advanced_class_
+ */
+public class PrimitiveRowReader
+{
+  private final CursorImpl _cursor;
+  private final TableImpl _table;
+  private final JetFormat _format;
+  private final RowState _rowState;
+  /** the row for which the row info is currently loaded */
+  private RowIdImpl _rowId;
+  /** the table modification count when the row info was loaded */
+  private int _modCount;
+  /** the page containing the final data for the current row */
+  private ByteBuffer _rowPage;
+  /** the start of the current row data within the page */
+  private int _rowStart;
+  /** the start of the null mask of the current row within the page */
+  private int _nullMaskStart;
+  /** the number of columns in the current row */
+  private int _columnCount;
+
+  PrimitiveRowReader(CursorImpl cursor) {
+    _cursor = cursor;
+    _table = cursor.getTable();
+    _format = _table.getFormat();
+    _rowState = cursor.getRowState();
+  }
+
+  public CursorImpl getCursor() {
+    return _cursor;
+  }
+
+  /**
+   * @return {@code true} if the given column is null in the current row,
+   *         {@code false} otherwise (BOOLEAN columns are never null)
+   */
+  public boolean isNull(ColumnImpl column) throws IOException {
+    positionAtRow(column);
+    return(!column.storeInNullMask() && isNullBit(column));
+  }
+
+  /**
+   * @return the value of the given BOOLEAN column in the current row
+   */
+  public boolean getBoolean(ColumnImpl column) throws IOException {
+    positionAtRow(column);
+    if(column.getType() != DataType.BOOLEAN) {
+      throw unsupportedType(column, "boolean");
+    }
+    // boolean values are stored in the null mask
+    return !isNullBit(column);
+  }
+
+  /**
+   * @return the value of the given BYTE, INT or LONG column in the current
+   *         row, or {@code 0} if the value is null
+   */
+  public int getInt(ColumnImpl column) throws IOException {
+    int pos = getFixedDataPosition(column);
+    if(pos < 0) {
+      return 0;
+    }
+    switch(column.getType()) {
+    case BYTE:
+      return _rowPage.get(pos);
+    case INT:
+      return _rowPage.getShort(pos);
+    case LONG:
+      return _rowPage.getInt(pos);
+    default:
+      throw unsupportedType(column, "int");
+    }
+  }
+
+  /**
+   * @return the value of the given BYTE, INT, LONG or BIG_INT column in the
+   *         current row, or {@code 0} if the value is null
+   */
+  public long getLong(ColumnImpl column) throws IOException {
+    if(column.getType() != DataType.BIG_INT) {
+      return getInt(column);
+    }
+    int pos = getFixedDataPosition(column);
+    return((pos >= 0) ? _rowPage.getLong(pos) : 0L);
+  }
+
+  /**
+   * @return the value of the given FLOAT, DOUBLE, MONEY, BYTE, INT, LONG or
+   *         BIG_INT column in the current row, or {@code 0} if the value is
+   *         null
+   */
+  public double getDouble(ColumnImpl column) throws IOException {
+    int pos = getFixedDataPosition(column);
+    if(pos < 0) {
+      return 0d;
+    }
+    switch(column.getType()) {
+    case FLOAT:
+      return _rowPage.getFloat(pos);
+    case DOUBLE:
+      return _rowPage.getDouble(pos);
+    case MONEY:
+      // currency values are stored as longs scaled by 10^4
+      return _rowPage.getLong(pos) / 10000d;
+    case BIG_INT:
+      return _rowPage.getLong(pos);
+    default:
+      return getInt(column);
+    }
+  }
+
+  /**
+   * Returns the value of the given MONEY or NUMERIC (or integral) column in
+   * the current row as an unscaled long (see {@link #getScale}), or {@code 0}
+   * if the value is null.  This avoids creating a BigDecimal for each value.
+   * MONEY values always fit in a long, as do the values of NUMERIC columns
+   * with a precision of at most 18.
+   * @throws ArithmeticException if the NUMERIC value does not fit in a long
+   */
+  public long getUnscaledLong(ColumnImpl column) throws IOException {
+    switch(column.getType()) {
+    case MONEY:
+      int pos = getFixedDataPosition(column);
+      return((pos >= 0) ? _rowPage.getLong(pos) : 0L);
+    case NUMERIC:
+      // numeric values are stored with the var length values
+      positionAtRow(column);
+      if(isNullBit(column)) {
+        return 0L;
+      }
+      long val = ColumnImpl.NUMERIC_NOT_LONG;
+      if(_format.SIZE_ROW_VAR_COL_OFFSET == 2) {
+        int varColumnOffsetPos = _nullMaskStart - 4 -
+          (column.getVarLenTableIndex() * 2);
+        pos = _rowStart + _rowPage.getShort(varColumnOffsetPos);
+        val = ColumnImpl.readUnscaledNumericLong(_rowPage, pos);
+      } else {
+        // jump table based rows are not worth the trouble, use the normal
+        // value
+        BigDecimal decVal = (BigDecimal)_cursor.getCurrentRowValue(column);
+        if(decVal.unscaledValue().bitLength() < 64) {
+          val = decVal.unscaledValue().longValue();
+        }
+      }
+      if(val == ColumnImpl.NUMERIC_NOT_LONG) {
+        throw new ArithmeticException(column.withErrorContext(
+            "Numeric value does not fit in a long"));
+      }
+      return val;
+    default:
+      return getLong(column);
+    }
+  }
+
+  /**
+   * @return the scale of the values returned by {@link #getUnscaledLong} for
+   *         the given column
+   */
+  public int getScale(ColumnImpl column) {
+    switch(column.getType()) {
+    case MONEY:
+      return ColumnImpl.CURRENCY_SCALE;
+    case NUMERIC:
+      return column.getScale();
+    default:
+      return 0;
+    }
+  }
+
+  /**
+   * @return the value of the given SHORT_DATE_TIME column in the current row
+   *         as java milliseconds, or {@code 0} if the value is null
+   */
+  public long getDateMillis(ColumnImpl column) throws IOException {
+    int pos = getFixedDataPosition(column);
+    if(pos < 0) {
+      return 0L;
+    }
+    if(column.getType() != DataType.SHORT_DATE_TIME) {
+      throw unsupportedType(column, "date");
+    }
+    return column.fromDateDouble(_rowPage.getDouble(pos));
+  }
+
+  /**
+   * Returns the position of the data for the given fixed length column
+   * within the current row page, or -1 if the value is null.
+   */
+  private int getFixedDataPosition(ColumnImpl column) throws IOException {
+    positionAtRow(column);
+    if(column.isVariableLength() || column.storeInNullMask()) {
+      throw unsupportedType(column, "fixed length");
+    }
+    if(isNullBit(column)) {
+      return -1;
+    }
+    return _rowStart + _format.OFFSET_COLUMN_FIXED_DATA_ROW_OFFSET +
+      column.getFixedDataOffset();
+  }
+
+  private boolean isNullBit(ColumnImpl column) {
+    int columnNumber = column.getColumnNumber();
+    // if new columns were added to the table, old null masks may not include
+    // them (meaning the field is null)
+    if(columnNumber >= _columnCount) {
+      return true;
+    }
+    return((_rowPage.get(_nullMaskStart + (columnNumber / 8)) &
+            (1 << (columnNumber % 8))) == 0);
+  }
+
+  /**
+   * Loads the row info for the cursor's current row if necessary.
+   */
+  private void positionAtRow(ColumnImpl column) throws IOException {
+    if(_table != column.getTable()) {
+      throw new IllegalArgumentException(_table.withErrorContext(
+          "Given column " + column + " is not from this table"));
+    }
+
+    RowIdImpl rowId = _cursor.getCurrentRowId();
+    if((_rowPage != null) && rowId.equals(_rowId) &&
+       (_modCount == _table.getModCount()) && _rowState.isAtFinalRow() &&
+       rowId.equals(_rowState.getHeaderRowId())) {
+      // still positioned at the same row
+      return;
+    }
+
+    _rowPage = null;
+    ByteBuffer rowPage = _table.positionAtFinalRowPage(_rowState, rowId);
+    int rowNum = _rowState.getFinalRowId().getRowNumber();
+    _rowStart = TableImpl.findRowStart(rowPage, rowNum, _format);
+    int rowEnd = TableImpl.findRowEnd(rowPage, rowNum, _format);
+    _columnCount = ByteUtil.getUnsignedVarInt(rowPage, _rowStart,
+                                              _format.SIZE_ROW_COLUMN_COUNT);
+    _nullMaskStart = rowEnd - ((_columnCount + 7) / 8);
+    _rowId = rowId;
+    _modCount = _table.getModCount();
+    _rowPage = rowPage;
+  }
+
+  private static IllegalArgumentException unsupportedType(
+      ColumnImpl column, String valueType) {
+    return new IllegalArgumentException(column.withErrorContext(
+        "Cannot read " + valueType + " value from column of type " +
+        column.getType()));
+  }
+}
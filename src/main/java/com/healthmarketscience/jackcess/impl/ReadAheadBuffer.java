@@ -0,0 +1,137 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Buffer which reads runs of consecutive pages owned by a table (as
+ * determined by the table's usage map) with a single read, so that
+ * sequential scans do not need to issue a separate read for each page.  The
+ * direction of the scan is inferred from the sequence of requested pages.
+ * Buffered pages are discarded whenever any page in the database is
+ * modified.
+ *
+ * @author James Ahlborn
+ */
+public class ReadAheadBuffer
+{
+  private final PageChannel _pageChannel;
+  /** the pages which may be read ahead */
+  private final UsageMap _ownedPages;
+  /** max number of pages to read at once */
+  private final int _maxPages;
+  /** buffer holding the current run of pages */
+  private final TempBufferHolder _bufferH =
+    TempBufferHolder.newHolder(TempBufferHolder.Type.SOFT, true);
+  /** the mod count of the current buffer when the pages were read */
+  private int _bufferModCount;
+  /** the mod count of the page channel when the pages were read */
+  private int _pageModCount;
+  /** first page in the current buffer */
+  private int _firstPageNumber = PageChannel.INVALID_PAGE_NUMBER;
+  /** number of pages in the current buffer */
+  private int _numPages;
+  /** the last page number requested */
+  private int _lastPageNumber = PageChannel.INVALID_PAGE_NUMBER;
+
+  public ReadAheadBuffer(PageChannel pageChannel, UsageMap ownedPages,
+                         int maxPages)
+  {
+    _pageChannel = pageChannel;
+    _ownedPages = ownedPages;
+    _maxPages = maxPages;
+  }
+
+  /**
+   * Reads the given page into the given buffer, reading ahead a run of pages
+   * if the page is not currently buffered.  Position and limit of the given
+   * buffer are the same as for {@link PageChannel#readPage}.
+   */
+  public void readPage(ByteBuffer buffer, int pageNumber)
+    throws IOException
+  {
+    int lastPageNumber = _lastPageNumber;
+    _lastPageNumber = pageNumber;
+
+    ByteBuffer pages = getBufferedPages(pageNumber);
+    if(pages == null) {
+      // only read ahead when moving to a new page (re-reading the same page,
+      // e.g. after a modification, does not indicate a scan)
+      boolean moveForward = (pageNumber > lastPageNumber);
+      int runLength = ((pageNumber != lastPageNumber) ?
+                       _ownedPages.getPageRunLength(pageNumber, _maxPages,
+                                                    moveForward) : 0);
+      if(runLength <= 1) {
+        // nothing to read ahead
+        _pageChannel.readPage(buffer, pageNumber);
+        return;
+      }
+
+      int firstPageNumber = (moveForward ? pageNumber :
+                             (pageNumber - runLength + 1));
+      pages = readPages(firstPageNumber, runLength);
+    }
+
+    int pageSize = _pageChannel.getFormat().PAGE_SIZE;
+    int pageOffset = (pageNumber - _firstPageNumber) * pageSize;
+    buffer.clear();
+    buffer.put(PageChannel.narrowBuffer(pages, pageOffset,
+                                        pageOffset + pageSize));
+    buffer.flip();
+  }
+
+  /**
+   * Discards any currently buffered pages.
+   */
+  public void invalidate() {
+    _firstPageNumber = PageChannel.INVALID_PAGE_NUMBER;
+    _numPages = 0;
+  }
+
+  /**
+   * Returns the buffered pages if they contain the given page and are still
+   * valid, {@code null} otherwise.
+   */
+  private ByteBuffer getBufferedPages(int pageNumber) {
+    if((pageNumber < _firstPageNumber) ||
+       (pageNumber >= (_firstPageNumber + _numPages)) ||
+       (_pageModCount != _pageChannel.getModCount())) {
+      return null;
+    }
+    ByteBuffer pages = _bufferH.getExistingBuffer();
+    if((pages == null) || (_bufferModCount != _bufferH.getModCount())) {
+      return null;
+    }
+    return pages;
+  }
+
+  private ByteBuffer readPages(int firstPageNumber, int numPages)
+    throws IOException
+  {
+    invalidate();
+    ByteBuffer pages = _bufferH.getBuffer(
+        _pageChannel, _maxPages * _pageChannel.getFormat().PAGE_SIZE);
+    _pageChannel.readPages(pages, firstPageNumber, numPages);
+    _bufferModCount = _bufferH.getModCount();
+    _pageModCount = _pageChannel.getModCount();
+    _firstPageNumber = firstPageNumber;
+    _numPages = numPages;
+    return pages;
+  }
+}
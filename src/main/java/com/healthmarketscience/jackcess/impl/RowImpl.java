@@ -59,7 +59,7 @@ public class RowImpl extends LinkedHashMap<String,Object> implements Row
   }
 
   public String getString(String name) {
-    return (String)get(name);
+    return (String)LongValueHandle.toValue(get(name));
   }
 
   public Boolean getBoolean(String name) {
@@ -95,7 +95,7 @@ public class RowImpl extends LinkedHashMap<String,Object> implements Row
   }
 
   public byte[] getBytes(String name) {
-    return (byte[])get(name);
+    return (byte[])LongValueHandle.toValue(get(name));
   }
 
   public ComplexValueForeignKey getForeignKey(String name) {
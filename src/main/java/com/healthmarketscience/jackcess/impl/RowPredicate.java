@@ -0,0 +1,437 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.util.RowFilter;
+
+/**
+ * A RowFilter made up of simple column predicates (null checks, equality,
+ * ranges and text prefixes) which can be evaluated directly against the raw
+ * row data of a cursor's current row (via a {@link PrimitiveRowReader}).
+ * This allows rows to be rejected without materializing a Row or creating
+ * any value objects (see {@link CursorImpl#findNextRow(RowPredicate)}).
+ * <p/>
+ * Range and equality predicates are supported for the fixed length numeric,
+ * date and boolean column types (booleans compare as 0/1 and dates compare
+ * as java millis).  Equality and prefix predicates are supported for TEXT
+ * and MEMO columns, which are only decoded for rows which pass the other
+ * predicates.  Comparison values are converted to the type of the column
+ * (as when writing the value).  A row with a null value never matches an
+ * equality, range or prefix predicate.
+ *
+ * @author James Ahlborn
+ * @usage _intermediate_class_
+ */
+public abstract class RowPredicate extends RowFilter
+{
+  /** the general types of values handled by the predicates */
+  private enum ValueKind { LONG, DOUBLE, TEXT, OTHER; }
+
+  protected RowPredicate() {}
+
+  /**
+   * Returns {@code true} if the current row of the given reader's cursor
+   * matches this predicate, {@code false} otherwise.
+   */
+  public abstract boolean matches(PrimitiveRowReader reader)
+    throws IOException;
+
+  /**
+   * @return a predicate which matches rows where the given column is null
+   */
+  public static RowPredicate isNull(ColumnImpl column) {
+    return new NullPredicate(column, true);
+  }
+
+  /**
+   * @return a predicate which matches rows where the given column is not
+   *         null
+   */
+  public static RowPredicate isNotNull(ColumnImpl column) {
+    return new NullPredicate(column, false);
+  }
+
+  /**
+   * @return a predicate which matches rows where the given column is equal to
+   *         the given value (or is null, if the given value is {@code null})
+   */
+  public static RowPredicate equalTo(ColumnImpl column, Object value)
+    throws IOException
+  {
+    if(value == null) {
+      return isNull(column);
+    }
+    if(getValueKind(column) == ValueKind.TEXT) {
+      return new TextPredicate(column, toText(value), false);
+    }
+    return between(column, value, value);
+  }
+
+  /**
+   * @return a predicate which matches rows where the value of the given
+   *         column is between the given values (inclusive).  A {@code null}
+   *         bound is unbounded.
+   */
+  public static RowPredicate between(ColumnImpl column, Object minValue,
+                                     Object maxValue)
+    throws IOException
+  {
+    switch(getValueKind(column)) {
+    case LONG:
+      return new LongRangePredicate(
+          column, (minValue != null), toLong(column, minValue),
+          (maxValue != null), toLong(column, maxValue));
+    case DOUBLE:
+      return new DoubleRangePredicate(
+          column, (minValue != null), toDouble(column, minValue),
+          (maxValue != null), toDouble(column, maxValue));
+    default:
+      throw new IllegalArgumentException(column.withErrorContext(
+          "Range predicates are not supported for columns of type " +
+          column.getType()));
+    }
+  }
+
+  /**
+   * @return a predicate which matches rows where the value of the given
+   *         column starts with the given prefix
+   */
+  public static RowPredicate startsWith(ColumnImpl column, String prefix) {
+    if(getValueKind(column) != ValueKind.TEXT) {
+      throw new IllegalArgumentException(column.withErrorContext(
+          "Prefix predicates are not supported for columns of type " +
+          column.getType()));
+    }
+    return new TextPredicate(column, prefix, true);
+  }
+
+  /**
+   * @return a predicate which matches rows matched by all the given
+   *         predicates (which are evaluated in the given order)
+   */
+  public static RowPredicate and(RowPredicate... predicates) {
+    return new AndPredicate(predicates);
+  }
+
+  /**
+   * Returns a predicate which rejects rows which could not match the given
+   * value using {@link com.healthmarketscience.jackcess.util.SimpleColumnMatcher}
+   * (the returned predicate may still match some rows which do not match
+   * the value).
+   */
+  static RowPredicate forPattern(ColumnImpl column, Object value)
+  {
+    if(value == null) {
+      return isNull(column);
+    }
+
+    try {
+      switch(getValueKind(column)) {
+      case LONG:
+        long longVal = toLong(column, value);
+        return new LongRangePredicate(column, true, longVal, true, longVal);
+      case DOUBLE:
+        if(column.getType() != DataType.MONEY) {
+          double doubleVal = toDouble(column, value);
+          // NaN equals NaN when comparing objects
+          if(!Double.isNaN(doubleVal)) {
+            return new DoubleRangePredicate(column, true, doubleVal,
+                                            true, doubleVal);
+          }
+        }
+        break;
+      default:
+        // only handle nulls
+      }
+    } catch(Exception e) {
+      // the matcher will handle this value, only check for nulls
+    }
+
+    return isNotNull(column);
+  }
+
+  /**
+   * Returns a predicate which rejects rows which could not match the given
+   * row pattern using {@link
+   * com.healthmarketscience.jackcess.util.SimpleColumnMatcher}, or {@code
+   * null} if no such predicate could be created.
+   */
+  static RowPredicate forRowPattern(TableImpl table,
+                                    Map<String,?> rowPattern)
+  {
+    List<RowPredicate> predicates = new ArrayList<RowPredicate>();
+    for(ColumnImpl column : table.getColumns()) {
+      if(rowPattern.containsKey(column.getName())) {
+        predicates.add(forPattern(column, rowPattern.get(column.getName())));
+      }
+    }
+    if(predicates.isEmpty()) {
+      return null;
+    }
+    return ((predicates.size() == 1) ? predicates.get(0) :
+            and(predicates.toArray(new RowPredicate[predicates.size()])));
+  }
+
+  private static ValueKind getValueKind(ColumnImpl column) {
+    switch(column.getType()) {
+    case BOOLEAN:
+    case BYTE:
+    case INT:
+    case LONG:
+    case BIG_INT:
+    case SHORT_DATE_TIME:
+      return ValueKind.LONG;
+    case FLOAT:
+    case DOUBLE:
+    case MONEY:
+      return ValueKind.DOUBLE;
+    case TEXT:
+    case MEMO:
+      return ValueKind.TEXT;
+    default:
+      return ValueKind.OTHER;
+    }
+  }
+
+  private static long toLong(ColumnImpl column, Object value)
+    throws IOException
+  {
+    if(value == null) {
+      return 0L;
+    }
+    Object internalVal = ColumnImpl.toInternalValue(
+        column.getType(), value, column.getDatabase());
+    if(internalVal instanceof Boolean) {
+      return (((Boolean)internalVal) ? 1L : 0L);
+    }
+    if(internalVal instanceof Date) {
+      return ((Date)internalVal).getTime();
+    }
+    return ((Number)internalVal).longValue();
+  }
+
+  private static double toDouble(ColumnImpl column, Object value)
+    throws IOException
+  {
+    if(value == null) {
+      return 0d;
+    }
+    return ((Number)ColumnImpl.toInternalValue(
+                column.getType(), value, column.getDatabase())).doubleValue();
+  }
+
+  private static String toText(Object value) throws IOException {
+    return ColumnImpl.toCharSequence(value).toString();
+  }
+
+  /**
+   * Base class for predicates on a single column.
+   */
+  private static abstract class ColumnPredicate extends RowPredicate
+  {
+    protected final ColumnImpl _column;
+
+    private ColumnPredicate(ColumnImpl column) {
+      _column = column;
+    }
+
+    @Override
+    public boolean matches(Row row) {
+      return matchesValue(_column.getRowValue(row));
+    }
+
+    protected abstract boolean matchesValue(Object value);
+  }
+
+  private static final class NullPredicate extends ColumnPredicate
+  {
+    private final boolean _isNull;
+
+    private NullPredicate(ColumnImpl column, boolean isNull) {
+      super(column);
+      _isNull = isNull;
+    }
+
+    @Override
+    public boolean matches(PrimitiveRowReader reader) throws IOException {
+      return(reader.isNull(_column) == _isNull);
+    }
+
+    @Override
+    protected boolean matchesValue(Object value) {
+      return((value == null) == _isNull);
+    }
+  }
+
+  private static final class LongRangePredicate extends ColumnPredicate
+  {
+    private final boolean _hasMin;
+    private final long _min;
+    private final boolean _hasMax;
+    private final long _max;
+
+    private LongRangePredicate(ColumnImpl column, boolean hasMin, long min,
+                               boolean hasMax, long max) {
+      super(column);
+      _hasMin = hasMin;
+      _min = min;
+      _hasMax = hasMax;
+      _max = max;
+    }
+
+    @Override
+    public boolean matches(PrimitiveRowReader reader) throws IOException {
+      long value = 0L;
+      switch(_column.getType()) {
+      case BOOLEAN:
+        value = (reader.getBoolean(_column) ? 1L : 0L);
+        break;
+      case SHORT_DATE_TIME:
+        if(reader.isNull(_column)) {
+          return false;
+        }
+        value = reader.getDateMillis(_column);
+        break;
+      default:
+        if(reader.isNull(_column)) {
+          return false;
+        }
+        value = reader.getLong(_column);
+      }
+      return inRange(value);
+    }
+
+    @Override
+    protected boolean matchesValue(Object value) {
+      if(value == null) {
+        return false;
+      }
+      try {
+        return inRange(toLong(_column, value));
+      } catch(IOException e) {
+        return false;
+      }
+    }
+
+    private boolean inRange(long value) {
+      return((!_hasMin || (value >= _min)) && (!_hasMax || (value <= _max)));
+    }
+  }
+
+  private static final class DoubleRangePredicate extends ColumnPredicate
+  {
+    private final boolean _hasMin;
+    private final double _min;
+    private final boolean _hasMax;
+    private final double _max;
+
+    private DoubleRangePredicate(ColumnImpl column, boolean hasMin,
+                                 double min, boolean hasMax, double max) {
+      super(column);
+      _hasMin = hasMin;
+      _min = min;
+      _hasMax = hasMax;
+      _max = max;
+    }
+
+    @Override
+    public boolean matches(PrimitiveRowReader reader) throws IOException {
+      return(!reader.isNull(_column) && inRange(reader.getDouble(_column)));
+    }
+
+    @Override
+    protected boolean matchesValue(Object value) {
+      if(value == null) {
+        return false;
+      }
+      try {
+        return inRange(toDouble(_column, value));
+      } catch(IOException e) {
+        return false;
+      }
+    }
+
+    private boolean inRange(double value) {
+      return((!_hasMin || (value >= _min)) && (!_hasMax || (value <= _max)));
+    }
+  }
+
+  private static final class TextPredicate extends ColumnPredicate
+  {
+    private final String _text;
+    private final boolean _prefix;
+
+    private TextPredicate(ColumnImpl column, String text, boolean prefix) {
+      super(column);
+      _text = text;
+      _prefix = prefix;
+    }
+
+    @Override
+    public boolean matches(PrimitiveRowReader reader) throws IOException {
+      // check the null mask before decoding the value
+      return(!reader.isNull(_column) &&
+             matchesValue(reader.getCursor().getCurrentRowValue(_column)));
+    }
+
+    @Override
+    protected boolean matchesValue(Object value) {
+      if(value == null) {
+        return false;
+      }
+      String str = value.toString();
+      return (_prefix ? str.startsWith(_text) : str.equals(_text));
+    }
+  }
+
+  private static final class AndPredicate extends RowPredicate
+  {
+    private final RowPredicate[] _predicates;
+
+    private AndPredicate(RowPredicate[] predicates) {
+      _predicates = predicates;
+    }
+
+    @Override
+    public boolean matches(PrimitiveRowReader reader) throws IOException {
+      for(RowPredicate predicate : _predicates) {
+        if(!predicate.matches(reader)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean matches(Row row) {
+      for(RowPredicate predicate : _predicates) {
+        if(!predicate.matches(row)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
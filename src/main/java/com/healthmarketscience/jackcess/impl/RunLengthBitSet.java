@@ -0,0 +1,526 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.util.Arrays;
+
+/**
+ * Set of non-negative integers (bits) stored as a sorted list of runs of
+ * consecutive set bits.  Page ownership in a database file tends to be
+ * clustered, so this is generally much more compact than a
+ * {@link java.util.BitSet} for large, sparse usage maps, and allows for
+ * efficient range operations and iteration over the runs of set bits.  The
+ * bit oriented methods mirror those of BitSet.
+ * <p/>
+ * Individual bit lookups are {@code O(log(runs))}, adding/removing bits at
+ * the end of the set (the common case) is {@code O(log(runs))}, bulk
+ * union/intersection/difference operations are {@code O(runs)}.
+ * <p/>
+ * This class is not thread-safe.
+ *
+ * @author James Ahlborn
+ */
+public class RunLengthBitSet
+{
+  private static final int INITIAL_CAPACITY = 4;
+
+  /** start of each run (inclusive) */
+  private int[] _starts;
+  /** end of each run (exclusive) */
+  private int[] _ends;
+  /** number of runs */
+  private int _numRuns;
+  /** total number of set bits */
+  private int _cardinality;
+
+  public RunLengthBitSet() {
+    _starts = new int[INITIAL_CAPACITY];
+    _ends = new int[INITIAL_CAPACITY];
+  }
+
+  public RunLengthBitSet(RunLengthBitSet other) {
+    this(other, 0);
+  }
+
+  /**
+   * Creates a copy of the given set with all the bits shifted by the given
+   * offset (which must not result in any negative bits).
+   */
+  public RunLengthBitSet(RunLengthBitSet other, int offset) {
+    int capacity = Math.max(other._numRuns, INITIAL_CAPACITY);
+    _starts = Arrays.copyOf(other._starts, capacity);
+    _ends = Arrays.copyOf(other._ends, capacity);
+    _numRuns = other._numRuns;
+    _cardinality = other._cardinality;
+    if(offset != 0) {
+      for(int i = 0; i < _numRuns; ++i) {
+        _starts[i] += offset;
+        _ends[i] += offset;
+      }
+    }
+  }
+
+  /**
+   * @return the number of set bits
+   */
+  public int cardinality() {
+    return _cardinality;
+  }
+
+  public boolean isEmpty() {
+    return (_numRuns == 0);
+  }
+
+  /**
+   * @return the index of the highest set bit plus one, or 0 if no bits are
+   *         set
+   */
+  public int length() {
+    return ((_numRuns > 0) ? _ends[_numRuns - 1] : 0);
+  }
+
+  /**
+   * @return the number of runs of consecutive set bits
+   */
+  public int getRunCount() {
+    return _numRuns;
+  }
+
+  /**
+   * @return the first bit of the run with the given index (inclusive)
+   */
+  public int getRunStart(int runIndex) {
+    return _starts[runIndex];
+  }
+
+  /**
+   * @return the last bit of the run with the given index (exclusive)
+   */
+  public int getRunEnd(int runIndex) {
+    return _ends[runIndex];
+  }
+
+  public boolean get(int bitIndex) {
+    int runIdx = findRun(bitIndex);
+    return ((runIdx >= 0) && (bitIndex < _ends[runIdx]));
+  }
+
+  public void set(int bitIndex) {
+    set(bitIndex, bitIndex + 1);
+  }
+
+  /**
+   * Sets the bits from the given fromIndex (inclusive) to the given toIndex
+   * (exclusive).
+   */
+  public void set(int fromIndex, int toIndex) {
+    checkRange(fromIndex, toIndex);
+    if(fromIndex == toIndex) {
+      return;
+    }
+
+    // fast path, appending to the end
+    if((_numRuns == 0) || (fromIndex > _ends[_numRuns - 1])) {
+      insertRuns(_numRuns, 1);
+      _starts[_numRuns - 1] = fromIndex;
+      _ends[_numRuns - 1] = toIndex;
+      _cardinality += (toIndex - fromIndex);
+      return;
+    }
+
+    // find all runs which overlap (or are adjacent to) the new run
+    int loIdx = findRun(fromIndex);
+    if((loIdx < 0) || (_ends[loIdx] < fromIndex)) {
+      ++loIdx;
+    }
+    int hiIdx = findRun(toIndex);
+
+    if(loIdx > hiIdx) {
+      // new run fits between existing runs
+      insertRuns(loIdx, 1);
+      _starts[loIdx] = fromIndex;
+      _ends[loIdx] = toIndex;
+      _cardinality += (toIndex - fromIndex);
+      return;
+    }
+
+    // merge the new run with the existing runs
+    int start = Math.min(fromIndex, _starts[loIdx]);
+    int end = Math.max(toIndex, _ends[hiIdx]);
+    _cardinality += (end - start) - countBits(loIdx, hiIdx);
+    removeRuns(loIdx + 1, hiIdx - loIdx);
+    _starts[loIdx] = start;
+    _ends[loIdx] = end;
+  }
+
+  public void clear(int bitIndex) {
+    clear(bitIndex, bitIndex + 1);
+  }
+
+  /**
+   * Clears the bits from the given fromIndex (inclusive) to the given toIndex
+   * (exclusive).
+   */
+  public void clear(int fromIndex, int toIndex) {
+    checkRange(fromIndex, toIndex);
+    if((fromIndex == toIndex) || (_numRuns == 0)) {
+      return;
+    }
+
+    // find all runs which overlap the cleared range
+    int loIdx = findRun(fromIndex);
+    if((loIdx < 0) || (_ends[loIdx] <= fromIndex)) {
+      ++loIdx;
+    }
+    int hiIdx = findRun(toIndex - 1);
+    if(loIdx > hiIdx) {
+      // nothing to clear
+      return;
+    }
+
+    int loStart = _starts[loIdx];
+    int hiEnd = _ends[hiIdx];
+    _cardinality -= countBits(loIdx, hiIdx);
+
+    // determine what is left of the first and last runs
+    int numPieces = 0;
+    if(loStart < fromIndex) {
+      ++numPieces;
+    }
+    if(hiEnd > toIndex) {
+      ++numPieces;
+    }
+
+    int numRuns = hiIdx - loIdx + 1;
+    if(numPieces > numRuns) {
+      insertRuns(loIdx, numPieces - numRuns);
+    } else if(numPieces < numRuns) {
+      removeRuns(loIdx, numRuns - numPieces);
+    }
+
+    int idx = loIdx;
+    if(loStart < fromIndex) {
+      _starts[idx] = loStart;
+      _ends[idx] = fromIndex;
+      _cardinality += (fromIndex - loStart);
+      ++idx;
+    }
+    if(hiEnd > toIndex) {
+      _starts[idx] = toIndex;
+      _ends[idx] = hiEnd;
+      _cardinality += (hiEnd - toIndex);
+    }
+  }
+
+  /**
+   * Clears all bits.
+   */
+  public void clear() {
+    _numRuns = 0;
+    _cardinality = 0;
+  }
+
+  /**
+   * @return the index of the first set bit at or after the given index, or
+   *         -1 if there is no such bit
+   */
+  public int nextSetBit(int fromIndex) {
+    fromIndex = Math.max(fromIndex, 0);
+    int runIdx = findRun(fromIndex);
+    if((runIdx >= 0) && (fromIndex < _ends[runIdx])) {
+      return fromIndex;
+    }
+    ++runIdx;
+    return ((runIdx < _numRuns) ? _starts[runIdx] : -1);
+  }
+
+  /**
+   * @return the index of the first clear bit at or after the given index
+   */
+  public int nextClearBit(int fromIndex) {
+    fromIndex = Math.max(fromIndex, 0);
+    int runIdx = findRun(fromIndex);
+    if((runIdx >= 0) && (fromIndex < _ends[runIdx])) {
+      return _ends[runIdx];
+    }
+    return fromIndex;
+  }
+
+  /**
+   * @return the index of the last set bit at or before the given index, or
+   *         -1 if there is no such bit
+   */
+  public int previousSetBit(int fromIndex) {
+    if(fromIndex < 0) {
+      return -1;
+    }
+    int runIdx = findRun(fromIndex);
+    return ((runIdx >= 0) ? Math.min(fromIndex, _ends[runIdx] - 1) : -1);
+  }
+
+  /**
+   * @return the index of the last clear bit at or before the given index, or
+   *         -1 if there is no such bit
+   */
+  public int previousClearBit(int fromIndex) {
+    if(fromIndex < 0) {
+      return -1;
+    }
+    int runIdx = findRun(fromIndex);
+    if((runIdx >= 0) && (fromIndex < _ends[runIdx])) {
+      return _starts[runIdx] - 1;
+    }
+    return fromIndex;
+  }
+
+  /**
+   * Sets all the bits in this set which are set in the given set.
+   */
+  public void or(RunLengthBitSet other) {
+    if(other._numRuns == 0) {
+      return;
+    }
+    int[] starts = new int[_numRuns + other._numRuns];
+    int[] ends = new int[starts.length];
+    int numRuns = 0;
+    int cardinality = 0;
+    int i = 0;
+    int j = 0;
+    while((i < _numRuns) || (j < other._numRuns)) {
+      int start = 0;
+      int end = 0;
+      if((j >= other._numRuns) ||
+         ((i < _numRuns) && (_starts[i] <= other._starts[j]))) {
+        start = _starts[i];
+        end = _ends[i];
+        ++i;
+      } else {
+        start = other._starts[j];
+        end = other._ends[j];
+        ++j;
+      }
+
+      if((numRuns > 0) && (start <= ends[numRuns - 1])) {
+        // overlaps (or is adjacent to) the previous run
+        if(end > ends[numRuns - 1]) {
+          cardinality += (end - ends[numRuns - 1]);
+          ends[numRuns - 1] = end;
+        }
+      } else {
+        starts[numRuns] = start;
+        ends[numRuns] = end;
+        cardinality += (end - start);
+        ++numRuns;
+      }
+    }
+    setRuns(starts, ends, numRuns, cardinality);
+  }
+
+  /**
+   * Clears all the bits in this set which are not set in the given set.
+   */
+  public void and(RunLengthBitSet other) {
+    int[] starts = new int[_numRuns + other._numRuns];
+    int[] ends = new int[starts.length];
+    int numRuns = 0;
+    int cardinality = 0;
+    int i = 0;
+    int j = 0;
+    while((i < _numRuns) && (j < other._numRuns)) {
+      int start = Math.max(_starts[i], other._starts[j]);
+      int end = Math.min(_ends[i], other._ends[j]);
+      if(start < end) {
+        starts[numRuns] = start;
+        ends[numRuns] = end;
+        cardinality += (end - start);
+        ++numRuns;
+      }
+      if(_ends[i] < other._ends[j]) {
+        ++i;
+      } else {
+        ++j;
+      }
+    }
+    setRuns(starts, ends, numRuns, cardinality);
+  }
+
+  /**
+   * Clears all the bits in this set which are set in the given set.
+   */
+  public void andNot(RunLengthBitSet other) {
+    if((_numRuns == 0) || (other._numRuns == 0)) {
+      return;
+    }
+    int[] starts = new int[_numRuns + other._numRuns];
+    int[] ends = new int[starts.length];
+    int numRuns = 0;
+    int cardinality = 0;
+    int j = 0;
+    for(int i = 0; i < _numRuns; ++i) {
+      int start = _starts[i];
+      int end = _ends[i];
+
+      // skip runs which are entirely before this run
+      while((j < other._numRuns) && (other._ends[j] <= start)) {
+        ++j;
+      }
+
+      // cut out any overlapping runs
+      for(int k = j; (k < other._numRuns) && (other._starts[k] < end); ++k) {
+        if(other._starts[k] > start) {
+          starts[numRuns] = start;
+          ends[numRuns] = other._starts[k];
+          cardinality += (other._starts[k] - start);
+          ++numRuns;
+        }
+        start = Math.max(start, other._ends[k]);
+        if(start >= end) {
+          break;
+        }
+      }
+
+      if(start < end) {
+        starts[numRuns] = start;
+        ends[numRuns] = end;
+        cardinality += (end - start);
+        ++numRuns;
+      }
+    }
+    setRuns(starts, ends, numRuns, cardinality);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if(this == o) {
+      return true;
+    }
+    if(!(o instanceof RunLengthBitSet)) {
+      return false;
+    }
+    RunLengthBitSet other = (RunLengthBitSet)o;
+    if(_numRuns != other._numRuns) {
+      return false;
+    }
+    for(int i = 0; i < _numRuns; ++i) {
+      if((_starts[i] != other._starts[i]) || (_ends[i] != other._ends[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 0;
+    for(int i = 0; i < _numRuns; ++i) {
+      hash = (hash * 31) + _starts[i];
+      hash = (hash * 31) + _ends[i];
+    }
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder().append("{");
+    for(int i = 0; i < _numRuns; ++i) {
+      if(i > 0) {
+        sb.append(", ");
+      }
+      sb.append(_starts[i]);
+      if(_ends[i] > (_starts[i] + 1)) {
+        sb.append("-").append(_ends[i] - 1);
+      }
+    }
+    return sb.append("}").toString();
+  }
+
+  /**
+   * @return the index of the last run which starts at or before the given
+   *         bit, or -1 if there is no such run
+   */
+  private int findRun(int bitIndex) {
+    if((_numRuns > 0) && (bitIndex >= _starts[_numRuns - 1])) {
+      // common case, looking at the end of the set
+      return _numRuns - 1;
+    }
+    int idx = Arrays.binarySearch(_starts, 0, _numRuns, bitIndex);
+    return ((idx >= 0) ? idx : (-idx - 2));
+  }
+
+  /**
+   * @return the number of bits in the given runs (inclusive)
+   */
+  private int countBits(int loIdx, int hiIdx) {
+    int count = 0;
+    for(int i = loIdx; i <= hiIdx; ++i) {
+      count += (_ends[i] - _starts[i]);
+    }
+    return count;
+  }
+
+  /**
+   * Makes room for the given number of runs at the given index.
+   */
+  private void insertRuns(int idx, int count) {
+    int newNumRuns = _numRuns + count;
+    if(newNumRuns > _starts.length) {
+      int newCapacity = Math.max(newNumRuns, _starts.length * 2);
+      _starts = Arrays.copyOf(_starts, newCapacity);
+      _ends = Arrays.copyOf(_ends, newCapacity);
+    }
+    int numToMove = _numRuns - idx;
+    if(numToMove > 0) {
+      System.arraycopy(_starts, idx, _starts, idx + count, numToMove);
+      System.arraycopy(_ends, idx, _ends, idx + count, numToMove);
+    }
+    _numRuns = newNumRuns;
+  }
+
+  /**
+   * Removes the given number of runs at the given index.
+   */
+  private void removeRuns(int idx, int count) {
+    if(count == 0) {
+      return;
+    }
+    int numToMove = _numRuns - (idx + count);
+    if(numToMove > 0) {
+      System.arraycopy(_starts, idx + count, _starts, idx, numToMove);
+      System.arraycopy(_ends, idx + count, _ends, idx, numToMove);
+    }
+    _numRuns -= count;
+  }
+
+  private void setRuns(int[] starts, int[] ends, int numRuns,
+                       int cardinality) {
+    if(starts.length < INITIAL_CAPACITY) {
+      starts = Arrays.copyOf(starts, INITIAL_CAPACITY);
+      ends = Arrays.copyOf(ends, INITIAL_CAPACITY);
+    }
+    _starts = starts;
+    _ends = ends;
+    _numRuns = numRuns;
+    _cardinality = cardinality;
+  }
+
+  private static void checkRange(int fromIndex, int toIndex) {
+    if((fromIndex < 0) || (toIndex < fromIndex)) {
+      throw new IndexOutOfBoundsException(
+          "Invalid range " + fromIndex + " to " + toIndex);
+    }
+  }
+}
@@ -18,6 +18,8 @@ package com.healthmarketscience.jackcess.impl;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringWriter;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
@@ -29,6 +31,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -41,6 +44,7 @@ import com.healthmarketscience.jackcess.Column;
 import com.healthmarketscience.jackcess.ColumnBuilder;
 import com.healthmarketscience.jackcess.ConstraintViolationException;
 import com.healthmarketscience.jackcess.CursorBuilder;
+import com.healthmarketscience.jackcess.DataType;
 import com.healthmarketscience.jackcess.Index;
 import com.healthmarketscience.jackcess.IndexBuilder;
 import com.healthmarketscience.jackcess.InvalidValueException;
@@ -152,6 +156,9 @@ public class TableImpl implements Table, PropertyMaps.Owner
   private final UsageMap _ownedPages;
   /** Usage map of pages that this table owns with free space on them */
   private final UsageMap _freeSpacePages;
+  /** in-memory summary of the free space on the pages of this table, lazily
+      loaded */
+  private FreeSpaceIndex _freeSpaceIndex;
   /** Number of rows in the table */
   private int _rowCount;
   /** last long auto number for the table */
@@ -163,12 +170,19 @@ public class TableImpl implements Table, PropertyMaps.Owner
   /** page buffer used to update data pages when adding rows */
   private final TempPageHolder _addRowBufferH =
     TempPageHolder.newHolder(TempBufferHolder.Type.SOFT);
+  /** page buffer used to update overflow data pages when deleting rows */
+  private final TempPageHolder _deleteRowBufferH =
+    TempPageHolder.newHolder(TempBufferHolder.Type.SOFT);
   /** page buffer used to update the table def page */
   private final TempPageHolder _tableDefBufferH =
     TempPageHolder.newHolder(TempBufferHolder.Type.SOFT);
   /** buffer used to writing rows of data */
   private final TempBufferHolder _writeRowBufferH =
     TempBufferHolder.newHolder(TempBufferHolder.Type.SOFT, true);
+  /** null mask re-used when writing rows of data */
+  private NullMask _writeNullMask;
+  /** var length column offsets re-used when writing rows of data */
+  private short[] _writeVarColumnOffsets;
   /** page buffer used to write out-of-row "long value" data */
   private final TempPageHolder _longValueBufferH =
     TempPageHolder.newHolder(TempBufferHolder.Type.SOFT);
@@ -181,6 +195,12 @@ public class TableImpl implements Table, PropertyMaps.Owner
   /** optional flag indicating whether or not auto numbers can be directly
       inserted by the user */
   private Boolean _allowAutoNumInsert;
+  /** the bulk load in progress for this table, if any */
+  private BulkLoad _bulkLoad;
+  /** ids of the rows deleted (with reclaimed space) by this instance, which
+      may still be referenced by cursors, savepoints, etc. and therefore must
+      not be re-used for new rows */
+  private final Set<RowIdImpl> _deletedRowIds = new HashSet<RowIdImpl>();
   /** foreign-key enforcer for this table */
   private final FKEnforcer _fkEnforcer;
   /** table validator if any (and enabled) */
@@ -383,6 +403,107 @@ public class TableImpl implements Table, PropertyMaps.Owner
     _allowAutoNumInsert = allowAutoNumInsert;
   }
 
+  /**
+   * Starts a bulk load of rows into this table (see {@link BulkLoad} for
+   * details), using the database's {@link
+   * DatabaseImpl#getMaxIndexSortBytes max amount of memory} for sorting index
+   * entries.  The bulk load must be {@link BulkLoad#finish finished} (or
+   * {@link BulkLoad#abort aborted}) after all the rows have been added.
+   * @usage _advanced_method_
+   */
+  public BulkLoad startBulkLoad() {
+    return startBulkLoad(getDatabase().getMaxIndexSortBytes());
+  }
+
+  /**
+   * Starts a bulk load of rows into this table (see {@link BulkLoad} for
+   * details).  The bulk load must be {@link BulkLoad#finish finished} (or
+   * {@link BulkLoad#abort aborted}) after all the rows have been added.
+   * @param maxSortBytes the approximate max amount of memory used to sort
+   *                     index entries before using temporary files
+   * @usage _advanced_method_
+   */
+  public BulkLoad startBulkLoad(int maxSortBytes) {
+    if(_bulkLoad != null) {
+      throw new IllegalStateException(withErrorContext(
+              "Bulk load already in progress"));
+    }
+    _bulkLoad = new BulkLoad(this, maxSortBytes);
+    getDatabase().addBulkLoad(_bulkLoad);
+    return _bulkLoad;
+  }
+
+  /**
+   * @return the bulk load in progress for this table, {@code null} if none
+   * @usage _advanced_method_
+   */
+  public BulkLoad getBulkLoad() {
+    return _bulkLoad;
+  }
+
+  void finishBulkLoad(BulkLoad bulkLoad) {
+    if(_bulkLoad == bulkLoad) {
+      _bulkLoad = null;
+    }
+    getDatabase().removeBulkLoad(bulkLoad);
+  }
+
+  /**
+   * Deletes all the rows added during the given bulk load.  The rows have
+   * not been added to the indexes (and cannot be referenced by any other
+   * rows), so they are just flagged as deleted on the data pages created
+   * during the bulk load.
+   */
+  void deleteBulkLoadRows(BulkLoad bulkLoad) throws IOException
+  {
+    JetFormat format = getFormat();
+    boolean reuseRowSpace = getDatabase().isReuseDeletedRowSpace();
+    int numDeleted = 0;
+
+    getPageChannel().startWrite();
+    try {
+
+      for(Integer pageNumber : bulkLoad.getDataPageNumbers()) {
+        ByteBuffer dataPage = _addRowBufferH.setPage(getPageChannel(),
+                                                     pageNumber);
+        int rowsOnPage = getRowsOnDataPage(dataPage, format);
+        for(int rowNum = 0; rowNum < rowsOnPage; ++rowNum) {
+          int rowIndex = getRowStartOffset(rowNum, format);
+          short rowStart = dataPage.getShort(rowIndex);
+          if(isDeletedRow(rowStart)) {
+            continue;
+          }
+          dataPage.putShort(rowIndex, (short)(rowStart | DELETED_ROW_MASK
+                                              | OVERFLOW_ROW_MASK));
+          if(reuseRowSpace) {
+            reclaimRowSpace(dataPage, rowNum, format);
+          }
+          ++numDeleted;
+        }
+        writeDataPage(dataPage, pageNumber);
+        if(reuseRowSpace) {
+          addFreeSpacePage(pageNumber);
+        }
+      }
+
+      // make sure table def gets updated
+      updateTableDefinition(-numDeleted);
+
+    } finally {
+      getPageChannel().finishWrite();
+    }
+  }
+
+  /**
+   * @throws IllegalStateException if a bulk load is in progress
+   */
+  private void requireNoBulkLoad() {
+    if(_bulkLoad != null) {
+      throw new IllegalStateException(withErrorContext(
+              "Operation not supported during bulk load"));
+    }
+  }
+
   /**
    * @usage _advanced_method_
    */
@@ -397,6 +518,24 @@ public class TableImpl implements Table, PropertyMaps.Owner
     return _ownedPages.cursor();
   }
 
+  /**
+   * @return a cursor over the data pages owned by this table within the given
+   *         range of page numbers ({@code startPage} inclusive,
+   *         {@code endPage} exclusive)
+   * @usage _advanced_method_
+   */
+  public UsageMap.PageCursor getOwnedPagesCursor(int startPage, int endPage) {
+    return _ownedPages.cursor(startPage, endPage);
+  }
+
+  /**
+   * @return a copy of the page numbers of the data pages owned by this table
+   * @usage _advanced_method_
+   */
+  public RunLengthBitSet getOwnedPageNumbers() {
+    return _ownedPages.getPages();
+  }
+
   /**
    * Returns the <i>approximate</i> number of database pages owned by this
    * table and all related indexes (this number does <i>not</i> take into
@@ -632,6 +771,7 @@ public class TableImpl implements Table, PropertyMaps.Owner
     throws IOException
   {
     requireValidRowId(rowId);
+    requireNoBulkLoad();
 
     getPageChannel().startWrite();
     try {
@@ -671,12 +811,51 @@ public class TableImpl implements Table, PropertyMaps.Owner
         rowBuffer = positionAtRowHeader(rowState, rowId);
       }
 
+      // grab the location of any overflow row data before we clobber the
+      // header row
+      RowIdImpl overflowRowId = null;
+      boolean reuseRowSpace = getDatabase().isReuseDeletedRowSpace();
+      if(reuseRowSpace && rowState.isOverflow()) {
+        positionAtRowData(rowState, rowId);
+        overflowRowId = rowState.getFinalRowId();
+        rowBuffer = positionAtRowHeader(rowState, rowId);
+      }
+
       // finally, pull the trigger
       int rowIndex = getRowStartOffset(rowNumber, getFormat());
       rowBuffer.putShort(rowIndex, (short)(rowBuffer.getShort(rowIndex)
                                            | DELETED_ROW_MASK | OVERFLOW_ROW_MASK));
+      if(reuseRowSpace) {
+        reclaimRowSpace(rowBuffer, rowNumber, getFormat());
+        // the space is re-usable, but the row id may still be referenced
+        _deletedRowIds.add(new RowIdImpl(pageNumber, rowNumber));
+        if((overflowRowId != null) &&
+           (overflowRowId.getPageNumber() == pageNumber)) {
+          // the overflow row data is no longer referenced by anything
+          reclaimRowSpace(rowBuffer, overflowRowId.getRowNumber(),
+                          getFormat());
+          overflowRowId = null;
+        }
+      }
       writeDataPage(rowBuffer, pageNumber);
 
+      if(reuseRowSpace) {
+        addFreeSpacePage(pageNumber);
+        if(overflowRowId != null) {
+          // the overflow row data (which is already flagged as deleted) is no
+          // longer referenced by anything
+          int overflowPageNumber = overflowRowId.getPageNumber();
+          ByteBuffer overflowPage = _deleteRowBufferH.setPage(
+              getPageChannel(), overflowPageNumber);
+          reclaimRowSpace(overflowPage, overflowRowId.getRowNumber(),
+                          getFormat());
+          writeDataPage(overflowPage, overflowPageNumber);
+          // the page may be modified via other buffers before the next use
+          _deleteRowBufferH.invalidate();
+          addFreeSpacePage(overflowPageNumber);
+        }
+      }
+
       // update the indexes
       for(IndexData indexData : _indexDatas) {
         indexData.deleteRow(rowValues, rowId);
@@ -715,6 +894,82 @@ public class TableImpl implements Table, PropertyMaps.Owner
     return getRowColumn(getFormat(), rowBuffer, column, rowState, null);
   }
 
+  /**
+   * Returns a stream of the data of the given MEMO or OLE column from the
+   * given row.  Values stored on multiple pages are read lazily, one page at
+   * a time, as the stream is consumed (instead of being loaded completely
+   * into memory).  Note that MEMO data is returned in its encoded form (see
+   * {@link #getLongValueReader}).  The stream should not be used after the
+   * table is modified.
+   * @return the data stream, or {@code null} if the value is null
+   * @usage _advanced_method_
+   */
+  public InputStream getLongValueStream(RowState rowState, RowIdImpl rowId,
+                                        ColumnImpl column)
+    throws IOException
+  {
+    byte[] lvalDefinition = getLongValueDefinition(rowState, rowId, column);
+    return ((lvalDefinition != null) ?
+            ((LongValueColumnImpl)column).openLongValueStream(lvalDefinition) :
+            null);
+  }
+
+  /**
+   * Returns a reader of the text of the given MEMO column from the given
+   * row.  Values stored on multiple pages are read (and decoded) lazily, one
+   * page at a time, as the reader is consumed (instead of being loaded
+   * completely into memory).  The reader should not be used after the table
+   * is modified.
+   * @return the text reader, or {@code null} if the value is null
+   * @usage _advanced_method_
+   */
+  public Reader getLongValueReader(RowState rowState, RowIdImpl rowId,
+                                   ColumnImpl column)
+    throws IOException
+  {
+    if(column.getType() != DataType.MEMO) {
+      throw new IllegalArgumentException(column.withErrorContext(
+          "Text reader is not supported for columns of type " +
+          column.getType()));
+    }
+    byte[] lvalDefinition = getLongValueDefinition(rowState, rowId, column);
+    return ((lvalDefinition != null) ?
+            ((LongValueColumnImpl)column).openLongTextReader(lvalDefinition) :
+            null);
+  }
+
+  /**
+   * Returns the raw long value definition of the given long value column
+   * from the given row, or {@code null} if the value is null (or empty).
+   */
+  private byte[] getLongValueDefinition(RowState rowState, RowIdImpl rowId,
+                                        ColumnImpl column)
+    throws IOException
+  {
+    if(this != column.getTable()) {
+      throw new IllegalArgumentException(withErrorContext(
+          "Given column " + column + " is not from this table"));
+    }
+    if(!(column instanceof LongValueColumnImpl)) {
+      throw new IllegalArgumentException(column.withErrorContext(
+          "Streaming is not supported for columns of type " +
+          column.getType()));
+    }
+    requireValidRowId(rowId);
+
+    // position at correct row
+    ByteBuffer rowBuffer = positionAtRowData(rowState, rowId);
+    requireNonDeletedRow(rowState, rowId);
+
+    NullMask nullMask = rowState.getNullMask(rowBuffer);
+    if(nullMask.isNull(column)) {
+      return null;
+    }
+    byte[] lvalDefinition = getRawRowColumn(getFormat(), rowBuffer, column,
+                                            rowState, nullMask);
+    return ((lvalDefinition.length > 0) ? lvalDefinition : null);
+  }
+
   /**
    * Reads some columns from the given row.
    * @param columnNames Only column names in this collection will be returned
@@ -733,6 +988,62 @@ public class TableImpl implements Table, PropertyMaps.Owner
     return getRow(getFormat(), rowState, rowBuffer, _columns, columnNames);
   }
 
+  /**
+   * Reads some columns from the given row for a cursor, returning a {@link
+   * CompactRowImpl} if the given rowState is configured for compact rows.
+   * @param columnNames Only column names in this collection will be returned
+   */
+  Row getCursorRow(
+      RowState rowState, RowIdImpl rowId, Collection<String> columnNames)
+    throws IOException
+  {
+    if(!rowState.isCompactRows()) {
+      return getRow(rowState, rowId, columnNames);
+    }
+
+    requireValidRowId(rowId);
+
+    // position at correct row
+    ByteBuffer rowBuffer = positionAtRowData(rowState, rowId);
+    requireNonDeletedRow(rowState, rowId);
+
+    return getCompactRow(getFormat(), rowState, rowBuffer, _columns,
+                         columnNames);
+  }
+
+  /**
+   * Returns a lazily decoded view of some columns from the given row.  The
+   * returned row decodes each value on first access and is only usable until
+   * the given rowState moves to another row.
+   * @param columnNames Only column names in this collection will be returned
+   * @usage _advanced_method_
+   */
+  public LazyRowImpl getLazyRow(
+      RowState rowState, RowIdImpl rowId, Collection<String> columnNames)
+    throws IOException
+  {
+    requireValidRowId(rowId);
+
+    // position at correct row
+    positionAtRowData(rowState, rowId);
+    requireNonDeletedRow(rowState, rowId);
+
+    ColumnImpl[] columns = null;
+    if(columnNames == null) {
+      columns = _columns.toArray(new ColumnImpl[_columns.size()]);
+    } else {
+      List<ColumnImpl> colList = new ArrayList<ColumnImpl>(columnNames.size());
+      for(ColumnImpl column : _columns) {
+        if(columnNames.contains(column.getName())) {
+          colList.add(column);
+        }
+      }
+      columns = colList.toArray(new ColumnImpl[colList.size()]);
+    }
+
+    return new LazyRowImpl(rowState, rowId, columns);
+  }
+
   /**
    * Reads the row data from the given row buffer.  Leaves limit unchanged.
    * Saves parsed row values to the given rowState.
@@ -757,6 +1068,59 @@ public class TableImpl implements Table, PropertyMaps.Owner
     return rtn;
   }
 
+  /**
+   * Reads the row data from the given row buffer as a compact row.  Leaves
+   * limit unchanged.  Saves parsed row values to the given rowState.
+   */
+  private static CompactRowImpl getCompactRow(
+      JetFormat format,
+      RowState rowState,
+      ByteBuffer rowBuffer,
+      Collection<ColumnImpl> columns,
+      Collection<String> columnNames)
+    throws IOException
+  {
+    CompactRowImpl.Layout layout = rowState.getCompactRowLayout(
+        columnNames, false);
+    Object[] values = getCompactRowValues(format, rowState, rowBuffer,
+                                          columns, columnNames, layout);
+    if(values == null) {
+      // the requested columns have changed since the layout was created
+      layout = rowState.getCompactRowLayout(columnNames, true);
+      values = getCompactRowValues(format, rowState, rowBuffer,
+                                   columns, columnNames, layout);
+    }
+    return new CompactRowImpl(rowState.getHeaderRowId(), layout, values);
+  }
+
+  /**
+   * Reads the row values for a compact row with the given layout from the
+   * given row buffer.  Returns {@code null} if the requested columns do not
+   * match the given layout.
+   */
+  private static Object[] getCompactRowValues(
+      JetFormat format,
+      RowState rowState,
+      ByteBuffer rowBuffer,
+      Collection<ColumnImpl> columns,
+      Collection<String> columnNames,
+      CompactRowImpl.Layout layout)
+    throws IOException
+  {
+    Object[] values = new Object[layout.size()];
+    int idx = 0;
+    for(ColumnImpl column : columns) {
+      if((columnNames == null) || (columnNames.contains(column.getName()))) {
+        if((idx >= values.length) ||
+           (layout.getName(idx) != column.getName())) {
+          return null;
+        }
+        values[idx++] = getRowColumn(format, rowBuffer, column, rowState, null);
+      }
+    }
+    return ((idx == values.length) ? values : null);
+  }
+
   /**
    * Reads the column data from the given row buffer.  Leaves limit unchanged.
    * Caches the returned value in the rowState.
@@ -789,51 +1153,8 @@ public class TableImpl implements Table, PropertyMaps.Owner
         return cachedValue;
       }
 
-      // reset position to row start
-      rowBuffer.reset();
-
-      // locate the column data bytes
-      int rowStart = rowBuffer.position();
-      int colDataPos = 0;
-      int colDataLen = 0;
-      if(!column.isVariableLength()) {
-
-        // read fixed length value (non-boolean at this point)
-        int dataStart = rowStart + format.OFFSET_COLUMN_FIXED_DATA_ROW_OFFSET;
-        colDataPos = dataStart + column.getFixedDataOffset();
-        colDataLen = column.getType().getFixedSize(column.getLength());
-
-      } else {
-        int varDataStart;
-        int varDataEnd;
-
-        if(format.SIZE_ROW_VAR_COL_OFFSET == 2) {
-
-          // read simple var length value
-          int varColumnOffsetPos =
-            (rowBuffer.limit() - nullMask.byteSize() - 4) -
-            (column.getVarLenTableIndex() * 2);
-
-          varDataStart = rowBuffer.getShort(varColumnOffsetPos);
-          varDataEnd = rowBuffer.getShort(varColumnOffsetPos - 2);
-
-        } else {
-
-          // read jump-table based var length values
-          short[] varColumnOffsets = readJumpTableVarColOffsets(
-              rowState, rowBuffer, rowStart, nullMask);
-
-          varDataStart = varColumnOffsets[column.getVarLenTableIndex()];
-          varDataEnd = varColumnOffsets[column.getVarLenTableIndex() + 1];
-        }
-
-        colDataPos = rowStart + varDataStart;
-        colDataLen = varDataEnd - varDataStart;
-      }
-
-      // grab the column data
-      rowBuffer.position(colDataPos);
-      columnData = ByteUtil.getBytes(rowBuffer, colDataLen);
+      columnData = getRawRowColumn(format, rowBuffer, column, rowState,
+                                   nullMask);
 
       if((rawVarValues != null) && column.isVariableLength()) {
         // caller wants raw value as well
@@ -844,8 +1165,11 @@ public class TableImpl implements Table, PropertyMaps.Owner
       // to update the index on row deletion.  note, most of the returned
       // values are immutable, except for binary data (returned as byte[]),
       // but binary data shouldn't be indexed anyway.
-      return rowState.setRowCacheValue(column.getColumnIndex(),
-                                       column.read(columnData));
+      Object value = ((rowState.isLazyLongValues() &&
+                       (column instanceof LongValueColumnImpl)) ?
+                      ((LongValueColumnImpl)column).readHandle(columnData) :
+                      column.read(columnData));
+      return rowState.setRowCacheValue(column.getColumnIndex(), value);
 
     } catch(Exception e) {
 
@@ -857,6 +1181,63 @@ public class TableImpl implements Table, PropertyMaps.Owner
     }
   }
 
+  /**
+   * Reads the raw data for the given (non-null, non-boolean) column from the
+   * given row buffer.  Leaves limit unchanged.
+   */
+  private static byte[] getRawRowColumn(JetFormat format,
+                                        ByteBuffer rowBuffer,
+                                        ColumnImpl column,
+                                        RowState rowState,
+                                        NullMask nullMask)
+  {
+    // reset position to row start
+    rowBuffer.reset();
+
+    // locate the column data bytes
+    int rowStart = rowBuffer.position();
+    int colDataPos = 0;
+    int colDataLen = 0;
+    if(!column.isVariableLength()) {
+
+      // read fixed length value (non-boolean at this point)
+      int dataStart = rowStart + format.OFFSET_COLUMN_FIXED_DATA_ROW_OFFSET;
+      colDataPos = dataStart + column.getFixedDataOffset();
+      colDataLen = column.getType().getFixedSize(column.getLength());
+
+    } else {
+      int varDataStart;
+      int varDataEnd;
+
+      if(format.SIZE_ROW_VAR_COL_OFFSET == 2) {
+
+        // read simple var length value
+        int varColumnOffsetPos =
+          (rowBuffer.limit() - nullMask.byteSize() - 4) -
+          (column.getVarLenTableIndex() * 2);
+
+        varDataStart = rowBuffer.getShort(varColumnOffsetPos);
+        varDataEnd = rowBuffer.getShort(varColumnOffsetPos - 2);
+
+      } else {
+
+        // read jump-table based var length values
+        short[] varColumnOffsets = readJumpTableVarColOffsets(
+            rowState, rowBuffer, rowStart, nullMask);
+
+        varDataStart = varColumnOffsets[column.getVarLenTableIndex()];
+        varDataEnd = varColumnOffsets[column.getVarLenTableIndex() + 1];
+      }
+
+      colDataPos = rowStart + varDataStart;
+      colDataLen = varDataEnd - varDataStart;
+    }
+
+    // grab the column data
+    rowBuffer.position(colDataPos);
+    return ByteUtil.getBytes(rowBuffer, colDataLen);
+  }
+
   private static short[] readJumpTableVarColOffsets(
       RowState rowState, ByteBuffer rowBuffer, int rowStart,
       NullMask nullMask)
@@ -1034,6 +1415,26 @@ public class TableImpl implements Table, PropertyMaps.Owner
     }
   }
 
+  /**
+   * Positions the given rowState at the data for the given row (following
+   * overflow row pointers as necessary) and returns the page which contains
+   * the final row data (the final row number is available from {@link
+   * RowState#getFinalRowId}).  Unlike {@link #positionAtRowData}, this does
+   * not create a new buffer if the rowState is already positioned at the
+   * final row data.
+   */
+  ByteBuffer positionAtFinalRowPage(RowState rowState, RowIdImpl rowId)
+    throws IOException
+  {
+    requireValidRowId(rowId);
+    positionAtRowHeader(rowState, rowId);
+    if(!rowState.isAtFinalRow()) {
+      positionAtRowData(rowState, rowId);
+    }
+    requireNonDeletedRow(rowState, rowId);
+    return rowState.getFinalPage();
+  }
+
   public Iterator<Row> iterator() {
     return getDefaultCursor().iterator();
   }
@@ -1153,7 +1554,9 @@ public class TableImpl implements Table, PropertyMaps.Owner
         // copy the next page of tdef bytes
         int curTdefPageNumber = nextTdefPageNumber;
         int writeLen = Math.min(partialTdef.remaining(), buffer.remaining());
-        partialTdef.put(buffer.array(), buffer.position(), writeLen);
+        partialTdef.put(PageChannel.narrowBuffer(
+                            buffer, buffer.position(),
+                            buffer.position() + writeLen));
         ByteUtil.forward(buffer, writeLen);
 
         if(buffer.hasRemaining()) {
@@ -1364,6 +1767,8 @@ public class TableImpl implements Table, PropertyMaps.Owner
    */
   protected IndexData mutateAddIndexData(TableUpdater mutator) throws IOException
   {
+    requireNoBulkLoad();
+
     IndexBuilder index = mutator.getIndex();
     JetFormat format = mutator.getFormat();
 
@@ -1466,15 +1871,32 @@ public class TableImpl implements Table, PropertyMaps.Owner
       idxCols.add(col.getColumn());
     }
 
-    // iterate through all the rows and add them to the index
-    Object[] rowVals = new Object[_columns.size()];
-    for(Row row : getDefaultCursor().newIterable().addColumns(idxCols)) {
-      for(Column col : idxCols) {
-        col.setRowValue(rowVals, col.getRowValue(row));
+    // iterate through all the rows and collect the sorted index entries,
+    // then write the index pages bottom-up (much faster than adding the
+    // entries one at a time)
+    IndexEntrySorter sorter = new IndexEntrySorter(
+        getDatabase().getMaxIndexSortBytes(),
+        getDatabase().getIndexSortTempDir());
+    try {
+      Object[] rowVals = new Object[_columns.size()];
+      for(Row row : getDefaultCursor().newIterable().addColumns(idxCols)) {
+        for(Column col : idxCols) {
+          col.setRowValue(rowVals, col.getRowValue(row));
+        }
+
+        IndexData.Entry entry = idxData.createAddEntry(
+            rowVals, (RowIdImpl)row.getId());
+        if(entry != null) {
+          sorter.add(entry);
+        }
       }
 
-      IndexData.commitAll(
-          idxData.prepareAddRow(rowVals, (RowIdImpl)row.getId(), null));
+      if(sorter.getEntryCount() > 0) {
+        idxData.checkUniqueEntries(sorter.sortedEntries());
+        idxData.addSortedEntries(sorter.sortedEntries());
+      }
+    } finally {
+      sorter.close();
     }
 
     updateTableDefinition(0);
@@ -2053,6 +2475,13 @@ public class TableImpl implements Table, PropertyMaps.Owner
     // write the page data
     getPageChannel().writePage(pageBuffer, pageNumber);
 
+    // keep free space info up-to-date
+    if(_freeSpaceIndex != null) {
+      _freeSpaceIndex.setFreeSpace(pageNumber,
+                                   getAvailableRowSpace(pageBuffer,
+                                                        pageNumber));
+    }
+
     // possibly invalidate the add row buffer if a different data buffer is
     // being written (e.g. this happens during deleteRow)
     _addRowBufferH.possiblyInvalidate(pageNumber, pageBuffer);
@@ -2270,7 +2699,7 @@ public class TableImpl implements Table, PropertyMaps.Owner
           pageNumber = _addRowBufferH.getPageNumber();
 
           // determine where this row will end up on the page
-          int rowNum = getRowsOnDataPage(dataPage, getFormat());
+          int rowNum = getNewRowNumber(dataPage, pageNumber);
 
           RowIdImpl rowId = new RowIdImpl(pageNumber, rowNum);
 
@@ -2284,13 +2713,21 @@ public class TableImpl implements Table, PropertyMaps.Owner
               // handle foreign keys before adding to table
               _fkEnforcer.addRow(row);
 
-              // prepare index updates
-              for(IndexData indexData : _indexDatas) {
-                idxChange = indexData.prepareAddRow(row, rowId, idxChange);
-              }
+              if(_bulkLoad != null) {
 
-              // complete index updates
-              IndexData.commitAll(idxChange);
+                // index entries are added when the bulk load is finished
+                _bulkLoad.addRow(row, rowId);
+
+              } else {
+
+                // prepare index updates
+                for(IndexData indexData : _indexDatas) {
+                  idxChange = indexData.prepareAddRow(row, rowId, idxChange);
+                }
+
+                // complete index updates
+                IndexData.commitAll(idxChange);
+              }
 
             } catch(ConstraintViolationException ce) {
               IndexData.rollbackAll(idxChange);
@@ -2299,7 +2736,7 @@ public class TableImpl implements Table, PropertyMaps.Owner
           }
 
           // we have satisfied all the constraints, write the row
-          addDataPageRow(dataPage, rowSize, getFormat(), 0);
+          addDataPageRow(dataPage, rowSize, getFormat(), 0, rowNum);
           dataPage.put(rowData);
 
           // return rowTd if desired
@@ -2437,6 +2874,7 @@ public class TableImpl implements Table, PropertyMaps.Owner
     throws IOException
   {
     requireValidRowId(rowId);
+    requireNoBulkLoad();
 
     getPageChannel().startWrite();
     try {
@@ -2490,6 +2928,12 @@ public class TableImpl implements Table, PropertyMaps.Owner
           if(oldValue != rowValue) {
             // pass input value through column validator
             rowValue = column.validate(rowValue);
+          } else if((rowValue instanceof LongValueHandle) &&
+                    (keepRawVarValues != null)) {
+            // this row's long value handle was passed back in, re-use the
+            // existing data instead of reading and re-writing it
+            keepRawVarValues.put(column,
+                                 ((LongValueHandle)rowValue).getDefinition());
           }
         }
 
@@ -2576,7 +3020,8 @@ public class TableImpl implements Table, PropertyMaps.Owner
         // write out the new row data (set the deleted flag on the new data row
         // so that it is ignored during normal table traversal)
         int rowNum = addDataPageRow(dataPage, rowSize, getFormat(),
-                                    DELETED_ROW_MASK);
+                                    DELETED_ROW_MASK,
+                                    getNewRowNumber(dataPage, pageNumber));
         dataPage.put(newRowData);
 
         // write the overflow info into the header row and clear out the
@@ -2615,38 +3060,186 @@ public class TableImpl implements Table, PropertyMaps.Owner
                                       int pageNumber)
     throws IOException
   {
-    // assume incoming page is modified
-    boolean modifiedPage = true;
+    if(dataPage != null) {
 
-    if(dataPage == null) {
+      // assume incoming page is modified
+      if(rowFits(rowSize, dataPage, pageNumber)) {
+        return dataPage;
+      }
+
+      // current data page is full.  Write it and look elsewhere.
+      writeDataPage(dataPage, pageNumber);
+      _freeSpacePages.removePageNumber(pageNumber);
+    }
 
+    if(_bulkLoad != null) {
+      // only append to the pages created by the bulk load
+      if(pageNumber != _bulkLoad.getLastDataPageNumber()) {
+        dataPage = findBulkLoadRowSpace(rowSize);
+      } else {
+        dataPage = null;
+      }
+    } else {
       // find owned page w/ free space
-      dataPage = findFreeRowSpace(_ownedPages, _freeSpacePages,
-                                  _addRowBufferH);
+      dataPage = findIndexedRowSpace(rowSize);
+    }
 
-      if(dataPage == null) {
-        // No data pages exist (with free space).  Create a new one.
-        return newDataPage();
+    if(dataPage == null) {
+      // No data pages exist (with free space).  Create a new one.
+      dataPage = newDataPage();
+      if(_bulkLoad != null) {
+        _bulkLoad.addDataPageNumber(_addRowBufferH.getPageNumber());
       }
+    }
+
+    return dataPage;
+  }
 
-      // found a page, see if it will work
-      pageNumber = _addRowBufferH.getPageNumber();
-      // since we just loaded this page, it is not yet modified
-      modifiedPage = false;
+  /**
+   * Loads the last data page created by the current bulk load, if it has
+   * enough space for a row of the given size.
+   *
+   * @return the data page with enough space, or {@code null} if none found
+   */
+  private ByteBuffer findBulkLoadRowSpace(int rowSize)
+    throws IOException
+  {
+    int pageNumber = _bulkLoad.getLastDataPageNumber();
+    if(pageNumber == PageChannel.INVALID_PAGE_NUMBER) {
+      return null;
     }
+    ByteBuffer dataPage = _addRowBufferH.setPage(getPageChannel(),
+                                                 pageNumber);
+    return (rowFits(rowSize, dataPage, pageNumber) ? dataPage : null);
+  }
 
-    if(!rowFitsOnDataPage(rowSize, dataPage, getFormat())) {
+  /**
+   * Uses the free space index to find an owned data page with enough space
+   * for a row of the given size.  The page is loaded into the add row
+   * buffer.
+   *
+   * @return the data page with enough space, or {@code null} if none found
+   */
+  private ByteBuffer findIndexedRowSpace(int rowSize)
+    throws IOException
+  {
+    FreeSpaceIndex freeSpaceIndex = getFreeSpaceIndex();
+    int rowSpaceUsage = getRowSpaceUsage(rowSize, getFormat());
 
-      // Last data page is full.  Write old one and create a new one.
-      if(modifiedPage) {
-        writeDataPage(dataPage, pageNumber);
+    while(true) {
+      int pageNumber = freeSpaceIndex.findPage(rowSpaceUsage);
+      if(pageNumber < 0) {
+        // try any pages we have not looked at yet
+        pageNumber = freeSpaceIndex.nextUnknownPage();
+        if(pageNumber < 0) {
+          return null;
+        }
       }
-      _freeSpacePages.removePageNumber(pageNumber);
 
-      dataPage = newDataPage();
+      ByteBuffer dataPage = _addRowBufferH.setPage(getPageChannel(),
+                                                   pageNumber);
+      int availableSpace = getAvailableRowSpace(dataPage, pageNumber);
+      freeSpaceIndex.setFreeSpace(pageNumber, availableSpace);
+      if(rowSpaceUsage <= availableSpace) {
+        return dataPage;
+      }
+
+      if((dataPage.get(0) == PageTypes.DATA) &&
+         (freeSpaceIndex.getFreeSpace(pageNumber) == 0)) {
+        // page has no room for any more rows
+        _freeSpacePages.removePageNumber(pageNumber);
+      }
     }
+  }
 
-    return dataPage;
+  /**
+   * @return the free space index for this table, loading it if necessary
+   */
+  FreeSpaceIndex getFreeSpaceIndex() throws IOException {
+    if(_freeSpaceIndex == null) {
+      FreeSpaceIndex freeSpaceIndex = new FreeSpaceIndex(getFormat());
+      // we only need to look at the owned pages which are listed as having
+      // free space, the rest are full
+      RunLengthBitSet pages = _freeSpacePages.getPages();
+      pages.and(_ownedPages.getPages());
+      for(int i = 0; i < pages.getRunCount(); ++i) {
+        for(int pageNumber = pages.getRunStart(i);
+            pageNumber < pages.getRunEnd(i); ++pageNumber) {
+          freeSpaceIndex.addUnknownPage(pageNumber);
+        }
+      }
+      _freeSpaceIndex = freeSpaceIndex;
+    }
+    return _freeSpaceIndex;
+  }
+
+  /**
+   * Returns {@code true} if a row of the given size will fit on the given
+   * data page (possibly re-using the location of a deleted row), {@code
+   * false} otherwise.
+   */
+  private boolean rowFits(int rowSize, ByteBuffer dataPage, int pageNumber)
+    throws IOException
+  {
+    return (getRowSpaceUsage(rowSize, getFormat()) <=
+            getAvailableRowSpace(dataPage, pageNumber));
+  }
+
+  /**
+   * @return the number of bytes available for a new row (including the row
+   *         location) on the given data page
+   */
+  private int getAvailableRowSpace(ByteBuffer dataPage, int pageNumber)
+    throws IOException
+  {
+    if(dataPage.get(0) != PageTypes.DATA) {
+      return 0;
+    }
+    JetFormat format = getFormat();
+    int rowNum = getNewRowNumber(dataPage, pageNumber);
+    if(rowNum >= format.MAX_NUM_ROWS_ON_DATA_PAGE) {
+      return 0;
+    }
+    int freeSpace = dataPage.getShort(format.OFFSET_FREE_SPACE);
+    if(rowNum < getRowsOnDataPage(dataPage, format)) {
+      // re-used rows do not need a new row location
+      freeSpace += format.SIZE_ROW_LOCATION;
+    }
+    return freeSpace;
+  }
+
+  /**
+   * @return the row number for a new row on the given data page, either the
+   *         number of a deleted row whose space has been reclaimed (if
+   *         enabled, and the row was not deleted by this table instance) or
+   *         the next new row number
+   */
+  private int getNewRowNumber(ByteBuffer dataPage, int pageNumber)
+    throws IOException
+  {
+    JetFormat format = getFormat();
+    int rowCount = getRowsOnDataPage(dataPage, format);
+    if(getDatabase().isReuseDeletedRowSpace()) {
+      for(int i = 0; i < rowCount; ++i) {
+        short rowStart = dataPage.getShort(getRowStartOffset(i, format));
+        if(isDeletedRow(rowStart) &&
+           (cleanRowStart(rowStart) == findRowEnd(dataPage, i, format)) &&
+           !_deletedRowIds.contains(new RowIdImpl(pageNumber, i))) {
+          return i;
+        }
+      }
+    }
+    return rowCount;
+  }
+
+  /**
+   * Ensures the given page (which has had space reclaimed) is listed as
+   * having free space.
+   */
+  private void addFreeSpacePage(int pageNumber) throws IOException {
+    if(!_freeSpacePages.containsPageNumber(pageNumber)) {
+      _freeSpacePages.addPageNumber(pageNumber);
+    }
   }
 
   static ByteBuffer findFreeRowSpace(
@@ -2681,7 +3274,7 @@ public class TableImpl implements Table, PropertyMaps.Owner
   /**
    * Updates the table definition after rows are modified.
    */
-  private void updateTableDefinition(int rowCountInc) throws IOException
+  void updateTableDefinition(int rowCountInc) throws IOException
   {
     // load table definition
     ByteBuffer tdefPage = _tableDefBufferH.setPage(getPageChannel(),
@@ -2753,7 +3346,7 @@ public class TableImpl implements Table, PropertyMaps.Owner
     throws IOException
   {
     buffer.putShort(_maxColumnCount);
-    NullMask nullMask = new NullMask(_maxColumnCount);
+    NullMask nullMask = getWriteNullMask();
 
     //Fixed length column data comes first
     int fixedDataStart = buffer.position();
@@ -2774,14 +3367,20 @@ public class TableImpl implements Table, PropertyMaps.Owner
         rowValue = null;
       }
 
+      // the row buffer is re-used, so clear out any previous data
+      int colStart = fixedDataStart + col.getFixedDataOffset();
+      ByteUtil.clearRange(buffer, colStart, colStart + col.getLength());
+
       if(rowValue != null) {
 
         // we have a value to write
         nullMask.markNotNull(col);
 
         // remainingRowLength is ignored when writing fixed length data
-        buffer.position(fixedDataStart + col.getFixedDataOffset());
-        buffer.put(col.write(rowValue, 0));
+        buffer.position(colStart);
+        if(!col.writeDirect(rowValue, buffer)) {
+          buffer.put(col.write(rowValue, 0));
+        }
       }
 
       // always insert space for the entire fixed data column length
@@ -2823,7 +3422,7 @@ public class TableImpl implements Table, PropertyMaps.Owner
       }
 
       //Now write out variable length column data
-      short[] varColumnOffsets = new short[_maxVarColumnCount];
+      short[] varColumnOffsets = getWriteVarColumnOffsets();
       int varColumnOffsetsIndex = 0;
       for (ColumnImpl varCol : _varColumns) {
         short offset = (short) buffer.position();
@@ -2832,31 +3431,29 @@ public class TableImpl implements Table, PropertyMaps.Owner
           // we have a value
           nullMask.markNotNull(varCol);
 
-          byte[] rawValue = null;
-          ByteBuffer varDataBuf = null;
-          if(((rawValue = rawVarValues.get(varCol)) != null) &&
-             (rawValue.length <= maxRowSize)) {
-            // save time and potentially db space, re-use raw value
-            varDataBuf = ByteBuffer.wrap(rawValue);
-          } else {
-            // write column value
-            varDataBuf = varCol.write(rowValue, maxRowSize);
-          }
-
-          maxRowSize -= varDataBuf.remaining();
-          if(varCol.getType().isLongValue()) {
-            // we already accounted for some amount of the long value data
-            // above.  add that space back so we don't double count
-            maxRowSize += getFormat().SIZE_LONG_VALUE_DEF;
-          }
           try {
-            buffer.put(varDataBuf);
+            byte[] rawValue = null;
+            if(((rawValue = rawVarValues.get(varCol)) != null) &&
+               (rawValue.length <= maxRowSize)) {
+              // save time and potentially db space, re-use raw value
+              buffer.put(rawValue);
+            } else if(!varCol.writeDirect(rowValue, buffer)) {
+              // write column value
+              buffer.put(varCol.write(rowValue, maxRowSize));
+            }
           } catch(BufferOverflowException e) {
             // if the data is too big for the buffer, then we have gone over
             // the max row size
             throw new InvalidValueException(withErrorContext(
                     "Row size " + buffer.limit() + " is too large"));
           }
+
+          maxRowSize -= (buffer.position() - offset);
+          if(varCol.getType().isLongValue()) {
+            // we already accounted for some amount of the long value data
+            // above.  add that space back so we don't double count
+            maxRowSize += getFormat().SIZE_LONG_VALUE_DEF;
+          }
         }
 
         // we do a loop here so that we fill in offsets for deleted columns
@@ -2896,6 +3493,34 @@ public class TableImpl implements Table, PropertyMaps.Owner
     return buffer;
   }
 
+  /**
+   * Returns the (cleared) null mask to use for writing a row.
+   */
+  private NullMask getWriteNullMask() {
+    NullMask nullMask = _writeNullMask;
+    if((nullMask == null) || (nullMask.getColumnCount() != _maxColumnCount)) {
+      nullMask = new NullMask(_maxColumnCount);
+      _writeNullMask = nullMask;
+    } else {
+      nullMask.clear();
+    }
+    return nullMask;
+  }
+
+  /**
+   * Returns the array to use for the var length column offsets when writing
+   * a row.
+   */
+  private short[] getWriteVarColumnOffsets() {
+    short[] varColumnOffsets = _writeVarColumnOffsets;
+    if((varColumnOffsets == null) ||
+       (varColumnOffsets.length != _maxVarColumnCount)) {
+      varColumnOffsets = new short[_maxVarColumnCount];
+      _writeVarColumnOffsets = varColumnOffsets;
+    }
+    return varColumnOffsets;
+  }
+
   /**
    * Fill in all autonumber column values for add.
    */
@@ -2998,6 +3623,14 @@ public class TableImpl implements Table, PropertyMaps.Owner
     }
   }
 
+  /**
+   * @return the current modification count of this table, which changes
+   *         whenever the table data or definition is modified
+   */
+  int getModCount() {
+    return _modCount;
+  }
+
   public int getRowCount() {
     return _rowCount;
   }
@@ -3248,6 +3881,51 @@ public class TableImpl implements Table, PropertyMaps.Owner
             collectionName.equalsIgnoreCase(getName()));
   }
 
+  /**
+   * Updates free space and row info for a new row of the given size in the
+   * given data page using the given row number, which is either the number of
+   * an existing, empty deleted row (see {@link #reclaimRowSpace}) or the next
+   * new row number.  Positions the page for writing the row data.
+   * @return the row number of the new row
+   * @usage _advanced_method_
+   */
+  public static int addDataPageRow(ByteBuffer dataPage,
+                                   int rowSize,
+                                   JetFormat format,
+                                   int rowFlags,
+                                   int rowNum)
+  {
+    short rowCount = dataPage.getShort(format.OFFSET_NUM_ROWS_ON_DATA_PAGE);
+    if(rowNum >= rowCount) {
+      return addDataPageRow(dataPage, rowSize, format, rowFlags);
+    }
+
+    // Decrease free space record (the row location already exists).
+    short freeSpaceInPage = dataPage.getShort(format.OFFSET_FREE_SPACE);
+    dataPage.putShort(format.OFFSET_FREE_SPACE, (short) (freeSpaceInPage -
+                                                         rowSize));
+
+    // the data of the subsequent rows precedes the (empty) data of this row,
+    // so shift it down to make room
+    short rowEnd = findRowEnd(dataPage, rowNum, format);
+    int lastRowNum = rowCount - 1;
+    int dataStart = findRowStart(dataPage, lastRowNum, format);
+    if(dataStart < rowEnd) {
+      moveData(dataPage, dataStart, rowEnd - dataStart, -rowSize);
+    }
+    shiftRowLocations(dataPage, rowNum + 1, lastRowNum, -rowSize, format);
+
+    // write row position
+    short rowLocation = (short)(rowEnd - rowSize);
+    dataPage.putShort(getRowStartOffset(rowNum, format),
+                      (short)(rowLocation | rowFlags));
+
+    // set position for row data
+    dataPage.position(rowLocation);
+
+    return rowNum;
+  }
+
   /**
    * Returns {@code true} if a row of the given size will fit on the given
    * data page, {@code false} otherwise.
@@ -3264,6 +3942,74 @@ public class TableImpl implements Table, PropertyMaps.Owner
             (rowsOnPage < format.MAX_NUM_ROWS_ON_DATA_PAGE));
   }
 
+  /**
+   * Reclaims the space used by the given (deleted) row on the given data
+   * page.  The row data is removed and the data of the subsequent rows on the
+   * page is moved to fill the gap, leaving the row (and its row number) on
+   * the page with a length of 0.  The free space for the page is updated
+   * accordingly.
+   *
+   * @return the number of bytes reclaimed
+   * @usage _advanced_method_
+   */
+  public static int reclaimRowSpace(
+      ByteBuffer dataPage, int rowNum, JetFormat format)
+    throws IOException
+  {
+    int rowStart = findRowStart(dataPage, rowNum, format);
+    int rowSize = findRowEnd(dataPage, rowNum, format) - rowStart;
+    if(rowSize <= 0) {
+      // nothing to reclaim
+      return 0;
+    }
+
+    // the data of subsequent rows precedes the data of this row, so shift it
+    // up over this row
+    int lastRowNum = getRowsOnDataPage(dataPage, format) - 1;
+    int dataStart = findRowStart(dataPage, lastRowNum, format);
+    if(dataStart < rowStart) {
+      moveData(dataPage, dataStart, rowStart - dataStart, rowSize);
+    }
+    ByteUtil.clearRange(dataPage, dataStart, dataStart + rowSize);
+    shiftRowLocations(dataPage, rowNum, lastRowNum, rowSize, format);
+
+    short freeSpaceInPage = dataPage.getShort(format.OFFSET_FREE_SPACE);
+    dataPage.putShort(format.OFFSET_FREE_SPACE,
+                      (short)(freeSpaceInPage + rowSize));
+
+    return rowSize;
+  }
+
+  /**
+   * Moves the given range of data in the given page by the given offset.
+   */
+  private static void moveData(ByteBuffer dataPage, int start, int len,
+                               int offset)
+  {
+    byte[] data = new byte[len];
+    dataPage.position(start);
+    dataPage.get(data);
+    dataPage.position(start + offset);
+    dataPage.put(data);
+  }
+
+  /**
+   * Adjusts the locations of the given rows in the given page by the given
+   * offset (keeping any row flags).
+   */
+  private static void shiftRowLocations(ByteBuffer dataPage, int startRowNum,
+                                        int endRowNum, int offset,
+                                        JetFormat format)
+  {
+    for(int i = startRowNum; i <= endRowNum; ++i) {
+      int rowIndex = getRowStartOffset(i, format);
+      short rowStart = dataPage.getShort(rowIndex);
+      dataPage.putShort(rowIndex,
+                        (short)((rowStart & ~OFFSET_MASK) |
+                                (cleanRowStart(rowStart) + offset)));
+    }
+  }
+
   /**
    * Duplicates and returns a row of data, optionally with a longer length
    * filled with {@code null}.
@@ -3353,11 +4099,24 @@ public class TableImpl implements Table, PropertyMaps.Owner
     private ErrorHandler _errorHandler;
     /** cached variable column offsets for jump-table based rows */
     private short[] _varColOffsets;
+    /** optional buffer for reading ahead the header row pages */
+    private ReadAheadBuffer _readAhead;
+    /** whether or not rows are returned as CompactRowImpl instances */
+    private boolean _compactRows;
+    /** the column names used to create the current compact row layout */
+    private Collection<String> _compactRowNames;
+    /** the column layout shared by the compact rows read by this rowState */
+    private CompactRowImpl.Layout _compactRowLayout;
+    /** whether or not long values are returned as LongValueHandles */
+    private boolean _lazyLongValues;
 
     private RowState(TempBufferHolder.Type headerType) {
       _headerRowBufferH = TempPageHolder.newHolder(headerType);
       _rowValues = new Object[TableImpl.this.getColumnCount()];
       _lastModCount = TableImpl.this._modCount;
+      _compactRows = getDatabase().isCompactRows();
+      // internal code expects the actual values from the system tables
+      _lazyLongValues = (getDatabase().isLazyLongValues() && !isSystem());
     }
 
     public TableImpl getTable() {
@@ -3373,6 +4132,66 @@ public class TableImpl implements Table, PropertyMaps.Owner
       _errorHandler = newErrorHandler;
     }
 
+    /**
+     * Sets the max number of consecutive header row pages which will be read
+     * at once when moving to a new page (useful for sequential scans).  Read
+     * ahead is disabled if less than 2.
+     */
+    public void setReadAheadPages(int readAheadPages) {
+      _readAhead = ((readAheadPages > 1) ?
+                    new ReadAheadBuffer(getPageChannel(), _ownedPages,
+                                        readAheadPages) :
+                    null);
+    }
+
+    public boolean isCompactRows() {
+      return _compactRows;
+    }
+
+    /**
+     * Sets whether or not rows read using this rowState are returned as
+     * {@link CompactRowImpl} instances (which share a single column layout)
+     * instead of RowImpl instances.
+     */
+    public void setCompactRows(boolean compactRows) {
+      _compactRows = compactRows;
+    }
+
+    public boolean isLazyLongValues() {
+      return _lazyLongValues;
+    }
+
+    /**
+     * Sets whether or not the values of long value columns read using this
+     * rowState are returned as {@link LongValueHandle} instances (which read
+     * the actual value only when it is needed).
+     */
+    public void setLazyLongValues(boolean lazyLongValues) {
+      _lazyLongValues = lazyLongValues;
+    }
+
+    /**
+     * Returns the layout for compact rows containing the given columns
+     * ({@code null} for all columns).  The layout is re-used as long as the
+     * same column names are requested (unless a rebuild is forced).
+     */
+    private CompactRowImpl.Layout getCompactRowLayout(
+        Collection<String> columnNames, boolean rebuild) {
+      if(rebuild || (_compactRowLayout == null) ||
+         (_compactRowNames != columnNames)) {
+        List<ColumnImpl> columns = new ArrayList<ColumnImpl>();
+        for(ColumnImpl column : getColumns()) {
+          if((columnNames == null) ||
+             columnNames.contains(column.getName())) {
+            columns.add(column);
+          }
+        }
+        _compactRowLayout = new CompactRowImpl.Layout(columns);
+        _compactRowNames = columnNames;
+      }
+      return _compactRowLayout;
+    }
+
     public void reset() {
       resetAutoNumber();
       _finalRowId = null;
@@ -3529,7 +4348,7 @@ public class TableImpl implements Table, PropertyMaps.Owner
       }
 
       _finalRowBuffer = _headerRowBufferH.setPage(getPageChannel(),
-                                                  pageNumber);
+                                                  pageNumber, _readAhead);
       _rowsOnHeaderPage = getRowsOnDataPage(_finalRowBuffer, getFormat());
 
       if((rowNumber < 0) || (rowNumber >= _rowsOnHeaderPage)) {
@@ -46,9 +46,26 @@ public class TableScanCursor extends CursorImpl
   private final UsageMap.PageCursor _ownedPagesCursor;
     
   public TableScanCursor(TableImpl table) {
+    this(table, table.getOwnedPagesCursor());
+  }
+
+  /**
+   * Creates a cursor which only scans the rows on the table's data pages
+   * within the given range of page numbers.
+   * @param startPage the first page number of the range (inclusive)
+   * @param endPage the last page number of the range (exclusive)
+   */
+  public TableScanCursor(TableImpl table, int startPage, int endPage) {
+    this(table, table.getOwnedPagesCursor(startPage, endPage));
+  }
+
+  private TableScanCursor(TableImpl table,
+                          UsageMap.PageCursor ownedPagesCursor) {
     super(new IdImpl(table, null), table,
           FIRST_SCAN_POSITION, LAST_SCAN_POSITION);
-    _ownedPagesCursor = table.getOwnedPagesCursor();
+    _ownedPagesCursor = ownedPagesCursor;
+    getRowState().setReadAheadPages(
+        table.getPageChannel().getReadAheadPages());
   }
 
   @Override
@@ -51,6 +51,8 @@ public abstract class TempBufferHolder {
   private final ByteOrder _order;
   /** the mod count of the current buffer (changes on every realloc) */
   private int _modCount;
+  /** the pool from which the current buffer was leased, if any */
+  private BufferPool _pool;
   
   protected TempBufferHolder(boolean autoRewind, ByteOrder order) {
     _autoRewind = autoRewind;
@@ -109,12 +111,22 @@ public abstract class TempBufferHolder {
   /**
    * Returns a ByteBuffer of at least the given size, with the limit set to
    * the given size, and the predefined byteOrder.  Will be rewound iff
-   * autoRewind is enabled for this buffer.
+   * autoRewind is enabled for this buffer.  If the PageChannel has a
+   * {@link BufferPool}, new buffers are leased from the pool.  Note that any
+   * buffer previously returned by this holder is <i>not</i> returned to the
+   * pool (callers may still be using it), see {@link #release}.
    */
   public final ByteBuffer getBuffer(PageChannel pageChannel, int size) {
     ByteBuffer buffer = getExistingBuffer();
     if((buffer == null) || (buffer.capacity() < size)) {
-      buffer = PageChannel.createBuffer(size, _order);
+      BufferPool pool = pageChannel.getBufferPool();
+      if((pool != null) && isPoolable()) {
+        buffer = pool.acquire(size, _order);
+        _pool = pool;
+      } else {
+        buffer = PageChannel.createBuffer(size, _order);
+        _pool = null;
+      }
       ++_modCount;
       setNewBuffer(buffer);
     } else {
@@ -132,14 +144,46 @@ public abstract class TempBufferHolder {
   public abstract ByteBuffer getExistingBuffer();
   
   /**
-   * Releases any referenced memory.
+   * Releases any referenced memory.  Any current buffer is dropped (not
+   * returned to a {@link BufferPool}), as it may still be in use by callers.
+   */
+  public void clear() {
+    _pool = null;
+    clearBuffer();
+  }
+
+  /**
+   * Releases any referenced memory, returning the current buffer to the
+   * {@link BufferPool} from which it was leased (if any).  Unlike {@link
+   * #clear}, any buffer previously returned by this holder must no longer
+   * be in use.
+   */
+  public void release() {
+    ByteBuffer buffer = getExistingBuffer();
+    BufferPool pool = _pool;
+    clear();
+    if((pool != null) && (buffer != null)) {
+      pool.release(buffer);
+    }
+  }
+
+  /**
+   * @return {@code true} if buffers for this holder may be leased from a
+   *         {@link BufferPool}, {@code false} otherwise
    */
-  public abstract void clear();
+  protected boolean isPoolable() {
+    return true;
+  }
 
   /**
    * Sets a new buffer for this holder.
    */
   protected abstract void setNewBuffer(ByteBuffer newBuffer);
+
+  /**
+   * Drops the reference to the current buffer (if any).
+   */
+  protected abstract void clearBuffer();
   
   /**
    * TempBufferHolder which has a hard reference to the buffer.
@@ -163,7 +207,7 @@ public abstract class TempBufferHolder {
     }
 
     @Override
-    public void clear() {
+    protected void clearBuffer() {
       _buffer = null;
     }
   }
@@ -191,7 +235,7 @@ public abstract class TempBufferHolder {
     }
 
     @Override
-    public void clear() {
+    protected void clearBuffer() {
       _buffer.clear();
     }
   }
@@ -216,7 +260,13 @@ public abstract class TempBufferHolder {
     }
 
     @Override
-    public void clear() {
+    protected boolean isPoolable() {
+      // buffers are never re-used by this holder, so they cannot be returned
+      return false;
+    }
+
+    @Override
+    protected void clearBuffer() {
       // nothing to do
     }
   }
@@ -60,7 +60,7 @@ public final class TempPageHolder {
   public ByteBuffer getPage(PageChannel pageChannel)
     throws IOException
   {
-    return setPage(pageChannel, _pageNumber, false);
+    return setPage(pageChannel, _pageNumber, false, null);
   }
   
   /**
@@ -71,11 +71,24 @@ public final class TempPageHolder {
   public ByteBuffer setPage(PageChannel pageChannel, int pageNumber)
     throws IOException
   {
-    return setPage(pageChannel, pageNumber, true);
+    return setPage(pageChannel, pageNumber, true, null);
+  }
+
+  /**
+   * Sets the current page number and returns that page, reading the page
+   * through the given ReadAheadBuffer (if non-{@code null}) as necessary
+   * @return the page for the new page number, reading as necessary, resets
+   *         position
+   */
+  public ByteBuffer setPage(PageChannel pageChannel, int pageNumber,
+                            ReadAheadBuffer readAhead)
+    throws IOException
+  {
+    return setPage(pageChannel, pageNumber, true, readAhead);
   }
 
   private ByteBuffer setPage(PageChannel pageChannel, int pageNumber,
-                             boolean rewind)
+                             boolean rewind, ReadAheadBuffer readAhead)
     throws IOException
   {
     ByteBuffer buffer = _buffer.getPageBuffer(pageChannel);
@@ -83,7 +96,11 @@ public final class TempPageHolder {
     if((pageNumber != _pageNumber) || (_bufferModCount != modCount)) {
       _pageNumber = pageNumber;
       _bufferModCount = modCount;
-      pageChannel.readPage(buffer, _pageNumber);
+      if(readAhead != null) {
+        readAhead.readPage(buffer, _pageNumber);
+      } else {
+        pageChannel.readPage(buffer, _pageNumber);
+      }
     } else if(rewind) {
       buffer.rewind();
     }
@@ -143,4 +160,14 @@ public final class TempPageHolder {
     _buffer.clear();
   }
 
+  /**
+   * Forces any current page data to be disregarded and returns the current
+   * buffer to the {@link BufferPool} from which it was leased (if any).  Any
+   * buffer previously returned by this holder must no longer be in use.
+   */
+  public void release() {
+    invalidate();
+    _buffer.release();
+  }
+
 }
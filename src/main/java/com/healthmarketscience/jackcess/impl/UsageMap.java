@@ -19,7 +19,6 @@ package com.healthmarketscience.jackcess.impl;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.List;
 
 
@@ -50,7 +49,7 @@ public class UsageMap
   /** Last page that this usage map applies to */
   private int _endPage;
   /** bits representing page numbers used, offset from _startPage */
-  private BitSet _pageNumbers = new BitSet();
+  private final RunLengthBitSet _pageNumbers = new RunLengthBitSet();
   /** Buffer that contains the usage map table declaration page */
   private final ByteBuffer _tableBuffer;
   /** modification count on the usage map, used to keep the cursors in
@@ -152,7 +151,17 @@ public class UsageMap
   }
   
   public PageCursor cursor() {
-    return new PageCursor();
+    return new PageCursor(0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns a PageCursor which only returns the pages of this map within the
+   * given range of page numbers.
+   * @param startPage the first page number of the range (inclusive)
+   * @param endPage the last page number of the range (exclusive)
+   */
+  public PageCursor cursor(int startPage, int endPage) {
+    return new PageCursor(startPage, endPage);
   }
 
   public int getPageCount() {
@@ -191,10 +200,17 @@ public class UsageMap
     return _endPage;
   }
     
-  protected BitSet getPageNumbers() {
+  protected RunLengthBitSet getPageNumbers() {
     return _pageNumbers;
   }
 
+  /**
+   * @return a copy of the page numbers contained in this map
+   */
+  public RunLengthBitSet getPages() {
+    return new RunLengthBitSet(_pageNumbers, _startPage);
+  }
+
   protected void setPageRange(int newStartPage, int newEndPage) {
     _startPage = newStartPage;
     _endPage = newEndPage;
@@ -232,11 +248,7 @@ public class UsageMap
   }    
   
   protected int getPrevBitIndex(int curIndex) {
-    --curIndex;
-    while((curIndex >= 0) && !_pageNumbers.get(curIndex)) {
-      --curIndex;
-    }
-    return curIndex;
+    return _pageNumbers.previousSetBit(curIndex - 1);
   }    
   
   protected int bitIndexToPageNumber(int bitIndex,
@@ -275,6 +287,9 @@ public class UsageMap
    */
   protected void processMap(ByteBuffer buffer, int bufferStartPage)
   {
+    // collect runs of consecutive pages
+    int runStart = 0;
+    int runEnd = 0;
     int byteCount = 0;
     while (buffer.hasRemaining()) {
       byte b = buffer.get();
@@ -282,21 +297,33 @@ public class UsageMap
         for (int i = 0; i < 8; i++) {
           if ((b & (1 << i)) != 0) {
             int pageNumberOffset = (byteCount * 8 + i) + bufferStartPage;
-            int pageNumber = bitIndexToPageNumber(
-                pageNumberOffset,
-                PageChannel.INVALID_PAGE_NUMBER);
-            if(!isPageWithinRange(pageNumber)) {
-              throw new IllegalStateException(
-                  "found page number " + pageNumber
-                  + " in usage map outside of expected range " +
-                  _startPage + " to " + _endPage);
+            if(pageNumberOffset != runEnd) {
+              addRun(runStart, runEnd);
+              runStart = pageNumberOffset;
             }
-            _pageNumbers.set(pageNumberOffset);
+            runEnd = pageNumberOffset + 1;
           }
         }
       }
       byteCount++;
     }
+    addRun(runStart, runEnd);
+  }
+
+  private void addRun(int runStart, int runEnd)
+  {
+    if(runStart == runEnd) {
+      return;
+    }
+    int lastPageNumber = bitIndexToPageNumber(
+        runEnd - 1, PageChannel.INVALID_PAGE_NUMBER);
+    if(!isPageWithinRange(lastPageNumber)) {
+      throw new IllegalStateException(
+          "found page number " + lastPageNumber
+          + " in usage map outside of expected range " +
+          _startPage + " to " + _endPage);
+    }
+    _pageNumbers.set(runStart, runEnd);
   }
 
   /**
@@ -306,6 +333,26 @@ public class UsageMap
     return _handler.containsPageNumber(pageNumber);
   }
   
+  /**
+   * Returns the number of consecutive pages contained in this map starting
+   * at the given page number and moving in the given direction (including
+   * the given page), up to the given max.
+   */
+  public int getPageRunLength(int pageNumber, int maxPages,
+                              boolean moveForward) {
+    if(!isPageWithinRange(pageNumber)) {
+      return 0;
+    }
+    int bitIndex = pageNumberToBitIndex(pageNumber);
+    int runLength = 0;
+    if(_pageNumbers.get(bitIndex)) {
+      runLength = (moveForward ?
+                   (_pageNumbers.nextClearBit(bitIndex) - bitIndex) :
+                   (bitIndex - _pageNumbers.previousClearBit(bitIndex)));
+    }
+    return Math.min(runLength, maxPages);
+  }
+
   /**
    * Add a page number to this usage map
    */
@@ -369,7 +416,7 @@ public class UsageMap
   {
     // copy current page number info to new references and then clear old
     int oldStartPage = _startPage;
-    BitSet oldPageNumbers = (BitSet)_pageNumbers.clone();
+    RunLengthBitSet oldPageNumbers = new RunLengthBitSet(_pageNumbers);
 
     // clear out the main table (inline usage map data and start page)
     clearTableAndPages();
@@ -387,14 +434,14 @@ public class UsageMap
     reAddPages(oldStartPage, oldPageNumbers, newPageNumber);
   }
 
-  private void reAddPages(int oldStartPage, BitSet oldPageNumbers,
+  private void reAddPages(int oldStartPage, RunLengthBitSet oldPageNumbers,
                           int newPageNumber)
     throws IOException
   {
     // add all the old pages back in
-    for(int i = oldPageNumbers.nextSetBit(0); i >= 0;
-        i = oldPageNumbers.nextSetBit(i + 1)) {
-      addPageNumber(oldStartPage + i);
+    if(!oldPageNumbers.isEmpty()) {
+      ++_modCount;
+      _handler.addPageNumbers(oldStartPage, oldPageNumbers);
     }
 
     if(newPageNumber > PageChannel.INVALID_PAGE_NUMBER) {
@@ -463,6 +510,45 @@ public class UsageMap
     public abstract void addOrRemovePageNumber(int pageNumber, boolean add,
                                                boolean force)
       throws IOException;
+
+    /**
+     * Adds all the given pages to this map.
+     * @param startPage page number of the first bit in pageNumbers
+     * @param pageNumbers pages to add
+     */
+    public void addPageNumbers(int startPage, RunLengthBitSet pageNumbers)
+      throws IOException
+    {
+      addPageNumbersIndividually(startPage, pageNumbers);
+    }
+
+    /**
+     * Adds each of the given pages to this map in turn (note that the handler
+     * for this map may change while adding the pages).
+     */
+    protected final void addPageNumbersIndividually(
+        int startPage, RunLengthBitSet pageNumbers)
+      throws IOException
+    {
+      for(int i = 0; i < pageNumbers.getRunCount(); ++i) {
+        int endPage = startPage + pageNumbers.getRunEnd(i);
+        for(int pageNumber = startPage + pageNumbers.getRunStart(i);
+            pageNumber < endPage; ++pageNumber) {
+          addPageNumber(pageNumber);
+        }
+      }
+    }
+
+    /**
+     * @return {@code true} if all the given pages are within the range of
+     *         this map, {@code false} otherwise
+     */
+    protected final boolean isWithinRange(int startPage,
+                                          RunLengthBitSet pageNumbers) {
+      return (isPageWithinRange(
+                  startPage + pageNumbers.nextSetBit(0)) &&
+              isPageWithinRange(startPage + pageNumbers.length() - 1));
+    }
   }
 
   /**
@@ -526,6 +612,27 @@ public class UsageMap
       }
     }
 
+    @Override
+    public void addPageNumbers(int startPage, RunLengthBitSet pageNumbers)
+      throws IOException
+    {
+      if(!isWithinRange(startPage, pageNumbers)) {
+        addPageNumbersIndividually(startPage, pageNumbers);
+        return;
+      }
+
+      // update all the inline data and then write the map once
+      for(int i = 0; i < pageNumbers.getRunCount(); ++i) {
+        int endPage = startPage + pageNumbers.getRunEnd(i);
+        for(int pageNumber = startPage + pageNumbers.getRunStart(i);
+            pageNumber < endPage; ++pageNumber) {
+          updateMap(pageNumber, pageNumberToBitIndex(pageNumber),
+                    getTableBuffer(), true, false);
+        }
+      }
+      writeTable();
+    }
+
     protected void addOrRemovePageNumberOutsideRange(
         int pageNumber, boolean add, boolean force)
       throws IOException
@@ -583,7 +690,7 @@ public class UsageMap
       throws IOException
     {
       int oldStartPage = getStartPage();
-      BitSet oldPageNumbers = (BitSet)getPageNumbers().clone();
+      RunLengthBitSet oldPageNumbers = new RunLengthBitSet(getPageNumbers());
 
       // clear out the main table (inline usage map data and start page)
       clearTableAndPages();
@@ -759,20 +866,62 @@ public class UsageMap
                               " is out of supported range");
       }
       int pageIndex = (pageNumber / getMaxPagesPerUsagePage());
+      ByteBuffer mapPageBuffer = getMapPage(pageIndex);
+      updateMap(pageNumber,
+                (pageNumber - (getMaxPagesPerUsagePage() * pageIndex)),
+                mapPageBuffer, add, force);
+      getPageChannel().writePage(mapPageBuffer,
+                                 _mapPageHolder.getPageNumber());
+    }
+
+    @Override
+    public void addPageNumbers(int startPage, RunLengthBitSet pageNumbers)
+      throws IOException
+    {
+      if(!isWithinRange(startPage, pageNumbers)) {
+        addPageNumbersIndividually(startPage, pageNumbers);
+        return;
+      }
+
+      // update each reference page for all relevant pages and then write it
+      // once
+      ByteBuffer mapPageBuffer = null;
+      int curPageIndex = -1;
+      for(int i = 0; i < pageNumbers.getRunCount(); ++i) {
+        int endPage = startPage + pageNumbers.getRunEnd(i);
+        for(int pageNumber = startPage + pageNumbers.getRunStart(i);
+            pageNumber < endPage; ++pageNumber) {
+          int pageIndex = (pageNumber / getMaxPagesPerUsagePage());
+          if(pageIndex != curPageIndex) {
+            if(mapPageBuffer != null) {
+              getPageChannel().writePage(mapPageBuffer,
+                                         _mapPageHolder.getPageNumber());
+            }
+            mapPageBuffer = getMapPage(pageIndex);
+            curPageIndex = pageIndex;
+          }
+          updateMap(pageNumber,
+                    (pageNumber - (getMaxPagesPerUsagePage() * pageIndex)),
+                    mapPageBuffer, true, false);
+        }
+      }
+      getPageChannel().writePage(mapPageBuffer,
+                                 _mapPageHolder.getPageNumber());
+    }
+
+    /**
+     * Loads the reference map page with the given index into the map page
+     * holder, creating it if necessary.
+     */
+    private ByteBuffer getMapPage(int pageIndex) throws IOException
+    {
       int mapPageNum = getTableBuffer().getInt(
           calculateMapPagePointerOffset(pageIndex));
-      ByteBuffer mapPageBuffer = null;
       if(mapPageNum > 0) {
-        mapPageBuffer = _mapPageHolder.setPage(getPageChannel(), mapPageNum);
-      } else {
-        // Need to create a new usage map page
-        mapPageBuffer = createNewUsageMapPage(pageIndex);
-        mapPageNum = _mapPageHolder.getPageNumber();
+        return _mapPageHolder.setPage(getPageChannel(), mapPageNum);
       }
-      updateMap(pageNumber,
-                (pageNumber - (getMaxPagesPerUsagePage() * pageIndex)),
-                mapPageBuffer, add, force);
-      getPageChannel().writePage(mapPageBuffer, mapPageNum);
+      // Need to create a new usage map page
+      return createNewUsageMapPage(pageIndex);
     }
   
     /**
@@ -849,6 +998,19 @@ public class UsageMap
 
       super.addOrRemovePageNumber(pageNumber, add, force);
 
+      handlePendingPages();
+    }
+
+    @Override
+    public void addPageNumbers(int startPage, RunLengthBitSet pageNumbers)
+      throws IOException
+    {
+      // need to handle any pages allocated for this map after each page
+      addPageNumbersIndividually(startPage, pageNumbers);
+    }
+
+    private void handlePendingPages() throws IOException
+    {
       while(_pendingPage != null) {
         
         // while updating our usage map, we needed to allocate a new page (and
@@ -916,8 +1078,14 @@ public class UsageMap
         that the cursor can detect updates to the usage map while traversing
         and act accordingly */
     private int _lastModCount;
-
-    private PageCursor() {
+    /** the first page number (inclusive) returned by this cursor */
+    private final int _rangeStart;
+    /** the last page number (exclusive) returned by this cursor */
+    private final int _rangeEnd;
+
+    private PageCursor(int rangeStart, int rangeEnd) {
+      _rangeStart = rangeStart;
+      _rangeEnd = rangeEnd;
       reset();
     }
 
@@ -1047,6 +1215,42 @@ public class UsageMap
       }
     }
 
+    /**
+     * @return the first page of the map within this cursor's range, or
+     *         {@link RowIdImpl#LAST_PAGE_NUMBER} if there is none
+     */
+    private int getFirstRangePageNumber() {
+      int pageNumber = UsageMap.this.getFirstPageNumber();
+      if((pageNumber >= 0) && (pageNumber < _rangeStart)) {
+        pageNumber = UsageMap.this.getNextPageNumber(_rangeStart - 1);
+      }
+      return checkRangeEnd(pageNumber);
+    }
+
+    /**
+     * @return the last page of the map within this cursor's range, or
+     *         {@link RowIdImpl#FIRST_PAGE_NUMBER} if there is none
+     */
+    private int getLastRangePageNumber() {
+      int pageNumber = UsageMap.this.getLastPageNumber();
+      if(pageNumber >= _rangeEnd) {
+        pageNumber = ((_rangeEnd > _startPage) ?
+                      UsageMap.this.getPrevPageNumber(_rangeEnd) :
+                      RowIdImpl.FIRST_PAGE_NUMBER);
+      }
+      return checkRangeStart(pageNumber);
+    }
+
+    private int checkRangeEnd(int pageNumber) {
+      return((pageNumber >= _rangeEnd) ? RowIdImpl.LAST_PAGE_NUMBER :
+             pageNumber);
+    }
+
+    private int checkRangeStart(int pageNumber) {
+      return(((pageNumber >= 0) && (pageNumber < _rangeStart)) ?
+             RowIdImpl.FIRST_PAGE_NUMBER : pageNumber);
+    }
+
     private int updatePosition(int pageNumber) {
       if(pageNumber < UsageMap.this.getFirstPageNumber()) {
         pageNumber = RowIdImpl.FIRST_PAGE_NUMBER;
@@ -1080,9 +1284,9 @@ public class UsageMap
       @Override
       public int getAnotherPageNumber(int curPageNumber) {
         if(curPageNumber == getBeginningPageNumber()) {
-          return UsageMap.this.getFirstPageNumber();
+          return getFirstRangePageNumber();
         }
-        return UsageMap.this.getNextPageNumber(curPageNumber);
+        return checkRangeEnd(UsageMap.this.getNextPageNumber(curPageNumber));
       }
       @Override
       public int getBeginningPageNumber() {
@@ -1101,9 +1305,9 @@ public class UsageMap
       @Override
       public int getAnotherPageNumber(int curPageNumber) {
         if(curPageNumber == getBeginningPageNumber()) {
-          return UsageMap.this.getLastPageNumber();
+          return getLastRangePageNumber();
         }
-        return UsageMap.this.getPrevPageNumber(curPageNumber);
+        return checkRangeStart(UsageMap.this.getPrevPageNumber(curPageNumber));
       }
       @Override
       public int getBeginningPageNumber() {
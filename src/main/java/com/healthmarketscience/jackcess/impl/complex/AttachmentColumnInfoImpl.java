@@ -18,6 +18,8 @@ package com.healthmarketscience.jackcess.impl.complex;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -239,6 +241,66 @@ public class AttachmentColumnInfoImpl extends ComplexColumnInfoImpl<Attachment>
   }
 
 
+  /**
+   * Returns a stream of the actual content of the given stream of raw
+   * (encoded) attachment file data.  Combined with {@link
+   * com.healthmarketscience.jackcess.impl.CursorImpl#getCurrentRowValueStream}
+   * on the file data column of the attachment table, this allows large
+   * attachments to be read without loading them completely into memory.
+   * @usage _advanced_method_
+   */
+  public static InputStream decodeFileData(InputStream encodedData)
+    throws IOException
+  {
+    return openDecodedData(encodedData);
+  }
+
+  /**
+   * Decodes the raw attachment file data stream to get the _actual_ content.
+   */
+  private static DecodedDataInputStream openDecodedData(
+      InputStream encodedData)
+    throws IOException
+  {
+    // read initial header info
+    DataInputStream wrapperStream = new DataInputStream(encodedData);
+    byte[] tmpBytes = new byte[WRAPPER_HEADER_SIZE];
+    try {
+      wrapperStream.readFully(tmpBytes);
+    } catch(EOFException e) {
+      // nothing we can do
+      throw new IOException("Unknown encoded attachment data format");
+    }
+    ByteBuffer bb = PageChannel.wrap(tmpBytes);
+    int typeFlag = bb.getInt();
+    int dataLen = bb.getInt();
+
+    InputStream bin = encodedData;
+    if(typeFlag == DATA_TYPE_RAW) {
+      // nothing else to do
+    } else if(typeFlag == DATA_TYPE_COMPRESSED) {
+      // actual content is deflate compressed
+      bin = new InflaterInputStream(bin);
+    } else {
+      throw new IOException(
+          "Unknown encoded attachment data type " + typeFlag);
+    }
+
+    DataInputStream contentStream = new DataInputStream(bin);
+
+    // header is an unknown flag followed by the "file extension" of the
+    // data (no clue why we need that again since it's already a separate
+    // field in the attachment table).  just skip all of it
+    tmpBytes = new byte[4];
+    contentStream.readFully(tmpBytes);
+    int headerLen = PageChannel.wrap(tmpBytes).getInt();
+    ByteUtil.skipFully(contentStream, headerLen - 4);
+
+    // actual data length (note, header length includes the bytes for the
+    // length)
+    return new DecodedDataInputStream(contentStream, dataLen - headerLen);
+  }
+
   private static class AttachmentImpl extends ComplexValueImpl
     implements Attachment
   {
@@ -362,41 +424,12 @@ public class AttachmentColumnInfoImpl extends ComplexColumnInfoImpl<Attachment>
         throw new IOException("Unknown encoded attachment data format");
       }
 
-      // read initial header info
-      ByteBuffer bb = PageChannel.wrap(_encodedData);
-      int typeFlag = bb.getInt();
-      int dataLen = bb.getInt();
-
-      DataInputStream contentStream = null;
+      DecodedDataInputStream contentStream = null;
       try {
-        InputStream bin = new ByteArrayInputStream(
-            _encodedData, WRAPPER_HEADER_SIZE,
-            _encodedData.length - WRAPPER_HEADER_SIZE);
-
-        if(typeFlag == DATA_TYPE_RAW) {
-          // nothing else to do
-        } else if(typeFlag == DATA_TYPE_COMPRESSED) {
-          // actual content is deflate compressed
-          bin = new InflaterInputStream(bin);
-        } else {
-          throw new IOException(
-              "Unknown encoded attachment data type " + typeFlag);
-        }
-
-        contentStream = new DataInputStream(bin);
+        contentStream = openDecodedData(new ByteArrayInputStream(_encodedData));
 
-        // header is an unknown flag followed by the "file extension" of the
-        // data (no clue why we need that again since it's already a separate
-        // field in the attachment table).  just skip all of it
-        byte[] tmpBytes = new byte[4];
-        contentStream.readFully(tmpBytes);
-        int headerLen = PageChannel.wrap(tmpBytes).getInt();
-        ByteUtil.skipFully(contentStream, headerLen - 4);
-
-        // calculate actual data length and read it (note, header length
-        // includes the bytes for the length)
-        tmpBytes = new byte[dataLen - headerLen];
-        contentStream.readFully(tmpBytes);
+        byte[] tmpBytes = new byte[contentStream.getLength()];
+        new DataInputStream(contentStream).readFully(tmpBytes);
 
         return tmpBytes;
 
@@ -464,4 +497,65 @@ public class AttachmentColumnInfoImpl extends ComplexColumnInfoImpl<Attachment>
     }
   }
 
+
+  /**
+   * Stream of decoded attachment content which is limited to the length of
+   * the content.
+   */
+  private static final class DecodedDataInputStream extends FilterInputStream
+  {
+    private final int _length;
+    private int _remaining;
+
+    private DecodedDataInputStream(InputStream in, int length) {
+      super(in);
+      _length = length;
+      _remaining = length;
+    }
+
+    public int getLength() {
+      return _length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if(_remaining <= 0) {
+        return -1;
+      }
+      int b = super.read();
+      if(b >= 0) {
+        --_remaining;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if(_remaining <= 0) {
+        return -1;
+      }
+      int numRead = super.read(b, off, Math.min(len, _remaining));
+      if(numRead > 0) {
+        _remaining -= numRead;
+      }
+      return numRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long numSkipped = super.skip(Math.min(n, _remaining));
+      _remaining -= (int)numSkipped;
+      return numSkipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return Math.min(super.available(), _remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
 }
@@ -141,6 +141,7 @@ public abstract class ComplexColumnInfoImpl<V extends ComplexValue>
     if(_complexValIdCursor == null) {
       _complexValIdCursor = _flatTable.newCursor()
         .setIndexByColumns(_complexValFkCol)
+        .setLazyLongValues(false)
         .toIndexCursor();
     }
 
@@ -410,6 +410,17 @@ public interface OleBlob extends Blob, Closeable
       return OleUtil.createBlob(this);
     }
 
+    /**
+     * Returns a stream of the internal data of the ole value described by
+     * this builder, suitable for writing to an OLE column.  Unlike {@link
+     * #toBlob}, the content is not loaded into memory (it is read as the
+     * returned stream is read), so this should be used for large content.
+     * Closing the returned stream closes the content stream.
+     */
+    public InputStream toStream() throws IOException {
+      return OleUtil.createBlobStream(this);
+    }
+
     public static OleBlob fromInternalData(byte[] bytes) throws IOException {
       return OleUtil.parseBlob(bytes);
     }
@@ -0,0 +1,108 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+/**
+ * Receiver of page level I/O events for a Database, useful for determining
+ * where time is spent when working with a Database (file I/O vs. page
+ * decoding).  An instance of this class may be configured at the Database
+ * level (see {@link
+ * com.healthmarketscience.jackcess.DatabaseBuilder#setPageMetrics}).  The
+ * default instance used is {@link #DEFAULT}, which ignores all events (and
+ * allows the Database to skip gathering timing information).
+ * See {@link SimplePageMetrics} for a simple in-memory implementation.
+ * <p/>
+ * Note that page decoding may be done on multiple threads (see {@link
+ * com.healthmarketscience.jackcess.DatabaseBuilder#setDecodeThreads}), so
+ * implementations should be thread-safe.  Reads which are satisfied by a
+ * page cache do not generate any events.
+ *
+ * @author James Ahlborn
+ * @usage _intermediate_class_
+ */
+public interface PageMetrics
+{
+  /**
+   * default page metrics used if none provided (ignores all events)
+   * @usage _general_field_
+   */
+  public static final PageMetrics DEFAULT = new PageMetrics() {
+      public void pageRead(PageType pageType, int numBytes, long nanos) {}
+      public void pageWritten(PageType pageType, int numBytes, long nanos) {}
+      public void pageDecoded(PageType pageType, long nanos) {}
+      public void pageAllocated() {}
+    };
+
+  /**
+   * The types of database pages.
+   */
+  public enum PageType
+  {
+    /** the database header page (page 0) */
+    HEADER,
+    /** data page containing row data */
+    DATA,
+    /** table definition page */
+    TABLE_DEF,
+    /** intermediate index page pointing to other index pages */
+    INDEX_NODE,
+    /** leaf index page containing actual entries */
+    INDEX_LEAF,
+    /** table usage map page */
+    USAGE_MAP,
+    /** unused page */
+    INVALID,
+    /** page type could not be determined (e.g. partial page writes) */
+    UNKNOWN;
+  }
+
+  /**
+   * Called after a page has been read from the database file.  For bulk
+   * reads of multiple pages, the read time is divided evenly between the
+   * pages.
+   *
+   * @param pageType the type of the page read
+   * @param numBytes the number of bytes read
+   * @param nanos the time spent reading the page, in nanoseconds
+   */
+  public void pageRead(PageType pageType, int numBytes, long nanos);
+
+  /**
+   * Called after a page (or part of a page) has been written to the database
+   * file.
+   *
+   * @param pageType the type of the page written
+   * @param numBytes the number of bytes written
+   * @param nanos the time spent writing the page, in nanoseconds
+   */
+  public void pageWritten(PageType pageType, int numBytes, long nanos);
+
+  /**
+   * Called after a page has been decoded by the CodecHandler for an encoded
+   * database (not called for databases which are not encoded).
+   *
+   * @param pageType the type of the page decoded
+   * @param nanos the time spent decoding the page, in nanoseconds
+   */
+  public void pageDecoded(PageType pageType, long nanos);
+
+  /**
+   * Called after a new page has been allocated (either at the end of the
+   * database file or by re-using a previously deallocated page).
+   */
+  public void pageAllocated();
+}
@@ -120,7 +120,10 @@ public class ReadOnlyFileChannel extends FileChannel
   public MappedByteBuffer map(MapMode mode, long position, long size) 
     throws IOException 
   {
-    throw new UnsupportedOperationException();
+    if(mode != MapMode.READ_ONLY) {
+      throw new NonWritableChannelException();
+    }
+    return _delegate.map(mode, position, size);
   }
 
   @Override
@@ -0,0 +1,232 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.util.Arrays;
+
+/**
+ * Simple in-memory implementation of PageMetrics which keeps counts of page
+ * reads, writes and decodes by page type, along with histograms of the
+ * read, write and decode latencies.  Latency histogram bucket {@code i}
+ * counts events which took less than {@code 2^i} microseconds (and at least
+ * {@code 2^(i-1)} microseconds), with the last bucket counting everything
+ * slower.  All methods are synchronized.
+ *
+ * @author James Ahlborn
+ * @usage _intermediate_class_
+ */
+public class SimplePageMetrics implements PageMetrics
+{
+  /** number of buckets in each latency histogram */
+  public static final int NUM_LATENCY_BUCKETS = 32;
+
+  private static final int NUM_PAGE_TYPES = PageType.values().length;
+
+  private final long[] _readCounts = new long[NUM_PAGE_TYPES];
+  private final long[] _writeCounts = new long[NUM_PAGE_TYPES];
+  private final long[] _decodeCounts = new long[NUM_PAGE_TYPES];
+  private final long[] _readLatencies = new long[NUM_LATENCY_BUCKETS];
+  private final long[] _writeLatencies = new long[NUM_LATENCY_BUCKETS];
+  private final long[] _decodeLatencies = new long[NUM_LATENCY_BUCKETS];
+  private long _bytesRead;
+  private long _bytesWritten;
+  private long _readNanos;
+  private long _writeNanos;
+  private long _decodeNanos;
+  private long _allocationCount;
+
+  public SimplePageMetrics() {}
+
+  public synchronized void pageRead(PageType pageType, int numBytes,
+                                    long nanos) {
+    ++_readCounts[pageType.ordinal()];
+    _bytesRead += numBytes;
+    _readNanos += nanos;
+    ++_readLatencies[getLatencyBucket(nanos)];
+  }
+
+  public synchronized void pageWritten(PageType pageType, int numBytes,
+                                       long nanos) {
+    ++_writeCounts[pageType.ordinal()];
+    _bytesWritten += numBytes;
+    _writeNanos += nanos;
+    ++_writeLatencies[getLatencyBucket(nanos)];
+  }
+
+  public synchronized void pageDecoded(PageType pageType, long nanos) {
+    ++_decodeCounts[pageType.ordinal()];
+    _decodeNanos += nanos;
+    ++_decodeLatencies[getLatencyBucket(nanos)];
+  }
+
+  public synchronized void pageAllocated() {
+    ++_allocationCount;
+  }
+
+  /**
+   * @return the number of pages of the given type read from the database
+   *         file
+   */
+  public synchronized long getReadCount(PageType pageType) {
+    return _readCounts[pageType.ordinal()];
+  }
+
+  /**
+   * @return the total number of pages read from the database file
+   */
+  public synchronized long getReadCount() {
+    return sum(_readCounts);
+  }
+
+  /**
+   * @return the number of writes of pages of the given type to the database
+   *         file
+   */
+  public synchronized long getWriteCount(PageType pageType) {
+    return _writeCounts[pageType.ordinal()];
+  }
+
+  /**
+   * @return the total number of page writes to the database file
+   */
+  public synchronized long getWriteCount() {
+    return sum(_writeCounts);
+  }
+
+  /**
+   * @return the number of pages of the given type decoded
+   */
+  public synchronized long getDecodeCount(PageType pageType) {
+    return _decodeCounts[pageType.ordinal()];
+  }
+
+  /**
+   * @return the total number of pages decoded
+   */
+  public synchronized long getDecodeCount() {
+    return sum(_decodeCounts);
+  }
+
+  public synchronized long getBytesRead() {
+    return _bytesRead;
+  }
+
+  public synchronized long getBytesWritten() {
+    return _bytesWritten;
+  }
+
+  /**
+   * @return the total time spent reading pages, in nanoseconds
+   */
+  public synchronized long getReadNanos() {
+    return _readNanos;
+  }
+
+  /**
+   * @return the total time spent writing pages, in nanoseconds
+   */
+  public synchronized long getWriteNanos() {
+    return _writeNanos;
+  }
+
+  /**
+   * @return the total time spent decoding pages, in nanoseconds
+   */
+  public synchronized long getDecodeNanos() {
+    return _decodeNanos;
+  }
+
+  /**
+   * @return the number of pages allocated
+   */
+  public synchronized long getAllocationCount() {
+    return _allocationCount;
+  }
+
+  /**
+   * @return a copy of the page read latency histogram
+   */
+  public synchronized long[] getReadLatencyHistogram() {
+    return _readLatencies.clone();
+  }
+
+  /**
+   * @return a copy of the page write latency histogram
+   */
+  public synchronized long[] getWriteLatencyHistogram() {
+    return _writeLatencies.clone();
+  }
+
+  /**
+   * @return a copy of the page decode latency histogram
+   */
+  public synchronized long[] getDecodeLatencyHistogram() {
+    return _decodeLatencies.clone();
+  }
+
+  /**
+   * Resets all counts to 0.
+   */
+  public synchronized void reset() {
+    Arrays.fill(_readCounts, 0L);
+    Arrays.fill(_writeCounts, 0L);
+    Arrays.fill(_decodeCounts, 0L);
+    Arrays.fill(_readLatencies, 0L);
+    Arrays.fill(_writeLatencies, 0L);
+    Arrays.fill(_decodeLatencies, 0L);
+    _bytesRead = 0L;
+    _bytesWritten = 0L;
+    _readNanos = 0L;
+    _writeNanos = 0L;
+    _decodeNanos = 0L;
+    _allocationCount = 0L;
+  }
+
+  @Override
+  public synchronized String toString() {
+    StringBuilder sb = new StringBuilder()
+      .append("SimplePageMetrics[reads=").append(getReadCount())
+      .append(", bytesRead=").append(_bytesRead)
+      .append(", readNanos=").append(_readNanos)
+      .append(", writes=").append(getWriteCount())
+      .append(", bytesWritten=").append(_bytesWritten)
+      .append(", writeNanos=").append(_writeNanos)
+      .append(", decodes=").append(getDecodeCount())
+      .append(", decodeNanos=").append(_decodeNanos)
+      .append(", allocations=").append(_allocationCount)
+      .append("]");
+    return sb.toString();
+  }
+
+  /**
+   * @return the histogram bucket for the given latency
+   */
+  public static int getLatencyBucket(long nanos) {
+    long micros = nanos / 1000L;
+    int bucket = ((micros > 0L) ?
+                  (64 - Long.numberOfLeadingZeros(micros)) : 0);
+    return Math.min(bucket, NUM_LATENCY_BUCKETS - 1);
+  }
+
+  private static long sum(long[] counts) {
+    long total = 0L;
+    for(long count : counts) {
+      total += count;
+    }
+    return total;
+  }
+}
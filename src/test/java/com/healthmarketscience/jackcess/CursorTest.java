@@ -16,20 +16,37 @@ limitations under the License.
 
 package com.healthmarketscience.jackcess;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.TreeSet;
 
 import static com.healthmarketscience.jackcess.Database.*;
+import com.healthmarketscience.jackcess.impl.ColumnBatch;
 import com.healthmarketscience.jackcess.impl.ColumnImpl;
+import com.healthmarketscience.jackcess.impl.CompactRowImpl;
+import com.healthmarketscience.jackcess.impl.CursorImpl;
+import com.healthmarketscience.jackcess.impl.DatabaseImpl;
 import com.healthmarketscience.jackcess.impl.JetFormatTest;
 import static com.healthmarketscience.jackcess.impl.JetFormatTest.*;
+import com.healthmarketscience.jackcess.impl.LazyRowImpl;
+import com.healthmarketscience.jackcess.impl.PrimitiveRowReader;
 import com.healthmarketscience.jackcess.impl.RowIdImpl;
+import com.healthmarketscience.jackcess.impl.RowImpl;
+import com.healthmarketscience.jackcess.impl.RowPredicate;
 import com.healthmarketscience.jackcess.impl.TableImpl;
 import com.healthmarketscience.jackcess.util.CaseInsensitiveColumnMatcher;
 import com.healthmarketscience.jackcess.util.ColumnMatcher;
@@ -229,6 +246,595 @@ public class CursorTest extends TestCase {
     assertEquals(expectedRows, foundRows);
   }
 
+  public void testLazyRow() throws Exception {
+    for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
+      Database db = createTestTable(fileFormat);
+
+      Table table = db.getTable("test");
+      CursorImpl cursor = (CursorImpl)CursorBuilder.createCursor(table);
+
+      List<Map<String, Object>> foundRows =
+        new ArrayList<Map<String, Object>>();
+      LazyRowImpl row = null;
+      while((row = cursor.getNextLazyRow()) != null) {
+        assertTrue(row.isCurrent());
+        assertFalse(row.isDecoded("value"));
+        foundRows.add(row.copy());
+        assertTrue(row.isDecoded("value"));
+      }
+      assertEquals(createTestTableData(), foundRows);
+
+      cursor.reset();
+      LazyRowImpl row1 = cursor.getNextLazyRow(Arrays.asList("value"));
+      assertEquals(1, row1.size());
+      assertFalse(row1.containsKey("id"));
+      assertNull(row1.get("id"));
+      assertEquals(createTestTableData().get(0).get("value"),
+                   row1.getString("value"));
+
+      LazyRowImpl row2 = cursor.getNextLazyRow();
+      assertFalse(row1.isCurrent());
+      assertTrue(row2.isCurrent());
+      // already decoded values are still available
+      assertEquals(createTestTableData().get(0).get("value"),
+                   row1.getString("value"));
+      try {
+        row2.getInt("id");
+        cursor.moveToNextRow();
+        row2.getString("value");
+        fail("IllegalStateException should have been thrown");
+      } catch(IllegalStateException e) {
+        // success
+      }
+      assertEquals(createTestTableData().get(1).get("id"), row2.getInt("id"));
+
+      // modifying the table invalidates the row
+      LazyRowImpl row3 = cursor.getCurrentLazyRow();
+      assertTrue(row3.isCurrent());
+      table.addRow(99, "new value");
+      assertFalse(row3.isCurrent());
+
+      db.close();
+    }
+  }
+
+  public void testCompactRows() throws Exception {
+    for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
+      Database db = createTestTable(fileFormat);
+
+      Table table = db.getTable("test");
+      Cursor cursor = new CursorBuilder(table).setCompactRows(true).toCursor();
+
+      List<Row> foundRows = new ArrayList<Row>();
+      for(Row row : cursor) {
+        assertTrue(row instanceof CompactRowImpl);
+        foundRows.add(row);
+      }
+      assertEquals(createTestTableData(), foundRows);
+      assertSame(((CompactRowImpl)foundRows.get(0)).getLayout(),
+                 ((CompactRowImpl)foundRows.get(1)).getLayout());
+
+      // full map semantics
+      Row row = foundRows.get(0);
+      Map<String,Object> expected = new LinkedHashMap<String,Object>(row);
+      assertEquals(expected.hashCode(), row.hashCode());
+      assertEquals(0, row.remove("id"));
+      expected.remove("id");
+      assertNull(row.remove("id"));
+      assertFalse(row.containsKey("id"));
+      row.put("other", "foo");
+      expected.put("other", "foo");
+      assertEquals(expected, row);
+      assertEquals(Arrays.asList("value", "other"),
+                   new ArrayList<String>(row.keySet()));
+      row.put("id", 3);
+      expected.put("id", 3);
+      assertEquals(expected, row);
+      assertEquals(Arrays.asList("id", "value", "other"),
+                   new ArrayList<String>(row.keySet()));
+      for(Iterator<Map.Entry<String,Object>> iter = row.entrySet().iterator();
+          iter.hasNext(); ) {
+        Map.Entry<String,Object> e = iter.next();
+        if(e.getKey().equals("value")) {
+          e.setValue("bar");
+        } else {
+          iter.remove();
+        }
+      }
+      assertEquals(Collections.singletonMap("value", "bar"), row);
+
+      // serialized as a normal row
+      ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      ObjectOutputStream oout = new ObjectOutputStream(bout);
+      oout.writeObject(foundRows.get(1));
+      oout.close();
+      Object copy = new ObjectInputStream(
+          new ByteArrayInputStream(bout.toByteArray())).readObject();
+      assertTrue(copy instanceof RowImpl);
+      assertEquals(foundRows.get(1), copy);
+      assertEquals(foundRows.get(1).getId(), ((Row)copy).getId());
+
+      // column matchers work with compact rows
+      cursor.reset();
+      assertTrue(cursor.findFirstRow(Collections.singletonMap("id", 3)));
+      assertEquals(createTestTableData().get(3), cursor.getCurrentRow());
+      Row partialRow = cursor.getCurrentRow(Collections.singleton("value"));
+      assertEquals(Collections.singletonMap("value", "data3"),
+                   partialRow);
+
+      // the table level api always returns RowImpl instances
+      RowImpl tableRow = ((TableImpl)table).getRow(
+          ((CursorImpl)cursor).getRowState(),
+          (RowIdImpl)cursor.getCurrentRow().getId(), null);
+      assertEquals(createTestTableData().get(3), tableRow);
+
+      db.close();
+
+      db = createMem(fileFormat);
+      ((DatabaseImpl)db).setCompactRows(true);
+      table = new TableBuilder("test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .toTable(db);
+      table.addRow(1);
+      assertTrue(CursorBuilder.createCursor(table).getNextRow()
+                 instanceof CompactRowImpl);
+      assertTrue(new CursorBuilder(table).setCompactRows(false).toCursor()
+                 .getNextRow() instanceof RowImpl);
+      db.close();
+    }
+  }
+
+  public void testPrimitiveReader() throws Exception {
+    for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+
+      Table table = new TableBuilder("test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("b", DataType.BYTE))
+        .addColumn(new ColumnBuilder("s", DataType.INT))
+        .addColumn(new ColumnBuilder("d", DataType.DOUBLE))
+        .addColumn(new ColumnBuilder("f", DataType.FLOAT))
+        .addColumn(new ColumnBuilder("m", DataType.MONEY))
+        .addColumn(new ColumnBuilder("dt", DataType.SHORT_DATE_TIME))
+        .addColumn(new ColumnBuilder("flag", DataType.BOOLEAN))
+        .addColumn(new ColumnBuilder("value", DataType.TEXT))
+        .toTable(db);
+
+      for(int i = 0; i < 20; ++i) {
+        if((i % 5) == 0) {
+          table.addRow(i, null, null, null, null, null, null, false, null);
+        } else {
+          table.addRow(i, -i, i * 100, i / 3d, i / 4f, i + 0.25d,
+                       new Date(1000000000000L + (i * 86400000L)),
+                       ((i % 2) == 0), "val" + i);
+        }
+      }
+
+      ColumnImpl idCol = (ColumnImpl)table.getColumn("id");
+      ColumnImpl bCol = (ColumnImpl)table.getColumn("b");
+      ColumnImpl sCol = (ColumnImpl)table.getColumn("s");
+      ColumnImpl dCol = (ColumnImpl)table.getColumn("d");
+      ColumnImpl fCol = (ColumnImpl)table.getColumn("f");
+      ColumnImpl mCol = (ColumnImpl)table.getColumn("m");
+      ColumnImpl dtCol = (ColumnImpl)table.getColumn("dt");
+      ColumnImpl flagCol = (ColumnImpl)table.getColumn("flag");
+      ColumnImpl valueCol = (ColumnImpl)table.getColumn("value");
+
+      CursorImpl cursor = (CursorImpl)CursorBuilder.createCursor(table);
+      PrimitiveRowReader reader = cursor.getPrimitiveReader();
+      int numRows = 0;
+      while(cursor.moveToNextRow()) {
+        Row row = cursor.getCurrentRow();
+        int i = reader.getInt(idCol);
+        assertEquals(row.getInt("id").intValue(), i);
+        assertEquals(i, reader.getLong(idCol));
+        assertFalse(reader.isNull(idCol));
+        assertEquals(row.getBoolean("flag").booleanValue(),
+                     reader.getBoolean(flagCol));
+        assertFalse(reader.isNull(flagCol));
+
+        if((i % 5) == 0) {
+          assertTrue(reader.isNull(bCol));
+          assertTrue(reader.isNull(dCol));
+          assertTrue(reader.isNull(valueCol));
+          assertEquals(0, reader.getInt(bCol));
+          assertEquals(0d, reader.getDouble(dCol));
+          assertEquals(0L, reader.getDateMillis(dtCol));
+        } else {
+          assertEquals(row.getByte("b").intValue(), reader.getInt(bCol));
+          assertEquals(row.getShort("s").intValue(), reader.getInt(sCol));
+          assertEquals(row.getShort("s").doubleValue(),
+                       reader.getDouble(sCol));
+          assertEquals(row.getDouble("d").doubleValue(),
+                       reader.getDouble(dCol));
+          assertEquals(row.getFloat("f").doubleValue(),
+                       reader.getDouble(fCol));
+          assertEquals(row.getBigDecimal("m").doubleValue(),
+                       reader.getDouble(mCol));
+          assertEquals(row.getDate("dt").getTime(),
+                       reader.getDateMillis(dtCol));
+          assertFalse(reader.isNull(valueCol));
+        }
+
+        try {
+          reader.getInt(valueCol);
+          fail("IllegalArgumentException should have been thrown");
+        } catch(IllegalArgumentException e) {
+          // success
+        }
+        ++numRows;
+      }
+      assertEquals(20, numRows);
+
+      db.close();
+    }
+  }
+
+  public void testColumnBatch() throws Exception {
+    for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+
+      Table table = new TableBuilder("test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("d", DataType.DOUBLE))
+        .addColumn(new ColumnBuilder("dt", DataType.SHORT_DATE_TIME))
+        .addColumn(new ColumnBuilder("flag", DataType.BOOLEAN))
+        .addColumn(new ColumnBuilder("value", DataType.TEXT))
+        .addColumn(new ColumnBuilder("num", DataType.NUMERIC))
+        .toTable(db);
+
+      for(int i = 0; i < 25; ++i) {
+        if((i % 5) == 0) {
+          table.addRow(i, null, null, false, null, null);
+        } else {
+          table.addRow(i, i / 3d,
+                       new Date(1000000000000L + (i * 86400000L)),
+                       ((i % 2) == 0), "val" + i, i);
+        }
+      }
+
+      List<Row> expectedRows = new ArrayList<Row>();
+      for(Row row : table) {
+        expectedRows.add(row);
+      }
+
+      CursorImpl cursor = (CursorImpl)CursorBuilder.createCursor(table);
+      ColumnBatch batch = cursor.nextBatch(
+          10, Arrays.asList("id", "d", "dt", "flag", "value", "num"));
+      assertEquals(10, batch.getRowCount());
+      assertEquals(6, batch.getColumns().size());
+
+      int rowNum = 0;
+      do {
+        ColumnBatch.IntVector ids = (ColumnBatch.IntVector)batch.getVector("id");
+        ColumnBatch.DoubleVector ds =
+          (ColumnBatch.DoubleVector)batch.getVector("d");
+        ColumnBatch.LongVector dts =
+          (ColumnBatch.LongVector)batch.getVector("dt");
+        ColumnBatch.IntVector flags =
+          (ColumnBatch.IntVector)batch.getVector("flag");
+        ColumnBatch.TextVector values =
+          (ColumnBatch.TextVector)batch.getVector("value");
+        ColumnBatch.ObjectVector nums =
+          (ColumnBatch.ObjectVector)batch.getVector("num");
+
+        for(int i = 0; i < batch.getRowCount(); ++i) {
+          Row row = expectedRows.get(rowNum++);
+          assertEquals(row.getInt("id").intValue(), ids.get(i));
+          assertEquals(row.getBoolean("flag") ? 1 : 0, flags.get(i));
+          for(int j = 0; j < batch.getColumns().size(); ++j) {
+            ColumnBatch.Vector vector = batch.getVector(j);
+            assertEquals(row.get(vector.getColumn().getName()),
+                         vector.getObject(i));
+          }
+          if((row.getInt("id") % 5) == 0) {
+            assertTrue(ds.isNull(i));
+            assertEquals(0d, ds.get(i));
+            assertTrue(dts.isNull(i));
+            assertTrue(values.isNull(i));
+            assertEquals(0, values.getLength(i));
+            assertTrue(nums.isNull(i));
+          } else {
+            assertEquals(row.getDouble("d").doubleValue(), ds.get(i));
+            assertEquals(row.getDate("dt").getTime(), dts.get(i));
+            String value = row.getString("value");
+            assertEquals(value, new String(
+                             values.getChars(), values.getOffsets()[i],
+                             values.getLength(i)));
+          }
+        }
+      } while(cursor.nextBatch(batch) > 0);
+      assertEquals(25, rowNum);
+      assertEquals(0, batch.getRowCount());
+      assertNull(cursor.nextBatch(10, null));
+
+      cursor.reset();
+      batch = cursor.nextBatch(100, Collections.singleton("value"));
+      assertEquals(25, batch.getRowCount());
+      assertEquals(1, batch.getColumns().size());
+      assertTrue(batch.getVector(0) instanceof ColumnBatch.TextVector);
+
+      db.close();
+    }
+  }
+
+  public void testScaledDecimals() throws Exception {
+    for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+
+      Table table = new TableBuilder("test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("money", DataType.MONEY))
+        .addColumn(new ColumnBuilder("num", DataType.NUMERIC)
+                   .setScale(2).setPrecision(18))
+        .addColumn(new ColumnBuilder("bignum", DataType.NUMERIC)
+                   .setScale(4).setPrecision(28))
+        .toTable(db);
+
+      List<BigDecimal> moneys = Arrays.asList(
+          new BigDecimal("12.3456"), new BigDecimal("-922337203685477.5808"),
+          BigDecimal.ZERO, null);
+      List<BigDecimal> nums = Arrays.asList(
+          new BigDecimal("-1234.56"), new BigDecimal("9999999999999999.99"),
+          new BigDecimal("0.01"), null);
+      List<BigDecimal> bignums = Arrays.asList(
+          new BigDecimal("123456789012345678901234.5678"),
+          new BigDecimal("-922337203685477.5807"), BigDecimal.ONE, null);
+      for(int i = 0; i < moneys.size(); ++i) {
+        table.addRow(i, moneys.get(i), nums.get(i), bignums.get(i));
+      }
+
+      CursorImpl cursor = (CursorImpl)CursorBuilder.createCursor(table);
+      PrimitiveRowReader reader = cursor.getPrimitiveReader();
+      ColumnImpl moneyCol = (ColumnImpl)table.getColumn("money");
+      ColumnImpl numCol = (ColumnImpl)table.getColumn("num");
+      ColumnImpl bignumCol = (ColumnImpl)table.getColumn("bignum");
+      assertEquals(4, reader.getScale(moneyCol));
+      assertEquals(2, reader.getScale(numCol));
+      int i = 0;
+      while(cursor.moveToNextRow()) {
+        Row row = cursor.getCurrentRow();
+        assertEquals(toScale(moneys.get(i), 4), row.getBigDecimal("money"));
+        assertEquals(toScale(nums.get(i), 2), row.getBigDecimal("num"));
+        assertEquals(toScale(bignums.get(i), 4), row.getBigDecimal("bignum"));
+        if(moneys.get(i) == null) {
+          assertEquals(0L, reader.getUnscaledLong(moneyCol));
+          assertEquals(0L, reader.getUnscaledLong(numCol));
+        } else {
+          assertEquals(moneys.get(i).movePointRight(4).longValue(),
+                       reader.getUnscaledLong(moneyCol));
+          assertEquals(nums.get(i).movePointRight(2).longValue(),
+                       reader.getUnscaledLong(numCol));
+        }
+        if(i == 0) {
+          try {
+            reader.getUnscaledLong(bignumCol);
+            fail("ArithmeticException should have been thrown");
+          } catch(ArithmeticException e) {
+            // success
+          }
+        }
+        ++i;
+      }
+      assertEquals(moneys.size(), i);
+
+      cursor.reset();
+      ColumnBatch batch = new ColumnBatch((TableImpl)table, 10, null, true);
+      assertEquals(moneys.size(), cursor.nextBatch(batch));
+      ColumnBatch.DecimalVector moneyVec =
+        (ColumnBatch.DecimalVector)batch.getVector("money");
+      ColumnBatch.DecimalVector numVec =
+        (ColumnBatch.DecimalVector)batch.getVector("num");
+      assertEquals(4, moneyVec.getScale());
+      assertEquals(2, numVec.getScale());
+      // too big for a long
+      assertTrue(batch.getVector("bignum") instanceof ColumnBatch.ObjectVector);
+      for(i = 0; i < moneys.size(); ++i) {
+        assertEquals(toScale(moneys.get(i), 4), moneyVec.getObject(i));
+        assertEquals(toScale(nums.get(i), 2), numVec.getObject(i));
+        assertEquals(toScale(bignums.get(i), 4),
+                     batch.getVector("bignum").getObject(i));
+      }
+      assertTrue(moneyVec.isNull(3));
+      assertEquals(-123456L, numVec.get(0));
+
+      db.close();
+    }
+  }
+
+  private static BigDecimal toScale(BigDecimal val, int scale) {
+    return ((val != null) ? val.setScale(scale) : null);
+  }
+
+  public void testFindRowPredicate() throws Exception {
+    for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+
+      Table table = new TableBuilder("test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("d", DataType.DOUBLE))
+        .addColumn(new ColumnBuilder("dt", DataType.SHORT_DATE_TIME))
+        .addColumn(new ColumnBuilder("flag", DataType.BOOLEAN))
+        .addColumn(new ColumnBuilder("value", DataType.TEXT))
+        .toTable(db);
+
+      for(int i = 0; i < 100; ++i) {
+        table.addRow(i, (((i % 10) == 0) ? null : i / 2d),
+                     new Date(1000000000000L + (i * 86400000L)),
+                     ((i % 3) == 0), "val" + i);
+      }
+
+      ColumnImpl idCol = (ColumnImpl)table.getColumn("id");
+      ColumnImpl dCol = (ColumnImpl)table.getColumn("d");
+      ColumnImpl dtCol = (ColumnImpl)table.getColumn("dt");
+      ColumnImpl flagCol = (ColumnImpl)table.getColumn("flag");
+      ColumnImpl valueCol = (ColumnImpl)table.getColumn("value");
+
+      CursorImpl cursor = (CursorImpl)CursorBuilder.createCursor(table);
+
+      doFindRowPredicate(cursor, RowPredicate.equalTo(idCol, 42), 42);
+      doFindRowPredicate(cursor, RowPredicate.equalTo(idCol, 42L), 42);
+      doFindRowPredicate(cursor, RowPredicate.equalTo(idCol, 200));
+      doFindRowPredicate(cursor, RowPredicate.isNull(dCol),
+                         0, 10, 20, 30, 40, 50, 60, 70, 80, 90);
+      doFindRowPredicate(cursor, RowPredicate.and(
+                             RowPredicate.between(dCol, 10, 12.5),
+                             RowPredicate.equalTo(flagCol, true)), 21, 24);
+      doFindRowPredicate(cursor, RowPredicate.between(idCol, 97, null),
+                         97, 98, 99);
+      doFindRowPredicate(cursor, RowPredicate.between(
+                             dtCol, new Date(1000000000000L),
+                             new Date(1000000000000L + 86400000L)), 0, 1);
+      doFindRowPredicate(cursor, RowPredicate.equalTo(valueCol, "val7"), 7);
+      doFindRowPredicate(cursor, RowPredicate.and(
+                             RowPredicate.startsWith(valueCol, "val9"),
+                             RowPredicate.isNotNull(dCol)),
+                         9, 91, 92, 93, 94, 95, 96, 97, 98, 99);
+
+      // not found restores the position
+      cursor.reset();
+      cursor.moveNextRows(3);
+      assertFalse(cursor.findNextRow(RowPredicate.equalTo(idCol, 1)));
+      assertEquals(2, cursor.getCurrentRowValue(idCol));
+
+      try {
+        RowPredicate.between(valueCol, "a", "b");
+        fail("IllegalArgumentException should have been thrown");
+      } catch(IllegalArgumentException e) {
+        // success
+      }
+
+      // row pattern searches reject rows using the raw data first
+      assertTrue(cursor.findFirstRow(createExpectedRow("id", 55L)));
+      assertEquals(55, cursor.getCurrentRowValue(idCol));
+      assertTrue(cursor.findFirstRow(createExpectedRow(
+                                         "d", null, "flag", false)));
+      assertEquals(10, cursor.getCurrentRowValue(idCol));
+      assertTrue(cursor.findFirstRow(createExpectedRow(
+                                         "d", 30.5, "value", "val61")));
+      assertEquals(61, cursor.getCurrentRowValue(idCol));
+      assertFalse(cursor.findFirstRow(createExpectedRow(
+                                          "d", 30.5, "value", "val60")));
+      assertTrue(cursor.findFirstRow(dCol, 4.5f));
+      assertEquals(9, cursor.getCurrentRowValue(idCol));
+      assertTrue(cursor.findFirstRow(dtCol, new Date(1000000000000L)));
+      assertEquals(0, cursor.getCurrentRowValue(idCol));
+
+      db.close();
+    }
+  }
+
+  private static void doFindRowPredicate(
+      CursorImpl cursor, RowPredicate predicate, Integer... expectedIds)
+    throws Exception
+  {
+    List<Integer> foundIds = new ArrayList<Integer>();
+    cursor.beforeFirst();
+    while(cursor.findNextRow(predicate)) {
+      foundIds.add(cursor.getCurrentRow().getInt("id"));
+    }
+    assertEquals(Arrays.asList(expectedIds), foundIds);
+
+    // the predicate should give the same results as a normal RowFilter
+    foundIds.clear();
+    cursor.beforeFirst();
+    for(Row row : predicate.apply(cursor)) {
+      foundIds.add(row.getInt("id"));
+    }
+    assertEquals(Arrays.asList(expectedIds), foundIds);
+  }
+
+  public void testSplitCursors() throws Exception {
+    for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+
+      Table table = new TableBuilder("test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("value", DataType.TEXT))
+        .toTable(db);
+
+      List<Object[]> rows = new ArrayList<Object[]>();
+      for(int i = 0; i < 2000; ++i) {
+        rows.add(new Object[]{i, "value " + i});
+      }
+      table.addRows(rows);
+
+      TableImpl tableImpl = (TableImpl)table;
+      int numPages = tableImpl.getOwnedPageNumbers().cardinality();
+      assertTrue(numPages > 4);
+
+      List<CursorImpl> cursors = CursorImpl.createSplitCursors(tableImpl, 4);
+      assertEquals(4, cursors.size());
+      doTestSplitCursors(cursors, 2000, false);
+
+      cursors = CursorImpl.createSplitCursors(tableImpl, 4);
+      doTestSplitCursors(cursors, 2000, true);
+
+      cursors = CursorImpl.createSplitCursors(tableImpl, numPages * 2);
+      assertEquals(numPages, cursors.size());
+      doTestSplitCursors(cursors, 2000, false);
+
+      cursors = CursorImpl.createSplitCursors(tableImpl, 1);
+      assertEquals(1, cursors.size());
+      doTestSplitCursors(cursors, 2000, false);
+
+      // reverse traversal stays within the split
+      cursors = CursorImpl.createSplitCursors(tableImpl, 3);
+      Set<Integer> ids = new HashSet<Integer>();
+      for(CursorImpl cursor : cursors) {
+        cursor.afterLast();
+        while(cursor.moveToPreviousRow()) {
+          assertTrue(ids.add((Integer)cursor.getCurrentRowValue(
+                                 table.getColumn("id"))));
+        }
+      }
+      assertEquals(2000, ids.size());
+
+      db.close();
+    }
+  }
+
+  private static void doTestSplitCursors(
+      List<CursorImpl> cursors, int expectedRows, boolean concurrent)
+    throws Exception
+  {
+    final Set<Integer> ids =
+      Collections.synchronizedSet(new HashSet<Integer>());
+    final List<Throwable> failures =
+      Collections.synchronizedList(new ArrayList<Throwable>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for(final CursorImpl cursor : cursors) {
+      Runnable scan = new Runnable() {
+        public void run() {
+          try {
+            for(Row row : cursor) {
+              if(!ids.add(row.getInt("id"))) {
+                failures.add(new AssertionError("Duplicate row " + row));
+              }
+              assertEquals("value " + row.getInt("id"),
+                           row.getString("value"));
+            }
+          } catch(Throwable t) {
+            failures.add(t);
+          }
+        }
+      };
+      if(concurrent) {
+        Thread t = new Thread(scan);
+        t.start();
+        threads.add(t);
+      } else {
+        scan.run();
+      }
+    }
+    for(Thread t : threads) {
+      t.join();
+    }
+
+    assertEquals(Collections.emptyList(), failures);
+    assertEquals(expectedRows, ids.size());
+  }
+
   public void testMove() throws Exception {
     for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
       Database db = createTestTable(fileFormat);
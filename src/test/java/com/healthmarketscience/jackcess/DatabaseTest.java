@@ -29,6 +29,7 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Random;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
@@ -38,6 +39,7 @@ import java.util.UUID;
 import static com.healthmarketscience.jackcess.Database.*;
 import com.healthmarketscience.jackcess.impl.ColumnImpl;
 import com.healthmarketscience.jackcess.impl.DatabaseImpl;
+import com.healthmarketscience.jackcess.impl.DateCodec;
 import static com.healthmarketscience.jackcess.impl.JetFormatTest.*;
 import com.healthmarketscience.jackcess.impl.RowIdImpl;
 import com.healthmarketscience.jackcess.impl.RowImpl;
@@ -987,9 +989,12 @@ public class DatabaseTest extends TestCase
 
   private static void doTestTimeZone(final TimeZone tz) throws Exception
   {
+    final DateCodec codec = new DateCodec(tz);
     ColumnImpl col = new ColumnImpl(null, null, DataType.SHORT_DATE_TIME, 0, 0, 0) {
       @Override
       protected Calendar getCalendar() { return Calendar.getInstance(tz); }
+      @Override
+      protected DateCodec getDateCodec() { return codec; }
     };
 
     SimpleDateFormat df = new SimpleDateFormat("yyyy.MM.dd");
@@ -1014,6 +1019,47 @@ public class DatabaseTest extends TestCase
     }
   }
 
+  public void testDateCodec() throws Exception
+  {
+    // (America/Recife had a dst period of only a week in 2000)
+    for(String tzId : Arrays.asList("America/New_York", "Australia/Sydney",
+                                    "Europe/London", "Asia/Kolkata", "UTC",
+                                    "America/Recife")) {
+      TimeZone tz = TimeZone.getTimeZone(tzId);
+      DateCodec codec = new DateCodec(tz);
+      Calendar cal = DatabaseBuilder.toCompatibleCalendar(
+          Calendar.getInstance(tz));
+
+      // codec should always match the calendar based conversion
+      Random rand = new Random(42L);
+      long minTime = -5000000000000L;
+      for(int i = 0; i < 20000; ++i) {
+        long time = minTime + (long)(rand.nextDouble() * -minTime * 2);
+        if(i % 2 == 1) {
+          // whole hours (e.g. dst transitions)
+          time -= (time % (60L * 60L * 1000L));
+        }
+        double dateDbl = ColumnImpl.toDateDouble(time, cal);
+        assertEquals(dateDbl, codec.toDateDouble(time));
+        assertEquals(ColumnImpl.fromDateDouble(dateDbl, cal),
+                     codec.fromDateDouble(dateDbl));
+      }
+
+      // every hour around the short dst period (which used to be cached
+      // with the wrong offset)
+      cal.clear();
+      cal.set(2000, Calendar.OCTOBER, 1);
+      long startTime = cal.getTimeInMillis();
+      for(int i = 0; i < (24 * 21); ++i) {
+        long time = startTime + (i * 60L * 60L * 1000L);
+        double dateDbl = ColumnImpl.toDateDouble(time, cal);
+        assertEquals(dateDbl, codec.toDateDouble(time));
+        assertEquals(ColumnImpl.fromDateDouble(dateDbl, cal),
+                     codec.fromDateDouble(dateDbl));
+      }
+    }
+  }
+
   public void testToString()
   {
     RowImpl row = new RowImpl(new RowIdImpl(1, 1));
@@ -16,16 +16,22 @@ limitations under the License.
 
 package com.healthmarketscience.jackcess;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import static com.healthmarketscience.jackcess.Database.*;
+import com.healthmarketscience.jackcess.impl.BulkLoad;
 import com.healthmarketscience.jackcess.impl.ByteUtil;
 import com.healthmarketscience.jackcess.impl.IndexCodesTest;
 import com.healthmarketscience.jackcess.impl.IndexData;
@@ -643,6 +649,183 @@ public class IndexTest extends TestCase {
     }    
   }
 
+  public void testBulkLoad() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = create(fileFormat);
+
+      TableImpl t = (TableImpl)new TableBuilder("TestTable")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("data", DataType.TEXT))
+        .addColumn(new ColumnBuilder("grp", DataType.LONG))
+        .addIndex(new IndexBuilder(IndexBuilder.PRIMARY_KEY_NAME)
+                  .addColumns("id").setPrimaryKey())
+        .addIndex(new IndexBuilder("data_ind")
+                  .addColumns("data").setUnique())
+        .addIndex(new IndexBuilder("grp_ind").addColumns("grp"))
+        .toTable(db);
+
+      String extraText = " some extra text to make the index entries bigger";
+
+      for(int i = 0; i < 10; ++i) {
+        t.addRow(i, "row" + i + extraText, i % 7);
+      }
+
+      List<Integer> ids = new ArrayList<Integer>();
+      for(int i = 10; i < 2000; ++i) {
+        ids.add(i);
+      }
+      Collections.shuffle(ids, new Random(42L));
+
+      // use a small amount of sort memory so that the entries are written to
+      // temp files
+      BulkLoad bulkLoad = t.startBulkLoad(16 * 1024);
+      assertSame(bulkLoad, t.getBulkLoad());
+
+      try {
+        t.startBulkLoad();
+        fail("IllegalStateException should have been thrown");
+      } catch(IllegalStateException e) {
+        // success
+      }
+
+      for(Integer id : ids) {
+        t.addRow(id, "row" + id + extraText, id % 7);
+      }
+
+      Row row = CursorBuilder.findRowByPrimaryKey(t, 5);
+      row.put("data", "newdata");
+      try {
+        t.updateRow(row);
+        fail("IllegalStateException should have been thrown");
+      } catch(IllegalStateException e) {
+        // success
+      }
+      try {
+        t.deleteRow(row);
+        fail("IllegalStateException should have been thrown");
+      } catch(IllegalStateException e) {
+        // success
+      }
+
+      bulkLoad.finish();
+      assertTrue(bulkLoad.isFinished());
+      assertNull(t.getBulkLoad());
+
+      assertEquals(2000, t.getRowCount());
+      for(IndexImpl idx : t.getIndexes()) {
+        assertEquals(2000, idx.getIndexData().getEntryCount());
+        idx.getIndexData().validate();
+      }
+
+      int count = 0;
+      for(Row r : CursorBuilder.createPrimaryKeyCursor(t)) {
+        assertEquals(count, r.get("id"));
+        ++count;
+      }
+      assertEquals(2000, count);
+
+      Set<String> foundData = new HashSet<String>();
+      for(Row r : CursorBuilder.createCursor(t.getIndex("data_ind"))) {
+        foundData.add(r.getString("data"));
+      }
+      assertEquals(2000, foundData.size());
+
+      count = 0;
+      IndexCursor grpCursor = CursorBuilder.createCursor(t.getIndex("grp_ind"));
+      for(Row r : grpCursor.newEntryIterable(3)) {
+        assertEquals(3, ((Integer)r.get("id")) % 7);
+        ++count;
+      }
+      assertEquals(286, count);
+
+      // the indexes are back to normal
+      t.addRow(2000, "row2000" + extraText, 0);
+      assertEquals(2000, CursorBuilder.findRowByPrimaryKey(t, 2000).get("id"));
+      row = CursorBuilder.findRowByPrimaryKey(t, 5);
+      t.deleteRow(row);
+      assertNull(CursorBuilder.findRowByPrimaryKey(t, 5));
+      for(IndexImpl idx : t.getIndexes()) {
+        assertEquals(2000, idx.getIndexData().getEntryCount());
+        idx.getIndexData().validate();
+      }
+
+      // uniqueness is checked for all the indexes before any index is
+      // changed, and all the new rows are removed on failure
+      bulkLoad = t.startBulkLoad();
+      t.addRow(3000, "row3000", 0);
+      t.addRow(3001, "row10" + extraText, 0);
+      try {
+        bulkLoad.finish();
+        fail("ConstraintViolationException should have been thrown");
+      } catch(ConstraintViolationException ce) {
+        // success
+      }
+      assertNull(t.getBulkLoad());
+      assertBulkLoadConsistent(t, 2000);
+      assertNull(CursorBuilder.findRowByPrimaryKey(t, 3000));
+      assertNull(CursorBuilder.findRowByPrimaryKey(t, 3001));
+
+      // the unique index still works normally
+      t.addRow(3000, "row3000", 0);
+      try {
+        t.addRow(3002, "row3000", 0);
+        fail("ConstraintViolationException should have been thrown");
+      } catch(ConstraintViolationException ce) {
+        // success
+      }
+      assertBulkLoadConsistent(t, 2001);
+
+      // an aborted bulk load removes all the new rows (and temp files)
+      int numTempFiles = countSortTempFiles();
+      bulkLoad = t.startBulkLoad(1024);
+      for(int i = 4000; i < 4100; ++i) {
+        t.addRow(i, "row" + i + extraText, i % 7);
+      }
+      assertTrue(countSortTempFiles() > numTempFiles);
+      bulkLoad.abort();
+      assertTrue(bulkLoad.isFinished());
+      assertNull(t.getBulkLoad());
+      assertEquals(numTempFiles, countSortTempFiles());
+      assertBulkLoadConsistent(t, 2001);
+      t.deleteRow(CursorBuilder.findRowByPrimaryKey(t, 3000));
+      assertBulkLoadConsistent(t, 2000);
+
+      // an unfinished bulk load is aborted when the database is closed
+      bulkLoad = t.startBulkLoad();
+      t.addRow(5000, "row5000", 0);
+      File dbFile = db.getFile();
+      db.close();
+      assertTrue(bulkLoad.isFinished());
+
+      db = open(fileFormat, dbFile);
+      assertBulkLoadConsistent((TableImpl)db.getTable("TestTable"), 2000);
+      db.close();
+    }
+  }
+
+  private static void assertBulkLoadConsistent(TableImpl t, int numRows)
+    throws Exception
+  {
+    assertEquals(numRows, t.getRowCount());
+    assertEquals(numRows, countRows(t));
+    for(IndexImpl idx : t.getIndexes()) {
+      assertEquals(numRows, idx.getIndexData().getEntryCount());
+      idx.getIndexData().validate();
+    }
+  }
+
+  private static int countSortTempFiles() {
+    File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles();
+    int count = 0;
+    for(File f : files) {
+      if(f.getName().startsWith("jackcess_idx_")) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
   public void testAutoNumberRecover() throws Exception
   {
     for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
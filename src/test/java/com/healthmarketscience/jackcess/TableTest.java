@@ -111,6 +111,29 @@ public class TableTest extends TestCase {
 
   }
 
+  public void testCreateRowReusedBuffer() throws Exception {
+    reset();
+    newTestColumn(DataType.INT, false);
+    newTestColumn(DataType.TEXT, true);
+    newTestColumn(DataType.TEXT, false);
+    newTestColumn(DataType.LONG, false);
+    newTestTable();
+
+    Object[] row1 = {9, "compressed text", "uncompressed text", 13};
+    Object[] row2 = {null, "\u00e9t\u00e9 \u2020", "short", null};
+    Object[] row3 = {7, null, "A", 42};
+
+    ByteBuffer buffer = _pageChannel.createPageBuffer();
+    for(Object[] row : Arrays.asList(row1, row2, row3, row1)) {
+      // writing into a re-used buffer must result in the same row data as
+      // writing into a new buffer
+      buffer.clear();
+      byte[] expected = toBytes(createRow(row));
+      assertTrue(Arrays.equals(
+                     expected, toBytes(_testTable.createRow(buffer, row))));
+    }
+  }
+
   private ByteBuffer createRow(Object... row) 
     throws IOException
   {
@@ -204,6 +227,11 @@ public class TableTest extends TestCase {
     public ByteBuffer createRow(Object... row) throws IOException {
       return super.createRow(row, getPageChannel().createPageBuffer());
     }
+    public ByteBuffer createRow(ByteBuffer buffer, Object... row)
+      throws IOException
+    {
+      return super.createRow(row, buffer);
+    }
     @Override
     public PageChannel getPageChannel() {
       return _pageChannel;
@@ -25,6 +25,8 @@ import java.util.Map;
 import com.healthmarketscience.jackcess.Database.FileFormat;
 import static com.healthmarketscience.jackcess.impl.JetFormatTest.*;
 import com.healthmarketscience.jackcess.impl.DatabaseImpl;
+import com.healthmarketscience.jackcess.impl.IndexData;
+import com.healthmarketscience.jackcess.impl.IndexImpl;
 import com.healthmarketscience.jackcess.impl.TableImpl;
 import junit.framework.TestCase;
 import static com.healthmarketscience.jackcess.TestUtil.*;
@@ -238,6 +240,91 @@ public class TableUpdaterTest extends TestCase
     }    
   }
 
+  public void testAddIndexToPopulatedTable() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = create(fileFormat);
+      // use a small amount of sort memory so that the index entries are
+      // sorted using temp files
+      ((DatabaseImpl)db).setMaxIndexSortBytes(1024);
+
+      TableImpl t = (TableImpl)new TableBuilder("test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("code", DataType.TEXT))
+        .addColumn(new ColumnBuilder("grp", DataType.TEXT))
+        .toTable(db);
+
+      // add the rows in an order which does not match any index order
+      final int numRows = 1000;
+      for(int i = numRows - 1; i >= 0; --i) {
+        String grp = (((i % 100) == 0) ? null : ("group" + (i % 30)));
+        t.addRow(i, "code" + ((i * 7) % numRows), grp);
+      }
+
+      IndexImpl pkIdx = (IndexImpl)
+        new IndexBuilder(IndexBuilder.PRIMARY_KEY_NAME)
+        .addColumns("id").setPrimaryKey()
+        .addToTable(t);
+      IndexImpl codeIdx = (IndexImpl)new IndexBuilder("code_ind")
+        .addColumns("code").setUnique()
+        .addToTable(t);
+      IndexImpl grpIdx = (IndexImpl)new IndexBuilder("grp_ind")
+        .addColumns("grp").setIgnoreNulls()
+        .addToTable(t);
+
+      assertEquals(numRows, pkIdx.getIndexData().getEntryCount());
+      pkIdx.getIndexData().validate();
+      assertEquals(numRows, codeIdx.getIndexData().getEntryCount());
+      codeIdx.getIndexData().validate();
+      assertEquals(numRows - 10, grpIdx.getIndexData().getEntryCount());
+      grpIdx.getIndexData().validate();
+
+      int count = 0;
+      for(Row row : CursorBuilder.createCursor(pkIdx)) {
+        assertEquals(count, row.get("id"));
+        ++count;
+      }
+      assertEquals(numRows, count);
+
+      count = 0;
+      IndexCursor grpCursor = CursorBuilder.createCursor(grpIdx);
+      for(Row row : grpCursor.newEntryIterable("group3")) {
+        assertEquals(3, ((Integer)row.get("id")) % 30);
+        ++count;
+      }
+      assertEquals(34, count);
+
+      // a unique index cannot be added for duplicate values
+      int numIdxDatas = t.getIndexDatas().size();
+      try {
+        new IndexBuilder("grp_uniq_ind")
+          .addColumns("grp").setUnique().setIgnoreNulls()
+          .addToTable(t);
+        fail("ConstraintViolationException should have been thrown");
+      } catch(ConstraintViolationException ce) {
+        // success
+        assertTrue(ce.getMessage().contains("group"));
+      }
+
+      // the index was not added and the new (unused) index data is empty
+      assertEquals(3, t.getIndexes().size());
+      assertEquals(numIdxDatas + 1, t.getIndexDatas().size());
+      IndexData badIdxData = t.getIndexDatas().get(numIdxDatas);
+      assertEquals(0, badIdxData.getEntryCount());
+      badIdxData.validate();
+      assertEquals(numRows, t.getRowCount());
+
+      // the new indexes are maintained normally
+      t.addRow(numRows, "code" + numRows, "group3");
+      assertEquals(numRows + 1, pkIdx.getIndexData().getEntryCount());
+      pkIdx.getIndexData().validate();
+      codeIdx.getIndexData().validate();
+      grpIdx.getIndexData().validate();
+
+      db.close();
+    }
+  }
+
   public void testUpdateLargeTableDef() throws Exception
   {
     for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
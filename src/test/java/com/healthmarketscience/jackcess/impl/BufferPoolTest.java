@@ -0,0 +1,205 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.DataType;
+import com.healthmarketscience.jackcess.Database;
+import static com.healthmarketscience.jackcess.Database.*;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.TableBuilder;
+import static com.healthmarketscience.jackcess.TestUtil.*;
+import static com.healthmarketscience.jackcess.impl.JetFormatTest.*;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author James Ahlborn
+ */
+public class BufferPoolTest extends TestCase
+{
+
+  public BufferPoolTest(String name) {
+    super(name);
+  }
+
+  public void testLeaseAndRelease() throws Exception
+  {
+    BufferPool pool = new BufferPool(4096, false);
+
+    ByteBuffer buf1 = pool.acquire(1000, ByteOrder.LITTLE_ENDIAN);
+    assertEquals(1024, buf1.capacity());
+    assertEquals(0, buf1.position());
+    assertEquals(1000, buf1.limit());
+    assertEquals(ByteOrder.LITTLE_ENDIAN, buf1.order());
+    assertEquals(1, pool.getLeasedBufferCount());
+
+    buf1.putInt(0, 42);
+    pool.release(buf1);
+    assertEquals(0, pool.getLeasedBufferCount());
+    assertEquals(1024L, pool.getIdleBytes());
+
+    // released buffer is re-used (zeroed)
+    ByteBuffer buf2 = pool.acquire(1024, ByteOrder.BIG_ENDIAN);
+    assertSame(buf1, buf2);
+    assertEquals(0, buf2.getInt(0));
+    assertEquals(ByteOrder.BIG_ENDIAN, buf2.order());
+    assertEquals(0L, pool.getIdleBytes());
+
+    // different size class
+    ByteBuffer buf3 = pool.acquire(2000, ByteOrder.LITTLE_ENDIAN);
+    assertEquals(2048, buf3.capacity());
+
+    assertEquals(3L, pool.getLeaseCount());
+    assertEquals(1L, pool.getReuseCount());
+    assertEquals(2L, pool.getAllocationCount());
+
+    // pool only holds max bytes of idle buffers
+    ByteBuffer buf4 = pool.acquire(2048, ByteOrder.LITTLE_ENDIAN);
+    pool.release(buf2);
+    pool.release(buf3);
+    pool.release(buf4);
+    assertEquals(4L, pool.getReturnCount());
+    assertEquals(3072L, pool.getIdleBytes());
+
+    // releasing an unknown buffer does nothing
+    pool.release(ByteBuffer.allocate(1024));
+    assertEquals(4L, pool.getReturnCount());
+
+    pool.clear();
+    assertEquals(0L, pool.getIdleBytes());
+  }
+
+  public void testHolders() throws Exception
+  {
+    PageChannel pageChannel = new PageChannel(true);
+    BufferPool pool = new BufferPool(1024 * 1024, true);
+    pageChannel.setBufferPool(pool);
+
+    TempBufferHolder holder = TempBufferHolder.newHolder(
+        TempBufferHolder.Type.SOFT, true);
+    ByteBuffer buf = holder.getBuffer(pageChannel, 100);
+    assertTrue(buf.isDirect());
+    assertSame(buf, holder.getBuffer(pageChannel, 100));
+    assertEquals(1, pool.getLeasedBufferCount());
+
+    // growing the buffer does not return the old one (may still be in use)
+    ByteBuffer bigBuf = holder.getBuffer(pageChannel, 1000);
+    assertNotSame(buf, bigBuf);
+    assertEquals(2, pool.getLeasedBufferCount());
+    assertEquals(0L, pool.getReturnCount());
+    assertNotSame(buf, pool.acquire(100, ByteOrder.LITTLE_ENDIAN));
+
+    holder.release();
+    assertNull(holder.getExistingBuffer());
+    assertEquals(1L, pool.getReturnCount());
+    assertSame(bigBuf, pool.acquire(1000, ByteOrder.LITTLE_ENDIAN));
+
+    // clearing the holder does not return the buffer either
+    holder = TempBufferHolder.newHolder(TempBufferHolder.Type.HARD, true);
+    buf = holder.getBuffer(pageChannel, 2000);
+    holder.clear();
+    holder.release();
+    assertEquals(1L, pool.getReturnCount());
+    assertNotSame(buf, pool.acquire(2000, ByteOrder.LITTLE_ENDIAN));
+
+    // "none" holders never use the pool
+    long leaseCount = pool.getLeaseCount();
+    holder = TempBufferHolder.newHolder(TempBufferHolder.Type.NONE, true);
+    assertFalse(holder.getBuffer(pageChannel, 100).isDirect());
+    assertEquals(leaseCount, pool.getLeaseCount());
+  }
+
+  public void testPooledDatabase() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      BufferPool pool = new BufferPool(1024 * 1024, true);
+      pageChannel.setBufferPool(pool);
+
+      createTestTable(db);
+      Table table = db.getTable("Test");
+      List<Object[]> rows = new ArrayList<Object[]>();
+      for(int i = 0; i < 200; ++i) {
+        Object[] row = createTestRow();
+        row[0] = "row" + i;
+        rows.add(row);
+      }
+      table.addRows(rows);
+
+      int count = 0;
+      for(Row row : table) {
+        assertEquals("row" + count, row.getString("A"));
+        ++count;
+      }
+      assertEquals(200, count);
+      assertTrue(pool.getLeaseCount() > 0L);
+
+      db.close();
+    }
+
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      BufferPool pool = new BufferPool(1024 * 1024, false);
+      pageChannel.setBufferPool(pool);
+
+      Table table = new TableBuilder("Test")
+        .addColumn(new ColumnBuilder("data", DataType.OLE))
+        .toTable(db);
+      int leasedCount = pool.getLeasedBufferCount();
+
+      // multi-page long values re-use the page buffers
+      byte[] bytes = new byte[4 * 1024 * 1024];
+      table.addRow(bytes);
+      table.addRow(bytes);
+      assertTrue(pool.getLeasedBufferCount() < (leasedCount + 10));
+      assertTrue(pool.getReuseCount() > 0L);
+
+      int count = 0;
+      for(Row row : table) {
+        assertEquals(bytes.length, row.getBytes("data").length);
+        ++count;
+      }
+      assertEquals(2, count);
+
+      db.close();
+    }
+
+    for (final TestDB testDB : SUPPORTED_DBS_TEST_FOR_READ) {
+      Database db = new DatabaseBuilder(testDB.getFile())
+        .setReadOnly(true).setBufferPoolSize(1024L * 1024L)
+        .setDirectBuffers(true).open();
+      BufferPool pool = ((DatabaseImpl)db).getPageChannel().getBufferPool();
+      assertNotNull(pool);
+      assertTrue(pool.isDirect());
+
+      assertEquals(2, countRows(db.getTable("Table1")));
+      assertTrue(pool.getLeaseCount() > 0L);
+
+      db.close();
+    }
+  }
+}
@@ -22,7 +22,10 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 
 import com.healthmarketscience.jackcess.ColumnBuilder;
 import com.healthmarketscience.jackcess.Cursor;
@@ -108,6 +111,84 @@ public class CodecHandlerTest extends TestCase
     }
   }
 
+  public void testParallelDecoding() throws Exception
+  {
+    doTestParallelDecoding(true);
+    doTestParallelDecoding(false);
+  }
+
+  private static void doTestParallelDecoding(final boolean simple)
+    throws Exception
+  {
+    for(Database.FileFormat ff : SUPPORTED_FILEFORMATS) {
+      Database db = TestUtil.create(ff);
+      int pageSize = ((DatabaseImpl)db).getFormat().PAGE_SIZE;
+      File dbFile = db.getFile();
+
+      Table t1 = new TableBuilder("test1")
+        .addColumn(new ColumnBuilder("id", DataType.LONG).setAutoNumber(true))
+        .addColumn(new ColumnBuilder("data", DataType.TEXT).setLength(250))
+        .toTable(db);
+      for(int i = 0; i < 1000; ++i) {
+        t1.addRow(null, "rowdata-" + (i + 1) + TestUtil.createString(100));
+      }
+      db.close();
+
+      // apply encoding to file
+      encodeFile(dbFile, pageSize, simple);
+
+      final Set<String> decodeThreads =
+        Collections.synchronizedSet(new HashSet<String>());
+      CodecProvider provider = new CodecProvider() {
+        public CodecHandler createHandler(PageChannel channel, Charset charset)
+          throws IOException
+        {
+          final CodecHandler handler = (simple ?
+                                        new SimpleCodecHandler(channel) :
+                                        new FullCodecHandler(channel));
+          return new CodecHandler() {
+            public boolean canEncodePartialPage() {
+              return handler.canEncodePartialPage();
+            }
+            public boolean canDecodeInline() {
+              return handler.canDecodeInline();
+            }
+            public void decodePage(ByteBuffer inPage, ByteBuffer outPage,
+                                   int pageNumber)
+              throws IOException
+            {
+              decodeThreads.add(Thread.currentThread().getName());
+              handler.decodePage(inPage, outPage, pageNumber);
+            }
+            public ByteBuffer encodePage(ByteBuffer page, int pageNumber,
+                                         int pageOffset)
+              throws IOException
+            {
+              return handler.encodePage(page, pageNumber, pageOffset);
+            }
+          };
+        }
+      };
+
+      db = new DatabaseBuilder(dbFile)
+        .setCodecProvider(provider)
+        .setReadAheadPages(8)
+        .setDecodeThreads(4)
+        .open();
+      assertEquals(4, ((DatabaseImpl)db).getPageChannel().getDecodeThreads());
+
+      int count = 0;
+      for(Row row : db.getTable("test1")) {
+        checkRow(row);
+        ++count;
+      }
+      assertEquals(1000, count);
+      assertTrue(decodeThreads.size() > 1);
+
+      db.close();
+    }
+  }
+
   private static void writeData(Table t1, Table t2, int start, int end)
     throws Exception
   {
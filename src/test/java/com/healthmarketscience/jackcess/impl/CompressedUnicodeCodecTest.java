@@ -0,0 +1,88 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author James Ahlborn
+ */
+public class CompressedUnicodeCodecTest extends TestCase
+{
+
+  public CompressedUnicodeCodecTest(String name) {
+    super(name);
+  }
+
+  public void testCompressedUnicodeCodec() throws Exception
+  {
+    Charset charset = Charset.forName("UTF-16LE");
+    Random rand = new Random(42L);
+    for(int i = 0; i < 2000; ++i) {
+      // random data with lots of segment markers, surrogates and odd length
+      // segments
+      byte[] data = new byte[rand.nextInt(100)];
+      for(int j = 0; j < data.length; ++j) {
+        switch(rand.nextInt(6)) {
+        case 0:
+          data[j] = 0;
+          break;
+        case 1:
+          data[j] = (byte)(0xD8 + rand.nextInt(8));
+          break;
+        default:
+          data[j] = (byte)rand.nextInt(256);
+        }
+      }
+
+      assertEquals(charset.decode(ByteBuffer.wrap(data)).toString(),
+                   CompressedUnicodeCodec.decodeUncompressed(
+                       data, 0, data.length));
+
+      // decode compressed data the "slow" way
+      StringBuilder expected = new StringBuilder();
+      boolean inCompressedMode = true;
+      int start = 0;
+      for(int j = 0; j <= data.length; ++j) {
+        if((j == data.length) || (data[j] == 0)) {
+          if(inCompressedMode) {
+            for(int k = start; k < j; ++k) {
+              expected.append((char)(data[k] & 0xFF));
+            }
+          } else {
+            expected.append(charset.decode(
+                                ByteBuffer.wrap(data, start, j - start)));
+          }
+          inCompressedMode = !inCompressedMode;
+          start = j + 1;
+        }
+      }
+      assertEquals(expected.toString(),
+                   CompressedUnicodeCodec.decodeCompressed(
+                       data, 0, data.length));
+
+      String str = charset.decode(ByteBuffer.wrap(data)).toString();
+      assertEquals(charset.encode(str),
+                   CompressedUnicodeCodec.encodeUncompressed(str));
+    }
+  }
+}
@@ -17,8 +17,10 @@ limitations under the License.
 package com.healthmarketscience.jackcess.impl;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.healthmarketscience.jackcess.Column;
 import com.healthmarketscience.jackcess.ColumnBuilder;
@@ -28,6 +30,7 @@ import com.healthmarketscience.jackcess.DataType;
 import com.healthmarketscience.jackcess.Database;
 import static com.healthmarketscience.jackcess.Database.*;
 import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.RowId;
 import com.healthmarketscience.jackcess.Table;
 import com.healthmarketscience.jackcess.TableBuilder;
 import static com.healthmarketscience.jackcess.TestUtil.*;
@@ -231,6 +234,96 @@ public class DatabaseReadWriteTest extends TestCase
     }
   }
 
+  public void testReuseDeletedRowSpace() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+      ((DatabaseImpl)db).setReuseDeletedRowSpace(true);
+
+      Table t = new TableBuilder("test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG)
+                   .setAutoNumber(true))
+        .addColumn(new ColumnBuilder("data", DataType.TEXT)
+                   .setLength(JetFormat.TEXT_FIELD_MAX_LENGTH))
+        .toTable(db);
+      TableImpl ti = (TableImpl)t;
+
+      int pageCount = 0;
+      for(int i = 0; i < 20; ++i) {
+
+        // row numbers of deleted rows are only re-used by other table
+        // instances
+        clearTableCache(db);
+        t = db.getTable("test");
+        ti = (TableImpl)t;
+
+        for(int j = 0; j < 300; ++j) {
+          t.addRow(Column.AUTO_NUMBER, "row " + (1000 + j));
+        }
+
+        // move some of the rows to overflow rows
+        Cursor c = CursorBuilder.createCursor(t);
+        for(int j = 0; j < 10; ++j) {
+          assertTrue(c.moveToNextRow());
+          c.setCurrentRowValue(t.getColumn("data"), createString(100));
+        }
+
+        c.reset();
+        int numRows = 0;
+        while(c.moveToNextRow()) {
+          c.deleteCurrentRow();
+          ++numRows;
+        }
+        assertEquals(300, numRows);
+        assertEquals(0, t.getRowCount());
+
+        if(i == 0) {
+          pageCount = ti.getApproximateOwnedPageCount();
+        }
+      }
+
+      // space from the deleted rows was re-used
+      assertTrue(ti.getApproximateOwnedPageCount() <= pageCount);
+
+      clearTableCache(db);
+      t = db.getTable("test");
+      ti = (TableImpl)t;
+      for(int j = 0; j < 300; ++j) {
+        t.addRow(Column.AUTO_NUMBER, "row " + (1000 + j));
+      }
+      assertTrue(ti.getApproximateOwnedPageCount() <= pageCount);
+
+      clearTableCache(db);
+      t = db.getTable("test");
+      // (rows may be in re-used locations, so order is not guaranteed)
+      Set<String> values = new HashSet<String>();
+      for(Row r : t) {
+        assertTrue(values.add(r.getString("data")));
+      }
+      assertEquals(300, values.size());
+      assertTrue(values.contains("row 1000"));
+      assertTrue(values.contains("row 1299"));
+
+      // a cursor positioned on a deleted row stays on the deleted row when
+      // new rows are added
+      Cursor c = CursorBuilder.createCursor(t);
+      assertTrue(c.moveToNextRow());
+      RowId deletedRowId = c.getSavepoint().getCurrentPosition().getRowId();
+      c.deleteCurrentRow();
+      for(int j = 0; j < 300; ++j) {
+        t.addRow(Column.AUTO_NUMBER, "new row " + j);
+      }
+      assertTrue(c.isCurrentRowDeleted());
+      assertEquals(deletedRowId, c.getSavepoint().getCurrentPosition().getRowId());
+      assertFalse(c.findRow(deletedRowId));
+      for(Row r : t) {
+        assertFalse(deletedRowId.equals(r.getId()));
+      }
+
+      db.close();
+    }
+  }
+
   public void testDateMath()
   {
     long now = System.currentTimeMillis();
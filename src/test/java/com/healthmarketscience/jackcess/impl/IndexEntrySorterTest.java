@@ -0,0 +1,87 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.healthmarketscience.jackcess.impl.IndexData.Entry;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author James Ahlborn
+ */
+public class IndexEntrySorterTest extends TestCase
+{
+
+  public IndexEntrySorterTest(String name) {
+    super(name);
+  }
+
+  public void testMultiLevelMerge() throws Exception
+  {
+    File tempDir = File.createTempFile("sorterTest", "");
+    assertTrue(tempDir.delete());
+    assertTrue(tempDir.mkdir());
+    try {
+
+      // small runs and a small merge limit so that the runs are merged in
+      // multiple levels
+      IndexEntrySorter sorter = new IndexEntrySorter(1024, tempDir, 3);
+      List<Entry> expected = new ArrayList<Entry>();
+      Random rand = new Random(42L);
+      for(int i = 0; i < 2000; ++i) {
+        byte[] entryBytes = new byte[1 + rand.nextInt(10)];
+        rand.nextBytes(entryBytes);
+        Entry entry = new Entry(entryBytes, new RowIdImpl(i / 100, i % 100));
+        sorter.add(entry);
+        expected.add(entry);
+      }
+      Collections.sort(expected);
+
+      assertTrue(sorter.getRunCount() > 9);
+      assertEquals(sorter.getRunCount(), tempDir.listFiles().length);
+
+      // the entries can be iterated multiple times
+      for(int i = 0; i < 2; ++i) {
+        IndexEntrySorter.EntrySource source = sorter.sortedEntries();
+        assertTrue(sorter.getRunCount() <= 2);
+        assertEquals(sorter.getRunCount(), tempDir.listFiles().length);
+
+        List<Entry> found = new ArrayList<Entry>();
+        Entry entry = null;
+        while((entry = source.next()) != null) {
+          found.add(entry);
+        }
+        assertEquals(expected, found);
+      }
+
+      sorter.close();
+      assertEquals(0, tempDir.listFiles().length);
+
+    } finally {
+      for(File file : tempDir.listFiles()) {
+        file.delete();
+      }
+      tempDir.delete();
+    }
+  }
+}
@@ -16,7 +16,12 @@ limitations under the License.
 
 package com.healthmarketscience.jackcess.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.nio.ByteBuffer;
 import java.sql.Types;
 import java.util.ArrayList;
@@ -24,14 +29,21 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
+import com.healthmarketscience.jackcess.Column;
 import com.healthmarketscience.jackcess.ColumnBuilder;
+import com.healthmarketscience.jackcess.Cursor;
+import com.healthmarketscience.jackcess.CursorBuilder;
 import com.healthmarketscience.jackcess.DataType;
 import com.healthmarketscience.jackcess.Database;
 import static com.healthmarketscience.jackcess.Database.*;
 import com.healthmarketscience.jackcess.Row;
 import com.healthmarketscience.jackcess.Table;
 import com.healthmarketscience.jackcess.TableBuilder;
+import com.healthmarketscience.jackcess.complex.Attachment;
+import com.healthmarketscience.jackcess.impl.complex.AttachmentColumnInfoImpl;
+import com.healthmarketscience.jackcess.util.OleBlob;
 import static com.healthmarketscience.jackcess.TestUtil.*;
 import static com.healthmarketscience.jackcess.impl.JetFormatTest.*;
 import junit.framework.TestCase;
@@ -265,4 +277,251 @@ public class LongValueTest extends TestCase
 
     db.close();
   }
+
+  public void testStreamLongValue() throws Exception {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+
+      Table table =
+      new TableBuilder("test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("memo", DataType.MEMO)
+                   .setCompressedUnicode(true))
+        .addColumn(new ColumnBuilder("ole", DataType.OLE))
+        .toTable(db);
+
+      StringBuilder sb = new StringBuilder();
+      for(int i = 0; i < 10000; ++i) {
+        sb.append((char)('\u0CC0' + (i % 26)));
+      }
+      String nonAsciiMemo = sb.toString();
+      String longMemo = createString(30000);
+      byte[] longOle = new byte[100000];
+      new Random(42L).nextBytes(longOle);
+
+      // (the short memos are stored compressed)
+      List<String> memos = Arrays.asList("short memo", createString(1000),
+                                         longMemo, nonAsciiMemo, "", null);
+      List<byte[]> oles = Arrays.asList(new byte[]{1, 2, 3}, new byte[10],
+                                        longOle, new byte[5000], new byte[0],
+                                        null);
+      for(int i = 0; i < memos.size(); ++i) {
+        table.addRow(i, memos.get(i), oles.get(i));
+      }
+
+      Column memoCol = table.getColumn("memo");
+      Column oleCol = table.getColumn("ole");
+      CursorImpl cursor = (CursorImpl)CursorBuilder.createCursor(table);
+      int i = 0;
+      while(cursor.moveToNextRow()) {
+        String expectedMemo = memos.get(i);
+        byte[] expectedOle = oles.get(i);
+
+        Reader reader = cursor.getCurrentRowValueReader(memoCol);
+        InputStream oleIn = cursor.getCurrentRowValueStream(oleCol);
+        if(expectedMemo == null) {
+          assertNull(reader);
+          assertNull(oleIn);
+        } else {
+          StringBuilder found = new StringBuilder();
+          char[] cbuf = new char[1000];
+          int len = 0;
+          while((len = reader.read(cbuf)) >= 0) {
+            found.append(cbuf, 0, len);
+          }
+          reader.close();
+          assertEquals(expectedMemo, found.toString());
+          assertTrue(Arrays.equals(expectedOle, readAll(oleIn)));
+
+          // raw memo data matches the normal (encoded) value
+          byte[] rawMemo = readAll(
+              cursor.getCurrentRowValueStream(memoCol));
+          assertEquals(expectedMemo,
+                       ((ColumnImpl)memoCol).decodeTextValue(rawMemo));
+        }
+        ++i;
+      }
+      assertEquals(memos.size(), i);
+
+      cursor.reset();
+      cursor.moveToNextRow();
+      try {
+        cursor.getCurrentRowValueStream(table.getColumn("id"));
+        fail("IllegalArgumentException should have been thrown");
+      } catch(IllegalArgumentException e) {
+        // success
+      }
+
+      db.close();
+    }
+  }
+
+  public void testStreamAttachmentData() throws Exception {
+    byte[] data = new byte[50000];
+    new Random(42L).nextBytes(data);
+    for(String type : Arrays.asList("txt", "zip")) {
+      Attachment attach = AttachmentColumnInfoImpl.newAttachment(
+          null, "test." + type, type, data, null, null);
+      InputStream in = AttachmentColumnInfoImpl.decodeFileData(
+          new ByteArrayInputStream(attach.getEncodedFileData()));
+      assertTrue(Arrays.equals(data, readAll(in)));
+    }
+  }
+
+  public void testWriteLongValueStream() throws Exception {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+
+      Table table =
+      new TableBuilder("test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("memo", DataType.MEMO)
+                   .setCompressedUnicode(true))
+        .addColumn(new ColumnBuilder("ole", DataType.OLE))
+        .toTable(db);
+
+      String longMemo = createString(30000);
+      byte[] longOle = new byte[100000];
+      new Random(42L).nextBytes(longOle);
+
+      List<String> memos = Arrays.asList("short memo", createString(1000),
+                                         createString(1500), longMemo, "");
+      List<byte[]> oles = Arrays.asList(new byte[]{1, 2, 3}, new byte[3000],
+                                        new byte[5000], longOle, new byte[0]);
+      for(int i = 0; i < memos.size(); ++i) {
+        table.addRow(i, new StringReader(memos.get(i)),
+                     new ByteArrayInputStream(oles.get(i)));
+      }
+
+      OleBlob.Builder oleBuilder = new OleBlob.Builder()
+        .setSimplePackageStream(new ByteArrayInputStream(longOle),
+                                longOle.length)
+        .setSimplePackageFileName("test.dat")
+        .setSimplePackageFilePath("/tmp/test.dat");
+      table.addRow(memos.size(), null, oleBuilder.toStream());
+
+      int i = 0;
+      for(Row row : table) {
+        if(i < memos.size()) {
+          assertEquals(memos.get(i), row.getString("memo"));
+          assertTrue(Arrays.equals(oles.get(i), row.getBytes("ole")));
+        } else {
+          assertNull(row.get("memo"));
+          OleBlob.SimplePackageContent content =
+            (OleBlob.SimplePackageContent)row.getBlob("ole").getContent();
+          assertEquals("test.dat", content.getFileName());
+          assertTrue(Arrays.equals(longOle, readAll(content.getStream())));
+        }
+        ++i;
+      }
+      assertEquals(memos.size() + 1, i);
+
+      db.close();
+    }
+  }
+
+  public void testLazyLongValues() throws Exception {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+
+      Table table =
+      new TableBuilder("test")
+        .addColumn(new ColumnBuilder("id", DataType.LONG))
+        .addColumn(new ColumnBuilder("memo", DataType.MEMO))
+        .addColumn(new ColumnBuilder("ole", DataType.OLE))
+        .toTable(db);
+
+      byte[] longOle = new byte[20000];
+      new Random(42L).nextBytes(longOle);
+      List<String> memos = Arrays.asList("short memo", createString(30000),
+                                         null);
+      List<byte[]> oles = Arrays.asList(new byte[]{1, 2, 3}, longOle, null);
+      for(int i = 0; i < memos.size(); ++i) {
+        table.addRow(i, memos.get(i), oles.get(i));
+      }
+
+      Cursor cursor = new CursorBuilder(table)
+        .setLazyLongValues(true)
+        .toCursor();
+      assertTrue(((CursorImpl)cursor).isLazyLongValues());
+
+      int i = 0;
+      for(Row row : cursor) {
+        String expectedMemo = memos.get(i);
+        byte[] expectedOle = oles.get(i);
+        if(expectedMemo == null) {
+          assertNull(row.get("memo"));
+          assertNull(row.get("ole"));
+        } else {
+          LongValueHandle.Text memoHandle =
+            (LongValueHandle.Text)row.get("memo");
+          LongValueHandle.Binary oleHandle =
+            (LongValueHandle.Binary)row.get("ole");
+          assertFalse(memoHandle.isLoaded());
+          assertFalse(oleHandle.isLoaded());
+          assertEquals(expectedOle.length, oleHandle.getLength());
+          assertTrue(Arrays.equals(expectedOle,
+                                   readAll(oleHandle.getStream())));
+          assertFalse(oleHandle.isLoaded());
+
+          assertEquals(expectedMemo, row.getString("memo"));
+          assertTrue(memoHandle.isLoaded());
+          assertEquals(expectedMemo, memoHandle.toString());
+          assertTrue(Arrays.equals(expectedOle, row.getBytes("ole")));
+          assertTrue(oleHandle.isLoaded());
+        }
+        ++i;
+      }
+      assertEquals(memos.size(), i);
+
+      // lazy rows resolve the handles as well
+      cursor.reset();
+      i = 0;
+      LazyRowImpl lazyRow = null;
+      while((lazyRow = ((CursorImpl)cursor).getNextLazyRow()) != null) {
+        assertEquals(memos.get(i), lazyRow.getString("memo"));
+        assertTrue(Arrays.equals(oles.get(i), lazyRow.getBytes("ole")));
+        ++i;
+      }
+      assertEquals(memos.size(), i);
+
+      // handles can be written back to the same row and to new rows
+      cursor.reset();
+      assertTrue(cursor.moveToNextRow());
+      assertTrue(cursor.moveToNextRow());
+      Row row = cursor.getCurrentRow();
+      row.put("id", 10);
+      cursor.updateCurrentRowFromMap(row);
+      table.addRow(11, row.get("memo"), row.get("ole"));
+      cursor.reset();
+      assertTrue(cursor.moveToNextRow());
+      row = cursor.getCurrentRow();
+      table.addRow(12, row.get("memo"), row.get("ole"));
+
+      List<Integer> expectedIds = Arrays.asList(0, 10, 2, 11, 12);
+      List<Integer> expectedIdxs = Arrays.asList(0, 1, 2, 1, 0);
+      i = 0;
+      for(Row r : table) {
+        int idx = expectedIdxs.get(i);
+        assertEquals(expectedIds.get(i), r.getInt("id"));
+        assertEquals(memos.get(idx), r.getString("memo"));
+        assertTrue(Arrays.equals(oles.get(idx), r.getBytes("ole")));
+        ++i;
+      }
+      assertEquals(expectedIds.size(), i);
+
+      db.close();
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws Exception {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    byte[] buf = new byte[1024];
+    int len = 0;
+    while((len = in.read(buf)) >= 0) {
+      bout.write(buf, 0, len);
+    }
+    in.close();
+    return bout.toByteArray();
+  }
 }
@@ -0,0 +1,148 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.healthmarketscience.jackcess.Database;
+import static com.healthmarketscience.jackcess.Database.*;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import static com.healthmarketscience.jackcess.TestUtil.*;
+import static com.healthmarketscience.jackcess.impl.JetFormatTest.*;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author James Ahlborn
+ */
+public class PageCacheTest extends TestCase
+{
+  private static final int PAGE_SIZE = 16;
+
+  public PageCacheTest(String name) {
+    super(name);
+  }
+
+  public void testScanResistance() throws Exception
+  {
+    PageCache cache = new PageCache(PAGE_SIZE, PAGE_SIZE * 8);
+    ByteBuffer buf = PageChannel.createBuffer(PAGE_SIZE);
+
+    // load some "hot" pages and access them again after they have dropped
+    // out of the first access queue
+    for(int i = 1; i <= 4; ++i) {
+      putPage(cache, buf, i);
+    }
+    for(int i = 100; i < 108; ++i) {
+      putPage(cache, buf, i);
+    }
+    for(int i = 1; i <= 4; ++i) {
+      assertFalse(cache.readPage(buf, i));
+      putPage(cache, buf, i);
+    }
+
+    // now do a big "scan"
+    for(int i = 1000; i < 2000; ++i) {
+      if(!cache.readPage(buf, i)) {
+        putPage(cache, buf, i);
+      }
+    }
+
+    assertEquals(8, cache.getPageCount());
+    for(int i = 1; i <= 4; ++i) {
+      assertTrue(cache.readPage(buf, i));
+      assertEquals(0, buf.position());
+      assertEquals(PAGE_SIZE, buf.limit());
+      assertEquals(i, buf.getInt(0));
+    }
+
+    cache.invalidatePage(2);
+    assertFalse(cache.readPage(buf, 2));
+    assertTrue(cache.readPage(buf, 3));
+
+    cache.clear();
+    assertEquals(0, cache.getPageCount());
+  }
+
+  public void testCachedReadWrite() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      PageCache cache = new PageCache(pageChannel.getFormat().PAGE_SIZE,
+                                      pageChannel.getFormat().PAGE_SIZE * 16);
+      pageChannel.setPageCache(cache);
+
+      createTestTable(db);
+      Table table = db.getTable("Test");
+      List<Object[]> rows = new ArrayList<Object[]>();
+      for(int i = 0; i < 500; ++i) {
+        Object[] row = createTestRow();
+        row[0] = "row" + i;
+        rows.add(row);
+      }
+      table.addRows(rows);
+
+      for(Row row : table) {
+        row.put("B", "updated" + row.getString("A"));
+        table.updateRow(row);
+      }
+
+      // re-read without the cache and make sure everything matches
+      pageChannel.setPageCache(null);
+      clearTableCache(db);
+      table = db.getTable("Test");
+      int count = 0;
+      for(Row row : table) {
+        assertEquals("updated" + row.getString("A"), row.getString("B"));
+        ++count;
+      }
+      assertEquals(500, count);
+      assertTrue(cache.getHitCount() > 0L);
+
+      db.close();
+    }
+  }
+
+  public void testBuilderConfig() throws Exception
+  {
+    for (final TestDB testDB : SUPPORTED_DBS_TEST_FOR_READ) {
+      Database db = new DatabaseBuilder(testDB.getFile())
+        .setReadOnly(true).setPageCacheSize(1024L * 1024L).open();
+      PageCache cache = ((DatabaseImpl)db).getPageChannel().getPageCache();
+      assertNotNull(cache);
+
+      Table table = db.getTable("Table1");
+      assertEquals(2, countRows(table));
+      assertEquals(2, countRows(table));
+      assertTrue(cache.getHitCount() > 0L);
+
+      db.close();
+    }
+  }
+
+  private static void putPage(PageCache cache, ByteBuffer buf, int pageNumber)
+  {
+    buf.clear();
+    buf.putInt(0, pageNumber);
+    cache.putPage(buf, pageNumber);
+  }
+}
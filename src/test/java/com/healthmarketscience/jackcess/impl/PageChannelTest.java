@@ -0,0 +1,505 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.healthmarketscience.jackcess.Column;
+import com.healthmarketscience.jackcess.Cursor;
+import com.healthmarketscience.jackcess.CursorBuilder;
+import com.healthmarketscience.jackcess.Database;
+import static com.healthmarketscience.jackcess.Database.*;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Row;
+import com.healthmarketscience.jackcess.Table;
+import static com.healthmarketscience.jackcess.TestUtil.*;
+import static com.healthmarketscience.jackcess.impl.JetFormatTest.*;
+import com.healthmarketscience.jackcess.util.MemFileChannel;
+import com.healthmarketscience.jackcess.util.ReadOnlyFileChannel;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author James Ahlborn
+ */
+public class PageChannelTest extends TestCase
+{
+
+  public PageChannelTest(String name) {
+    super(name);
+  }
+
+  public void testMemoryMapped() throws Exception
+  {
+    for (final TestDB testDB : SUPPORTED_DBS_TEST_FOR_READ) {
+      Database db = open(testDB);
+      Database mappedDb = new DatabaseBuilder(testDB.getFile())
+        .setReadOnly(true).setMemoryMapped(true).open();
+
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      PageChannel mappedChannel = ((DatabaseImpl)mappedDb).getPageChannel();
+      assertFalse(pageChannel.isMemoryMapped());
+      assertTrue(mappedChannel.isMemoryMapped());
+
+      // every page should be identical
+      ByteBuffer buf = pageChannel.createPageBuffer();
+      ByteBuffer mappedBuf = mappedChannel.createPageBuffer();
+      int numPages = (int)(testDB.getFile().length() /
+                           pageChannel.getFormat().PAGE_SIZE);
+      for(int i = 0; i < numPages; ++i) {
+        pageChannel.readPage(buf, i);
+        mappedChannel.readPage(mappedBuf, i);
+        assertEquals(buf, mappedBuf);
+      }
+
+      assertEquals(readRows(db.getTable("Table1")),
+                   readRows(mappedDb.getTable("Table1")));
+
+      db.close();
+      mappedDb.close();
+    }
+  }
+
+  public void testMemoryMappedUnsupported() throws Exception
+  {
+    for (final TestDB testDB : SUPPORTED_DBS_TEST_FOR_READ) {
+      Database db = openMem(testDB);
+      assertFalse(((DatabaseImpl)db).getPageChannel().enableMemoryMapping());
+      assertFalse(((DatabaseImpl)db).getPageChannel().isMemoryMapped());
+      db.close();
+    }
+  }
+
+  public void testReadPages() throws Exception
+  {
+    for (final TestDB testDB : SUPPORTED_DBS_TEST_FOR_READ) {
+      Database db = open(testDB);
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      int pageSize = pageChannel.getFormat().PAGE_SIZE;
+      int numPages = (int)(testDB.getFile().length() / pageSize);
+
+      ByteBuffer buf = pageChannel.createPageBuffer();
+      ByteBuffer pagesBuf = PageChannel.createBuffer(pageSize * 8);
+      for(int i = 0; i < numPages; i += 8) {
+        int runLength = Math.min(8, numPages - i);
+        pageChannel.readPages(pagesBuf, i, runLength);
+        assertEquals(0, pagesBuf.position());
+        assertEquals(runLength * pageSize, pagesBuf.limit());
+        for(int j = 0; j < runLength; ++j) {
+          pageChannel.readPage(buf, i + j);
+          assertEquals(buf, PageChannel.narrowBuffer(
+                           pagesBuf, j * pageSize, (j + 1) * pageSize));
+        }
+      }
+
+      db.close();
+    }
+  }
+
+  public void testReadAheadScan() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+
+      createTestTable(db);
+      Table table = db.getTable("Test");
+      List<Object[]> rows = new ArrayList<Object[]>();
+      for(int i = 0; i < 2000; ++i) {
+        Object[] row = createTestRow();
+        row[0] = "row" + i;
+        rows.add(row);
+      }
+      table.addRows(rows);
+
+      List<Row> expected = readRows(table);
+
+      pageChannel.setReadAheadPages(8);
+      assertEquals(expected, readRows(table));
+
+      Cursor cursor = CursorBuilder.createCursor(table);
+      cursor.afterLast();
+      int count = 0;
+      while(cursor.moveToPreviousRow()) {
+        assertEquals(expected.get(expected.size() - count - 1),
+                     cursor.getCurrentRow());
+        ++count;
+      }
+      assertEquals(expected.size(), count);
+
+      // modify the table while scanning
+      cursor = CursorBuilder.createCursor(table);
+      count = 0;
+      while(cursor.moveToNextRow()) {
+        if((count % 2) == 0) {
+          cursor.deleteCurrentRow();
+        } else {
+          cursor.updateCurrentRow("updated", Column.KEEP_VALUE,
+                                  Column.KEEP_VALUE, Column.KEEP_VALUE,
+                                  Column.KEEP_VALUE, Column.KEEP_VALUE,
+                                  Column.KEEP_VALUE, Column.KEEP_VALUE,
+                                  Column.KEEP_VALUE);
+        }
+        ++count;
+      }
+      assertEquals(expected.size(), count);
+
+      count = 0;
+      for(Row row : table) {
+        assertEquals("updated", row.getString("A"));
+        ++count;
+      }
+      assertEquals(expected.size() / 2, count);
+
+      db.close();
+    }
+  }
+
+  public void testWriteBehind() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      if(fileFormat == FileFormat.GENERIC_JET4) {
+        continue;
+      }
+
+      FileChannel channel = MemFileChannel.newChannel();
+      Database db = new DatabaseBuilder(new File("writeBehind.mdb"))
+        .setFileFormat(fileFormat).setChannel(channel)
+        .setWriteBehindBufferSize(1024L * 1024L).create();
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      assertEquals(1024L * 1024L, pageChannel.getWriteBehindBufferSize());
+      int pageSize = pageChannel.getFormat().PAGE_SIZE;
+
+      ByteBuffer buf = pageChannel.createPageBuffer();
+      ByteBuffer rawBuf = pageChannel.createPageBuffer();
+
+      pageChannel.startWrite();
+      int pageNumber = pageChannel.allocateNewPage();
+      pageChannel.startWrite();
+      buf.putInt(0, 13);
+      pageChannel.writePage(buf, pageNumber);
+      pageChannel.finishWrite();
+      // new page and global usage map
+      assertEquals(2, pageChannel.getDirtyPageCount());
+
+      // partial write of the same page should be coalesced
+      ByteBuffer partial = pageChannel.createPageBuffer();
+      partial.putInt(8, 42);
+      partial.limit(12);
+      pageChannel.writePage(partial, pageNumber, 8);
+      assertEquals(2, pageChannel.getDirtyPageCount());
+
+      // nothing written yet, but reads should see the changes
+      rawBuf.clear();
+      channel.read(rawBuf, (long)pageNumber * pageSize);
+      assertEquals(0, rawBuf.getInt(0));
+      pageChannel.readPage(buf, pageNumber);
+      assertEquals(13, buf.getInt(0));
+      assertEquals(42, buf.getInt(8));
+
+      pageChannel.finishWrite();
+      assertEquals(0, pageChannel.getDirtyPageCount());
+      rawBuf.clear();
+      channel.read(rawBuf, (long)pageNumber * pageSize);
+      assertEquals(13, rawBuf.getInt(0));
+      assertEquals(42, rawBuf.getInt(8));
+
+      // full buffer is written early
+      pageChannel.setWriteBehindBufferSize(pageSize * 2);
+      pageChannel.startWrite();
+      for(int i = 0; i < 5; ++i) {
+        pageChannel.writePage(buf, pageChannel.allocateNewPage());
+        assertTrue(pageChannel.getDirtyPageCount() < 2);
+      }
+      pageChannel.finishWrite();
+
+      // bulk load with write-behind
+      pageChannel.setWriteBehindBufferSize(1024L * 1024L);
+      createTestTable(db);
+      Table table = db.getTable("Test");
+      List<Object[]> rows = new ArrayList<Object[]>();
+      for(int i = 0; i < 1000; ++i) {
+        Object[] row = createTestRow();
+        row[0] = "row" + i;
+        rows.add(row);
+      }
+      table.addRows(rows);
+      assertEquals(0, pageChannel.getDirtyPageCount());
+
+      // re-read without write-behind
+      pageChannel.setWriteBehindBufferSize(0L);
+      clearTableCache(db);
+      table = db.getTable("Test");
+      int count = 0;
+      for(Row row : table) {
+        assertEquals("row" + count, row.getString("A"));
+        ++count;
+      }
+      assertEquals(1000, count);
+
+      db.close();
+    }
+  }
+
+  public void testWriteBehindFailure() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      if(fileFormat == FileFormat.GENERIC_JET4) {
+        continue;
+      }
+
+      FailingChannel channel = new FailingChannel(MemFileChannel.newChannel());
+      Database db = new DatabaseBuilder(new File("writeBehindFailure.mdb"))
+        .setFileFormat(fileFormat).setChannel(channel)
+        .setWriteBehindBufferSize(1024L * 1024L).create();
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      int pageSize = pageChannel.getFormat().PAGE_SIZE;
+
+      ByteBuffer buf = pageChannel.createPageBuffer();
+      ByteBuffer rawBuf = pageChannel.createPageBuffer();
+
+      pageChannel.startWrite();
+      int pageNumber1 = pageChannel.allocateNewPage();
+      int pageNumber2 = pageChannel.allocateNewPage();
+      buf.putInt(0, 13);
+      pageChannel.writePage(buf, pageNumber1);
+      buf.putInt(0, 14);
+      pageChannel.writePage(buf, pageNumber2);
+      // new pages and global usage map
+      assertEquals(3, pageChannel.getDirtyPageCount());
+
+      // fail after the first page is written
+      channel._writesUntilFailure = 1;
+      try {
+        pageChannel.finishWrite();
+        fail("IOException should have been thrown");
+      } catch(IOException e) {
+        // success
+      }
+
+      // the unwritten pages are still pending and visible to reads
+      assertEquals(2, pageChannel.getDirtyPageCount());
+      rawBuf.clear();
+      channel.read(rawBuf, (long)pageNumber2 * pageSize);
+      assertEquals(0, rawBuf.getInt(0));
+      pageChannel.readPage(buf, pageNumber2);
+      assertEquals(14, buf.getInt(0));
+
+      // and are written by the next flush
+      channel._writesUntilFailure = -1;
+      pageChannel.flush();
+      assertEquals(0, pageChannel.getDirtyPageCount());
+      rawBuf.clear();
+      channel.read(rawBuf, (long)pageNumber1 * pageSize);
+      assertEquals(13, rawBuf.getInt(0));
+      rawBuf.clear();
+      channel.read(rawBuf, (long)pageNumber2 * pageSize);
+      assertEquals(14, rawBuf.getInt(0));
+
+      db.close();
+    }
+  }
+
+  public void testExtents() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      if(fileFormat == FileFormat.GENERIC_JET4) {
+        continue;
+      }
+
+      FileChannel channel = MemFileChannel.newChannel();
+      Database db = new DatabaseBuilder(new File("extents.mdb"))
+        .setFileFormat(fileFormat).setChannel(channel)
+        .setExtentPages(16).create();
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      int pageSize = pageChannel.getFormat().PAGE_SIZE;
+      assertEquals(0, pageChannel.getPreallocatedPageCount());
+
+      pageChannel.startWrite();
+      int pageNumber = pageChannel.allocateNewPage();
+      pageChannel.finishWrite();
+      assertEquals(15, pageChannel.getPreallocatedPageCount());
+      assertEquals((pageNumber + 16L) * pageSize, channel.size());
+
+      // preallocated pages are not valid until allocated
+      try {
+        pageChannel.readPage(pageChannel.createPageBuffer(), pageNumber + 1);
+        fail("IllegalStateException should have been thrown");
+      } catch(IllegalStateException expected) {
+        // success
+      }
+
+      pageChannel.startWrite();
+      assertEquals(pageNumber + 1, pageChannel.allocateNewPage());
+      pageChannel.finishWrite();
+      assertEquals(14, pageChannel.getPreallocatedPageCount());
+      assertEquals((pageNumber + 16L) * pageSize, channel.size());
+
+      pageChannel.setExtentPercent(50);
+      createTestTable(db);
+      Table table = db.getTable("Test");
+      List<Object[]> rows = new ArrayList<Object[]>();
+      for(int i = 0; i < 1000; ++i) {
+        Object[] row = createTestRow();
+        row[0] = "row" + i;
+        rows.add(row);
+      }
+      table.addRows(rows);
+
+      int numPages = pageChannel.getPreallocatedPageCount();
+      assertTrue(numPages > 0);
+      long usedSize = channel.size() - ((long)numPages * pageSize);
+
+      db.close();
+
+      // unused pages are trimmed on close
+      assertEquals(usedSize, channel.size());
+
+      db = new DatabaseBuilder(new File("extents.mdb"))
+        .setChannel(channel).open();
+      assertEquals(1000, countRows(db.getTable("Test")));
+      db.close();
+    }
+  }
+
+  public void testReusePages() throws Exception
+  {
+    for (final FileFormat fileFormat : SUPPORTED_FILEFORMATS) {
+      Database db = createMem(fileFormat);
+      PageChannel pageChannel = ((DatabaseImpl)db).getPageChannel();
+      assertEquals(0, pageChannel.getReusablePageCount());
+
+      pageChannel.startWrite();
+      int pageNumber1 = pageChannel.allocateNewPage();
+      int pageNumber2 = pageChannel.allocateNewPage();
+      pageChannel.writePage(pageChannel.createPageBuffer(), pageNumber1);
+      pageChannel.writePage(pageChannel.createPageBuffer(), pageNumber2);
+      pageChannel.deallocatePage(pageNumber1);
+      pageChannel.deallocatePage(pageNumber2);
+      pageChannel.finishWrite();
+      assertEquals(2, pageChannel.getReusablePageCount());
+
+      // deallocated pages are re-used before the file grows
+      int nextPageNumber = pageNumber2 + 1;
+      pageChannel.startWrite();
+      assertEquals(pageNumber2, pageChannel.allocateNewPage());
+      assertEquals(pageNumber1, pageChannel.allocateNewPage());
+      assertEquals(nextPageNumber, pageChannel.allocateNewPage());
+      pageChannel.finishWrite();
+      assertEquals(0, pageChannel.getReusablePageCount());
+
+      db.close();
+    }
+  }
+
+  public void testConfiguredBeforeOpen() throws Exception
+  {
+    for (final TestDB testDB : SUPPORTED_DBS_TEST_FOR_READ) {
+      Database db = openCopy(testDB);
+      File dbFile = db.getFile();
+      db.close();
+
+      // the system catalog reads go through the page cache
+      db = new DatabaseBuilder(dbFile).setReadOnly(true)
+        .setPageCacheSize(1024 * 1024).open();
+      PageCache pageCache = ((DatabaseImpl)db).getPageChannel().getPageCache();
+      assertTrue(pageCache.getPageCount() > 0);
+      db.close();
+
+      // memory mapping depends on the mode the file was actually opened in
+      // (some formats are always opened read-only)
+      db = new DatabaseBuilder(dbFile).setMemoryMapped(true).open();
+      assertEquals(((DatabaseImpl)db).getFormat().READ_ONLY,
+                   ((DatabaseImpl)db).getPageChannel().isMemoryMapped());
+      db.close();
+    }
+  }
+
+  /**
+   * FileChannel which fails writes once a given number of writes have
+   * succeeded.
+   */
+  private static final class FailingChannel extends ReadOnlyFileChannel
+  {
+    private final FileChannel _delegate;
+    private int _writesUntilFailure = -1;
+
+    private FailingChannel(FileChannel delegate) {
+      super(delegate);
+      _delegate = delegate;
+    }
+
+    private void checkWrite() throws IOException {
+      if(_writesUntilFailure == 0) {
+        throw new IOException("write failed");
+      }
+      if(_writesUntilFailure > 0) {
+        --_writesUntilFailure;
+      }
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+      _delegate.truncate(size);
+      return this;
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position,
+                             long count)
+      throws IOException
+    {
+      return _delegate.transferFrom(src, position, count);
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+      checkWrite();
+      return _delegate.write(src, position);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      checkWrite();
+      return _delegate.write(src);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length)
+      throws IOException
+    {
+      checkWrite();
+      return _delegate.write(srcs, offset, length);
+    }
+  }
+
+  private static List<Row> readRows(Table t)
+    throws Exception
+  {
+    List<Row> rows = new ArrayList<Row>();
+    for(Row r : t) {
+      rows.add(r);
+    }
+    return rows;
+  }
+}
@@ -0,0 +1,182 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.impl;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author James Ahlborn
+ */
+public class RunLengthBitSetTest extends TestCase
+{
+
+  public RunLengthBitSetTest(String name) {
+    super(name);
+  }
+
+  public void testRuns() throws Exception
+  {
+    RunLengthBitSet bits = new RunLengthBitSet();
+    assertTrue(bits.isEmpty());
+    assertEquals(-1, bits.nextSetBit(0));
+    assertEquals(0, bits.length());
+
+    bits.set(10, 20);
+    bits.set(20);
+    bits.set(30, 40);
+    assertEquals(2, bits.getRunCount());
+    assertEquals(21, bits.cardinality());
+    assertEquals("{10-20, 30-39}", bits.toString());
+
+    // fill the gap
+    bits.set(21, 30);
+    assertEquals(1, bits.getRunCount());
+    assertEquals(10, bits.getRunStart(0));
+    assertEquals(40, bits.getRunEnd(0));
+    assertEquals(30, bits.cardinality());
+
+    // split the run
+    bits.clear(15);
+    bits.clear(25, 27);
+    assertEquals("{10-14, 16-24, 27-39}", bits.toString());
+    assertEquals(27, bits.cardinality());
+
+    assertEquals(16, bits.nextSetBit(15));
+    assertEquals(15, bits.nextClearBit(10));
+    assertEquals(40, bits.nextClearBit(30));
+    assertEquals(14, bits.previousSetBit(15));
+    assertEquals(-1, bits.previousSetBit(9));
+    assertEquals(26, bits.previousClearBit(39));
+    assertEquals(9, bits.previousClearBit(14));
+    assertEquals(5, bits.previousClearBit(5));
+
+    bits.clear(0, 100);
+    assertTrue(bits.isEmpty());
+    assertEquals(0, bits.cardinality());
+  }
+
+  public void testBulkOps() throws Exception
+  {
+    RunLengthBitSet bits1 = new RunLengthBitSet();
+    bits1.set(0, 10);
+    bits1.set(20, 30);
+    bits1.set(40, 50);
+
+    RunLengthBitSet bits2 = new RunLengthBitSet();
+    bits2.set(5, 25);
+    bits2.set(45);
+    bits2.set(60, 70);
+
+    RunLengthBitSet result = new RunLengthBitSet(bits1);
+    result.or(bits2);
+    assertEquals("{0-29, 40-49, 60-69}", result.toString());
+    assertEquals(50, result.cardinality());
+
+    result = new RunLengthBitSet(bits1);
+    result.and(bits2);
+    assertEquals("{5-9, 20-24, 45}", result.toString());
+    assertEquals(11, result.cardinality());
+
+    result = new RunLengthBitSet(bits1);
+    result.andNot(bits2);
+    assertEquals("{0-4, 25-29, 40-44, 46-49}", result.toString());
+    assertEquals(19, result.cardinality());
+
+    result = new RunLengthBitSet(bits1, 100);
+    assertEquals("{100-109, 120-129, 140-149}", result.toString());
+    assertFalse(result.equals(bits1));
+    assertEquals(bits1, new RunLengthBitSet(result, -100));
+  }
+
+  public void testRandomOps() throws Exception
+  {
+    Random rand = new Random(42L);
+    RunLengthBitSet bits = new RunLengthBitSet();
+    BitSet expected = new BitSet();
+    RunLengthBitSet otherBits = new RunLengthBitSet();
+    BitSet otherExpected = new BitSet();
+
+    for(int i = 0; i < 5000; ++i) {
+      int from = rand.nextInt(1000);
+      int to = from + rand.nextInt(20);
+      switch(rand.nextInt(5)) {
+      case 0:
+        bits.set(from, to);
+        expected.set(from, to);
+        break;
+      case 1:
+        bits.clear(from, to);
+        expected.clear(from, to);
+        break;
+      case 2:
+        bits.set(from);
+        expected.set(from);
+        break;
+      case 3:
+        bits.clear(from);
+        expected.clear(from);
+        break;
+      default:
+        otherBits.set(from, to);
+        otherExpected.set(from, to);
+      }
+
+      if((i % 500) == 0) {
+        assertEquals(expected, bits);
+        RunLengthBitSet result = new RunLengthBitSet(bits);
+        BitSet resultExpected = (BitSet)expected.clone();
+        result.or(otherBits);
+        resultExpected.or(otherExpected);
+        assertEquals(resultExpected, result);
+
+        result = new RunLengthBitSet(bits);
+        resultExpected = (BitSet)expected.clone();
+        result.and(otherBits);
+        resultExpected.and(otherExpected);
+        assertEquals(resultExpected, result);
+
+        result = new RunLengthBitSet(bits);
+        resultExpected = (BitSet)expected.clone();
+        result.andNot(otherBits);
+        resultExpected.andNot(otherExpected);
+        assertEquals(resultExpected, result);
+      }
+    }
+
+    assertEquals(expected, bits);
+  }
+
+  private static void assertEquals(BitSet expected, RunLengthBitSet bits)
+  {
+    assertEquals(expected.cardinality(), bits.cardinality());
+    assertEquals(expected.length(), bits.length());
+    for(int i = 0; i <= expected.length(); ++i) {
+      assertEquals(expected.get(i), bits.get(i));
+      assertEquals(expected.nextSetBit(i), bits.nextSetBit(i));
+      assertEquals(expected.nextClearBit(i), bits.nextClearBit(i));
+    }
+
+    // runs should never be adjacent
+    for(int i = 1; i < bits.getRunCount(); ++i) {
+      assertTrue(bits.getRunEnd(i - 1) < bits.getRunStart(i));
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+Copyright (c) 2018 James Ahlborn
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.healthmarketscience.jackcess.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.healthmarketscience.jackcess.Database.*;
+import com.healthmarketscience.jackcess.Database;
+import com.healthmarketscience.jackcess.DatabaseBuilder;
+import com.healthmarketscience.jackcess.Table;
+import com.healthmarketscience.jackcess.impl.DatabaseImpl;
+import com.healthmarketscience.jackcess.impl.JetFormatTest;
+import static com.healthmarketscience.jackcess.impl.JetFormatTest.*;
+import com.healthmarketscience.jackcess.util.PageMetrics.PageType;
+import junit.framework.TestCase;
+import static com.healthmarketscience.jackcess.TestUtil.*;
+
+/**
+ * @author James Ahlborn
+ */
+public class PageMetricsTest extends TestCase
+{
+
+  public PageMetricsTest(String name) {
+    super(name);
+  }
+
+  public void testPageMetrics() throws Exception
+  {
+    for (final FileFormat fileFormat : JetFormatTest.SUPPORTED_FILEFORMATS) {
+      DatabaseImpl db = (DatabaseImpl)createMem(fileFormat);
+      assertSame(PageMetrics.DEFAULT, db.getPageMetrics());
+
+      SimplePageMetrics metrics = new SimplePageMetrics();
+      db.setPageMetrics(metrics);
+      assertSame(metrics, db.getPageMetrics());
+
+      createTestTable(db);
+      Table table = db.getTable("Test");
+      List<Object[]> rows = new ArrayList<Object[]>();
+      for(int i = 0; i < 500; ++i) {
+        Object[] row = createTestRow();
+        row[0] = "row" + i;
+        rows.add(row);
+      }
+      table.addRows(rows);
+
+      assertTrue(metrics.getAllocationCount() > 0L);
+      assertTrue(metrics.getWriteCount(PageType.DATA) > 0L);
+      assertTrue(metrics.getWriteCount(PageType.TABLE_DEF) > 0L);
+      assertEquals(metrics.getWriteCount(), sum(
+                       metrics.getWriteLatencyHistogram()));
+      assertTrue(metrics.getBytesWritten() > 0L);
+
+      metrics.reset();
+      assertEquals(0L, metrics.getWriteCount());
+
+      clearTableCache(db);
+      assertEquals(500, countRows(db.getTable("Test")));
+      assertTrue(metrics.getReadCount(PageType.DATA) > 0L);
+      assertTrue(metrics.getReadCount(PageType.TABLE_DEF) > 0L);
+      assertEquals(metrics.getReadCount(), sum(
+                       metrics.getReadLatencyHistogram()));
+      assertEquals(0L, metrics.getWriteCount());
+      // not an encoded database
+      assertEquals(0L, metrics.getDecodeCount());
+
+      db.setPageMetrics(null);
+      assertSame(PageMetrics.DEFAULT, db.getPageMetrics());
+
+      db.close();
+    }
+
+    for (final TestDB testDB : SUPPORTED_DBS_TEST_FOR_READ) {
+      // events generated while opening are included
+      SimplePageMetrics metrics = new SimplePageMetrics();
+      Database db = new DatabaseBuilder(testDB.getFile())
+        .setReadOnly(true).setPageMetrics(metrics).open();
+      assertSame(metrics, ((DatabaseImpl)db).getPageMetrics());
+      assertTrue(metrics.getReadCount(PageType.TABLE_DEF) > 0L);
+      db.close();
+    }
+  }
+
+  public void testLatencyBuckets() throws Exception
+  {
+    assertEquals(0, SimplePageMetrics.getLatencyBucket(0L));
+    assertEquals(0, SimplePageMetrics.getLatencyBucket(999L));
+    assertEquals(1, SimplePageMetrics.getLatencyBucket(1000L));
+    assertEquals(2, SimplePageMetrics.getLatencyBucket(2000L));
+    assertEquals(2, SimplePageMetrics.getLatencyBucket(3999L));
+    assertEquals(11, SimplePageMetrics.getLatencyBucket(1024L * 1000L));
+    assertEquals(SimplePageMetrics.NUM_LATENCY_BUCKETS - 1,
+                 SimplePageMetrics.getLatencyBucket(Long.MAX_VALUE));
+
+    SimplePageMetrics metrics = new SimplePageMetrics();
+    metrics.pageRead(PageType.INDEX_LEAF, 4096, 1500L);
+    metrics.pageDecoded(PageType.INDEX_LEAF, 500L);
+    assertEquals(1L, metrics.getReadCount(PageType.INDEX_LEAF));
+    assertEquals(4096L, metrics.getBytesRead());
+    assertEquals(1500L, metrics.getReadNanos());
+    assertEquals(1L, metrics.getReadLatencyHistogram()[1]);
+    assertEquals(1L, metrics.getDecodeCount(PageType.INDEX_LEAF));
+    assertEquals(1L, metrics.getDecodeLatencyHistogram()[0]);
+  }
+
+  private static long sum(long[] counts) {
+    long total = 0L;
+    for(long count : counts) {
+      total += count;
+    }
+    return total;
+  }
+}